@@ -0,0 +1,64 @@
+package com.example.chat_websocket.audit;
+
+
+import com.example.chat_websocket.model.MessageType;
+
+/**
+ * Copia inmutable de un mensaje para el registro de auditoría
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class AuditEvent {
+
+    private final MessageType type;
+    private final String destination;
+    private final String sender;
+    private final long sequence;
+    private final long timestamp;
+    private final String content;
+
+    /**
+     * Constructor con parámetros
+     *
+     * @param type Tipo de mensaje
+     * @param destination Destino STOMP
+     * @param sender Usuario que envía
+     * @param sequence Secuencia asignada por el servidor
+     * @param timestamp Marca de tiempo del servidor (epoch millis)
+     * @param content Contenido del mensaje (puede ser nulo)
+     */
+    public AuditEvent(MessageType type, String destination, String sender, long sequence, long timestamp,
+                      String content) {
+        this.type = type;
+        this.destination = destination;
+        this.sender = sender;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.content = content;
+    }
+
+    public MessageType getType() {
+        return type;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getContent() {
+        return content;
+    }
+}
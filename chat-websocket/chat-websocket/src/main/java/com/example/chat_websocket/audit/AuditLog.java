@@ -0,0 +1,218 @@
+package com.example.chat_websocket.audit;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Registro de auditoría de los mensajes, fuera del camino de difusión
+ * Quien publica solo muestrea y encola una copia del mensaje; un hilo propio escribe
+ * los eventos por lotes en el logger "chat.audit". Si la cola está llena el evento
+ * se descarta y se cuenta, de modo que la auditoría nunca frena el chat
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class AuditLog implements AutoCloseable {
+
+    /**
+     * Logger donde se escriben los eventos de auditoría
+     */
+    public static final String AUDIT_LOGGER = "chat.audit";
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+    private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+
+    private final ChatProperties.Audit properties;
+    private final BlockingQueue<AuditEvent> queue;
+    private final Consumer<String> sink;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     */
+    @Autowired
+    public AuditLog(ChatProperties properties) {
+        this(properties, LoggerFactory.getLogger(AUDIT_LOGGER)::info);
+    }
+
+    AuditLog(ChatProperties properties, Consumer<String> sink) {
+        this.properties = properties.getAudit();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, this.properties.getQueueCapacity()));
+        this.sink = sink;
+
+        if (this.properties.isEnabled()) {
+            this.writer = new Thread(this::writeLoop, "chat-audit");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Audita un mensaje publicado si entra en la muestra y cabe en la cola
+     *
+     * @param destination Destino del mensaje
+     * @param message Mensaje ya sanitizado y marcado por el servidor
+     */
+    public void record(String destination, ChatMessage message) {
+        if (writer == null || !running) {
+            return;
+        }
+
+        double sampleRate = properties.getSampleRate();
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.increment();
+            return;
+        }
+
+        AuditEvent event = new AuditEvent(message.getType(), destination, message.getSender(),
+                message.getSequence(), message.getTimestamp(), message.getContent());
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Eventos pendientes de escribir
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Detiene el escritor después de vaciar la cola
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        long flushMillis = Math.max(1, properties.getFlushInterval().toMillis());
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        StringBuilder text = new StringBuilder(1024);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEvent first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException ex) {
+                // close() interrumpe la espera; el bucle vacía lo que quede en la cola
+                continue;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            write(batch, text);
+            batch.clear();
+            if (text.capacity() > MAX_BUFFER_CAPACITY) {
+                text = new StringBuilder(1024);
+            }
+        }
+    }
+
+    private void write(List<AuditEvent> batch, StringBuilder text) {
+        text.setLength(0);
+        for (AuditEvent event : batch) {
+            if (text.length() > 0) {
+                text.append(System.lineSeparator());
+            }
+            format(event, text);
+        }
+
+        try {
+            sink.accept(text.toString());
+            written.add(batch.size());
+        } catch (RuntimeException ex) {
+            logger.warn("No se pudo escribir un lote de {} eventos de auditoría: {}", batch.size(), ex.getMessage());
+        }
+    }
+
+    private void format(AuditEvent event, StringBuilder text) {
+        text.append("seq=").append(event.getSequence())
+                .append(" ts=").append(event.getTimestamp())
+                .append(" type=").append(event.getType())
+                .append(" dest=").append(event.getDestination())
+                .append(" sender=");
+        appendEscaped(event.getSender(), text);
+
+        // El contenido de los mensajes privados nunca se escribe, solo su longitud
+        String content = event.getContent();
+        if (properties.isIncludeContent() && event.getType() != MessageType.PRIVATE) {
+            text.append(" content=");
+            appendEscaped(content, text);
+        } else {
+            text.append(" length=").append(content != null ? content.length() : 0);
+        }
+    }
+
+    /**
+     * Escribe el valor entre comillas escapando los saltos de línea para que cada evento ocupe una línea
+     */
+    private static void appendEscaped(String value, StringBuilder text) {
+        if (value == null) {
+            text.append("null");
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\n' -> text.append("\\n");
+                case '\r' -> text.append("\\r");
+                case '"' -> text.append("\\\"");
+                case '\\' -> text.append("\\\\");
+                default -> text.append(c);
+            }
+        }
+        text.append('"');
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.chat_websocket.broadcast;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.metrics.ChatMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agrupa las difusiones a un mismo destino en un único frame con un array JSON
+ * (chat.batching.enabled=true)
+ * Intercepta el canal del broker justo antes del broker simple: cada mensaje a un destino
+ * agrupado espera como máximo chat.batching.window a que lleguen otros, y el lote se entrega
+ * al alcanzar chat.batching.max-messages. Con cientos de suscriptores por sala el broker,
+ * el codificador STOMP y los sockets procesan un frame por lote en lugar de uno por mensaje.
+ * El lote de un destino se descarta al vaciarse, así las salas abandonadas no quedan retenidas
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.batching", name = "enabled", havingValue = "true")
+public class BroadcastBatcher implements ExecutorChannelInterceptor, AutoCloseable {
+
+    /**
+     * Header que marca un lote ya formado para no volver a agruparlo ni replicarlo en el clúster
+     */
+    public static final String BATCH_HEADER = "chatBatch";
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastBatcher.class);
+
+    private final MessageChannel brokerChannel;
+    private final ChatMetrics metrics;
+    private final long windowNanos;
+    private final int maxMessages;
+    private final List<String> destinationPrefixes;
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder batchedMessages = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     * @param brokerChannel Canal hacia el broker local (perezoso: lo crea la configuración del broker)
+     * @param metrics Métricas del chat
+     */
+    public BroadcastBatcher(ChatProperties properties,
+                            @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                            ChatMetrics metrics) {
+        ChatProperties.Batching batching = properties.getBatching();
+        this.brokerChannel = brokerChannel;
+        this.metrics = metrics;
+        this.windowNanos = Math.max(0, batching.getWindow().toNanos());
+        this.maxMessages = Math.max(1, batching.getMaxMessages());
+        this.destinationPrefixes = List.copyOf(batching.getDestinationPrefixes());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Retiene los mensajes a destinos agrupados antes de que lleguen al broker simple
+     * El resto de handlers del canal (destinos de usuario) los reciben sin cambios
+     */
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        if (!(handler instanceof AbstractBrokerMessageHandler)) {
+            return message;
+        }
+
+        MessageHeaders headers = message.getHeaders();
+        if (headers.containsKey(BATCH_HEADER)
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)
+                || !isJson(headers.get(MessageHeaders.CONTENT_TYPE))) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !isBatched(destination)) {
+            return message;
+        }
+
+        while (true) {
+            Batch batch = batches.computeIfAbsent(destination, Batch::new);
+            synchronized (batch) {
+                if (batch.retired) {
+                    // Se entregó y se quitó del mapa mientras esperábamos el monitor
+                    continue;
+                }
+                batch.payloads.add(payload);
+                batch.bytes += payload.length;
+                if (batch.payloads.size() >= maxMessages) {
+                    flushLocked(batch);
+                } else if (!batch.scheduled) {
+                    batch.scheduled = true;
+                    scheduler.schedule(() -> flushScheduled(batch), windowNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Entrega inmediatamente todos los lotes pendientes
+     */
+    public void flushAll() {
+        for (Batch batch : batches.values()) {
+            synchronized (batch) {
+                flushLocked(batch);
+            }
+        }
+    }
+
+    /**
+     * Mensajes entregados dentro de un lote
+     */
+    public long getBatchedMessages() {
+        return batchedMessages.sum();
+    }
+
+    /**
+     * Frames entregados al broker con los lotes
+     */
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    /**
+     * Destinos con un lote pendiente
+     */
+    public int getPendingDestinationCount() {
+        return batches.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        flushAll();
+    }
+
+    private void flushScheduled(Batch batch) {
+        synchronized (batch) {
+            batch.scheduled = false;
+            flushLocked(batch);
+        }
+    }
+
+    /**
+     * Se ejecuta con el monitor del lote tomado, de modo que los lotes de un destino
+     * llegan al broker en el mismo orden en que se publicaron sus mensajes.
+     * Al terminar el lote queda vacío y se retira del mapa; quien ya lo tuviera lo ve retirado
+     * y crea uno nuevo, que solo puede entregarse después de este
+     */
+    private void flushLocked(Batch batch) {
+        int size = batch.payloads.size();
+        if (size == 0) {
+            return;
+        }
+
+        byte[] payload;
+        if (size == 1) {
+            // Un mensaje solo se entrega tal cual, sin el array
+            payload = batch.payloads.get(0);
+        } else {
+            payload = new byte[batch.bytes + size + 1];
+            int offset = 0;
+            for (byte[] item : batch.payloads) {
+                payload[offset] = (byte) (offset == 0 ? '[' : ',');
+                offset++;
+                System.arraycopy(item, 0, payload, offset, item.length);
+                offset += item.length;
+            }
+            payload[offset] = ']';
+        }
+        batch.payloads.clear();
+        batch.bytes = 0;
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(batch.destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(BATCH_HEADER, size);
+
+        try {
+            brokerChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+            batchedMessages.add(size);
+            frames.increment();
+            metrics.recordBatch(size);
+        } catch (RuntimeException ex) {
+            logger.warn("No se pudo difundir un lote de {} mensajes a {}", size, batch.destination, ex);
+        } finally {
+            batch.retired = true;
+            batches.remove(batch.destination, batch);
+        }
+    }
+
+    private boolean isBatched(String destination) {
+        for (String prefix : destinationPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJson(Object contentType) {
+        if (contentType instanceof MimeType mimeType) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+        }
+        return contentType != null && contentType.toString().startsWith(MimeTypeUtils.APPLICATION_JSON_VALUE);
+    }
+
+    /**
+     * Mensajes pendientes de un destino; se accede siempre con su monitor tomado
+     */
+    private static final class Batch {
+
+        private final String destination;
+        private final List<byte[]> payloads = new ArrayList<>();
+        private int bytes;
+        private boolean scheduled;
+        private boolean retired;
+
+        private Batch(String destination) {
+            this.destination = destination;
+        }
+    }
+}
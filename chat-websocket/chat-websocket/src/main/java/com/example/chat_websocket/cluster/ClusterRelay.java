@@ -0,0 +1,34 @@
+package com.example.chat_websocket.cluster;
+
+
+import java.util.function.Consumer;
+
+/**
+ * Relay que intercambia mensajes del broker entre los nodos del clúster
+ * Cualquier bean que implemente esta interfaz reemplaza al relay por defecto
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public interface ClusterRelay {
+
+    /**
+     * Publica un mensaje para que lo reciban los demás nodos del clúster
+     *
+     * @param envelope Mensaje a replicar
+     */
+    void publish(RelayEnvelope envelope);
+
+    /**
+     * Registra un receptor para los mensajes publicados por otros nodos
+     *
+     * @param listener Receptor de mensajes
+     */
+    void subscribe(Consumer<RelayEnvelope> listener);
+
+    /**
+     * Libera los recursos del relay al detener el nodo
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.chat_websocket.cluster;
+
+
+import com.example.chat_websocket.broadcast.BroadcastBatcher;
+import com.example.chat_websocket.dedup.MessageDeduplicator;
+import com.example.chat_websocket.history.MessageHistoryService;
+import com.example.chat_websocket.model.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Puente entre el broker local y el relay del clúster
+ * Publica en el relay los mensajes que la aplicación envía al broker local
+ * y reinyecta en el broker local los mensajes recibidos de otros nodos, registrándolos antes
+ * en el historial para que una sesión que reanuda en este nodo los reciba, y su messageId en
+ * la ventana de duplicados para que el reenvío de esa sesión no se difunda otra vez
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class ClusterRelayBridge implements ChannelInterceptor {
+
+    /**
+     * Header que marca un mensaje recibido desde otro nodo para no volver a publicarlo
+     */
+    public static final String ORIGIN_HEADER = "chatRelayOrigin";
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRelayBridge.class);
+
+    private final ClusterRelay relay;
+    private final MessageChannel brokerChannel;
+    private final String nodeId;
+    private final List<String> relayPrefixes;
+    private final MessageConverter converter;
+    private final MessageHistoryService historyService;
+    private final MessageDeduplicator deduplicator;
+
+    /**
+     * Constructor sin historial: los mensajes de otros nodos solo se entregan
+     *
+     * @param relay Relay del clúster
+     * @param brokerChannel Canal hacia el broker local
+     * @param nodeId Identificador de este nodo
+     * @param relayPrefixes Prefijos de destino que se replican
+     */
+    public ClusterRelayBridge(ClusterRelay relay, MessageChannel brokerChannel,
+                              String nodeId, List<String> relayPrefixes) {
+        this(relay, brokerChannel, nodeId, relayPrefixes, null, Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param relay Relay del clúster
+     * @param brokerChannel Canal hacia el broker local
+     * @param nodeId Identificador de este nodo
+     * @param relayPrefixes Prefijos de destino que se replican
+     * @param converter Conversor del broker para leer los mensajes recibidos
+     * @param historyService Historial donde se registran los mensajes de otros nodos
+     * @param deduplicator Ventana de duplicados donde se recuerdan sus messageId (salvo chat.dedup.enabled=false)
+     */
+    public ClusterRelayBridge(ClusterRelay relay, MessageChannel brokerChannel,
+                              String nodeId, List<String> relayPrefixes,
+                              MessageConverter converter, Optional<MessageHistoryService> historyService,
+                              Optional<MessageDeduplicator> deduplicator) {
+        this.relay = relay;
+        this.brokerChannel = brokerChannel;
+        this.nodeId = nodeId;
+        this.relayPrefixes = List.copyOf(relayPrefixes);
+        this.converter = converter;
+        this.historyService = historyService.orElse(null);
+        this.deduplicator = deduplicator.orElse(null);
+        this.relay.subscribe(this::onRelayMessage);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Publica en el relay los mensajes originados en este nodo una vez entregados al broker local
+     * Los lotes del agrupador no se publican: sus mensajes ya se replicaron uno a uno
+     */
+    @Override
+    public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
+        if (!sent || message.getHeaders().containsKey(ORIGIN_HEADER)
+                || message.getHeaders().containsKey(BroadcastBatcher.BATCH_HEADER)) {
+            return;
+        }
+
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+            return;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !isRelayed(destination) || !(message.getPayload() instanceof byte[] payload)) {
+            return;
+        }
+
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        relay.publish(new RelayEnvelope(nodeId, destination,
+                contentType != null ? contentType.toString() : null, payload));
+    }
+
+    /**
+     * Entrega al broker local un mensaje publicado por otro nodo
+     * Los que no van a un destino replicado, como los mensajes privados, los atiende otro receptor del relay
+     *
+     * @param envelope Mensaje recibido del relay
+     */
+    void onRelayMessage(RelayEnvelope envelope) {
+        if (nodeId.equals(envelope.getOriginNodeId()) || !isRelayed(envelope.getDestination())) {
+            return;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(envelope.getDestination());
+        if (envelope.getContentType() != null) {
+            accessor.setContentType(MimeType.valueOf(envelope.getContentType()));
+        }
+        accessor.setHeader(ORIGIN_HEADER, envelope.getOriginNodeId());
+        Message<byte[]> message = MessageBuilder.createMessage(envelope.getPayload(), accessor.getMessageHeaders());
+
+        if (historyService != null || deduplicator != null) {
+            record(envelope, message);
+        }
+
+        try {
+            brokerChannel.send(message);
+        } catch (RuntimeException ex) {
+            logger.warn("No se pudo entregar mensaje del nodo {} a {}",
+                    envelope.getOriginNodeId(), envelope.getDestination(), ex);
+        }
+    }
+
+    private void record(RelayEnvelope envelope, Message<byte[]> message) {
+        try {
+            if (converter.fromMessage(message, ChatMessage.class) instanceof ChatMessage chatMessage) {
+                if (deduplicator != null) {
+                    deduplicator.recordRelayed(chatMessage);
+                }
+                if (historyService != null) {
+                    historyService.recordRelayed(envelope.getDestination(), chatMessage);
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.debug("Mensaje del nodo {} en {} no registrado en el historial ni en la ventana de duplicados: {}",
+                    envelope.getOriginNodeId(), envelope.getDestination(), ex.getMessage());
+        }
+    }
+
+    private boolean isRelayed(String destination) {
+        for (String prefix : relayPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
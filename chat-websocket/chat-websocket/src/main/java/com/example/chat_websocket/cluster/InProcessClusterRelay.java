@@ -0,0 +1,67 @@
+package com.example.chat_websocket.cluster;
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Relay de referencia que conecta nodos levantados en la misma JVM
+ * Permite probar varios nodos en una sola máquina sin infraestructura externa
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class InProcessClusterRelay implements ClusterRelay {
+
+    private static final Map<String, Set<InProcessClusterRelay>> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final String clusterName;
+    private final List<Consumer<RelayEnvelope>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Crea el relay y lo une al clúster indicado
+     *
+     * @param clusterName Nombre del clúster
+     */
+    public InProcessClusterRelay(String clusterName) {
+        this.clusterName = clusterName;
+        CLUSTERS.computeIfAbsent(clusterName, name -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void publish(RelayEnvelope envelope) {
+        Set<InProcessClusterRelay> members = CLUSTERS.get(clusterName);
+        if (members == null) {
+            return;
+        }
+
+        for (InProcessClusterRelay member : members) {
+            if (member != this) {
+                member.deliver(envelope);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<RelayEnvelope> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        CLUSTERS.computeIfPresent(clusterName, (name, members) -> {
+            members.remove(this);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private void deliver(RelayEnvelope envelope) {
+        for (Consumer<RelayEnvelope> listener : listeners) {
+            listener.accept(envelope);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.chat_websocket.cluster;
+
+
+/**
+ * Mensaje ya serializado que viaja entre nodos a través del relay
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class RelayEnvelope {
+
+    private final String originNodeId;
+    private final String destination;
+    private final String contentType;
+    private final byte[] payload;
+
+    /**
+     * Constructor con parámetros
+     *
+     * @param originNodeId Nodo que publicó el mensaje
+     * @param destination Destino STOMP del mensaje
+     * @param contentType Tipo de contenido del payload (puede ser nulo)
+     * @param payload Payload serializado
+     */
+    public RelayEnvelope(String originNodeId, String destination, String contentType, byte[] payload) {
+        this.originNodeId = originNodeId;
+        this.destination = destination;
+        this.contentType = contentType;
+        this.payload = payload;
+    }
+
+    public String getOriginNodeId() {
+        return originNodeId;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return "RelayEnvelope{" +
+                "originNodeId='" + originNodeId + '\'' +
+                ", destination='" + destination + '\'' +
+                ", contentType='" + contentType + '\'' +
+                ", payloadLength=" + payload.length +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chat_websocket.codec;
+
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+
+/**
+ * Decorador del handler STOMP que permite enviar frames binarios a las sesiones que negociaron CBOR
+ * o la compresión de payloads.
+ * Spring codifica cada frame STOMP como texto salvo con content-type application/octet-stream;
+ * para estas sesiones los mismos bytes se envían como frame binario, sin pasar por UTF-8
+ * Se registra con {@code WebSocketTransportRegistration.addDecoratorFactory}
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class BinaryFrameHandlerDecorator extends WebSocketHandlerDecorator {
+
+    private static final String PER_MESSAGE_DEFLATE = "permessage-deflate";
+
+    private final WireFormatNegotiator negotiator;
+    private final PayloadCompressor compressor;
+
+    /**
+     * @param delegate Handler decorado
+     * @param negotiator Formato negociado por cada sesión
+     * @param compressor Sesiones que reciben payloads comprimidos
+     */
+    public BinaryFrameHandlerDecorator(WebSocketHandler delegate, WireFormatNegotiator negotiator,
+                                       PayloadCompressor compressor) {
+        super(delegate);
+        this.negotiator = negotiator;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // SockJS solo transporta texto: esas sesiones mantienen siempre JSON
+        if (session instanceof SockJsSession) {
+            super.afterConnectionEstablished(session);
+            return;
+        }
+        negotiator.registerBinarySession(session.getId());
+        if (hasPerMessageDeflate(session)) {
+            compressor.registerTransportDeflate(session.getId());
+        }
+        super.afterConnectionEstablished(new BinaryFrameSession(session, negotiator, compressor));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        try {
+            super.afterConnectionClosed(session, closeStatus);
+        } finally {
+            negotiator.release(session.getId());
+        }
+    }
+
+    private static boolean hasPerMessageDeflate(WebSocketSession session) {
+        for (WebSocketExtension extension : session.getExtensions()) {
+            if (PER_MESSAGE_DEFLATE.equalsIgnoreCase(extension.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class BinaryFrameSession extends WebSocketSessionDecorator {
+
+        private final WireFormatNegotiator negotiator;
+        private final PayloadCompressor compressor;
+
+        private BinaryFrameSession(WebSocketSession delegate, WireFormatNegotiator negotiator,
+                                   PayloadCompressor compressor) {
+            super(delegate);
+            this.negotiator = negotiator;
+            this.compressor = compressor;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (message instanceof TextMessage text
+                    && (negotiator.isCbor(getId()) || compressor.isCompressing(getId()))) {
+                // asBytes() devuelve los bytes codificados por STOMP, sin decodificarlos
+                super.sendMessage(new BinaryMessage(text.asBytes()));
+                return;
+            }
+            super.sendMessage(message);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.chat_websocket.codec;
+
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.MimeType;
+
+/**
+ * Conversor de payloads en CBOR (JSON binario compacto, RFC 8949)
+ * Solo se aplica a los frames con content-type application/cbor: los mensajes sin
+ * content-type siguen pasando por el conversor JSON, que es el formato por defecto
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class CborMessageConverter extends MappingJackson2MessageConverter {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    public CborMessageConverter() {
+        super(APPLICATION_CBOR);
+        setObjectMapper(Jackson2ObjectMapperBuilder.cbor().build());
+        setStrictContentTypeMatch(true);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.chat_websocket.codec;
+
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caché acotada de conversiones de payload, indexada por identidad del array
+ * El broker entrega el mismo byte[] a todos los suscriptores de un destino, así que basta
+ * recordar los últimos payloads convertidos para hacer una conversión por mensaje difundido,
+ * aunque los hilos de salida intercalen entregas de varios destinos. Guarda las últimas
+ * {@code capacity} conversiones y reemplaza la más antigua; sin bloqueos, dos hilos pueden
+ * llegar a convertir a la vez el mismo payload y se queda la última
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+final class PayloadCache {
+
+    /**
+     * Conversión de un payload; puede devolver null si no hay nada que convertir
+     */
+    @FunctionalInterface
+    interface Conversion<E extends Exception> {
+        byte[] apply(byte[] source) throws E;
+    }
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicInteger next = new AtomicInteger();
+
+    PayloadCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser positiva");
+        }
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Devuelve la conversión del payload, calculándola solo si no está entre las retenidas
+     *
+     * @param source Payload original
+     * @param conversion Conversión a aplicar
+     * @return Payload convertido (o null si la conversión lo devolvió)
+     */
+    <E extends Exception> byte[] computeIfAbsent(byte[] source, Conversion<E> conversion) throws E {
+        for (int i = 0; i < entries.length(); i++) {
+            Entry entry = entries.get(i);
+            if (entry != null && entry.source == source) {
+                return entry.result;
+            }
+        }
+        byte[] result = conversion.apply(source);
+        entries.set(Math.floorMod(next.getAndIncrement(), entries.length()), new Entry(source, result));
+        return result;
+    }
+
+    private static final class Entry {
+
+        private final byte[] source;
+        private final byte[] result;
+
+        private Entry(byte[] source, byte[] result) {
+            this.source = source;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.chat_websocket.codec;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.metrics.ChatMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Compresión deflate de los payloads con umbral de tamaño y nivel configurables
+ * (chat.compression.enabled, desactivada por defecto)
+ * La extensión permessage-deflate del contenedor es la compresión estándar y la que usa el navegador;
+ * esta es de la aplicación, para clientes nativos cuya pila WebSocket no la implementa: la piden con
+ * {@code accept-encoding:deflate} en el CONNECT y desde entonces los payloads que superan
+ * chat.compression.threshold llegan comprimidos (formato zlib) con el header
+ * {@code content-encoding:deflate}, en frames binarios. Una conexión que ya negoció permessage-deflate
+ * no la recibe, para no comprimir dos veces. Los mensajes cortos, la mayoría en un chat, se envían tal cual.
+ * Se registra en el canal de salida después de WireFormatNegotiator, así comprime el payload final
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class PayloadCompressor implements ChannelInterceptor, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadCompressor.class);
+
+    public static final String ACCEPT_ENCODING_HEADER = "accept-encoding";
+    public static final String CONTENT_ENCODING_HEADER = "content-encoding";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * Difusiones recientes cuya compresión se retiene
+     */
+    static final int COMPRESSION_CACHE_SIZE = 16;
+
+    private final boolean enabled;
+    private final long threshold;
+    private final int level;
+    private final WireFormatNegotiator negotiator;
+    private final ChatMetrics metrics;
+    private final Set<String> deflateSessions = ConcurrentHashMap.newKeySet();
+    private final Set<String> transportDeflateSessions = ConcurrentHashMap.newKeySet();
+    private final PayloadCache compressed = new PayloadCache(COMPRESSION_CACHE_SIZE);
+    // Crear un Deflater reserva memoria nativa: se reutilizan desde un pool acotado y los que
+    // no caben en él se liberan con end() en cuanto se usan
+    private final BlockingQueue<Deflater> deflaters;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Configuración del chat (sección compression)
+     * @param negotiator Sesiones capaces de recibir frames binarios
+     * @param metrics Métricas de ratio y tiempo de compresión
+     */
+    public PayloadCompressor(ChatProperties properties, WireFormatNegotiator negotiator, ChatMetrics metrics) {
+        ChatProperties.Compression compression = properties.getCompression();
+        if (compression.getLevel() < Deflater.BEST_SPEED || compression.getLevel() > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("chat.compression.level debe estar entre 1 y 9: "
+                    + compression.getLevel());
+        }
+        this.enabled = compression.isEnabled();
+        this.threshold = compression.getThreshold().toBytes();
+        this.level = compression.getLevel();
+        this.negotiator = negotiator;
+        this.metrics = metrics;
+        this.deflaters = new ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Registra una conexión que negoció permessage-deflate en el handshake: sus frames ya se
+     * comprimen en el transporte y no recibirá la compresión de la aplicación
+     *
+     * @param sessionId Sesión WebSocket nativa
+     */
+    public void registerTransportDeflate(String sessionId) {
+        transportDeflateSessions.add(sessionId);
+    }
+
+    /**
+     * Indica si la sesión negoció la compresión de payloads
+     */
+    public boolean isCompressing(String sessionId) {
+        return !deflateSessions.isEmpty() && deflateSessions.contains(sessionId);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (!enabled || sessionId == null) {
+            return message;
+        }
+
+        if (type == SimpMessageType.CONNECT) {
+            negotiate(message, sessionId);
+            return message;
+        }
+
+        // Los SEND de entrada también son de tipo MESSAGE: solo se comprimen las entregas a una suscripción
+        if (type != SimpMessageType.MESSAGE || SimpMessageHeaderAccessor.getSubscriptionId(headers) == null
+                || !isCompressing(sessionId) || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        byte[] compressed = compress(payload);
+        if (compressed == null) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setNativeHeader(CONTENT_ENCODING_HEADER, DEFLATE);
+        return MessageBuilder.createMessage(compressed, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Comprime el payload si supera el umbral y el resultado es menor que el original
+     * Un mismo payload difundido se comprime una sola vez
+     *
+     * @return Payload comprimido, o null si se debe enviar sin comprimir
+     */
+    byte[] compress(byte[] payload) {
+        if (payload.length < threshold) {
+            metrics.recordCompressionSkipped();
+            return null;
+        }
+        return compressed.computeIfAbsent(payload, this::deflate);
+    }
+
+    /**
+     * Libera la memoria nativa de los Deflater del pool
+     */
+    @Override
+    public void close() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    private byte[] deflate(byte[] payload) {
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        }
+        byte[] result;
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+            byte[] buffer = new byte[Math.min(payload.length, 8192)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            result = out.toByteArray();
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+        metrics.recordCompression(payload.length, result.length, System.nanoTime() - start);
+
+        // Datos ya comprimidos o aleatorios pueden crecer: en ese caso se envía el original
+        return result.length < payload.length ? result : null;
+    }
+
+    /**
+     * Olvida la sesión al desconectarse
+     *
+     * @param event Evento de desconexión
+     */
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        deflateSessions.remove(event.getSessionId());
+        transportDeflateSessions.remove(event.getSessionId());
+    }
+
+    private void negotiate(Message<?> message, String sessionId) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        String requested = accessor != null ? accessor.getFirstNativeHeader(ACCEPT_ENCODING_HEADER) : null;
+        if (requested == null || !acceptsDeflate(requested)) {
+            return;
+        }
+
+        if (transportDeflateSessions.contains(sessionId)) {
+            logger.debug("Sesión {} ya comprime con permessage-deflate; se envían sin comprimir", sessionId);
+        } else if (negotiator.isBinarySession(sessionId)) {
+            deflateSessions.add(sessionId);
+            logger.debug("Sesión {} recibirá comprimidos los payloads de más de {} bytes", sessionId, threshold);
+        } else {
+            logger.debug("Sesión {} pidió compresión sobre SockJS; se envían sin comprimir", sessionId);
+        }
+    }
+
+    private static boolean acceptsDeflate(String requested) {
+        for (String encoding : requested.split(",")) {
+            if (DEFLATE.equalsIgnoreCase(encoding.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
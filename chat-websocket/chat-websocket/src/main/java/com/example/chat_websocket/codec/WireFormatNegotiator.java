@@ -0,0 +1,155 @@
+package com.example.chat_websocket.codec;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negocia por conexión el formato de los payloads que recibe cada cliente
+ * Un cliente pide CBOR enviando {@code content-type:application/cbor} en el frame CONNECT;
+ * desde entonces sus frames MESSAGE llevan el payload en CBOR y viajan como frames binarios.
+ * Solo es posible en conexiones WebSocket nativas (SockJS transporta únicamente texto),
+ * en el resto la petición se ignora y se mantiene JSON, el formato por defecto del navegador.
+ * Se registra en los canales de entrada (CONNECT) y de salida (MESSAGE)
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class WireFormatNegotiator implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WireFormatNegotiator.class);
+
+    /**
+     * Difusiones recientes cuya conversión se retiene; cubre las entregas intercaladas
+     * de varios destinos en los hilos de salida
+     */
+    static final int TRANSCODE_CACHE_SIZE = 16;
+
+    private final ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    private final PayloadCache transcoded = new PayloadCache(TRANSCODE_CACHE_SIZE);
+
+    /**
+     * Registra una conexión capaz de recibir frames binarios
+     *
+     * @param sessionId Sesión WebSocket nativa
+     */
+    public void registerBinarySession(String sessionId) {
+        binarySessions.add(sessionId);
+    }
+
+    /**
+     * Olvida la sesión al cerrarse
+     *
+     * @param sessionId Sesión cerrada
+     */
+    public void release(String sessionId) {
+        binarySessions.remove(sessionId);
+        cborSessions.remove(sessionId);
+    }
+
+    /**
+     * Indica si la sesión es WebSocket nativa y admite frames binarios
+     */
+    public boolean isBinarySession(String sessionId) {
+        return binarySessions.contains(sessionId);
+    }
+
+    /**
+     * Indica si la sesión negoció CBOR
+     */
+    public boolean isCbor(String sessionId) {
+        return cborSessions.contains(sessionId);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null) {
+            return message;
+        }
+
+        if (type == SimpMessageType.CONNECT) {
+            negotiate(message, sessionId);
+            return message;
+        }
+
+        // Los SEND de entrada también son de tipo MESSAGE: solo se convierten las entregas a una suscripción
+        if (type != SimpMessageType.MESSAGE || SimpMessageHeaderAccessor.getSubscriptionId(headers) == null
+                || cborSessions.isEmpty() || !cborSessions.contains(sessionId)
+                || !(message.getPayload() instanceof byte[] json) || !isJson(headers.get(MessageHeaders.CONTENT_TYPE))) {
+            return message;
+        }
+
+        try {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            accessor.setContentType(CborMessageConverter.APPLICATION_CBOR);
+            return MessageBuilder.createMessage(toCbor(json), accessor.getMessageHeaders());
+        } catch (IOException ex) {
+            logger.debug("No se pudo convertir a CBOR el mensaje para la sesión {}: {}", sessionId, ex.getMessage());
+            return message;
+        }
+    }
+
+    /**
+     * Convierte un payload JSON a CBOR; un mismo payload difundido se convierte una sola vez
+     */
+    byte[] toCbor(byte[] json) throws IOException {
+        return transcoded.computeIfAbsent(json, source -> cborMapper.writeValueAsBytes(jsonMapper.readTree(source)));
+    }
+
+    private void negotiate(Message<?> message, String sessionId) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        String requested = accessor != null
+                ? accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER) : null;
+        if (requested == null) {
+            return;
+        }
+        try {
+            if (!CborMessageConverter.APPLICATION_CBOR.isCompatibleWith(MimeType.valueOf(requested))) {
+                return;
+            }
+        } catch (InvalidMimeTypeException ex) {
+            logger.debug("Sesión {} envió un content-type inválido en CONNECT: {}", sessionId, requested);
+            return;
+        }
+
+        if (binarySessions.contains(sessionId)) {
+            cborSessions.add(sessionId);
+            logger.debug("Sesión {} recibirá los mensajes en CBOR", sessionId);
+        } else {
+            logger.debug("Sesión {} pidió CBOR sobre SockJS; se mantiene JSON", sessionId);
+        }
+    }
+
+    private static boolean isJson(Object contentType) {
+        if (contentType instanceof MimeType mimeType) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+        }
+        return contentType != null && contentType.toString().startsWith(MimeTypeUtils.APPLICATION_JSON_VALUE);
+    }
+}
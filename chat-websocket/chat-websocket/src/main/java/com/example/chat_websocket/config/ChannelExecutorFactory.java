@@ -0,0 +1,78 @@
+package com.example.chat_websocket.config;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Crea los ejecutores de los canales de clientes a partir de chat.channels.*
+ * Spring solo acepta un ThreadPoolTaskExecutor para estos canales, así que el modo
+ * VIRTUAL es un pool acotado cuyos hilos son virtuales: un handler que se bloquea
+ * (por ejemplo, el fsync del journal) no retiene un hilo de plataforma
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+final class ChannelExecutorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelExecutorFactory.class);
+
+    private ChannelExecutorFactory() {
+    }
+
+    /**
+     * Crea el ejecutor de un canal
+     *
+     * @param mode Modo de ejecución
+     * @param pool Tamaños, cola y política de desbordamiento
+     * @param threadNamePrefix Prefijo del nombre de los hilos
+     * @return Ejecutor sin inicializar, o null para usar el de Spring por defecto
+     */
+    static ThreadPoolTaskExecutor create(ChatProperties.ExecutorMode mode, ChatProperties.Pool pool,
+                                         String threadNamePrefix) {
+        if (mode == ChatProperties.ExecutorMode.DEFAULT) {
+            return null;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setKeepAliveSeconds((int) pool.getKeepAlive().toSeconds());
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setRejectedExecutionHandler(rejectionHandler(pool.getOverflowPolicy()));
+
+        if (mode == ChatProperties.ExecutorMode.VIRTUAL && supportsVirtualThreads()) {
+            // Con hilos virtuales no hay motivo para crecer solo cuando la cola se llena
+            executor.setThreadFactory(new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory());
+            executor.setCorePoolSize(pool.getMaxPoolSize());
+            executor.setMaxPoolSize(pool.getMaxPoolSize());
+        } else {
+            if (mode == ChatProperties.ExecutorMode.VIRTUAL) {
+                logger.warn("Los hilos virtuales requieren JDK 21 (versión actual: {}); se usa un pool acotado",
+                        Runtime.version().feature());
+            }
+            executor.setCorePoolSize(pool.getCorePoolSize());
+            executor.setMaxPoolSize(pool.getMaxPoolSize());
+        }
+        return executor;
+    }
+
+    /**
+     * Indica si la JVM actual soporta hilos virtuales
+     */
+    static boolean supportsVirtualThreads() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(ChatProperties.OverflowPolicy policy) {
+        return switch (policy) {
+            case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+            case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+        };
+    }
+}
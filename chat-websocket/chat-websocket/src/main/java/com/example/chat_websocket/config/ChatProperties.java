@@ -0,0 +1,1139 @@
+package com.example.chat_websocket.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Propiedades configurables del sistema de chat (prefijo "chat")
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@ConfigurationProperties(prefix = "chat")
+public class ChatProperties {
+
+    private final Broker broker = new Broker();
+    private final History history = new History();
+    private final Journal journal = new Journal();
+    private final Rooms rooms = new Rooms();
+    private final Clock clock = new Clock();
+    private final RateLimit rateLimit = new RateLimit();
+    private final Channels channels = new Channels();
+    private final Transport transport = new Transport();
+    private final Audit audit = new Audit();
+    private final Presence presence = new Presence();
+    private final Batching batching = new Batching();
+    private final Compression compression = new Compression();
+    private final Search search = new Search();
+    private final Dedup dedup = new Dedup();
+    private final Resume resume = new Resume();
+    private final Drain drain = new Drain();
+
+    public Broker getBroker() {
+        return broker;
+    }
+
+    public History getHistory() {
+        return history;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public Rooms getRooms() {
+        return rooms;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public Channels getChannels() {
+        return channels;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public Presence getPresence() {
+        return presence;
+    }
+
+    public Batching getBatching() {
+        return batching;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Dedup getDedup() {
+        return dedup;
+    }
+
+    public Resume getResume() {
+        return resume;
+    }
+
+    public Drain getDrain() {
+        return drain;
+    }
+
+    /**
+     * Modos de funcionamiento del broker de mensajes
+     */
+    public enum BrokerMode {
+        /**
+         * Broker simple en memoria, cada nodo entrega solo a sus propias sesiones
+         */
+        SIMPLE,
+
+        /**
+         * Broker simple por nodo más un relay que replica el tráfico entre nodos
+         */
+        CLUSTERED
+    }
+
+    /**
+     * Modos de ejecución de los canales de entrada y salida de los clientes
+     */
+    public enum ExecutorMode {
+        /**
+         * Pools por defecto de Spring (cola sin límite)
+         */
+        DEFAULT,
+
+        /**
+         * Pools con tamaño y cola acotados según chat.channels.*
+         */
+        TUNED,
+
+        /**
+         * Hilos virtuales (JDK 21 o superior); en versiones anteriores se usa TUNED
+         */
+        VIRTUAL
+    }
+
+    /**
+     * Qué hacer cuando la cola de un canal está llena
+     */
+    public enum OverflowPolicy {
+        /**
+         * El hilo que publica procesa el mensaje, frenando al productor
+         */
+        CALLER_RUNS,
+
+        /**
+         * Se rechaza el mensaje y Spring registra el error de entrega
+         */
+        ABORT
+    }
+
+    /**
+     * Qué hacer cuando el buffer de salida de una sesión lenta supera su límite
+     */
+    public enum SlowConsumerPolicy {
+        /**
+         * Descarta los mensajes más antiguos del buffer
+         */
+        DROP_OLDEST,
+
+        /**
+         * Conserva solo el mensaje más reciente de cada destino; el cliente detecta el hueco por la secuencia
+         */
+        COALESCE,
+
+        /**
+         * Cierra la sesión
+         */
+        DISCONNECT
+    }
+
+    /**
+     * Configuración del broker de mensajes
+     */
+    public static class Broker {
+
+        private BrokerMode mode = BrokerMode.SIMPLE;
+
+        /**
+         * Nombre del clúster; solo los nodos con el mismo nombre intercambian mensajes
+         */
+        private String clusterName = "chat";
+
+        /**
+         * Identificador del nodo; si no se define se genera uno aleatorio
+         */
+        private String nodeId;
+
+        /**
+         * Prefijos de destino que se replican a los demás nodos
+         */
+        private List<String> relayPrefixes = new ArrayList<>(List.of("/topic/"));
+
+        public BrokerMode getMode() {
+            return mode;
+        }
+
+        public void setMode(BrokerMode mode) {
+            this.mode = mode;
+        }
+
+        public String getClusterName() {
+            return clusterName;
+        }
+
+        public void setClusterName(String clusterName) {
+            this.clusterName = clusterName;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public List<String> getRelayPrefixes() {
+            return relayPrefixes;
+        }
+
+        public void setRelayPrefixes(List<String> relayPrefixes) {
+            this.relayPrefixes = relayPrefixes;
+        }
+    }
+
+    /**
+     * Configuración del historial reciente en memoria
+     */
+    public static class History {
+
+        /**
+         * Mensajes retenidos por destino (se redondea a potencia de dos)
+         */
+        private int capacity = 64;
+
+        /**
+         * Mensajes que se reenvían a un usuario al unirse
+         */
+        private int replaySize = 50;
+
+        /**
+         * Número máximo de destinos con historial; al superarlo se descarta el usado hace más tiempo
+         */
+        private int maxDestinations = 1000;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getReplaySize() {
+            return replaySize;
+        }
+
+        public void setReplaySize(int replaySize) {
+            this.replaySize = replaySize;
+        }
+
+        public int getMaxDestinations() {
+            return maxDestinations;
+        }
+
+        public void setMaxDestinations(int maxDestinations) {
+            this.maxDestinations = maxDestinations;
+        }
+    }
+
+    /**
+     * Configuración del journal persistente de mensajes
+     */
+    public static class Journal {
+
+        private boolean enabled = false;
+
+        /**
+         * Directorio donde se guardan los segmentos
+         */
+        private String directory = "data/journal";
+
+        /**
+         * Tamaño de cada segmento mapeado en memoria
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Cada cuántos mensajes se guarda una entrada del índice disperso
+         */
+        private int indexInterval = 64;
+
+        /**
+         * Presupuesto de latencia del fsync agrupado; 0 sincroniza cada mensaje
+         */
+        private Duration fsyncInterval = Duration.ofMillis(10);
+
+        /**
+         * Número máximo de segmentos conservados, incluido el activo
+         */
+        private int maxSegments = 16;
+
+        /**
+         * Antigüedad máxima de los mensajes conservados; 0 no la limita
+         */
+        private Duration retention = Duration.ofDays(7);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public int getIndexInterval() {
+            return indexInterval;
+        }
+
+        public void setIndexInterval(int indexInterval) {
+            this.indexInterval = indexInterval;
+        }
+
+        public Duration getFsyncInterval() {
+            return fsyncInterval;
+        }
+
+        public void setFsyncInterval(Duration fsyncInterval) {
+            this.fsyncInterval = fsyncInterval;
+        }
+
+        public int getMaxSegments() {
+            return maxSegments;
+        }
+
+        public void setMaxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+    }
+
+    /**
+     * Configuración de las salas de chat
+     */
+    public static class Rooms {
+
+        /**
+         * Tiempo que una sala vacía se conserva antes de eliminarse
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * Número máximo de salas simultáneas
+         */
+        private int maxRooms = 10_000;
+
+        public Duration getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public int getMaxRooms() {
+            return maxRooms;
+        }
+
+        public void setMaxRooms(int maxRooms) {
+            this.maxRooms = maxRooms;
+        }
+    }
+
+    /**
+     * Configuración del reloj usado para las marcas de tiempo de los mensajes
+     */
+    public static class Clock {
+
+        /**
+         * Intervalo de actualización del reloj en caché
+         */
+        private Duration resolution = Duration.ofMillis(1);
+
+        public Duration getResolution() {
+            return resolution;
+        }
+
+        public void setResolution(Duration resolution) {
+            this.resolution = resolution;
+        }
+    }
+
+    /**
+     * Límites de frecuencia de los frames SEND de los clientes
+     */
+    public static class RateLimit {
+
+        private boolean enabled = true;
+
+        /**
+         * Mensajes por segundo permitidos a cada sesión
+         */
+        private int sessionRate = 20;
+
+        /**
+         * Ráfaga máxima de mensajes de una sesión
+         */
+        private int sessionBurst = 40;
+
+        /**
+         * Mensajes por segundo permitidos a un usuario sumando todas sus sesiones
+         */
+        private int userRate = 30;
+
+        /**
+         * Ráfaga máxima de mensajes de un usuario
+         */
+        private int userBurst = 60;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSessionRate() {
+            return sessionRate;
+        }
+
+        public void setSessionRate(int sessionRate) {
+            this.sessionRate = sessionRate;
+        }
+
+        public int getSessionBurst() {
+            return sessionBurst;
+        }
+
+        public void setSessionBurst(int sessionBurst) {
+            this.sessionBurst = sessionBurst;
+        }
+
+        public int getUserRate() {
+            return userRate;
+        }
+
+        public void setUserRate(int userRate) {
+            this.userRate = userRate;
+        }
+
+        public int getUserBurst() {
+            return userBurst;
+        }
+
+        public void setUserBurst(int userBurst) {
+            this.userBurst = userBurst;
+        }
+    }
+
+    /**
+     * Configuración de los ejecutores de clientInboundChannel y clientOutboundChannel
+     */
+    public static class Channels {
+
+        private ExecutorMode mode = ExecutorMode.TUNED;
+
+        /**
+         * Mantiene el orden de los mensajes de cada sesión en ambos canales
+         */
+        private boolean preserveOrder = true;
+
+        private final Pool inbound = new Pool();
+        private final Pool outbound = new Pool();
+
+        public ExecutorMode getMode() {
+            return mode;
+        }
+
+        public void setMode(ExecutorMode mode) {
+            this.mode = mode;
+        }
+
+        public boolean isPreserveOrder() {
+            return preserveOrder;
+        }
+
+        public void setPreserveOrder(boolean preserveOrder) {
+            this.preserveOrder = preserveOrder;
+        }
+
+        public Pool getInbound() {
+            return inbound;
+        }
+
+        public Pool getOutbound() {
+            return outbound;
+        }
+    }
+
+    /**
+     * Tamaño y cola de un ejecutor de canal
+     * En modo VIRTUAL, max-pool-size es el número de hilos virtuales concurrentes
+     */
+    public static class Pool {
+
+        private int corePoolSize = 8;
+
+        private int maxPoolSize = 32;
+
+        /**
+         * Mensajes que pueden esperar en la cola antes de aplicar la política de desbordamiento
+         */
+        private int queueCapacity = 10_000;
+
+        private Duration keepAlive = Duration.ofSeconds(60);
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+        public int getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(int corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+    }
+
+    /**
+     * Límites del transporte WebSocket y protección frente a clientes lentos
+     */
+    public static class Transport {
+
+        /**
+         * Tiempo máximo de un envío bloqueado; al superarlo la sesión se cierra sea cual sea la política
+         * y su hilo escritor queda libre, aunque no lleguen más mensajes para ella
+         */
+        private Duration sendTimeLimit = Duration.ofSeconds(10);
+
+        /**
+         * Bytes pendientes de envío por sesión antes de aplicar la política de cliente lento
+         */
+        private DataSize sendBufferSizeLimit = DataSize.ofKilobytes(512);
+
+        /**
+         * Tamaño máximo de un frame STOMP entrante, aunque llegue repartido en varios mensajes WebSocket
+         * (también acota el cuerpo de los envíos HTTP de SockJS); uno mayor cierra la sesión
+         */
+        private DataSize messageSizeLimit = DataSize.ofKilobytes(16);
+
+        /**
+         * Tamaño máximo del cuerpo de un frame SEND; uno mayor se descarta antes de deserializarlo
+         * y la sesión sigue abierta
+         */
+        private DataSize maxPayloadSize = DataSize.ofKilobytes(8);
+
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+
+        /**
+         * Hilos escritores que se conservan sin carga; el pool crece con un hilo por sesión con un envío
+         * en curso, y un cliente bloqueado ocupa el suyo como máximo send-time-limit
+         */
+        private int writerThreads = 16;
+
+        /**
+         * Codifica una sola vez por difusión el cuerpo de los frames SockJS, compartido por todas las sesiones
+         */
+        private boolean shareSockjsFrames = true;
+
+        /**
+         * Expone el endpoint STOMP sobre WebSocket nativo /ws-native, sin el framing de SockJS
+         */
+        private boolean nativeEndpoint = true;
+
+        /**
+         * Acepta la extensión permessage-deflate cuando el cliente la ofrece
+         */
+        private boolean perMessageDeflate = true;
+
+        public Duration getSendTimeLimit() {
+            return sendTimeLimit;
+        }
+
+        public void setSendTimeLimit(Duration sendTimeLimit) {
+            this.sendTimeLimit = sendTimeLimit;
+        }
+
+        public DataSize getSendBufferSizeLimit() {
+            return sendBufferSizeLimit;
+        }
+
+        public void setSendBufferSizeLimit(DataSize sendBufferSizeLimit) {
+            this.sendBufferSizeLimit = sendBufferSizeLimit;
+        }
+
+        public DataSize getMessageSizeLimit() {
+            return messageSizeLimit;
+        }
+
+        public void setMessageSizeLimit(DataSize messageSizeLimit) {
+            this.messageSizeLimit = messageSizeLimit;
+        }
+
+        public DataSize getMaxPayloadSize() {
+            return maxPayloadSize;
+        }
+
+        public void setMaxPayloadSize(DataSize maxPayloadSize) {
+            this.maxPayloadSize = maxPayloadSize;
+        }
+
+        public SlowConsumerPolicy getSlowConsumerPolicy() {
+            return slowConsumerPolicy;
+        }
+
+        public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+        }
+
+        public int getWriterThreads() {
+            return writerThreads;
+        }
+
+        public void setWriterThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+        }
+
+        public boolean isShareSockjsFrames() {
+            return shareSockjsFrames;
+        }
+
+        public void setShareSockjsFrames(boolean shareSockjsFrames) {
+            this.shareSockjsFrames = shareSockjsFrames;
+        }
+
+        public boolean isNativeEndpoint() {
+            return nativeEndpoint;
+        }
+
+        public void setNativeEndpoint(boolean nativeEndpoint) {
+            this.nativeEndpoint = nativeEndpoint;
+        }
+
+        public boolean isPerMessageDeflate() {
+            return perMessageDeflate;
+        }
+
+        public void setPerMessageDeflate(boolean perMessageDeflate) {
+            this.perMessageDeflate = perMessageDeflate;
+        }
+    }
+
+    /**
+     * Registro de auditoría asíncrono de los mensajes (logger "chat.audit")
+     */
+    public static class Audit {
+
+        private boolean enabled = true;
+
+        /**
+         * Fracción de mensajes auditados, entre 0 y 1
+         */
+        private double sampleRate = 1.0;
+
+        /**
+         * Eventos pendientes de escribir; al llenarse se descartan los nuevos
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * Eventos escritos como máximo en cada lote
+         */
+        private int batchSize = 256;
+
+        /**
+         * Espera máxima del escritor antes de volver a comprobar la cola
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * Si es false solo se audita la longitud del contenido; de los mensajes privados nunca se audita más
+         */
+        private boolean includeContent = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public boolean isIncludeContent() {
+            return includeContent;
+        }
+
+        public void setIncludeContent(boolean includeContent) {
+            this.includeContent = includeContent;
+        }
+    }
+
+    /**
+     * Registro de presencia (usuarios en línea)
+     */
+    public static class Presence {
+
+        /**
+         * Tiempo que se espera antes de anunciar una salida; una reconexión dentro de este plazo no se anuncia
+         */
+        private Duration debounce = Duration.ofSeconds(2);
+
+        /**
+         * Cada cuánto se agrupan y difunden los cambios de presencia
+         */
+        private Duration flushInterval = Duration.ofMillis(500);
+
+        public Duration getDebounce() {
+            return debounce;
+        }
+
+        public void setDebounce(Duration debounce) {
+            this.debounce = debounce;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+    }
+
+    /**
+     * Agrupación de las difusiones: los mensajes a un mismo destino se envían juntos en un frame con un array JSON
+     */
+    public static class Batching {
+
+        private boolean enabled = false;
+
+        /**
+         * Tiempo máximo que un mensaje espera a otros del mismo destino
+         */
+        private Duration window = Duration.ofMillis(5);
+
+        /**
+         * Mensajes por frame; al alcanzarlo el lote se envía sin esperar
+         */
+        private int maxMessages = 64;
+
+        /**
+         * Prefijos de los destinos que se agrupan
+         */
+        private List<String> destinationPrefixes = new ArrayList<>(List.of("/topic/public", "/topic/room."));
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+
+        public List<String> getDestinationPrefixes() {
+            return destinationPrefixes;
+        }
+
+        public void setDestinationPrefixes(List<String> destinationPrefixes) {
+            this.destinationPrefixes = destinationPrefixes;
+        }
+    }
+
+    /**
+     * Compresión deflate de los payloads para los clientes nativos que la piden en el CONNECT
+     */
+    public static class Compression {
+
+        /**
+         * Compresión de la aplicación para clientes nativos sin permessage-deflate; el navegador
+         * usa permessage-deflate (chat.transport.per-message-deflate) y no la pide
+         */
+        private boolean enabled = false;
+
+        /**
+         * Payloads por debajo de este tamaño se envían sin comprimir: el ahorro no compensa la CPU
+         */
+        private DataSize threshold = DataSize.ofBytes(512);
+
+        /**
+         * Nivel de deflate, de 1 (más rápido) a 9 (mayor compresión); en mensajes de chat los
+         * niveles altos apenas mejoran el ratio y cuestan casi el doble de CPU
+         */
+        private int level = 1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(DataSize threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Índice en memoria para paginar y buscar en el historial (/app/history.page y GET /api/history)
+     */
+    public static class Search {
+
+        private boolean enabled = true;
+
+        /**
+         * Mensajes indexados entre todos los destinos; al superarlo se desalojan los más antiguos
+         */
+        private int maxMessages = 100_000;
+
+        /**
+         * Mensajes pendientes de indexar; al llenarse los nuevos no se indexan
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * Mensajes indexados como máximo con cada toma del bloqueo de escritura
+         */
+        private int batchSize = 256;
+
+        private int defaultPageSize = 50;
+
+        private int maxPageSize = 200;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getDefaultPageSize() {
+            return defaultPageSize;
+        }
+
+        public void setDefaultPageSize(int defaultPageSize) {
+            this.defaultPageSize = defaultPageSize;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+    }
+
+    /**
+     * Descarte de reenvíos: un mensaje con el mismo messageId del mismo remitente se ignora dentro de la ventana
+     */
+    public static class Dedup {
+
+        private boolean enabled = true;
+
+        /**
+         * Tiempo mínimo durante el que se recuerda cada messageId
+         */
+        private Duration window = Duration.ofMinutes(1);
+
+        /**
+         * Identificadores recordados como máximo por generación; al llenarse la ventana se acorta
+         */
+        private int maxEntries = 200_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    /**
+     * Reanudación de sesiones: un cliente que reconecta con su token recibe solo los mensajes perdidos
+     * y su salida y vuelta no se anuncian
+     */
+    public static class Resume {
+
+        private boolean enabled = true;
+
+        /**
+         * Clave con la que se firman los tokens; vacía genera una aleatoria y los tokens no sobreviven
+         * a un reinicio. Con varios nodos debe ser la misma en todos
+         */
+        private String secret = "";
+
+        /**
+         * Validez de un token desde que se emite
+         */
+        private Duration ttl = Duration.ofHours(12);
+
+        /**
+         * Tiempo que se espera a una sesión reanudable antes de anunciar su salida
+         */
+        private Duration grace = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getGrace() {
+            return grace;
+        }
+
+        public void setGrace(Duration grace) {
+            this.grace = grace;
+        }
+    }
+
+    /**
+     * Drenaje al detener el nodo: deja de aceptar conexiones y cierra las sesiones escalonadas
+     * para que los clientes migren a otro nodo sin una ráfaga de reconexiones ni de salidas
+     */
+    public static class Drain {
+
+        private boolean enabled = true;
+
+        /**
+         * Intervalo sobre el que se reparten los cierres de las sesiones abiertas
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * Tiempo máximo que se espera a que las sesiones cerradas vacíen su cola de salida
+         */
+        private Duration flushTimeout = Duration.ofSeconds(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public Duration getFlushTimeout() {
+            return flushTimeout;
+        }
+
+        public void setFlushTimeout(Duration flushTimeout) {
+            this.flushTimeout = flushTimeout;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.chat_websocket.config;
+
+
+import com.example.chat_websocket.cluster.ClusterRelay;
+import com.example.chat_websocket.cluster.ClusterRelayBridge;
+import com.example.chat_websocket.cluster.InProcessClusterRelay;
+import com.example.chat_websocket.dedup.MessageDeduplicator;
+import com.example.chat_websocket.history.MessageHistoryService;
+import com.example.chat_websocket.util.MessageSequencer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
+
+import java.util.Optional;
+
+/**
+ * Configuración del modo clúster del broker (chat.broker.mode=clustered)
+ * Cada nodo mantiene su broker simple y replica el tráfico de los topics a través del relay;
+ * DirectMessageService publica por el mismo relay los mensajes privados
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "chat.broker", name = "mode", havingValue = "clustered")
+public class ClusterConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterConfig.class);
+
+    /**
+     * Relay por defecto dentro de la misma JVM
+     * Se reemplaza declarando otro bean de tipo {@link ClusterRelay}
+     *
+     * @param properties Propiedades del chat
+     * @return Relay del clúster
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(ClusterRelay.class)
+    public ClusterRelay clusterRelay(ChatProperties properties) {
+        return new InProcessClusterRelay(properties.getBroker().getClusterName());
+    }
+
+    /**
+     * Puente entre el broker local y el relay
+     *
+     * El identificador del nodo es el mismo que el secuenciador pone en cada mensaje
+     *
+     * @param relay Relay del clúster
+     * @param brokerChannel Canal hacia el broker local
+     * @param brokerMessageConverter Conversor del broker
+     * @param historyService Historial donde se registran los mensajes de otros nodos
+     * @param deduplicator Ventana de duplicados que recibe los messageId de otros nodos
+     * @param sequencer Secuenciador de este nodo
+     * @param properties Propiedades del chat
+     * @return Puente registrado como interceptor del canal del broker
+     */
+    @Bean
+    public ClusterRelayBridge clusterRelayBridge(ClusterRelay relay,
+                                                 @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                                                 @Lazy @Qualifier("brokerMessageConverter")
+                                                 MessageConverter brokerMessageConverter,
+                                                 @Lazy MessageHistoryService historyService,
+                                                 Optional<MessageDeduplicator> deduplicator,
+                                                 MessageSequencer sequencer, ChatProperties properties) {
+        ChatProperties.Broker broker = properties.getBroker();
+        String nodeId = sequencer.getNodeId();
+
+        logger.info("Nodo {} unido al clúster {}", nodeId, broker.getClusterName());
+
+        return new ClusterRelayBridge(relay, brokerChannel, nodeId, broker.getRelayPrefixes(),
+                brokerMessageConverter, Optional.of(historyService), deduplicator);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.chat_websocket.config;
+
+
+import com.example.chat_websocket.history.MessageJournal;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Configuración del journal persistente de mensajes (chat.journal.enabled=true)
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "chat.journal", name = "enabled", havingValue = "true")
+public class JournalConfig {
+
+    /**
+     * Abre el journal; al iniciar reconstruye el índice recorriendo los segmentos existentes
+     * y descarta los que exceden la retención
+     *
+     * @param properties Propiedades del chat
+     * @return Journal de mensajes
+     */
+    @Bean(destroyMethod = "close")
+    public MessageJournal messageJournal(ChatProperties properties) {
+        ChatProperties.Journal journal = properties.getJournal();
+        return new MessageJournal(
+                Path.of(journal.getDirectory()),
+                (int) journal.getSegmentSize().toBytes(),
+                journal.getIndexInterval(),
+                journal.getFsyncInterval(),
+                journal.getMaxSegments(),
+                journal.getRetention());
+    }
+}
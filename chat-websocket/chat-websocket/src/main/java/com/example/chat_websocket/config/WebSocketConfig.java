@@ -1,11 +1,35 @@
 package com.example.chat_websocket.config;
 
 
+import com.example.chat_websocket.broadcast.BroadcastBatcher;
+import com.example.chat_websocket.cluster.ClusterRelayBridge;
+import com.example.chat_websocket.codec.BinaryFrameHandlerDecorator;
+import com.example.chat_websocket.codec.CborMessageConverter;
+import com.example.chat_websocket.codec.PayloadCompressor;
+import com.example.chat_websocket.codec.WireFormatNegotiator;
+import com.example.chat_websocket.metrics.ChatMetrics;
+import com.example.chat_websocket.ratelimit.InboundRateLimiter;
+import com.example.chat_websocket.ratelimit.PayloadSizeLimiter;
+import com.example.chat_websocket.transport.DrainCoordinator;
+import com.example.chat_websocket.transport.ExtensionFilteringHandshakeHandler;
+import com.example.chat_websocket.transport.OutboundQueueMonitor;
+import com.example.chat_websocket.transport.SharedBodySockJsMessageCodec;
+import com.example.chat_websocket.transport.SlowConsumerHandlerDecorator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.SockJsServiceRegistration;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
 
 /**
  * Configuración de WebSocket para el sistema de chat
@@ -16,8 +40,56 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
  */
 @Configuration
 @EnableWebSocketMessageBroker
+@EnableConfigurationProperties(ChatProperties.class)
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final ChatProperties.Channels channels;
+    private final ChatProperties.Transport transport;
+    private final OutboundQueueMonitor outboundQueueMonitor;
+    private final ChatMetrics metrics;
+    private final WireFormatNegotiator wireFormatNegotiator;
+    private final PayloadCompressor payloadCompressor;
+    private final ObjectProvider<ClusterRelayBridge> clusterRelayBridge;
+    private final ObjectProvider<InboundRateLimiter> rateLimiter;
+    private final PayloadSizeLimiter payloadSizeLimiter;
+    private final ObjectProvider<BroadcastBatcher> broadcastBatcher;
+    private final ObjectProvider<DrainCoordinator> drainCoordinator;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     * @param outboundQueueMonitor Colas de salida por sesión
+     * @param metrics Métricas del chat
+     * @param wireFormatNegotiator Formato de los payloads negociado por cada conexión
+     * @param payloadCompressor Compresión de los payloads negociada por cada conexión
+     * @param clusterRelayBridge Puente hacia el relay del clúster (solo en modo clustered)
+     * @param rateLimiter Limitador de frecuencia de los clientes (salvo chat.rate-limit.enabled=false)
+     * @param payloadSizeLimiter Descarte de los frames SEND demasiado grandes
+     * @param broadcastBatcher Agrupador de difusiones (solo con chat.batching.enabled=true)
+     * @param drainCoordinator Drenaje del nodo al detenerse (salvo chat.drain.enabled=false)
+     */
+    public WebSocketConfig(ChatProperties properties, OutboundQueueMonitor outboundQueueMonitor,
+                           ChatMetrics metrics, WireFormatNegotiator wireFormatNegotiator,
+                           PayloadCompressor payloadCompressor,
+                           ObjectProvider<ClusterRelayBridge> clusterRelayBridge,
+                           ObjectProvider<InboundRateLimiter> rateLimiter,
+                           PayloadSizeLimiter payloadSizeLimiter,
+                           ObjectProvider<BroadcastBatcher> broadcastBatcher,
+                           ObjectProvider<DrainCoordinator> drainCoordinator) {
+        this.channels = properties.getChannels();
+        this.transport = properties.getTransport();
+        this.outboundQueueMonitor = outboundQueueMonitor;
+        this.metrics = metrics;
+        this.wireFormatNegotiator = wireFormatNegotiator;
+        this.payloadCompressor = payloadCompressor;
+        this.clusterRelayBridge = clusterRelayBridge;
+        this.rateLimiter = rateLimiter;
+        this.payloadSizeLimiter = payloadSizeLimiter;
+        this.broadcastBatcher = broadcastBatcher;
+        this.drainCoordinator = drainCoordinator;
+    }
+
     /**
      * Configura el broker de mensajes
      * Define los prefijos para los destinos de mensajes
@@ -28,11 +100,21 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Habilita un broker simple en memoria
         // Los mensajes con destino que comience con "/topic" serán enrutados al broker
-        config.enableSimpleBroker("/topic");
+        // "/queue" se usa para los mensajes dirigidos a una sola sesión (/user/queue/...)
+        config.enableSimpleBroker("/topic", "/queue");
+
+        // En modo clúster los mensajes enviados al broker local se replican a los demás nodos
+        clusterRelayBridge.ifAvailable(bridge -> config.configureBrokerChannel().interceptors(bridge));
+
+        // Opcionalmente agrupa las difusiones a un mismo destino en un solo frame
+        broadcastBatcher.ifAvailable(batcher -> config.configureBrokerChannel().interceptors(batcher));
 
         // Los mensajes desde el cliente con destino que comience con "/app"
         // serán enrutados a los métodos @MessageMapping en los controladores
         config.setApplicationDestinationPrefixes("/app");
+
+        // Entrega los mensajes de cada sesión en el orden en que se publicaron
+        config.setPreservePublishOrder(channels.isPreserveOrder());
     }
 
     /**
@@ -45,8 +127,105 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Registra el endpoint "/ws" para conexiones WebSocket
         // withSockJS() proporciona fallback options para navegadores que no soportan WebSocket
-        registry.addEndpoint("/ws")
+        // Procesa los frames de cada sesión en el orden en que llegaron
+        registry.setPreserveReceiveOrder(channels.isPreserveOrder());
+
+        // Decide en el handshake si se acepta la compresión permessage-deflate
+        ExtensionFilteringHandshakeHandler handshakeHandler =
+                new ExtensionFilteringHandshakeHandler(transport.isPerMessageDeflate());
+
+        // Mientras el nodo drena se rechazan las conexiones nuevas
+        HandshakeInterceptor[] interceptors = drainCoordinator.stream().toArray(HandshakeInterceptor[]::new);
+
+        SockJsServiceRegistration sockJs = registry.addEndpoint("/ws")
+                .setHandshakeHandler(handshakeHandler)
+                .addInterceptors(interceptors)
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+
+        // El cuerpo de un mensaje difundido se escapa una vez para todas las sesiones SockJS
+        if (transport.isShareSockjsFrames()) {
+            sockJs.setMessageCodec(new SharedBodySockJsMessageCodec());
+        }
+
+        // Endpoint "/ws-native": STOMP directamente sobre WebSocket, sin el framing ni el escape
+        // de SockJS; el cliente web lo prefiere y usa "/ws" como alternativa
+        if (transport.isNativeEndpoint()) {
+            registry.addEndpoint("/ws-native")
+                    .setHandshakeHandler(handshakeHandler)
+                    .addInterceptors(interceptors)
+                    .setAllowedOriginPatterns("*");
+        }
+    }
+
+    /**
+     * Configura los límites del transporte WebSocket
+     * Cada sesión escribe desde su propia cola, de modo que un cliente lento
+     * no retiene los hilos del canal de salida compartido. El límite de tamaño acota lo que
+     * el decodificador STOMP acumula por sesión al reensamblar un frame repartido en varios mensajes
+     *
+     * @param registration Registro del transporte
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit((int) transport.getSendTimeLimit().toMillis())
+                .setSendBufferSizeLimit((int) transport.getSendBufferSizeLimit().toBytes())
+                .setMessageSizeLimit((int) transport.getMessageSizeLimit().toBytes())
+                .addDecoratorFactory(handler -> new SlowConsumerHandlerDecorator(handler, outboundQueueMonitor))
+                .addDecoratorFactory(handler -> new BinaryFrameHandlerDecorator(handler, wireFormatNegotiator,
+                        payloadCompressor));
+    }
+
+    /**
+     * Añade el conversor CBOR delante de los conversores por defecto (JSON sigue siendo el formato
+     * por defecto: el conversor CBOR solo acepta frames con content-type application/cbor)
+     *
+     * @param messageConverters Conversores adicionales
+     * @return true para conservar también los conversores por defecto
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new CborMessageConverter());
+        return true;
+    }
+
+    /**
+     * Configura el canal de entrada de los clientes
+     * El limitador de frecuencia descarta los frames SEND antes de llegar a los controladores y,
+     * tras él, los que superan chat.transport.max-payload-size se descartan sin deserializarlos;
+     * las métricas miden cada frame SEND desde que entra en el canal hasta que queda difundido.
+     * El frame CONNECT fija el formato y la compresión de los payloads que recibe la sesión
+     *
+     * @param registration Registro del canal de entrada
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, channels.getInbound(), "chat-inbound-");
+        registration.interceptors(wireFormatNegotiator, payloadCompressor);
+        rateLimiter.ifAvailable(registration::interceptors);
+        registration.interceptors(payloadSizeLimiter, metrics);
+    }
+
+    /**
+     * Configura el canal de salida hacia los clientes
+     * Los payloads JSON se convierten a CBOR para las sesiones que lo negociaron y después
+     * se comprimen los que superan el umbral, para las sesiones que pidieron compresión
+     *
+     * @param registration Registro del canal de salida
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, channels.getOutbound(), "chat-outbound-");
+        registration.interceptors(wireFormatNegotiator, payloadCompressor);
+    }
+
+    /**
+     * Reemplaza el pool por defecto de Spring (cola sin límite) salvo en modo DEFAULT
+     */
+    private void configureExecutor(ChannelRegistration registration, ChatProperties.Pool pool, String prefix) {
+        ThreadPoolTaskExecutor executor = ChannelExecutorFactory.create(channels.getMode(), pool, prefix);
+        if (executor != null) {
+            registration.taskExecutor(executor);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,22 @@
 package com.example.chat_websocket.config;
 
 
-import com.example.chat_websocket.model.ChatMessage;
-import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.presence.PresenceRegistry;
+import com.example.chat_websocket.resume.ResumeTokenService;
+import com.example.chat_websocket.room.RoomRegistry;
+import com.example.chat_websocket.transport.DrainCoordinator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import java.time.Duration;
+import java.util.Optional;
+
 /**
  * Listener de eventos WebSocket
  * Maneja las conexiones y desconexiones de usuarios
@@ -23,15 +28,39 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 public class WebSocketEventListener {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketEventListener.class);
-    private final SimpMessageSendingOperations messagingTemplate;
+    private final RoomRegistry roomRegistry;
+    private final PresenceRegistry presenceRegistry;
+    private final Duration resumeGrace;
+    private final ResumeTokenService resumeTokens;
+    private final DrainCoordinator drainCoordinator;
+
+    /**
+     * Constructor sin reanudación de sesiones
+     *
+     * @param roomRegistry Registro de salas
+     * @param presenceRegistry Registro de presencia
+     */
+    public WebSocketEventListener(RoomRegistry roomRegistry, PresenceRegistry presenceRegistry) {
+        this(roomRegistry, presenceRegistry, Optional.empty(), Optional.empty());
+    }
 
     /**
      * Constructor con inyección de dependencias
      *
-     * @param messagingTemplate Template para enviar mensajes
+     * @param roomRegistry Registro de salas
+     * @param presenceRegistry Registro de presencia
+     * @param resumeTokens Tokens de reanudación (salvo chat.resume.enabled=false)
+     * @param drainCoordinator Drenaje del nodo al detenerse (salvo chat.drain.enabled=false)
      */
-    public WebSocketEventListener(SimpMessageSendingOperations messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    @Autowired
+    public WebSocketEventListener(RoomRegistry roomRegistry, PresenceRegistry presenceRegistry,
+                                  Optional<ResumeTokenService> resumeTokens,
+                                  Optional<DrainCoordinator> drainCoordinator) {
+        this.roomRegistry = roomRegistry;
+        this.presenceRegistry = presenceRegistry;
+        this.resumeGrace = resumeTokens.map(ResumeTokenService::getGrace).orElse(Duration.ZERO);
+        this.resumeTokens = resumeTokens.orElse(null);
+        this.drainCoordinator = drainCoordinator.orElse(null);
     }
 
     /**
@@ -41,12 +70,16 @@ public class WebSocketEventListener {
      */
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
-        logger.info("Nueva conexión WebSocket establecida");
+        logger.debug("Nueva conexión WebSocket establecida");
     }
 
     /**
      * Maneja el evento cuando un cliente se desconecta del WebSocket
-     * Notifica a todos los usuarios que alguien ha abandonado el chat
+     * La sesión sale de su sala y del registro de presencia; la notificación de salida
+     * a su sala (o al canal público) se difunde cuando vence el plazo de debounce
+     * si el usuario no ha vuelto. Las sesiones con token de reanudación esperan el plazo
+     * de gracia: el cliente reconecta solo y su salida no llega a anunciarse. Mientras el nodo drena
+     * ninguna salida se anuncia: el plazo supera lo que le queda al nodo y los clientes migran a otro
      *
      * @param event Evento de desconexión
      */
@@ -55,17 +88,24 @@ public class WebSocketEventListener {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
 
         String username = (String) headerAccessor.getSessionAttributes().get("username");
+        String room = (String) headerAccessor.getSessionAttributes().get("room");
 
-        if (username != null) {
-            logger.info("Usuario desconectado: {}", username);
-
-            ChatMessage chatMessage = new ChatMessage();
-            chatMessage.setType(MessageType.LEAVE);
-            chatMessage.setSender(username);
-            chatMessage.setContent(username + " ha abandonado el chat");
+        if (room != null) {
+            roomRegistry.leave(room, headerAccessor.getSessionId());
+        }
+        if (resumeTokens != null) {
+            resumeTokens.revoke(headerAccessor.getSessionId());
+        }
 
-            // Envía notificación de desconexión a todos los usuarios
-            messagingTemplate.convertAndSend("/topic/public", chatMessage);
+        if (username != null) {
+            logger.debug("Sesión {} de {} cerrada", headerAccessor.getSessionId(), username);
+            boolean resumable = Boolean.TRUE.equals(
+                    headerAccessor.getSessionAttributes().get(ResumeTokenService.RESUMABLE_ATTRIBUTE));
+            Duration grace = resumable ? resumeGrace : Duration.ZERO;
+            if (drainCoordinator != null && drainCoordinator.isDraining()) {
+                grace = drainCoordinator.getLeaveGrace().plus(grace);
+            }
+            presenceRegistry.disconnect(headerAccessor.getSessionId(), grace);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,40 @@
 package com.example.chat_websocket.controller;
 
 
+import com.example.chat_websocket.audit.AuditLog;
+import com.example.chat_websocket.dedup.MessageDeduplicator;
+import com.example.chat_websocket.direct.DirectMessageService;
+import com.example.chat_websocket.history.MessageHistoryService;
+import com.example.chat_websocket.history.ResumePosition;
+import com.example.chat_websocket.metrics.ChatMetrics;
 import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.ErrorMessage;
 import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.model.PresenceSnapshot;
+import com.example.chat_websocket.presence.NameTakenException;
+import com.example.chat_websocket.presence.PresenceRegistry;
+import com.example.chat_websocket.ratelimit.InboundRateLimiter;
+import com.example.chat_websocket.resume.ResumeTokenService;
+import com.example.chat_websocket.room.RoomRegistry;
+import com.example.chat_websocket.util.HtmlSanitizer;
+import com.example.chat_websocket.util.MessageSequencer;
+import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.handler.annotation.support.MethodArgumentNotValidException;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.Optional;
+
 /**
  * Controlador que maneja los mensajes WebSocket del sistema de chat
  *
@@ -24,83 +47,410 @@ public class ChatController {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
 
+    private static final int MAX_CLIENT_KEY_LENGTH = 128;
+
+    /**
+     * Canal público donde se difunden los mensajes sin sala
+     */
+    public static final String PUBLIC_TOPIC = "/topic/public";
+
+    /**
+     * Código del aviso de mensajes que no superan la validación
+     */
+    public static final String INVALID_MESSAGE = "INVALID_MESSAGE";
+
+    /**
+     * Código del aviso que recibe una sesión que intenta unirse con el nombre de otro cliente
+     */
+    public static final String NAME_TAKEN = "NAME_TAKEN";
+
+    private final MessageHistoryService historyService;
+    private final RoomRegistry roomRegistry;
+    private final MessageSequencer sequencer;
+    private final ChatMetrics metrics;
+    private final AuditLog auditLog;
+    private final PresenceRegistry presenceRegistry;
+    private final DirectMessageService directMessageService;
+    private final MessageDeduplicator deduplicator;
+    private final ResumeTokenService resumeTokens;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param historyService Servicio de historial reciente
+     * @param roomRegistry Registro de salas
+     * @param sequencer Asigna marca de tiempo y secuencia a los mensajes
+     * @param metrics Métricas del chat
+     * @param auditLog Registro de auditoría asíncrono
+     * @param presenceRegistry Registro de presencia
+     * @param directMessageService Entrega de mensajes privados
+     */
+    public ChatController(MessageHistoryService historyService, RoomRegistry roomRegistry,
+                          MessageSequencer sequencer, ChatMetrics metrics, AuditLog auditLog,
+                          PresenceRegistry presenceRegistry, DirectMessageService directMessageService) {
+        this(historyService, roomRegistry, sequencer, metrics, auditLog, presenceRegistry, directMessageService,
+                Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Constructor con inyección de dependencias, descarte de reenvíos y reanudación de sesiones
+     *
+     * @param historyService Servicio de historial reciente
+     * @param roomRegistry Registro de salas
+     * @param sequencer Asigna marca de tiempo y secuencia a los mensajes
+     * @param metrics Métricas del chat
+     * @param auditLog Registro de auditoría asíncrono
+     * @param presenceRegistry Registro de presencia
+     * @param directMessageService Entrega de mensajes privados
+     * @param deduplicator Descarte de reenvíos y confirmaciones (salvo chat.dedup.enabled=false)
+     * @param resumeTokens Tokens de reanudación (salvo chat.resume.enabled=false)
+     */
+    @Autowired
+    public ChatController(MessageHistoryService historyService, RoomRegistry roomRegistry,
+                          MessageSequencer sequencer, ChatMetrics metrics, AuditLog auditLog,
+                          PresenceRegistry presenceRegistry, DirectMessageService directMessageService,
+                          Optional<MessageDeduplicator> deduplicator,
+                          Optional<ResumeTokenService> resumeTokens) {
+        this.historyService = historyService;
+        this.roomRegistry = roomRegistry;
+        this.sequencer = sequencer;
+        this.metrics = metrics;
+        this.auditLog = auditLog;
+        this.presenceRegistry = presenceRegistry;
+        this.directMessageService = directMessageService;
+        this.deduplicator = deduplicator.orElse(null);
+        this.resumeTokens = resumeTokens.orElse(null);
+    }
+
     /**
      * Maneja los mensajes de chat enviados por los clientes
      *
+     * Un reenvío con un messageId ya recibido no se difunde; la sesión recibe igualmente la confirmación.
+     * Un mensaje sin tipo, vacío o con el contenido demasiado largo no se difunde y la sesión recibe un aviso
+     *
      * @param chatMessage Mensaje de chat recibido
+     * @param headerAccessor Accessor para acceder a los headers de la sesión
      * @return Mensaje de chat para ser enviado a todos los suscriptores
      */
     @MessageMapping("/chat.sendMessage")
-    @SendTo("/topic/public")
-    public ChatMessage sendMessage(@Payload ChatMessage chatMessage) {
-        // Valida que el contenido no esté vacío
-        if (chatMessage.getContent() == null || chatMessage.getContent().trim().isEmpty()) {
-            logger.warn("Intento de enviar mensaje vacío por usuario: {}", chatMessage.getSender());
+    @SendTo(PUBLIC_TOPIC)
+    public ChatMessage sendMessage(@Valid @Payload ChatMessage chatMessage, SimpMessageHeaderAccessor headerAccessor) {
+        return publish(PUBLIC_TOPIC, chatMessage, headerAccessor);
+    }
+
+    /**
+     * Maneja los mensajes de chat enviados a una sala
+     * Solo los suscriptores de /topic/room.{room} reciben el mensaje, y solo puede enviarlo
+     * una sesión que se unió antes a la sala con /app/chat.{room}.addUser
+     *
+     * @param room Nombre de la sala
+     * @param chatMessage Mensaje de chat recibido
+     * @param headerAccessor Accessor para acceder a los headers de la sesión
+     * @return Mensaje de chat para ser enviado a los miembros de la sala
+     */
+    @MessageMapping("/chat.{room}.sendMessage")
+    @SendTo(RoomRegistry.ROOM_TOPIC_PREFIX + "{room}")
+    public ChatMessage sendRoomMessage(@DestinationVariable String room, @Valid @Payload ChatMessage chatMessage,
+                                       SimpMessageHeaderAccessor headerAccessor) {
+        if (!RoomRegistry.isValidName(room)) {
+            logger.warn("Intento de enviar mensaje a sala inválida: {}", room);
             return null;
         }
 
-        // Sanitiza el contenido del mensaje (previene XSS básico)
-        String sanitizedContent = sanitizeMessage(chatMessage.getContent());
-        chatMessage.setContent(sanitizedContent);
+        if (!roomRegistry.isMember(room, headerAccessor.getSessionId())) {
+            logger.warn("Intento de enviar mensaje a la sala {} sin pertenecer a ella", room);
+            return null;
+        }
 
-        logger.info("Mensaje recibido de {}: {}",
-                chatMessage.getSender(),
-                chatMessage.getContent());
+        roomRegistry.touch(room);
+        return publish(RoomRegistry.destinationOf(room), chatMessage, headerAccessor);
+    }
 
-        return chatMessage;
+    /**
+     * Maneja los mensajes privados entre dos usuarios
+     * No se difunde ni se guarda en el historial: solo lo reciben las sesiones del destinatario
+     * y del remitente en /user/queue/messages. El remitente es el usuario registrado en la sesión
+     * por addUser, no el que indique el payload. Un mensaje sin destinatario, vacío o demasiado
+     * largo no se entrega y la sesión recibe un aviso
+     *
+     * @param chatMessage Mensaje con el destinatario y el contenido
+     * @param headerAccessor Accessor para acceder a los headers de la sesión
+     */
+    @MessageMapping("/chat.private")
+    public void sendPrivateMessage(@Validated(ChatMessage.Private.class) @Payload ChatMessage chatMessage,
+                                   SimpMessageHeaderAccessor headerAccessor) {
+        Object sender = headerAccessor.getSessionAttributes() != null
+                ? headerAccessor.getSessionAttributes().get("username") : null;
+        if (sender == null) {
+            logger.warn("Intento de enviar mensaje privado sin haberse unido al chat");
+            return;
+        }
+
+        // Como en publish: @NotBlank no descarta un contenido de caracteres de control
+        if (HtmlSanitizer.isBlank(chatMessage.getContent())) {
+            logger.warn("Intento de enviar mensaje privado vacío por usuario: {}", sender);
+            return;
+        }
+
+        if (!firstDelivery(chatMessage, (String) sender, headerAccessor.getSessionId())) {
+            return;
+        }
+
+        chatMessage.setType(MessageType.PRIVATE);
+        chatMessage.setSender((String) sender);
+        chatMessage.setRecipient(chatMessage.getRecipient().trim());
+        chatMessage.setContent(HtmlSanitizer.sanitize(chatMessage.getContent()));
+        sequencer.stamp(chatMessage);
+
+        auditLog.record("/user/" + chatMessage.getRecipient() + DirectMessageService.MESSAGES_QUEUE, chatMessage);
+        metrics.recordMessage(MessageType.PRIVATE);
+        directMessageService.deliver(chatMessage, headerAccessor.getSessionId());
+        acknowledge(chatMessage, headerAccessor.getSessionId());
     }
 
     /**
      * Maneja cuando un usuario se une al chat
-     * Registra el nombre de usuario en la sesión WebSocket
+     * Registra el nombre de usuario en la sesión WebSocket y le reenvía el historial reciente.
+     * Un cliente que reconecta presenta en las cabeceras resume-token y last-sequence: con un token
+     * válido recibe solo los mensajes que se perdió y su vuelta no se anuncia
      *
      * @param chatMessage Mensaje con información del usuario
      * @param headerAccessor Accessor para acceder a los headers de la sesión
      * @return Mensaje de notificación de ingreso
      */
     @MessageMapping("/chat.addUser")
-    @SendTo("/topic/public")
+    @SendTo(PUBLIC_TOPIC)
     public ChatMessage addUser(@Payload ChatMessage chatMessage,
                                SimpMessageHeaderAccessor headerAccessor) {
 
-        // Valida que el nombre de usuario no esté vacío
-        if (chatMessage.getSender() == null || chatMessage.getSender().trim().isEmpty()) {
-            logger.warn("Intento de conexión sin nombre de usuario");
+        // Valida que el nombre de usuario no esté vacío ni sea demasiado largo
+        if (!isValidSender(chatMessage.getSender())) {
+            logger.warn("Intento de conexión sin nombre de usuario válido");
             return null;
         }
 
-        // Almacena el nombre de usuario en la sesión WebSocket
-        headerAccessor.getSessionAttributes().put("username", chatMessage.getSender());
+        return registerUser(chatMessage, headerAccessor, PUBLIC_TOPIC, null);
+    }
 
-        logger.info("Usuario conectado: {}", chatMessage.getSender());
+    /**
+     * Maneja cuando un usuario se une a una sala
+     * Registra la sesión como miembro de la sala; la notificación de ingreso
+     * solo llega a los suscriptores de esa sala
+     *
+     * @param room Nombre de la sala
+     * @param chatMessage Mensaje con información del usuario
+     * @param headerAccessor Accessor para acceder a los headers de la sesión
+     * @return Mensaje de notificación de ingreso a la sala
+     */
+    @MessageMapping("/chat.{room}.addUser")
+    @SendTo(RoomRegistry.ROOM_TOPIC_PREFIX + "{room}")
+    public ChatMessage addRoomUser(@DestinationVariable String room,
+                                   @Payload ChatMessage chatMessage,
+                                   SimpMessageHeaderAccessor headerAccessor) {
 
-        // Crea mensaje de notificación
-        ChatMessage notification = new ChatMessage();
-        notification.setType(MessageType.JOIN);
-        notification.setSender(chatMessage.getSender());
-        notification.setContent(chatMessage.getSender() + " se ha unido al chat");
+        if (!isValidSender(chatMessage.getSender())) {
+            logger.warn("Intento de conexión sin nombre de usuario válido");
+            return null;
+        }
 
-        return notification;
+        String sessionId = headerAccessor.getSessionId();
+        if (sessionId != null) {
+            if (roomRegistry.join(room, sessionId) == null) {
+                logger.warn("No se pudo unir a {} a la sala {}", chatMessage.getSender(), room);
+                return null;
+            }
+
+            // Una sesión pertenece a una sola sala a la vez
+            Object previousRoom = headerAccessor.getSessionAttributes().put("room", room);
+            if (previousRoom != null && !previousRoom.equals(room)) {
+                roomRegistry.leave((String) previousRoom, sessionId);
+            }
+        } else if (!RoomRegistry.isValidName(room)) {
+            return null;
+        }
+
+        return registerUser(chatMessage, headerAccessor, RoomRegistry.destinationOf(room), room);
     }
 
     /**
-     * Sanitiza el contenido del mensaje para prevenir ataques XSS básicos
+     * Devuelve solo a la sesión que lo pide la lista de usuarios en línea
+     * Los cambios posteriores llegan agrupados en /topic/presence
      *
-     * @param message Mensaje original
-     * @return Mensaje sanitizado
+     * @return Foto de la presencia con su versión
+     */
+    @MessageMapping("/presence.list")
+    @SendToUser(destinations = PresenceRegistry.PRESENCE_QUEUE, broadcast = false)
+    public PresenceSnapshot presenceList() {
+        return presenceRegistry.snapshot();
+    }
+
+    /**
+     * Avisa a la sesión de un mensaje que no supera la validación sin cerrar la conexión
+     */
+    @MessageExceptionHandler(MethodArgumentNotValidException.class)
+    @SendToUser(destinations = InboundRateLimiter.ERRORS_QUEUE, broadcast = false)
+    public ErrorMessage handleInvalidMessage(MethodArgumentNotValidException ex) {
+        String reason = ex.getBindingResult() != null && ex.getBindingResult().hasErrors()
+                ? ex.getBindingResult().getAllErrors().get(0).getDefaultMessage()
+                : "Mensaje inválido";
+        logger.warn("Mensaje rechazado por validación: {}", reason);
+        return new ErrorMessage(INVALID_MESSAGE, reason);
+    }
+
+    /**
+     * Avisa a la sesión de que el nombre pertenece a otro cliente; la sesión sigue conectada
+     * y puede unirse con otro nombre
+     */
+    @MessageExceptionHandler(NameTakenException.class)
+    @SendToUser(destinations = InboundRateLimiter.ERRORS_QUEUE, broadcast = false)
+    public ErrorMessage handleNameTaken(NameTakenException ex) {
+        return new ErrorMessage(NAME_TAKEN, ex.getMessage());
+    }
+
+    /**
+     * Sanitiza, registra en el historial y devuelve el mensaje para su difusión
+     */
+    private ChatMessage publish(String destination, ChatMessage chatMessage,
+                                SimpMessageHeaderAccessor headerAccessor) {
+        // Valida que el contenido no esté vacío
+        if (HtmlSanitizer.isBlank(chatMessage.getContent())) {
+            logger.warn("Intento de enviar mensaje vacío por usuario: {}", chatMessage.getSender());
+            return null;
+        }
+
+        // El ámbito del messageId es el usuario de la sesión: sobrevive a una reconexión
+        Object username = headerAccessor.getSessionAttributes() != null
+                ? headerAccessor.getSessionAttributes().get("username") : null;
+        String sessionId = headerAccessor.getSessionId();
+        if (!firstDelivery(chatMessage, username != null ? (String) username : chatMessage.getSender(), sessionId)) {
+            return null;
+        }
+
+        // Sanitiza el contenido del mensaje (previene XSS básico)
+        String sanitizedContent = HtmlSanitizer.sanitize(chatMessage.getContent());
+        chatMessage.setContent(sanitizedContent);
+        sequencer.stamp(chatMessage);
+
+        // El contenido no se registra aquí: la auditoría se escribe por lotes en su propio hilo
+        historyService.record(destination, chatMessage);
+        auditLog.record(destination, chatMessage);
+        metrics.recordMessage(MessageType.CHAT);
+        acknowledge(chatMessage, sessionId);
+
+        return chatMessage;
+    }
+
+    /**
+     * Registra el messageId; si es un reenvío ya procesado lo confirma otra vez y devuelve false
+     */
+    private boolean firstDelivery(ChatMessage chatMessage, String sender, String sessionId) {
+        if (deduplicator == null || deduplicator.firstDelivery(chatMessage, sender)) {
+            return true;
+        }
+        deduplicator.acknowledge(sessionId, chatMessage, true);
+        return false;
+    }
+
+    private ResumeTokenService.Resumption resumptionOf(SimpMessageHeaderAccessor headerAccessor, String username,
+                                                       String destination) {
+        if (resumeTokens == null) {
+            return ResumeTokenService.Resumption.NONE;
+        }
+        return resumeTokens.verify(headerAccessor.getFirstNativeHeader(ResumeTokenService.TOKEN_HEADER),
+                username, destination);
+    }
+
+    /**
+     * Clave del cliente que envía el frame de ingreso; sin ella la sesión es su propio cliente
      */
-    private String sanitizeMessage(String message) {
-        if (message == null) {
-            return "";
+    private static String clientKeyOf(SimpMessageHeaderAccessor headerAccessor, String sessionId) {
+        String key = headerAccessor.getFirstNativeHeader(PresenceRegistry.CLIENT_KEY_HEADER);
+        if (key == null || key.isBlank() || key.length() > MAX_CLIENT_KEY_LENGTH) {
+            return "session:" + sessionId;
         }
+        return "client:" + key;
+    }
 
-        return message
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&#x27;")
-                .replace("/", "&#x2F;")
-                .trim();
+    private static boolean isValidSender(String sender) {
+        return sender != null && !sender.trim().isEmpty() && sender.length() <= ChatMessage.MAX_SENDER_LENGTH;
+    }
+
+    private static ResumePosition lastSequenceOf(SimpMessageHeaderAccessor headerAccessor) {
+        return ResumePosition.parse(headerAccessor.getFirstNativeHeader(ResumeTokenService.LAST_SEQUENCE_HEADER));
+    }
+
+    private void acknowledge(ChatMessage chatMessage, String sessionId) {
+        if (deduplicator != null) {
+            deduplicator.acknowledge(sessionId, chatMessage, false);
+        }
+    }
+
+    /**
+     * Guarda el usuario en la sesión, le reenvía el historial y crea la notificación de ingreso
+     * Si el nombre pertenece a otro cliente la sesión no se registra (ni queda en la sala)
+     */
+    private ChatMessage registerUser(ChatMessage chatMessage, SimpMessageHeaderAccessor headerAccessor,
+                                     String destination, String room) {
+        String sessionId = headerAccessor.getSessionId();
+        if (sessionId == null) {
+            headerAccessor.getSessionAttributes().put("username", chatMessage.getSender());
+        } else {
+            ResumeTokenService.Resumption resumption = resumptionOf(headerAccessor, chatMessage.getSender(),
+                    destination);
+            PresenceRegistry.Admission admission = presenceRegistry.admit(chatMessage.getSender(), sessionId,
+                    destination, clientKeyOf(headerAccessor, sessionId),
+                    resumption != ResumeTokenService.Resumption.NONE);
+            if (admission == PresenceRegistry.Admission.NAME_TAKEN) {
+                logger.warn("Intento de unirse con el nombre {}, en uso por otro cliente", chatMessage.getSender());
+                if (room != null) {
+                    roomRegistry.leave(room, sessionId);
+                    headerAccessor.getSessionAttributes().remove("room", room);
+                }
+                throw new NameTakenException(chatMessage.getSender());
+            }
+
+            // Almacena el nombre de usuario en la sesión WebSocket
+            headerAccessor.getSessionAttributes().put("username", chatMessage.getSender());
+            ResumePosition lastSequence = resumption != ResumeTokenService.Resumption.NONE
+                    ? lastSequenceOf(headerAccessor) : null;
+
+            // Reenvía a la nueva sesión los últimos mensajes, o solo los perdidos si reanuda, en un único frame
+            if (lastSequence != null) {
+                historyService.replaySince(sessionId, destination, lastSequence);
+            } else {
+                historyService.replayTo(sessionId, destination);
+            }
+
+            if (resumeTokens != null) {
+                headerAccessor.getSessionAttributes().put(ResumeTokenService.RESUMABLE_ATTRIBUTE, Boolean.TRUE);
+                resumeTokens.grant(sessionId, chatMessage.getSender(), destination);
+            }
+
+            // Otra sesión del mismo usuario o una reconexión dentro del plazo no se anuncian
+            if (admission != PresenceRegistry.Admission.ANNOUNCE) {
+                logger.debug("Sesión adicional o reconexión de {}", chatMessage.getSender());
+                return null;
+            }
+
+            // Este nodo no conoce la sesión anterior: otro nodo, o este antes de reiniciarse, la atendía
+            // hasta hace menos del plazo de gracia (un token LATE sí se anuncia)
+            if (resumption == ResumeTokenService.Resumption.OTHER_NODE) {
+                logger.debug("Sesión de {} reanudada desde otro nodo", chatMessage.getSender());
+                return null;
+            }
+        }
+
+        logger.info("Usuario conectado: {}", chatMessage.getSender());
+
+        // Crea mensaje de notificación
+        ChatMessage notification = new ChatMessage();
+        notification.setType(MessageType.JOIN);
+        notification.setSender(chatMessage.getSender());
+        notification.setContent(chatMessage.getSender() + " se ha unido al chat");
+        sequencer.stamp(notification);
+        auditLog.record(destination, notification);
+        metrics.recordMessage(MessageType.JOIN);
+
+        return notification;
     }
-}
\ No newline at end of file
+}
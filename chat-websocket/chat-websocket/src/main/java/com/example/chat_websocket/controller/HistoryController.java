@@ -0,0 +1,129 @@
+package com.example.chat_websocket.controller;
+
+
+import com.example.chat_websocket.metrics.ChatMetrics;
+import com.example.chat_websocket.model.ErrorMessage;
+import com.example.chat_websocket.model.HistoryPage;
+import com.example.chat_websocket.model.HistoryQuery;
+import com.example.chat_websocket.ratelimit.InboundRateLimiter;
+import com.example.chat_websocket.room.RoomRegistry;
+import com.example.chat_websocket.search.MessageIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Consultas paginadas al historial: por STOMP (/app/history.page, respuesta en /user/queue/history.page)
+ * y por HTTP (GET /api/history con los mismos parámetros)
+ * Las páginas van de la más reciente hacia atrás; el cursor de cada una se pasa como before en la siguiente
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Controller
+@ConditionalOnProperty(prefix = "chat.search", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class HistoryController {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryController.class);
+
+    /**
+     * Cola privada donde se responde a /app/history.page
+     */
+    public static final String PAGE_QUEUE = "/queue/history.page";
+
+    /**
+     * Código del aviso de consultas con parámetros inválidos
+     */
+    public static final String INVALID_QUERY = "INVALID_QUERY";
+
+    private final MessageIndex messageIndex;
+    private final ChatMetrics metrics;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param messageIndex Índice de búsqueda del historial
+     * @param metrics Métricas del chat
+     */
+    public HistoryController(MessageIndex messageIndex, ChatMetrics metrics) {
+        this.messageIndex = messageIndex;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Devuelve solo a la sesión que la pide una página del historial
+     *
+     * @param query Sala, filtros, cursor y tamaño de página
+     * @return Página de mensajes
+     */
+    @MessageMapping("/history.page")
+    @SendToUser(destinations = PAGE_QUEUE, broadcast = false)
+    public HistoryPage historyPage(@Payload HistoryQuery query) {
+        return page(query);
+    }
+
+    /**
+     * Equivalente HTTP de /app/history.page
+     *
+     * @param query Parámetros de la consulta (room, before, from, to, sender, q, limit)
+     * @return Página de mensajes
+     */
+    @GetMapping("/api/history")
+    @ResponseBody
+    public HistoryPage history(@ModelAttribute HistoryQuery query) {
+        return page(query);
+    }
+
+    /**
+     * Avisa a la sesión de una consulta inválida sin cerrar la conexión
+     */
+    @MessageExceptionHandler(IllegalArgumentException.class)
+    @SendToUser(destinations = InboundRateLimiter.ERRORS_QUEUE, broadcast = false)
+    public ErrorMessage handleInvalidQuery(IllegalArgumentException ex) {
+        return new ErrorMessage(INVALID_QUERY, ex.getMessage());
+    }
+
+    /**
+     * Responde 400 a una consulta HTTP inválida
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public ErrorMessage handleInvalidRequest(IllegalArgumentException ex) {
+        return new ErrorMessage(INVALID_QUERY, ex.getMessage());
+    }
+
+    private HistoryPage page(HistoryQuery query) {
+        if (query.getFrom() != null && query.getTo() != null && query.getFrom() > query.getTo()) {
+            throw new IllegalArgumentException("from debe ser anterior a to");
+        }
+
+        long start = System.nanoTime();
+        HistoryPage page = messageIndex.query(destinationOf(query.getRoom()), query);
+        metrics.recordSearchQuery(System.nanoTime() - start);
+
+        logger.debug("Consulta de historial {}: {} mensajes", query, page.getMessages().size());
+        return page;
+    }
+
+    private static String destinationOf(String room) {
+        if (room == null || room.isBlank()) {
+            return ChatController.PUBLIC_TOPIC;
+        }
+        if (!RoomRegistry.isValidName(room)) {
+            throw new IllegalArgumentException("Nombre de sala inválido: " + room);
+        }
+        return RoomRegistry.destinationOf(room);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.chat_websocket.dedup;
+
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Conjunto de identificadores vistos recientemente, con caducidad por tiempo y memoria fija
+ * Cada identificador se reduce a un hash de 64 bits y se guarda en tablas de direccionamiento abierto
+ * reservadas al crear la ventana: no se crean objetos por mensaje y el costo de add() no depende
+ * de cuántos identificadores haya. Las tablas se reparten en segmentos con su propio monitor
+ * para que los hilos del canal de entrada no compitan por un único bloqueo.
+ * Cada segmento tiene dos generaciones: la actual recibe los identificadores nuevos y la anterior
+ * solo se consulta. Al cumplirse la ventana la actual pasa a ser la anterior y la anterior se vacía,
+ * así cada identificador se recuerda al menos durante la ventana. Si la generación actual se llena
+ * antes de tiempo se rota igualmente: la memoria no crece y solo se acorta la ventana
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class DeduplicationWindow {
+
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = 64 - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final LongAdder earlyRotations = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param window Tiempo mínimo durante el que se recuerda cada identificador
+     * @param maxEntries Identificadores por generación sumando todos los segmentos
+     * @param nanoClock Reloj monótono en nanosegundos
+     */
+    public DeduplicationWindow(Duration window, int maxEntries, LongSupplier nanoClock) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("La ventana debe ser positiva: " + window);
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries debe ser positivo: " + maxEntries);
+        }
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+
+        int perSegment = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        // Factor de carga máximo de 1/2: las búsquedas terminan tras muy pocos saltos
+        int tableSize = Integer.highestOneBit(perSegment * 2 - 1) << 1;
+        long now = nanoClock.getAsLong();
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment, tableSize, now);
+        }
+    }
+
+    /**
+     * Registra el identificador si no se vio dentro de la ventana
+     *
+     * @param scope Ámbito del identificador (por ejemplo, el remitente)
+     * @param id Identificador dentro del ámbito
+     * @return true si es nuevo, false si es un reenvío
+     */
+    public boolean add(String scope, String id) {
+        long key = hash(scope, id);
+        return segments[(int) (key >>> SEGMENT_SHIFT)].add(key, nanoClock.getAsLong());
+    }
+
+    /**
+     * Identificadores recordados entre ambas generaciones
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Rotaciones adelantadas por llenarse una generación antes de cumplirse la ventana
+     */
+    public long getEarlyRotations() {
+        return earlyRotations.sum();
+    }
+
+    /**
+     * Memoria reservada por las tablas, en bytes
+     */
+    public long getCapacityBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += 2L * segment.current.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Hash de 64 bits (FNV-1a con la mezcla final de MurmurHash3); nunca devuelve 0,
+     * que marca las posiciones libres
+     */
+    static long hash(String scope, String id) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < scope.length(); i++) {
+            h = (h ^ scope.charAt(i)) * FNV_PRIME;
+        }
+        // Separador: ("ab", "c") y ("a", "bc") no comparten hash
+        h = (h ^ 0xFFFF) * FNV_PRIME;
+        for (int i = 0; i < id.length(); i++) {
+            h = (h ^ id.charAt(i)) * FNV_PRIME;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    private final class Segment {
+
+        private final int maxEntries;
+        private final int mask;
+        private long[] current;
+        private long[] previous;
+        private int currentCount;
+        private int previousCount;
+        private long generationStart;
+
+        Segment(int maxEntries, int tableSize, long now) {
+            this.maxEntries = maxEntries;
+            this.mask = tableSize - 1;
+            this.current = new long[tableSize];
+            this.previous = new long[tableSize];
+            this.generationStart = now;
+        }
+
+        synchronized boolean add(long key, long now) {
+            if (now - generationStart >= windowNanos) {
+                rotate(now);
+            }
+            if (contains(previous, key) || contains(current, key)) {
+                return false;
+            }
+            if (currentCount >= maxEntries) {
+                earlyRotations.increment();
+                rotate(now);
+            }
+
+            int slot = (int) key & mask;
+            while (current[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            current[slot] = key;
+            currentCount++;
+            return true;
+        }
+
+        synchronized int size() {
+            return currentCount + previousCount;
+        }
+
+        private boolean contains(long[] table, long key) {
+            int slot = (int) key & mask;
+            long stored;
+            while ((stored = table[slot]) != 0) {
+                if (stored == key) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * La generación actual pasa a ser la anterior; la tabla de la anterior se vacía y se reutiliza
+         */
+        private void rotate(long now) {
+            long[] recycled = previous;
+            Arrays.fill(recycled, 0L);
+            previous = current;
+            previousCount = currentCount;
+            current = recycled;
+            currentCount = 0;
+            generationStart = now;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.chat_websocket.dedup;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageAck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Envíos idempotentes: descarta los reenvíos de un mensaje con el mismo messageId y confirma
+ * cada envío a la sesión que lo hizo en /user/queue/acks
+ * Los identificadores se recuerdan por remitente dentro de una ventana de tiempo (chat.dedup.window),
+ * así un cliente que reconecta y reenvía lo pendiente no duplica mensajes. En modo clúster la ventana
+ * también recibe los identificadores de los mensajes de otros nodos, para que el reenvío de un cliente
+ * que reanuda en otro nodo tampoco se difunda dos veces. El broker simple no emite frames RECEIPT
+ * para los SEND, por eso la confirmación es un mensaje de la aplicación
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Service
+@ConditionalOnProperty(prefix = "chat.dedup", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MessageDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageDeduplicator.class);
+
+    /**
+     * Cola privada donde la sesión recibe las confirmaciones de sus envíos
+     */
+    public static final String ACKS_QUEUE = "/queue/acks";
+
+    /**
+     * Longitud máxima de un messageId; los más largos se ignoran
+     */
+    public static final int MAX_MESSAGE_ID_LENGTH = 64;
+
+    private final DeduplicationWindow window;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     * @param messagingTemplate Template para enviar las confirmaciones; diferido porque el puente del
+     *                          clúster, que se crea con el canal del broker, depende de este servicio
+     */
+    @Autowired
+    public MessageDeduplicator(ChatProperties properties, @Lazy SimpMessageSendingOperations messagingTemplate) {
+        this(properties, messagingTemplate, System::nanoTime);
+    }
+
+    MessageDeduplicator(ChatProperties properties, SimpMessageSendingOperations messagingTemplate,
+                        LongSupplier nanoClock) {
+        ChatProperties.Dedup dedup = properties.getDedup();
+        this.window = new DeduplicationWindow(dedup.getWindow(), dedup.getMaxEntries(), nanoClock);
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Registra el messageId del mensaje para su remitente
+     * Un messageId vacío o demasiado largo se elimina del mensaje y no se comprueba
+     *
+     * @param message Mensaje recibido
+     * @param sender Remitente, ámbito del identificador
+     * @return false si el mensaje es un reenvío ya procesado y no se debe difundir
+     */
+    public boolean firstDelivery(ChatMessage message, String sender) {
+        String messageId = message.getMessageId();
+        if (messageId == null) {
+            return true;
+        }
+        if (messageId.isEmpty() || messageId.length() > MAX_MESSAGE_ID_LENGTH || sender == null) {
+            message.setMessageId(null);
+            return true;
+        }
+
+        if (window.add(sender, messageId)) {
+            return true;
+        }
+        duplicates.increment();
+        logger.debug("Reenvío descartado de {}: {}", sender, messageId);
+        return false;
+    }
+
+    /**
+     * Recuerda el messageId de un mensaje difundido por otro nodo del clúster
+     *
+     * @param message Mensaje recibido del relay, con el remitente ya fijado por su nodo
+     */
+    public void recordRelayed(ChatMessage message) {
+        String messageId = message.getMessageId();
+        if (messageId == null || messageId.isEmpty() || messageId.length() > MAX_MESSAGE_ID_LENGTH
+                || message.getSender() == null) {
+            return;
+        }
+        window.add(message.getSender(), messageId);
+    }
+
+    /**
+     * Confirma el envío solo a la sesión que lo hizo; los mensajes sin messageId no se confirman
+     *
+     * @param sessionId Sesión que envió el mensaje
+     * @param message Mensaje ya sellado, o el reenvío descartado
+     * @param duplicate true si era un reenvío
+     */
+    public void acknowledge(String sessionId, ChatMessage message, boolean duplicate) {
+        if (sessionId == null || message.getMessageId() == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+
+        messagingTemplate.convertAndSendToUser(sessionId, ACKS_QUEUE,
+                new MessageAck(message.getMessageId(), duplicate ? 0 : message.getSequence(), duplicate),
+                accessor.getMessageHeaders());
+    }
+
+    /**
+     * Reenvíos descartados
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Identificadores recordados
+     */
+    public int getTrackedIds() {
+        return window.size();
+    }
+
+    /**
+     * Veces que la ventana se acortó por llegar más mensajes de los que caben en una generación
+     */
+    public long getEarlyRotations() {
+        return window.getEarlyRotations();
+    }
+}
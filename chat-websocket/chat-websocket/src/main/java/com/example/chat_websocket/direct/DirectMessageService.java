@@ -0,0 +1,198 @@
+package com.example.chat_websocket.direct;
+
+
+import com.example.chat_websocket.cluster.ClusterRelay;
+import com.example.chat_websocket.cluster.RelayEnvelope;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.ErrorMessage;
+import com.example.chat_websocket.presence.PresenceRegistry;
+import com.example.chat_websocket.ratelimit.InboundRateLimiter;
+import com.example.chat_websocket.util.MessageSequencer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Entrega de mensajes privados a las sesiones de un usuario
+ * El destinatario se resuelve con el índice de PresenceRegistry (usuario → sesiones), sin recorrer
+ * el resto de usuarios, y el mensaje se envía a /user/{sesión}/queue/messages de cada una: el costo
+ * depende de las sesiones del destinatario, no del número de usuarios conectados.
+ * El remitente recibe una copia en sus propias sesiones, así sus otras pestañas ven la conversación.
+ * La presencia es local a cada nodo: en modo clúster el mensaje se publica además en el relay, una vez
+ * para el destinatario y otra para el remitente, y cada nodo lo entrega a las sesiones que ese usuario
+ * tenga en él. Sin un índice de usuarios del clúster, el aviso de destinatario desconectado solo se da
+ * cuando el nodo funciona solo
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Service
+public class DirectMessageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectMessageService.class);
+
+    /**
+     * Cola privada donde cada sesión recibe sus mensajes directos (/user/queue/messages)
+     */
+    public static final String MESSAGES_QUEUE = "/queue/messages";
+
+    /**
+     * Código del aviso que recibe el remitente cuando el destinatario no está conectado
+     */
+    public static final String RECIPIENT_OFFLINE = "RECIPIENT_OFFLINE";
+
+    /**
+     * Prefijo del destino con que un mensaje privado viaja por el relay: /user/{usuario}/queue/messages
+     */
+    public static final String RELAY_PREFIX = "/user/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceRegistry presenceRegistry;
+    private final ClusterRelay relay;
+    private final String nodeId;
+
+    /**
+     * Constructor para un nodo sin clúster
+     *
+     * @param messagingTemplate Plantilla del broker; su conversor serializa el mensaje
+     * @param presenceRegistry Índice de sesiones por usuario
+     */
+    public DirectMessageService(SimpMessagingTemplate messagingTemplate, PresenceRegistry presenceRegistry) {
+        this(messagingTemplate, presenceRegistry, null, Optional.empty());
+    }
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param messagingTemplate Plantilla del broker; su conversor serializa el mensaje
+     * @param presenceRegistry Índice de sesiones por usuario
+     * @param sequencer Secuenciador, del que se toma el identificador del nodo
+     * @param relay Relay del clúster (solo con chat.broker.mode=clustered)
+     */
+    @Autowired
+    public DirectMessageService(SimpMessagingTemplate messagingTemplate, PresenceRegistry presenceRegistry,
+                                MessageSequencer sequencer, Optional<ClusterRelay> relay) {
+        this.messagingTemplate = messagingTemplate;
+        this.presenceRegistry = presenceRegistry;
+        this.relay = relay.orElse(null);
+        this.nodeId = sequencer != null ? sequencer.getNodeId() : null;
+        if (this.relay != null) {
+            this.relay.subscribe(this::onRelayMessage);
+        }
+    }
+
+    /**
+     * Entrega el mensaje a las sesiones del destinatario y del remitente
+     * Se serializa una sola vez y el mismo payload se envía a cada sesión
+     *
+     * @param message Mensaje privado ya sanitizado y sellado
+     * @param senderSessionId Sesión que lo envió; recibe el aviso si el destinatario no está conectado
+     * @return Número de sesiones a las que se entregó
+     */
+    public int deliver(ChatMessage message, String senderSessionId) {
+        List<String> recipientSessions = presenceRegistry.sessionsOf(message.getRecipient());
+        if (recipientSessions.isEmpty() && relay == null) {
+            logger.debug("Mensaje privado de {} para {}, que no está conectado",
+                    message.getSender(), message.getRecipient());
+            notifyOffline(senderSessionId, message.getRecipient());
+            return 0;
+        }
+
+        Set<String> sessions = new LinkedHashSet<>(recipientSessions);
+        sessions.addAll(presenceRegistry.sessionsOf(message.getSender()));
+
+        Message<?> converted = messagingTemplate.getMessageConverter().toMessage(message, null);
+        if (converted == null) {
+            throw new MessageConversionException("No se pudo serializar el mensaje privado de "
+                    + message.getSender());
+        }
+        Object payload = converted.getPayload();
+        MimeType contentType = converted.getHeaders().get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+
+        sendToSessions(sessions, payload, contentType);
+        if (relay != null) {
+            publish(message.getRecipient(), payload, contentType);
+            if (!message.getRecipient().equals(message.getSender())) {
+                publish(message.getSender(), payload, contentType);
+            }
+        }
+        return sessions.size();
+    }
+
+    /**
+     * Entrega a las sesiones locales del usuario un mensaje privado publicado por otro nodo
+     *
+     * @param envelope Mensaje recibido del relay
+     */
+    void onRelayMessage(RelayEnvelope envelope) {
+        String destination = envelope.getDestination();
+        if (nodeId.equals(envelope.getOriginNodeId()) || !destination.startsWith(RELAY_PREFIX)
+                || !destination.endsWith(MESSAGES_QUEUE)) {
+            return;
+        }
+
+        String username = destination.substring(RELAY_PREFIX.length(), destination.length() - MESSAGES_QUEUE.length());
+        List<String> sessions = presenceRegistry.sessionsOf(username);
+        if (sessions.isEmpty()) {
+            return;
+        }
+        MimeType contentType = envelope.getContentType() != null ? MimeType.valueOf(envelope.getContentType()) : null;
+        try {
+            sendToSessions(sessions, envelope.getPayload(), contentType);
+        } catch (RuntimeException ex) {
+            logger.warn("No se pudo entregar el mensaje privado del nodo {} a {}",
+                    envelope.getOriginNodeId(), username, ex);
+        }
+    }
+
+    private void sendToSessions(Collection<String> sessions, Object payload, MimeType contentType) {
+        for (String sessionId : sessions) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(sessionId);
+            accessor.setContentType(contentType);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + sessionId + MESSAGES_QUEUE,
+                    MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        }
+    }
+
+    /**
+     * Publica el mensaje en el relay para las sesiones que el usuario tenga en otros nodos
+     */
+    private void publish(String username, Object payload, MimeType contentType) {
+        if (!(payload instanceof byte[] bytes)) {
+            logger.debug("Mensaje privado para {} no replicado: payload de tipo {}", username, payload.getClass());
+            return;
+        }
+        relay.publish(new RelayEnvelope(nodeId, RELAY_PREFIX + username + MESSAGES_QUEUE,
+                contentType != null ? contentType.toString() : null, bytes));
+    }
+
+    private void notifyOffline(String sessionId, String recipient) {
+        if (sessionId == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+
+        messagingTemplate.convertAndSendToUser(sessionId, InboundRateLimiter.ERRORS_QUEUE,
+                new ErrorMessage(RECIPIENT_OFFLINE, recipient + " no está conectado"),
+                accessor.getMessageHeaders());
+    }
+}
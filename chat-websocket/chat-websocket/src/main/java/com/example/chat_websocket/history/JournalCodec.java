@@ -0,0 +1,174 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Codificación binaria compacta de los mensajes del journal
+ * <pre>
+ * int   longitud (bytes que siguen a este campo, incluido el CRC)
+ * int   CRC32 del cuerpo
+ * long  secuencia
+ * long  instante de escritura (epoch millis)
+ * byte  tipo (ordinal de MessageType, -1 si es nulo)
+ * short destino  + UTF-8
+ * short remitente + UTF-8
+ * short nodo que asignó la secuencia del mensaje + UTF-8 (vacío si no tiene)
+ * long  timestamp del mensaje (epoch millis)
+ * long  secuencia del mensaje
+ * int   contenido + UTF-8
+ * </pre>
+ * Una longitud 0 marca el final de los datos escritos en un segmento
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class JournalCodec {
+
+    /**
+     * Bytes de cabecera de cada registro (longitud y CRC)
+     */
+    public static final int HEADER_SIZE = 8;
+
+    private static final int FIXED_BODY_SIZE = 8 + 8 + 1 + 2 + 2 + 2 + 8 + 8 + 4;
+    private static final MessageType[] TYPES = MessageType.values();
+
+    private JournalCodec() {
+    }
+
+    /**
+     * Codifica un mensaje como registro completo (cabecera incluida)
+     *
+     * @param sequence Secuencia asignada
+     * @param appendedAt Instante de escritura
+     * @param destination Destino del mensaje
+     * @param message Mensaje a codificar
+     * @return Registro listo para escribir
+     */
+    public static byte[] encode(long sequence, long appendedAt, String destination, ChatMessage message) {
+        byte[] destinationBytes = utf8(destination);
+        byte[] senderBytes = utf8(message.getSender());
+        byte[] nodeBytes = utf8(message.getNode());
+        byte[] contentBytes = utf8(message.getContent());
+
+        checkShort(destinationBytes, "destino");
+        checkShort(senderBytes, "remitente");
+        checkShort(nodeBytes, "nodo");
+
+        int bodySize = FIXED_BODY_SIZE + destinationBytes.length + senderBytes.length + nodeBytes.length
+                + contentBytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+
+        buffer.putInt(4 + bodySize);
+        buffer.putInt(0);
+        buffer.putLong(sequence);
+        buffer.putLong(appendedAt);
+        buffer.put(message.getType() == null ? -1 : (byte) message.getType().ordinal());
+        buffer.putShort((short) destinationBytes.length).put(destinationBytes);
+        buffer.putShort((short) senderBytes.length).put(senderBytes);
+        buffer.putShort((short) nodeBytes.length).put(nodeBytes);
+        buffer.putLong(message.getTimestamp());
+        buffer.putLong(message.getSequence());
+        buffer.putInt(contentBytes.length).put(contentBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, bodySize);
+        buffer.putInt(4, (int) crc.getValue());
+
+        return buffer.array();
+    }
+
+    /**
+     * Comprueba que en la posición indicada haya un registro completo y válido
+     *
+     * @param buffer Buffer del segmento
+     * @param position Inicio del registro
+     * @param limit Límite de lectura
+     * @return Tamaño total del registro, o -1 si no hay un registro válido
+     */
+    static int validRecordSize(ByteBuffer buffer, int position, int limit) {
+        if (position + HEADER_SIZE > limit) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length < 4 + FIXED_BODY_SIZE || position + 4 + length > limit) {
+            return -1;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(position + 4 + length).position(position + HEADER_SIZE);
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            return -1;
+        }
+        return 4 + length;
+    }
+
+    /**
+     * Lee la secuencia de un registro sin decodificarlo
+     */
+    static long sequenceAt(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + HEADER_SIZE);
+    }
+
+    /**
+     * Lee el instante de escritura de un registro sin decodificarlo
+     */
+    static long appendedAtAt(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + HEADER_SIZE + 8);
+    }
+
+    /**
+     * Decodifica el registro que empieza en la posición indicada
+     *
+     * @param buffer Buffer del segmento
+     * @param position Inicio del registro
+     * @return Registro decodificado
+     */
+    static JournalRecord decode(ByteBuffer buffer, int position) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(position + HEADER_SIZE);
+
+        long sequence = in.getLong();
+        long appendedAt = in.getLong();
+        byte type = in.get();
+        String destination = readString(in, in.getShort() & 0xFFFF);
+        String sender = readString(in, in.getShort() & 0xFFFF);
+        String node = readString(in, in.getShort() & 0xFFFF);
+        long timestamp = in.getLong();
+        long messageSequence = in.getLong();
+        String content = readString(in, in.getInt());
+
+        ChatMessage message = new ChatMessage();
+        message.setType(type < 0 ? null : TYPES[type]);
+        message.setSender(sender);
+        message.setContent(content);
+        message.setTimestamp(timestamp);
+        message.setSequence(messageSequence);
+        message.setNode(node.isEmpty() ? null : node);
+
+        return new JournalRecord(sequence, appendedAt, destination, message);
+    }
+
+    private static String readString(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void checkShort(byte[] bytes, String field) {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Campo demasiado largo para el journal: " + field);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+
+/**
+ * Entrada leída del journal de mensajes
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class JournalRecord {
+
+    private final long sequence;
+    private final long appendedAt;
+    private final String destination;
+    private final ChatMessage message;
+
+    /**
+     * Constructor con parámetros
+     *
+     * @param sequence Posición del mensaje en el journal
+     * @param appendedAt Instante de escritura en milisegundos desde epoch
+     * @param destination Destino al que se envió el mensaje
+     * @param message Mensaje almacenado
+     */
+    public JournalRecord(long sequence, long appendedAt, String destination, ChatMessage message) {
+        this.sequence = sequence;
+        this.appendedAt = appendedAt;
+        this.destination = destination;
+        this.message = message;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getAppendedAt() {
+        return appendedAt;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public ChatMessage getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.chat_websocket.history;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Segmento del journal respaldado por un archivo mapeado en memoria
+ * El journal y cada lectura en curso mantienen una referencia; al descartarse por retención,
+ * el segmento se cierra y se borra cuando se libera la última. El JDK no permite desmapear
+ * un buffer de forma explícita, así que el mapeo lo libera el GC cuando deja de alcanzarse
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+final class JournalSegment {
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalSegment.class);
+
+    private final Path path;
+    private final long baseSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private volatile int writePosition;
+    private int references = 1;
+
+    private JournalSegment(Path path, long baseSequence, FileChannel channel, MappedByteBuffer buffer, int size) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Crea un segmento nuevo que comienza en la secuencia indicada
+     */
+    static JournalSegment create(Path directory, long baseSequence, int size) throws IOException {
+        Path path = directory.resolve(fileName(baseSequence));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new JournalSegment(path, baseSequence, channel, buffer, size);
+    }
+
+    /**
+     * Abre un segmento existente y localiza el final de los datos válidos
+     *
+     * @param path Archivo del segmento
+     * @param visitor Recibe la posición de cada registro válido encontrado
+     */
+    static JournalSegment open(Path path, RecordVisitor visitor) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = (int) channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        JournalSegment segment = new JournalSegment(path, parseBaseSequence(path), channel, buffer, size);
+
+        int position = 0;
+        int recordSize;
+        while ((recordSize = JournalCodec.validRecordSize(buffer, position, size)) > 0) {
+            visitor.visit(segment, position);
+            position += recordSize;
+        }
+        segment.writePosition = position;
+        return segment;
+    }
+
+    /**
+     * Indica si el nombre de archivo corresponde a un segmento
+     */
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    /**
+     * Espacio libre, reservando 4 bytes para la marca de fin
+     */
+    int remaining() {
+        return size - writePosition - 4;
+    }
+
+    /**
+     * Escribe un registro al final del segmento
+     *
+     * @param record Registro codificado
+     * @return Posición donde quedó el registro
+     */
+    int append(byte[] record) {
+        int position = writePosition;
+        buffer.put(position, record);
+        buffer.putInt(position + record.length, 0);
+        writePosition = position + record.length;
+        return position;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Reserva el segmento para una lectura
+     *
+     * @return false si el segmento ya fue cerrado y borrado
+     */
+    synchronized boolean retain() {
+        if (references == 0) {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    /**
+     * Libera una referencia; con la última el segmento se cierra y se borra del disco
+     */
+    void release() {
+        synchronized (this) {
+            if (--references > 0) {
+                return;
+            }
+        }
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            logger.warn("Error al borrar el segmento {}", path, ex);
+        }
+    }
+
+    /**
+     * Vista de solo lectura de los datos escritos
+     */
+    ByteBuffer readView() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    private static String fileName(long baseSequence) {
+        return String.format("%s%020d%s", PREFIX, baseSequence, SUFFIX);
+    }
+
+    private static long parseBaseSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Recibe cada registro válido encontrado al abrir un segmento
+     */
+    interface RecordVisitor {
+        void visit(JournalSegment segment, int position);
+    }
+}
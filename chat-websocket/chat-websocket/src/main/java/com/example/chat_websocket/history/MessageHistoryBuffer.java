@@ -0,0 +1,130 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Buffer circular de capacidad fija con los mensajes más recientes de un destino
+ * Las escrituras y lecturas no usan bloqueos: cada posición guarda la secuencia
+ * del mensaje que contiene y el lector descarta las posiciones que cambiaron mientras leía.
+ * Un escritor solo reclama su posición cuando la vuelta anterior ya está publicada, así dos
+ * escritores separados por la capacidad nunca se pisan
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class MessageHistoryBuffer {
+
+    private static final long WRITING = Long.MIN_VALUE;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<ChatMessage> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Crea el buffer; la capacidad se redondea a la siguiente potencia de dos
+     *
+     * @param capacity Número mínimo de mensajes retenidos
+     */
+    public MessageHistoryBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("La capacidad del historial debe ser positiva");
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        // Cada posición empieza como publicada en la vuelta -1
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i - this.capacity);
+        }
+    }
+
+    /**
+     * Agrega un mensaje, reemplazando al más antiguo si el buffer está lleno
+     *
+     * @param message Mensaje a retener
+     * @return Mensaje reemplazado, o null si el buffer aún no estaba lleno
+     */
+    public ChatMessage add(ChatMessage message) {
+        long sequence = head.getAndIncrement();
+        int index = (int) (sequence & mask);
+
+        // Espera a que se publique la vuelta anterior de la posición y la invalida antes de
+        // reemplazarla para que un lector concurrente la descarte
+        while (!sequences.compareAndSet(index, sequence - capacity, WRITING)) {
+            Thread.onSpinWait();
+        }
+        ChatMessage replaced = slots.getAndSet(index, message);
+        sequences.set(index, sequence);
+        return replaced;
+    }
+
+    /**
+     * Devuelve los últimos mensajes en orden de llegada
+     * Solo reserva la lista del resultado
+     *
+     * @param limit Número máximo de mensajes
+     * @return Mensajes del más antiguo al más reciente
+     */
+    public List<ChatMessage> snapshot(int limit) {
+        long end = head.get();
+        long start = Math.max(0, end - Math.min(limit, capacity));
+        List<ChatMessage> result = new ArrayList<>((int) (end - start));
+
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence & mask);
+            if (sequences.get(index) != sequence) {
+                continue;
+            }
+            ChatMessage message = slots.get(index);
+            if (sequences.get(index) == sequence && message != null) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estima la memoria ocupada por los mensajes retenidos
+     *
+     * @return Bytes aproximados
+     */
+    public long estimatedMemoryBytes() {
+        long bytes = 16L + 16L * capacity;
+        for (int i = 0; i < capacity; i++) {
+            ChatMessage message = slots.get(i);
+            if (message != null) {
+                bytes += estimateBytes(message);
+            }
+        }
+        return bytes;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Número total de mensajes agregados desde la creación del buffer
+     */
+    public long getTotalAdded() {
+        return head.get();
+    }
+
+    private static long estimateBytes(ChatMessage message) {
+        return 64L + stringBytes(message.getContent()) + stringBytes(message.getSender());
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0L : 40L + value.length();
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.search.MessageIndex;
+import com.example.chat_websocket.util.MessageSequencer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Servicio que mantiene el historial reciente de mensajes por destino
+ * y lo reenvía a los usuarios que se unen al chat
+ * Si el journal está habilitado, cada mensaje también se persiste y el historial
+ * reciente se recupera de él al iniciar. Si la búsqueda está habilitada, cada mensaje
+ * se encola además en el índice que atiende las consultas paginadas.
+ * Al alcanzar el máximo de destinos se descarta el historial del destino usado hace más tiempo.
+ * En modo clúster también se registran los mensajes recibidos de otros nodos, así una sesión que
+ * reanuda en otro nodo recibe lo que se perdió; si el historial ya no retiene todo lo que falta
+ * se le avisa con la cabecera history-reset
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Service
+public class MessageHistoryService {
+
+    /**
+     * Destino (relativo a /user) donde cada sesión recibe el historial
+     */
+    public static final String HISTORY_QUEUE = "/queue/history";
+
+    /**
+     * Cabecera del frame de historial que indica que faltan mensajes anteriores que ya no se retienen:
+     * el cliente descarta su posición y el frame trae el historial reciente
+     */
+    public static final String HISTORY_RESET_HEADER = "history-reset";
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageHistoryService.class);
+
+    /**
+     * El secuenciador lee un reloj cacheado que puede ir algo por detrás del de sistema
+     */
+    private static final long CLOCK_MARGIN_MILLIS = 1000;
+
+    private final ConcurrentMap<String, RetainedHistory> buffers = new ConcurrentHashMap<>();
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final ChatProperties.History properties;
+    private final MessageJournal journal;
+    private final MessageIndex index;
+    private final long startSequence =
+            (System.currentTimeMillis() - CLOCK_MARGIN_MILLIS) * MessageSequencer.SEQUENCES_PER_MILLI;
+    private boolean restoring;
+
+    /**
+     * Secuencia con la que se descartó cada destino, hasta max-destinations destinos
+     */
+    private final Map<String, Long> evicted = new LinkedHashMap<>();
+
+    /**
+     * Secuencia más alta de los descartes que ya no caben en evicted: un destino sin historial
+     * pudo descartarse antes, así que solo está completo desde ella
+     */
+    private long forgottenEvictions;
+
+    /**
+     * Constructor sin índice de búsqueda
+     *
+     * @param messagingTemplate Template para enviar mensajes
+     * @param properties Propiedades del chat
+     * @param journal Journal persistente (solo si chat.journal.enabled=true)
+     */
+    public MessageHistoryService(SimpMessageSendingOperations messagingTemplate, ChatProperties properties,
+                                 Optional<MessageJournal> journal) {
+        this(messagingTemplate, properties, journal, Optional.empty());
+    }
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param messagingTemplate Template para enviar mensajes
+     * @param properties Propiedades del chat
+     * @param journal Journal persistente (solo si chat.journal.enabled=true)
+     * @param index Índice de búsqueda (salvo chat.search.enabled=false)
+     */
+    @Autowired
+    public MessageHistoryService(SimpMessageSendingOperations messagingTemplate, ChatProperties properties,
+                                 Optional<MessageJournal> journal, Optional<MessageIndex> index) {
+        this.messagingTemplate = messagingTemplate;
+        this.properties = properties.getHistory();
+        this.journal = journal.orElse(null);
+        this.index = index.orElse(null);
+
+        if (this.journal != null) {
+            restoring = true;
+            for (JournalRecord record : this.journal.readLast(this.properties.getCapacity())) {
+                retain(record.getDestination(), record.getMessage());
+                if (this.index != null) {
+                    this.index.offer(record.getDestination(), record.getMessage());
+                }
+            }
+            restoring = false;
+        }
+    }
+
+    /**
+     * Registra un mensaje en el historial de su destino
+     * Si se alcanzó el máximo de destinos se descarta el usado hace más tiempo
+     *
+     * @param destination Destino del mensaje
+     * @param message Mensaje enviado
+     */
+    public void record(String destination, ChatMessage message) {
+        retain(destination, message);
+        if (index != null) {
+            index.offer(destination, message);
+        }
+
+        if (journal != null) {
+            try {
+                journal.append(destination, message);
+            } catch (RuntimeException ex) {
+                logger.error("No se pudo persistir el mensaje en el journal", ex);
+            }
+        }
+    }
+
+    /**
+     * Registra un mensaje difundido por otro nodo del clúster
+     * Solo los mensajes de chat, igual que los que se registran al publicar en este nodo
+     *
+     * @param destination Destino del mensaje
+     * @param message Mensaje recibido del relay
+     */
+    public void recordRelayed(String destination, ChatMessage message) {
+        if (message.getType() == MessageType.CHAT && message.getNode() != null && message.getSequence() > 0) {
+            record(destination, message);
+        }
+    }
+
+    /**
+     * Devuelve los últimos mensajes de un destino
+     *
+     * @param destination Destino del historial
+     * @param limit Número máximo de mensajes
+     * @return Mensajes del más antiguo al más reciente
+     */
+    public List<ChatMessage> recent(String destination, int limit) {
+        RetainedHistory history = buffers.get(destination);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        history.touch();
+        return history.buffer.snapshot(limit);
+    }
+
+    private void retain(String destination, ChatMessage message) {
+        RetainedHistory history = buffers.get(destination);
+        if (history == null) {
+            if (buffers.size() >= properties.getMaxDestinations()) {
+                evictLeastRecentlyUsed(message.getSequence());
+            }
+            history = buffers.computeIfAbsent(destination,
+                    key -> new RetainedHistory(new MessageHistoryBuffer(properties.getCapacity()),
+                            completeFrom(key, message)));
+        }
+        history.touch();
+        ChatMessage replaced = history.buffer.add(message);
+        if (replaced != null) {
+            history.dropped(replaced);
+        }
+    }
+
+    /**
+     * Secuencia desde la que estará completo el historial que se crea para un destino
+     * Un destino recuperado del journal o descartado antes solo tiene desde su primer mensaje;
+     * el resto, desde el arranque del nodo
+     */
+    private long completeFrom(String destination, ChatMessage message) {
+        if (restoring) {
+            return message.getSequence();
+        }
+        synchronized (evicted) {
+            if (evicted.remove(destination) != null) {
+                return message.getSequence();
+            }
+            return Math.max(startSequence, forgottenEvictions);
+        }
+    }
+
+    /**
+     * Descarta el historial del destino usado hace más tiempo
+     * Solo recorre los destinos cuando hay que crear uno nuevo con el máximo alcanzado
+     *
+     * @param sequence Secuencia del mensaje que provoca el descarte
+     */
+    private void evictLeastRecentlyUsed(long sequence) {
+        Map.Entry<String, RetainedHistory> oldest = null;
+        for (Map.Entry<String, RetainedHistory> entry : buffers.entrySet()) {
+            if (oldest == null || entry.getValue().lastUsed - oldest.getValue().lastUsed < 0) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && buffers.remove(oldest.getKey(), oldest.getValue())) {
+            rememberEviction(oldest.getKey(), sequence);
+            logger.debug("Límite de destinos con historial alcanzado, se descarta: {}", oldest.getKey());
+        }
+    }
+
+    /**
+     * Recuerda el destino descartado para que, si vuelve a recibir mensajes, su historial solo
+     * esté completo desde el primero nuevo; al pasar de max-destinations se olvida el descarte
+     * más antiguo y su secuencia pasa a acotar los destinos nuevos
+     */
+    private void rememberEviction(String destination, long sequence) {
+        synchronized (evicted) {
+            evicted.remove(destination);
+            evicted.put(destination, sequence);
+            if (evicted.size() > properties.getMaxDestinations()) {
+                Map.Entry<String, Long> eldest = evicted.entrySet().iterator().next();
+                forgottenEvictions = Math.max(forgottenEvictions, eldest.getValue());
+                evicted.remove(eldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * Envía a una sesión, en un único frame, los últimos mensajes de un destino
+     *
+     * @param sessionId Sesión que recibe el historial
+     * @param destination Destino del historial
+     */
+    public void replayTo(String sessionId, String destination) {
+        send(sessionId, recent(destination, properties.getReplaySize()));
+    }
+
+    /**
+     * Envía a una sesión que se reanuda solo los mensajes del destino que aún no recibió
+     * Se buscan en todo el historial retenido, no solo en los últimos replay-size. Si falta algún mensaje
+     * que el historial ya descartó, o el historial empezó después de la posición del cliente (nodo
+     * reiniciado o destino descartado), envía el historial reciente con la cabecera history-reset
+     *
+     * @param sessionId Sesión que recibe el historial
+     * @param destination Destino del historial
+     * @param since Última secuencia de cada nodo que recibió el cliente
+     * @return Número de mensajes reenviados, o -1 si se envió el historial reciente con history-reset
+     */
+    public int replaySince(String sessionId, String destination, ResumePosition since) {
+        RetainedHistory history = buffers.get(destination);
+        if (history == null || history.lost(since)) {
+            logger.debug("El historial de {} ya no retiene lo que perdió la sesión {}", destination, sessionId);
+            send(sessionId, recent(destination, properties.getReplaySize()), true);
+            return -1;
+        }
+
+        List<ChatMessage> missed = new ArrayList<>();
+        for (ChatMessage message : recent(destination, properties.getCapacity())) {
+            if (!since.covers(message)) {
+                missed.add(message);
+            }
+        }
+        send(sessionId, missed, false);
+        return missed.size();
+    }
+
+    private void send(String sessionId, List<ChatMessage> messages) {
+        send(sessionId, messages, false);
+    }
+
+    private void send(String sessionId, List<ChatMessage> messages, boolean reset) {
+        if (messages.isEmpty() && !reset) {
+            return;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        if (reset) {
+            accessor.setNativeHeader(HISTORY_RESET_HEADER, "true");
+        }
+        accessor.setLeaveMutable(true);
+
+        messagingTemplate.convertAndSendToUser(sessionId, HISTORY_QUEUE, messages, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Número de destinos con historial
+     */
+    public int getDestinationCount() {
+        return buffers.size();
+    }
+
+    /**
+     * Número máximo de mensajes retenidos entre todos los destinos
+     */
+    public long getMaxRetainedMessages() {
+        return (long) properties.getMaxDestinations() * properties.getCapacity();
+    }
+
+    /**
+     * Estima la memoria ocupada por todos los historiales
+     *
+     * @return Bytes aproximados
+     */
+    public long estimatedMemoryBytes() {
+        long total = 0;
+        for (RetainedHistory history : buffers.values()) {
+            total += history.buffer.estimatedMemoryBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Historial de un destino con el instante de su último uso, la secuencia desde la que tiene
+     * todos los mensajes (salvo los descartados) y la secuencia más alta que descartó de cada nodo
+     */
+    private static final class RetainedHistory {
+        private final MessageHistoryBuffer buffer;
+        private final long completeFrom;
+        private final ConcurrentMap<String, Long> dropped = new ConcurrentHashMap<>(4);
+        private volatile long lastUsed = System.nanoTime();
+
+        /**
+         * @param completeFrom Arranque del nodo, o el primer mensaje si el historial se recuperó
+         * del journal o el destino se había descartado
+         */
+        private RetainedHistory(MessageHistoryBuffer buffer, long completeFrom) {
+            this.buffer = buffer;
+            this.completeFrom = completeFrom;
+        }
+
+        private void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        private void dropped(ChatMessage message) {
+            dropped.merge(message.getNode() != null ? message.getNode() : "", message.getSequence(), Math::max);
+        }
+
+        /**
+         * Si el cliente dejó de recibir antes de que el historial estuviera completo, lo anterior
+         * puede faltar aquí; si no vio un mensaje descartado, ya no se le puede reenviar
+         */
+        private boolean lost(ResumePosition since) {
+            if (since.latest() < completeFrom) {
+                return true;
+            }
+            for (Map.Entry<String, Long> entry : dropped.entrySet()) {
+                String node = entry.getKey().isEmpty() ? null : entry.getKey();
+                if (entry.getValue() > since.of(node)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Journal de mensajes de solo escritura al final, dividido en segmentos mapeados en memoria
+ * Las escrituras son secuenciales; el fsync se agrupa según el presupuesto de latencia
+ * y un índice disperso permite leer páginas sin recorrer todo el journal.
+ * Los instantes de escritura nunca retroceden, así el índice también puede buscarse por tiempo.
+ * Al abrir el journal y al pasar a un segmento nuevo se descartan los segmentos más antiguos
+ * que exceden el máximo o la antigüedad configurados
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class MessageJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageJournal.class);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final boolean syncOnAppend;
+    private final int maxSegments;
+    private final long retentionMillis;
+    private final List<JournalSegment> segments = new ArrayList<>();
+    private final List<IndexEntry> index = new ArrayList<>();
+    private final ScheduledExecutorService flusher;
+
+    private JournalSegment active;
+    private long firstSequence;
+    private long nextSequence;
+    private long lastAppendedAt;
+    private boolean dirty;
+
+    /**
+     * Abre (o crea) el journal sin límite de retención
+     *
+     * @param directory Directorio de los segmentos
+     * @param segmentSize Tamaño de cada segmento en bytes
+     * @param indexInterval Cada cuántos registros se guarda una entrada de índice
+     * @param fsyncInterval Presupuesto de latencia del fsync agrupado; cero sincroniza cada escritura
+     */
+    public MessageJournal(Path directory, int segmentSize, int indexInterval, Duration fsyncInterval) {
+        this(directory, segmentSize, indexInterval, fsyncInterval, Integer.MAX_VALUE, Duration.ZERO);
+    }
+
+    /**
+     * Abre (o crea) el journal y reconstruye el índice recorriendo los segmentos
+     *
+     * @param directory Directorio de los segmentos
+     * @param segmentSize Tamaño de cada segmento en bytes
+     * @param indexInterval Cada cuántos registros se guarda una entrada de índice
+     * @param fsyncInterval Presupuesto de latencia del fsync agrupado; cero sincroniza cada escritura
+     * @param maxSegments Número máximo de segmentos conservados, incluido el activo
+     * @param retention Antigüedad máxima de los mensajes conservados; cero no la limita
+     */
+    public MessageJournal(Path directory, int segmentSize, int indexInterval, Duration fsyncInterval,
+                          int maxSegments, Duration retention) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = Math.max(1, indexInterval);
+        this.syncOnAppend = fsyncInterval.isZero();
+        this.maxSegments = Math.max(1, maxSegments);
+        this.retentionMillis = retention.toMillis();
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+            synchronized (this) {
+                enforceRetention();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo abrir el journal en " + directory, ex);
+        }
+
+        if (syncOnAppend) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMicros = Math.max(1, fsyncInterval.toNanos() / 1000);
+            flusher.scheduleWithFixedDelay(this::flush, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+        }
+
+        logger.info("Journal abierto en {}: {} segmentos, {} mensajes", directory, segments.size(),
+                nextSequence - firstSequence);
+    }
+
+    /**
+     * Agrega un mensaje al final del journal
+     *
+     * @param destination Destino del mensaje
+     * @param message Mensaje enviado
+     * @return Secuencia asignada
+     */
+    public long append(String destination, ChatMessage message) {
+        synchronized (this) {
+            // Se toma dentro del bloqueo y sin retroceder: la búsqueda por tiempo asume un índice monótono
+            long appendedAt = Math.max(System.currentTimeMillis(), lastAppendedAt);
+            long sequence = nextSequence;
+            byte[] record = JournalCodec.encode(sequence, appendedAt, destination, message);
+            if (record.length + 4 > segmentSize) {
+                throw new IllegalArgumentException("Mensaje demasiado grande para el journal: " + record.length + " bytes");
+            }
+
+            boolean rolled = active == null || active.remaining() < record.length;
+            if (rolled) {
+                roll(sequence);
+            }
+
+            int position = active.append(record);
+            if ((sequence - active.getBaseSequence()) % indexInterval == 0) {
+                index.add(new IndexEntry(sequence, appendedAt, active, position));
+            }
+            nextSequence = sequence + 1;
+            lastAppendedAt = appendedAt;
+            if (rolled) {
+                enforceRetention();
+            }
+
+            if (syncOnAppend) {
+                active.force();
+            } else {
+                dirty = true;
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Lee los últimos mensajes del journal
+     *
+     * @param limit Número máximo de mensajes
+     * @return Registros en orden ascendente de secuencia
+     */
+    public List<JournalRecord> readLast(int limit) {
+        return readBefore(Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * Lee los mensajes anteriores a una secuencia (página hacia atrás)
+     *
+     * @param sequence Secuencia exclusiva desde la que se pagina
+     * @param limit Número máximo de mensajes
+     * @return Registros en orden ascendente de secuencia
+     */
+    public List<JournalRecord> readBefore(long sequence, int limit) {
+        long end;
+        long start;
+        synchronized (this) {
+            end = Math.min(sequence, nextSequence);
+            start = Math.max(firstSequence, end - limit);
+        }
+        return readRange(start, end);
+    }
+
+    /**
+     * Lee los mensajes escritos antes de un instante
+     *
+     * @param epochMillis Instante exclusivo
+     * @param limit Número máximo de mensajes
+     * @return Registros en orden ascendente de secuencia
+     */
+    public List<JournalRecord> readBeforeTime(long epochMillis, int limit) {
+        IndexEntry from;
+        long end;
+        synchronized (this) {
+            int slot = floorIndex(entry -> entry.appendedAt < epochMillis);
+            if (slot < 0) {
+                return Collections.emptyList();
+            }
+            from = index.get(slot);
+            end = nextSequence;
+        }
+
+        // Avanza desde la entrada del índice hasta el primer mensaje posterior al instante
+        long boundary = from.sequence;
+        for (JournalRecord record : readRange(from.sequence, Math.min(end, from.sequence + indexInterval + 1))) {
+            if (record.getAppendedAt() >= epochMillis) {
+                break;
+            }
+            boundary = record.getSequence() + 1;
+        }
+        return readBefore(boundary, limit);
+    }
+
+    /**
+     * Fuerza al disco los datos pendientes del segmento activo
+     */
+    public void flush() {
+        JournalSegment segment;
+        synchronized (this) {
+            if (!dirty || active == null) {
+                return;
+            }
+            segment = active;
+            // Un roll concurrente puede descartar el segmento por retención mientras se fuerza
+            if (!segment.retain()) {
+                return;
+            }
+            dirty = false;
+        }
+        try {
+            segment.force();
+        } finally {
+            segment.release();
+        }
+    }
+
+    public synchronized long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            for (JournalSegment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException ex) {
+                    logger.warn("Error al cerrar el segmento {}", segment.getPath(), ex);
+                }
+            }
+        }
+    }
+
+    private List<JournalRecord> readRange(long start, long end) {
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+
+        IndexEntry entry;
+        List<JournalSegment> candidates;
+        synchronized (this) {
+            int slot = floorIndex(e -> e.sequence <= start);
+            if (slot < 0) {
+                return Collections.emptyList();
+            }
+            entry = index.get(slot);
+            candidates = new ArrayList<>();
+            // La retención solo descarta segmentos con el bloqueo tomado; si alguno ya se liberó,
+            // la lectura se detiene antes de él
+            for (JournalSegment segment : segments.subList(segments.indexOf(entry.segment), segments.size())) {
+                if (!segment.retain()) {
+                    break;
+                }
+                candidates.add(segment);
+            }
+        }
+
+        List<JournalRecord> result = new ArrayList<>((int) (end - start));
+        try {
+            int position = entry.position;
+            for (JournalSegment segment : candidates) {
+                ByteBuffer view = segment.readView();
+                int limit = segment.getWritePosition();
+                while (position < limit) {
+                    long sequence = JournalCodec.sequenceAt(view, position);
+                    if (sequence >= end) {
+                        return result;
+                    }
+                    if (sequence >= start) {
+                        result.add(JournalCodec.decode(view, position));
+                    }
+                    position += 4 + view.getInt(position);
+                }
+                position = 0;
+            }
+            return result;
+        } finally {
+            candidates.forEach(JournalSegment::release);
+        }
+    }
+
+    /**
+     * Búsqueda binaria de la última entrada del índice que cumple la condición
+     * (la condición debe ser monótona: verdadera al principio y falsa después)
+     */
+    private int floorIndex(Predicate<IndexEntry> condition) {
+        int low = 0;
+        int high = index.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (condition.test(index.get(mid))) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private void roll(long baseSequence) {
+        try {
+            if (active != null) {
+                active.force();
+            }
+            active = JournalSegment.create(directory, baseSequence, segmentSize);
+            segments.add(active);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo crear un segmento del journal", ex);
+        }
+    }
+
+    /**
+     * Descarta los segmentos más antiguos que exceden el máximo o cuyos mensajes superan la
+     * antigüedad configurada; el activo siempre se conserva. Debe llamarse con el bloqueo tomado
+     */
+    private void enforceRetention() {
+        long cutoff = retentionMillis > 0 ? System.currentTimeMillis() - retentionMillis : Long.MIN_VALUE;
+        // Todos los registros de un segmento son anteriores al primero del siguiente
+        while (segments.size() > 1 && (segments.size() > maxSegments || firstAppendedAt(segments.get(1)) < cutoff)) {
+            JournalSegment oldest = segments.remove(0);
+            index.removeIf(entry -> entry.segment == oldest);
+            firstSequence = segments.get(0).getBaseSequence();
+            oldest.release();
+            logger.info("Segmento del journal descartado por retención: {}", oldest.getPath());
+        }
+    }
+
+    private long firstAppendedAt(JournalSegment segment) {
+        for (IndexEntry entry : index) {
+            if (entry.segment == segment) {
+                return entry.appendedAt;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(JournalSegment::isSegmentFile).sorted().toList();
+        }
+
+        long[] lastSequence = {-1L};
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.open(file, (opened, position) -> {
+                ByteBuffer view = opened.readView();
+                long sequence = JournalCodec.sequenceAt(view, position);
+                long appendedAt = JournalCodec.appendedAtAt(view, position);
+                if ((sequence - opened.getBaseSequence()) % indexInterval == 0) {
+                    index.add(new IndexEntry(sequence, appendedAt, opened, position));
+                }
+                lastSequence[0] = sequence;
+                lastAppendedAt = Math.max(lastAppendedAt, appendedAt);
+            });
+            segments.add(segment);
+        }
+
+        if (!segments.isEmpty()) {
+            active = segments.get(segments.size() - 1);
+            firstSequence = segments.get(0).getBaseSequence();
+            nextSequence = Math.max(lastSequence[0] + 1, active.getBaseSequence());
+        }
+    }
+
+    /**
+     * Entrada del índice disperso: ubicación de un registro concreto
+     */
+    private static final class IndexEntry {
+        private final long sequence;
+        private final long appendedAt;
+        private final JournalSegment segment;
+        private final int position;
+
+        private IndexEntry(long sequence, long appendedAt, JournalSegment segment, int position) {
+            this.sequence = sequence;
+            this.appendedAt = appendedAt;
+            this.segment = segment;
+            this.position = position;
+        }
+    }
+}
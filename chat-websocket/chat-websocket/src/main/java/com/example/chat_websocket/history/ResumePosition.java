@@ -0,0 +1,116 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.util.MessageSequencer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Posición de un cliente que reanuda en el historial de un destino: la última secuencia que vio de cada nodo
+ * Llega en la cabecera last-sequence como "nodo:secuencia,nodo:secuencia"; un número sin nodo vale para
+ * todos. De un nodo del que el cliente no vio nada se dan por vistos los mensajes anteriores a su secuencia
+ * más alta menos UNSEEN_NODE_MARGIN: las secuencias parten del reloj de cada nodo y el margen cubre la
+ * diferencia entre relojes
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class ResumePosition {
+
+    /**
+     * Número máximo de nodos que se aceptan en la cabecera
+     */
+    public static final int MAX_NODES = 16;
+
+    /**
+     * Margen, en secuencias, para los nodos de los que el cliente no vio ningún mensaje (5 segundos)
+     */
+    public static final long UNSEEN_NODE_MARGIN = 5_000 * MessageSequencer.SEQUENCES_PER_MILLI;
+
+    private static final int MAX_HEADER_LENGTH = 2048;
+
+    private final Map<String, Long> positions;
+    private final long latest;
+    private final long unseen;
+
+    private ResumePosition(Map<String, Long> positions, long latest, long unseen) {
+        this.positions = positions;
+        this.latest = latest;
+        this.unseen = unseen;
+    }
+
+    /**
+     * Interpreta la cabecera last-sequence
+     *
+     * @param header Valor de la cabecera; puede ser nulo
+     * @return Posición del cliente, o null si falta o no es válida
+     */
+    public static ResumePosition parse(String header) {
+        if (header == null || header.isBlank() || header.length() > MAX_HEADER_LENGTH) {
+            return null;
+        }
+
+        try {
+            String value = header.trim();
+            if (value.indexOf(':') < 0) {
+                long sequence = Long.parseLong(value);
+                return sequence < 0 ? null : new ResumePosition(Map.of(), sequence, sequence);
+            }
+
+            String[] entries = value.split(",");
+            if (entries.length > MAX_NODES) {
+                return null;
+            }
+            Map<String, Long> positions = new HashMap<>(entries.length * 2);
+            long latest = 0;
+            for (String entry : entries) {
+                int colon = entry.lastIndexOf(':');
+                String node = entry.substring(0, Math.max(colon, 0)).trim();
+                long sequence = Long.parseLong(entry.substring(colon + 1).trim());
+                if (node.isEmpty() || sequence < 0) {
+                    return null;
+                }
+                positions.merge(node, sequence, Math::max);
+                latest = Math.max(latest, sequence);
+            }
+            return new ResumePosition(positions, latest, Math.max(0, latest - UNSEEN_NODE_MARGIN));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Última secuencia del nodo que el cliente ya tiene
+     *
+     * @param node Nodo; nulo para los mensajes sin nodo
+     */
+    public long of(String node) {
+        Long sequence = node != null ? positions.get(node) : null;
+        return sequence != null ? sequence : unseen;
+    }
+
+    /**
+     * Secuencia más alta que vio el cliente, de cualquier nodo
+     */
+    public long latest() {
+        return latest;
+    }
+
+    /**
+     * Indica si el cliente ya recibió el mensaje
+     */
+    public boolean covers(ChatMessage message) {
+        return message.getSequence() <= of(message.getNode());
+    }
+
+    @Override
+    public String toString() {
+        return "ResumePosition{" +
+                "positions=" + positions +
+                ", latest=" + latest +
+                ", unseen=" + unseen +
+                '}';
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.chat_websocket.metrics;
+
+
+import com.example.chat_websocket.model.MessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Métricas del chat publicadas en Micrometer (/actuator/metrics)
+ * Sesiones y suscripciones activas, mensajes por tipo y latencia del camino de recepción a difusión.
+ * Todos los medidores se registran al arrancar: en el camino de cada mensaje solo se actualizan
+ * contadores ya creados, sin etiquetas dinámicas; cada frame SEND solo lleva además el instante
+ * en que entró en el canal de entrada
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class ChatMetrics implements ExecutorChannelInterceptor {
+
+    public static final String SESSIONS = "chat.sessions.active";
+    public static final String SUBSCRIPTIONS = "chat.subscriptions.active";
+    public static final String MESSAGES = "chat.messages";
+    public static final String BROADCAST_LATENCY = "chat.broadcast.latency";
+    public static final String BATCH_SIZE = "chat.broadcast.batch.size";
+    public static final String COMPRESSION_RATIO = "chat.compression.ratio";
+    public static final String COMPRESSION_TIME = "chat.compression.time";
+    public static final String COMPRESSION_SKIPPED = "chat.compression.skipped";
+    public static final String SEARCH_QUERY_TIME = "chat.search.query.time";
+
+    /**
+     * Header interno con el instante (System.nanoTime) en que el frame SEND entró en el canal de entrada
+     */
+    public static final String RECEIVED_AT_HEADER = "chatReceivedAt";
+
+    private final Map<MessageType, Counter> messageCounters = new EnumMap<>(MessageType.class);
+    private final Timer broadcastLatency;
+    private final DistributionSummary batchSize;
+    private final DistributionSummary compressionRatio;
+    private final Timer compressionTime;
+    private final Counter compressionSkipped;
+    private final Timer searchQueryTime;
+    private final ConcurrentMap<String, AtomicInteger> subscriptionsBySession = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param registry Registro de métricas
+     */
+    public ChatMetrics(MeterRegistry registry) {
+        for (MessageType type : MessageType.values()) {
+            messageCounters.put(type, Counter.builder(MESSAGES)
+                    .description("Mensajes procesados por tipo")
+                    .tag("type", type.name().toLowerCase())
+                    .register(registry));
+        }
+        this.broadcastLatency = Timer.builder(BROADCAST_LATENCY)
+                .description("Tiempo desde que un frame SEND entra en el canal de entrada hasta que queda difundido")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .register(registry);
+        // count = frames difundidos en lote, total = mensajes que contenían
+        this.batchSize = DistributionSummary.builder(BATCH_SIZE)
+                .description("Mensajes por frame en las difusiones agrupadas")
+                .register(registry);
+        this.compressionRatio = DistributionSummary.builder(COMPRESSION_RATIO)
+                .description("Tamaño comprimido dividido por el original en los payloads comprimidos")
+                .register(registry);
+        this.compressionTime = Timer.builder(COMPRESSION_TIME)
+                .description("Tiempo de CPU de cada compresión deflate de un payload")
+                .register(registry);
+        this.compressionSkipped = Counter.builder(COMPRESSION_SKIPPED)
+                .description("Payloads enviados sin comprimir por no alcanzar el umbral")
+                .register(registry);
+        this.searchQueryTime = Timer.builder(SEARCH_QUERY_TIME)
+                .description("Duración de las consultas paginadas al índice del historial")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .register(registry);
+
+        Gauge.builder(SESSIONS, subscriptionsBySession, Map::size)
+                .description("Sesiones STOMP conectadas")
+                .register(registry);
+        Gauge.builder(SUBSCRIPTIONS, subscriptions, AtomicInteger::get)
+                .description("Suscripciones activas sumando todas las sesiones")
+                .register(registry);
+    }
+
+    /**
+     * Cuenta un mensaje del tipo indicado
+     *
+     * @param type Tipo de mensaje
+     */
+    public void recordMessage(MessageType type) {
+        if (type != null) {
+            messageCounters.get(type).increment();
+        }
+    }
+
+    /**
+     * Registra un frame difundido con varios mensajes agrupados
+     *
+     * @param messages Mensajes incluidos en el frame
+     */
+    public void recordBatch(int messages) {
+        batchSize.record(messages);
+    }
+
+    /**
+     * Registra la compresión de un payload
+     *
+     * @param originalBytes Tamaño sin comprimir
+     * @param compressedBytes Tamaño comprimido
+     * @param nanos Duración de la compresión en el hilo que la hizo
+     */
+    public void recordCompression(int originalBytes, int compressedBytes, long nanos) {
+        compressionRatio.record((double) compressedBytes / originalBytes);
+        compressionTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cuenta un payload que no se comprimió por estar bajo el umbral
+     */
+    public void recordCompressionSkipped() {
+        compressionSkipped.increment();
+    }
+
+    /**
+     * Registra la duración de una consulta al índice del historial
+     *
+     * @param nanos Duración de la consulta
+     */
+    public void recordSearchQuery(long nanos) {
+        searchQueryTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Marca cada frame SEND con el instante en que entra en el canal de entrada, antes de esperar
+     * en la cola de su ejecutor. Los interceptores propios van antes que el que vuelve inmutables
+     * los headers, así que normalmente se añade sin copiar el mensaje
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, MessageHeaderAccessor.class);
+        if (accessor != null && accessor.isMutable()) {
+            accessor.setHeader(RECEIVED_AT_HEADER, System.nanoTime());
+            return message;
+        }
+        SimpMessageHeaderAccessor copy = SimpMessageHeaderAccessor.wrap(message);
+        copy.setHeader(RECEIVED_AT_HEADER, System.nanoTime());
+        return MessageBuilder.createMessage(message.getPayload(), copy.getMessageHeaders());
+    }
+
+    /**
+     * Solo cuenta el handler de los métodos @MessageMapping, que es el que difunde: el broker
+     * y el de destinos de usuario también reciben cada frame SEND. Con el broker simple la
+     * difusión es síncrona: al volver el handler el mensaje ya está encolado para todos los suscriptores
+     */
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                                    Exception ex) {
+        if (handler instanceof SimpAnnotationMethodMessageHandler
+                && message.getHeaders().get(RECEIVED_AT_HEADER) instanceof Long receivedAt) {
+            broadcastLatency.record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Registra la sesión al completarse el handshake STOMP
+     *
+     * @param event Evento de conexión
+     */
+    @EventListener
+    public void handleSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            subscriptionsBySession.putIfAbsent(sessionId, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Da de baja la sesión y todas sus suscripciones
+     *
+     * @param event Evento de desconexión
+     */
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        AtomicInteger sessionSubscriptions = subscriptionsBySession.remove(event.getSessionId());
+        if (sessionSubscriptions != null) {
+            subscriptions.addAndGet(-sessionSubscriptions.getAndSet(0));
+        }
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        AtomicInteger sessionSubscriptions = sessionSubscriptions(event.getMessage());
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.incrementAndGet();
+            subscriptions.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        AtomicInteger sessionSubscriptions = sessionSubscriptions(event.getMessage());
+        if (sessionSubscriptions != null && sessionSubscriptions.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            subscriptions.decrementAndGet();
+        }
+    }
+
+    public int getActiveSessions() {
+        return subscriptionsBySession.size();
+    }
+
+    public int getActiveSubscriptions() {
+        return subscriptions.get();
+    }
+
+    private AtomicInteger sessionSubscriptions(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId != null ? subscriptionsBySession.get(sessionId) : null;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.chat_websocket.metrics;
+
+
+import com.example.chat_websocket.audit.AuditLog;
+import com.example.chat_websocket.dedup.MessageDeduplicator;
+import com.example.chat_websocket.ratelimit.InboundRateLimiter;
+import com.example.chat_websocket.ratelimit.PayloadSizeLimiter;
+import com.example.chat_websocket.search.MessageIndex;
+import com.example.chat_websocket.transport.OutboundQueueMonitor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publica en Micrometer la profundidad de las colas de los canales de clientes, de las colas
+ * de salida por sesión, de la auditoría y del índice de búsqueda, y los contadores del limitador de frecuencia
+ * y del descarte de reenvíos
+ * Todos los valores se leen al consultar las métricas, no en el camino de cada mensaje
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class QueueMetricsBinder implements MeterBinder {
+
+    public static final String CHANNEL_QUEUE = "chat.channel.queue.size";
+    public static final String CHANNEL_ACTIVE = "chat.channel.active.threads";
+    public static final String OUTBOUND_QUEUE = "chat.outbound.queue.depth";
+    public static final String OUTBOUND_DISCARDED = "chat.outbound.discarded";
+    public static final String OUTBOUND_FRAMES = "chat.outbound.frames";
+    public static final String OUTBOUND_DISCONNECTED = "chat.outbound.disconnected";
+    public static final String THROTTLED = "chat.ratelimit.throttled";
+    public static final String OVERSIZED = "chat.inbound.oversized";
+    public static final String AUDIT_QUEUE = "chat.audit.queue.size";
+    public static final String AUDIT_DROPPED = "chat.audit.dropped";
+    public static final String SEARCH_INDEXED = "chat.search.indexed";
+    public static final String SEARCH_QUEUE = "chat.search.queue.size";
+    public static final String SEARCH_DROPPED = "chat.search.dropped";
+    public static final String DEDUP_DUPLICATES = "chat.dedup.duplicates";
+    public static final String DEDUP_TRACKED = "chat.dedup.tracked";
+    public static final String DEDUP_EARLY_ROTATIONS = "chat.dedup.early.rotations";
+
+    private final ThreadPoolTaskExecutor inboundExecutor;
+    private final ThreadPoolTaskExecutor outboundExecutor;
+    private final OutboundQueueMonitor outboundQueueMonitor;
+    private final ObjectProvider<InboundRateLimiter> rateLimiter;
+    private final PayloadSizeLimiter payloadSizeLimiter;
+    private final AuditLog auditLog;
+    private final ObjectProvider<MessageIndex> messageIndex;
+    private final ObjectProvider<MessageDeduplicator> deduplicator;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param inboundExecutor Ejecutor del canal de entrada (perezoso: lo crea la configuración del broker)
+     * @param outboundExecutor Ejecutor del canal de salida (perezoso)
+     * @param outboundQueueMonitor Colas de salida por sesión
+     * @param rateLimiter Limitador de frecuencia (salvo chat.rate-limit.enabled=false)
+     * @param payloadSizeLimiter Descarte de los frames SEND demasiado grandes
+     * @param auditLog Registro de auditoría asíncrono
+     * @param messageIndex Índice de búsqueda del historial (salvo chat.search.enabled=false)
+     * @param deduplicator Descarte de reenvíos (salvo chat.dedup.enabled=false)
+     */
+    public QueueMetricsBinder(@Lazy @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inboundExecutor,
+                              @Lazy @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor,
+                              OutboundQueueMonitor outboundQueueMonitor,
+                              ObjectProvider<InboundRateLimiter> rateLimiter,
+                              PayloadSizeLimiter payloadSizeLimiter,
+                              AuditLog auditLog,
+                              ObjectProvider<MessageIndex> messageIndex,
+                              ObjectProvider<MessageDeduplicator> deduplicator) {
+        this.inboundExecutor = inboundExecutor;
+        this.outboundExecutor = outboundExecutor;
+        this.outboundQueueMonitor = outboundQueueMonitor;
+        this.rateLimiter = rateLimiter;
+        this.payloadSizeLimiter = payloadSizeLimiter;
+        this.auditLog = auditLog;
+        this.messageIndex = messageIndex;
+        this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindExecutor(registry, "inbound", inboundExecutor);
+        bindExecutor(registry, "outbound", outboundExecutor);
+
+        Gauge.builder(OUTBOUND_QUEUE, outboundQueueMonitor, OutboundQueueMonitor::getTotalQueueDepth)
+                .description("Mensajes pendientes de escribir sumando todas las sesiones")
+                .tag("statistic", "total")
+                .register(registry);
+        Gauge.builder(OUTBOUND_QUEUE, outboundQueueMonitor, OutboundQueueMonitor::getMaxQueueDepth)
+                .description("Mensajes pendientes de la sesión más atrasada")
+                .tag("statistic", "max")
+                .register(registry);
+        FunctionCounter.builder(OUTBOUND_DISCARDED, outboundQueueMonitor, OutboundQueueMonitor::getDroppedMessages)
+                .description("Mensajes descartados por la política de cliente lento")
+                .tag("reason", "dropped")
+                .register(registry);
+        FunctionCounter.builder(OUTBOUND_DISCARDED, outboundQueueMonitor, OutboundQueueMonitor::getCoalescedMessages)
+                .description("Mensajes descartados por la política de cliente lento")
+                .tag("reason", "coalesced")
+                .register(registry);
+        FunctionCounter.builder(OUTBOUND_FRAMES, outboundQueueMonitor, OutboundQueueMonitor::getWrittenFrames)
+                .description("Frames escritos en los sockets de los clientes")
+                .register(registry);
+        FunctionCounter.builder(OUTBOUND_DISCONNECTED, outboundQueueMonitor,
+                        OutboundQueueMonitor::getDisconnectedSessions)
+                .description("Sesiones cerradas por superar los límites de salida")
+                .register(registry);
+
+        Gauge.builder(AUDIT_QUEUE, auditLog, AuditLog::getQueueDepth)
+                .description("Eventos de auditoría pendientes de escribir")
+                .register(registry);
+        FunctionCounter.builder(AUDIT_DROPPED, auditLog, AuditLog::getDropped)
+                .description("Eventos de auditoría descartados con la cola llena")
+                .register(registry);
+
+        FunctionCounter.builder(OVERSIZED, payloadSizeLimiter, PayloadSizeLimiter::getRejected)
+                .description("Frames SEND descartados por superar el tamaño máximo del cuerpo")
+                .register(registry);
+
+        messageIndex.ifAvailable(index -> {
+            Gauge.builder(SEARCH_INDEXED, index, MessageIndex::getIndexedCount)
+                    .description("Mensajes retenidos en el índice de búsqueda")
+                    .register(registry);
+            Gauge.builder(SEARCH_QUEUE, index, MessageIndex::getQueueDepth)
+                    .description("Mensajes pendientes de indexar")
+                    .register(registry);
+            FunctionCounter.builder(SEARCH_DROPPED, index, MessageIndex::getDropped)
+                    .description("Mensajes no indexados con la cola llena")
+                    .register(registry);
+        });
+
+        deduplicator.ifAvailable(dedup -> {
+            FunctionCounter.builder(DEDUP_DUPLICATES, dedup, MessageDeduplicator::getDuplicates)
+                    .description("Reenvíos descartados por messageId repetido")
+                    .register(registry);
+            Gauge.builder(DEDUP_TRACKED, dedup, MessageDeduplicator::getTrackedIds)
+                    .description("Identificadores de mensaje recordados en la ventana")
+                    .register(registry);
+            FunctionCounter.builder(DEDUP_EARLY_ROTATIONS, dedup, MessageDeduplicator::getEarlyRotations)
+                    .description("Rotaciones adelantadas de la ventana por exceso de mensajes")
+                    .register(registry);
+        });
+
+        rateLimiter.ifAvailable(limiter -> {
+            FunctionCounter.builder(THROTTLED, limiter, InboundRateLimiter::getThrottledBySession)
+                    .description("Frames SEND rechazados por exceso de frecuencia")
+                    .tag("scope", "session")
+                    .register(registry);
+            FunctionCounter.builder(THROTTLED, limiter, InboundRateLimiter::getThrottledByUser)
+                    .description("Frames SEND rechazados por exceso de frecuencia")
+                    .tag("scope", "user")
+                    .register(registry);
+        });
+    }
+
+    private static void bindExecutor(MeterRegistry registry, String channel, ThreadPoolTaskExecutor executor) {
+        Gauge.builder(CHANNEL_QUEUE, executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Tareas en cola del ejecutor del canal de clientes")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder(CHANNEL_ACTIVE, executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Hilos ocupados del ejecutor del canal de clientes")
+                .tag("channel", channel)
+                .register(registry);
+    }
+}
@@ -1,10 +1,11 @@
 package com.example.chat_websocket.model;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import jakarta.validation.constraints.Size;
+import jakarta.validation.groups.Default;
 
 /**
  * Clase que representa un mensaje en el sistema de chat
@@ -14,22 +15,76 @@ import java.time.format.DateTimeFormatter;
  */
 public class ChatMessage {
 
+    /**
+     * Longitud máxima del contenido en caracteres
+     */
+    public static final int MAX_CONTENT_LENGTH = 2000;
+
+    /**
+     * Longitud máxima del nombre de usuario en caracteres
+     */
+    public static final int MAX_SENDER_LENGTH = 50;
+
+    /**
+     * Grupo de validación de los mensajes privados: exigen destinatario y no remitente,
+     * que el servidor toma de la sesión
+     */
+    public interface Private {
+    }
+
     @NotNull(message = "El tipo de mensaje no puede ser nulo")
     private MessageType type;
 
-    @NotBlank(message = "El contenido del mensaje no puede estar vacío")
+    @NotBlank(message = "El contenido del mensaje no puede estar vacío", groups = {Default.class, Private.class})
+    @Size(max = MAX_CONTENT_LENGTH, message = "El contenido del mensaje no puede superar "
+            + MAX_CONTENT_LENGTH + " caracteres", groups = {Default.class, Private.class})
     private String content;
 
     @NotBlank(message = "El nombre del remitente no puede estar vacío")
+    @Size(max = MAX_SENDER_LENGTH, message = "El nombre del remitente no puede superar "
+            + MAX_SENDER_LENGTH + " caracteres")
     private String sender;
 
-    private String timestamp;
+    /**
+     * Destinatario de un mensaje privado; nulo en los mensajes difundidos,
+     * que así no cargan el campo en cada frame
+     */
+    @NotBlank(message = "El mensaje privado necesita un destinatario", groups = Private.class)
+    @Size(max = MAX_SENDER_LENGTH, message = "El nombre del destinatario no puede superar "
+            + MAX_SENDER_LENGTH + " caracteres", groups = Private.class)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String recipient;
+
+    /**
+     * Identificador generado por el cliente; los reenvíos de un mismo mensaje llevan el mismo
+     * y el servidor los descarta. Se devuelve en la difusión para que el remitente reconozca su mensaje
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String messageId;
+
+    /**
+     * Marca de tiempo asignada por el servidor, en milisegundos desde epoch
+     * El formato legible lo genera el cliente
+     */
+    private long timestamp;
+
+    /**
+     * Número de secuencia monótono asignado por el servidor
+     */
+    private long sequence;
+
+    /**
+     * Nodo que asignó la secuencia; la secuencia solo es monótona dentro de cada nodo,
+     * así que un mensaje se identifica por el nodo y la secuencia
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String node;
 
     /**
      * Constructor por defecto
+     * No calcula la marca de tiempo: el servidor la asigna al procesar el mensaje
      */
     public ChatMessage() {
-        this.timestamp = generateTimestamp();
     }
 
     /**
@@ -39,15 +94,6 @@ public class ChatMessage {
         this.type = type;
         this.content = content;
         this.sender = sender;
-        this.timestamp = generateTimestamp();
-    }
-
-    /**
-     * Genera la marca de tiempo actual en formato legible
-     */
-    private String generateTimestamp() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        return LocalDateTime.now().format(formatter);
     }
 
     // Getters y Setters
@@ -58,9 +104,6 @@ public class ChatMessage {
 
     public void setType(MessageType type) {
         this.type = type;
-        if (this.timestamp == null) {
-            this.timestamp = generateTimestamp();
-        }
     }
 
     public String getContent() {
@@ -79,21 +122,57 @@ public class ChatMessage {
         this.sender = sender;
     }
 
-    public String getTimestamp() {
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public long getTimestamp() {
         return timestamp;
     }
 
-    public void setTimestamp(String timestamp) {
+    public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
 
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
     @Override
     public String toString() {
         return "ChatMessage{" +
                 "type=" + type +
                 ", content='" + content + '\'' +
                 ", sender='" + sender + '\'' +
-                ", timestamp='" + timestamp + '\'' +
+                ", recipient='" + recipient + '\'' +
+                ", messageId='" + messageId + '\'' +
+                ", timestamp=" + timestamp +
+                ", sequence=" + sequence +
+                ", node='" + node + '\'' +
                 '}';
     }
 }
\ No newline at end of file
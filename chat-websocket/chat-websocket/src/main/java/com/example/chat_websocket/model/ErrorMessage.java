@@ -0,0 +1,62 @@
+package com.example.chat_websocket.model;
+
+
+/**
+ * Aviso que el servidor envía a una sola sesión (/user/queue/errors)
+ * cuando rechaza uno de sus frames sin cerrar la conexión
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class ErrorMessage {
+
+    /**
+     * Código estable del motivo del rechazo (por ejemplo "RATE_LIMITED")
+     */
+    private String code;
+
+    /**
+     * Descripción legible del rechazo
+     */
+    private String message;
+
+    /**
+     * Constructor por defecto
+     */
+    public ErrorMessage() {
+    }
+
+    /**
+     * Constructor con parámetros
+     */
+    public ErrorMessage(String code, String message) {
+        this.code = code;
+        this.message = message;
+    }
+
+    // Getters y Setters
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "ErrorMessage{" +
+                "code='" + code + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
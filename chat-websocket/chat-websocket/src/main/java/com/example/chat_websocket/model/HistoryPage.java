@@ -0,0 +1,65 @@
+package com.example.chat_websocket.model;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Página del historial, con los mensajes del más antiguo al más reciente
+ * Para seguir retrocediendo se repite la consulta con before = nextCursor
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class HistoryPage {
+
+    /**
+     * Mensajes de la página, del más antiguo al más reciente
+     */
+    private List<ChatMessage> messages = new ArrayList<>();
+
+    /**
+     * Cursor de la página siguiente (más antigua); nulo si no hay más mensajes
+     */
+    private Long nextCursor;
+
+    /**
+     * Constructor por defecto
+     */
+    public HistoryPage() {
+    }
+
+    /**
+     * Constructor con parámetros
+     */
+    public HistoryPage(List<ChatMessage> messages, Long nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters y Setters
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessage> messages) {
+        this.messages = messages;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryPage{" +
+                "messages=" + messages.size() +
+                ", nextCursor=" + nextCursor +
+                '}';
+    }
+}
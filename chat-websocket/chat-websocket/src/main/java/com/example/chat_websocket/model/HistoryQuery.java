@@ -0,0 +1,124 @@
+package com.example.chat_websocket.model;
+
+
+/**
+ * Consulta de una página del historial (/app/history.page o GET /api/history)
+ * Todos los filtros son opcionales y se combinan entre sí
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class HistoryQuery {
+
+    /**
+     * Sala consultada; vacía para el canal público
+     */
+    private String room;
+
+    /**
+     * Cursor devuelto por la página anterior: solo se devuelven mensajes anteriores a él
+     */
+    private Long before;
+
+    /**
+     * Marca de tiempo mínima (inclusive), en milisegundos desde epoch
+     */
+    private Long from;
+
+    /**
+     * Marca de tiempo máxima (exclusiva), en milisegundos desde epoch
+     */
+    private Long to;
+
+    /**
+     * Solo mensajes de este remitente
+     */
+    private String sender;
+
+    /**
+     * Palabras que deben aparecer todas en el contenido
+     */
+    private String q;
+
+    /**
+     * Mensajes por página; si falta se usa chat.search.default-page-size
+     */
+    private Integer limit;
+
+    /**
+     * Constructor por defecto
+     */
+    public HistoryQuery() {
+    }
+
+    // Getters y Setters
+
+    public String getRoom() {
+        return room;
+    }
+
+    public void setRoom(String room) {
+        this.room = room;
+    }
+
+    public Long getBefore() {
+        return before;
+    }
+
+    public void setBefore(Long before) {
+        this.before = before;
+    }
+
+    public Long getFrom() {
+        return from;
+    }
+
+    public void setFrom(Long from) {
+        this.from = from;
+    }
+
+    public Long getTo() {
+        return to;
+    }
+
+    public void setTo(Long to) {
+        this.to = to;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public void setSender(String sender) {
+        this.sender = sender;
+    }
+
+    public String getQ() {
+        return q;
+    }
+
+    public void setQ(String q) {
+        this.q = q;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryQuery{" +
+                "room='" + room + '\'' +
+                ", before=" + before +
+                ", from=" + from +
+                ", to=" + to +
+                ", sender='" + sender + '\'' +
+                ", q='" + q + '\'' +
+                ", limit=" + limit +
+                '}';
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.chat_websocket.model;
+
+
+/**
+ * Confirmación que recibe solo la sesión que envió un mensaje con messageId (/user/queue/acks)
+ * Con ella el cliente deja de reenviar el mensaje
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class MessageAck {
+
+    /**
+     * Identificador generado por el cliente
+     */
+    private String messageId;
+
+    /**
+     * Secuencia asignada por el servidor; 0 si el mensaje era un reenvío ya procesado
+     */
+    private long sequence;
+
+    /**
+     * true si el mensaje ya se había recibido y no se volvió a difundir
+     */
+    private boolean duplicate;
+
+    /**
+     * Constructor por defecto
+     */
+    public MessageAck() {
+    }
+
+    /**
+     * Constructor con parámetros
+     */
+    public MessageAck(String messageId, long sequence, boolean duplicate) {
+        this.messageId = messageId;
+        this.sequence = sequence;
+        this.duplicate = duplicate;
+    }
+
+    // Getters y Setters
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    public void setDuplicate(boolean duplicate) {
+        this.duplicate = duplicate;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageAck{" +
+                "messageId='" + messageId + '\'' +
+                ", sequence=" + sequence +
+                ", duplicate=" + duplicate +
+                '}';
+    }
+}
@@ -20,5 +20,10 @@ public enum MessageType {
     /**
      * Notificación de que un usuario ha abandonado el chat
      */
-    LEAVE
+    LEAVE,
+
+    /**
+     * Mensaje privado que solo reciben las sesiones del destinatario y del remitente
+     */
+    PRIVATE
 }
@@ -0,0 +1,80 @@
+package com.example.chat_websocket.model;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cambios de presencia agrupados que se difunden en /topic/presence
+ * Solo contiene los usuarios que entraron o salieron desde el anuncio anterior
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class PresenceDelta {
+
+    /**
+     * Versión de la presencia tras aplicar este cambio; aumenta de uno en uno
+     */
+    private long version;
+
+    /**
+     * Usuarios que pasaron a estar en línea
+     */
+    private List<String> joined = new ArrayList<>();
+
+    /**
+     * Usuarios que dejaron de estar en línea
+     */
+    private List<String> left = new ArrayList<>();
+
+    /**
+     * Constructor por defecto
+     */
+    public PresenceDelta() {
+    }
+
+    /**
+     * Constructor con parámetros
+     */
+    public PresenceDelta(long version, List<String> joined, List<String> left) {
+        this.version = version;
+        this.joined = joined;
+        this.left = left;
+    }
+
+    // Getters y Setters
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<String> getJoined() {
+        return joined;
+    }
+
+    public void setJoined(List<String> joined) {
+        this.joined = joined;
+    }
+
+    public List<String> getLeft() {
+        return left;
+    }
+
+    public void setLeft(List<String> left) {
+        this.left = left;
+    }
+
+    @Override
+    public String toString() {
+        return "PresenceDelta{" +
+                "version=" + version +
+                ", joined=" + joined.size() +
+                ", left=" + left.size() +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.chat_websocket.model;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lista completa de usuarios en línea que se envía a quien la pide (/app/presence.list)
+ * Los cambios posteriores llegan como PresenceDelta con versión mayor
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class PresenceSnapshot {
+
+    /**
+     * Versión de la presencia en el momento de la foto
+     */
+    private long version;
+
+    /**
+     * Usuarios en línea
+     */
+    private List<String> users = new ArrayList<>();
+
+    /**
+     * Constructor por defecto
+     */
+    public PresenceSnapshot() {
+    }
+
+    /**
+     * Constructor con parámetros
+     */
+    public PresenceSnapshot(long version, List<String> users) {
+        this.version = version;
+        this.users = users;
+    }
+
+    // Getters y Setters
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<String> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<String> users) {
+        this.users = users;
+    }
+
+    @Override
+    public String toString() {
+        return "PresenceSnapshot{" +
+                "version=" + version +
+                ", users=" + users.size() +
+                '}';
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.chat_websocket.model;
+
+
+/**
+ * Token de reanudación que recibe la sesión al unirse (/user/queue/resume)
+ * Si la conexión se corta, el cliente lo presenta al reconectar junto con la última secuencia vista
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class ResumeGrant {
+
+    /**
+     * Token firmado por el servidor; el cliente no debe interpretarlo
+     */
+    private String token;
+
+    /**
+     * Milisegundos que el servidor espera antes de anunciar la salida; pasado ese plazo
+     * el cliente se une de nuevo sin token
+     */
+    private long graceMillis;
+
+    /**
+     * Constructor por defecto
+     */
+    public ResumeGrant() {
+    }
+
+    /**
+     * Constructor con parámetros
+     */
+    public ResumeGrant(String token, long graceMillis) {
+        this.token = token;
+        this.graceMillis = graceMillis;
+    }
+
+    // Getters y Setters
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public long getGraceMillis() {
+        return graceMillis;
+    }
+
+    public void setGraceMillis(long graceMillis) {
+        this.graceMillis = graceMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumeGrant{" +
+                "graceMillis=" + graceMillis +
+                '}';
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.chat_websocket.presence;
+
+
+/**
+ * Una sesión intentó unirse con un nombre que usan las sesiones abiertas de otro cliente
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class NameTakenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param username Nombre en uso
+     */
+    public NameTakenException(String username) {
+        super("El nombre " + username + " ya está en uso");
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.chat_websocket.presence;
+
+
+import com.example.chat_websocket.audit.AuditLog;
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.metrics.ChatMetrics;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.util.MessageSequencer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Difunde periódicamente los cambios agrupados del registro de presencia:
+ * un único PresenceDelta en /topic/presence y la notificación LEAVE de cada salida confirmada
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class PresenceBroadcaster implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceBroadcaster.class);
+
+    private final PresenceRegistry registry;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final MessageSequencer sequencer;
+    private final ChatMetrics metrics;
+    private final AuditLog auditLog;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param registry Registro de presencia
+     * @param messagingTemplate Template para difundir (perezoso: el broker se crea después)
+     * @param sequencer Asigna marca de tiempo y secuencia a los mensajes
+     * @param metrics Métricas del chat
+     * @param auditLog Registro de auditoría asíncrono
+     * @param properties Propiedades del chat
+     */
+    public PresenceBroadcaster(PresenceRegistry registry, @Lazy SimpMessageSendingOperations messagingTemplate,
+                               MessageSequencer sequencer, ChatMetrics metrics, AuditLog auditLog,
+                               ChatProperties properties) {
+        this.registry = registry;
+        this.messagingTemplate = messagingTemplate;
+        this.sequencer = sequencer;
+        this.metrics = metrics;
+        this.auditLog = auditLog;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long intervalMillis = Math.max(1, properties.getPresence().getFlushInterval().toMillis());
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Difunde los cambios acumulados desde la última vez
+     */
+    public void flush() {
+        try {
+            PresenceChanges changes = registry.drain();
+            for (PresenceChanges.Departure departure : changes.getDepartures()) {
+                announceLeave(departure);
+            }
+            if (changes.getDelta() != null) {
+                messagingTemplate.convertAndSend(PresenceRegistry.PRESENCE_TOPIC, changes.getDelta());
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Error al difundir los cambios de presencia: {}", ex.getMessage());
+        }
+    }
+
+    private void announceLeave(PresenceChanges.Departure departure) {
+        logger.info("Usuario desconectado: {}", departure.getUsername());
+
+        ChatMessage chatMessage = new ChatMessage();
+        chatMessage.setType(MessageType.LEAVE);
+        chatMessage.setSender(departure.getUsername());
+        chatMessage.setContent(departure.getUsername() + " ha abandonado el chat");
+        sequencer.stamp(chatMessage);
+        auditLog.record(departure.getDestination(), chatMessage);
+        metrics.recordMessage(MessageType.LEAVE);
+
+        // Envía la notificación solo a los miembros de la sala del usuario
+        messagingTemplate.convertAndSend(departure.getDestination(), chatMessage);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.chat_websocket.presence;
+
+
+import com.example.chat_websocket.model.PresenceDelta;
+
+import java.util.List;
+
+/**
+ * Resultado de un ciclo de agrupación del registro de presencia:
+ * salidas confirmadas por destino y cambio de presencia a difundir
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class PresenceChanges {
+
+    private final List<Departure> departures;
+    private final PresenceDelta delta;
+
+    PresenceChanges(List<Departure> departures, PresenceDelta delta) {
+        this.departures = departures;
+        this.delta = delta;
+    }
+
+    /**
+     * Usuarios que abandonaron un destino y no volvieron dentro del plazo
+     */
+    public List<Departure> getDepartures() {
+        return departures;
+    }
+
+    /**
+     * Cambio de presencia, o null si nadie entró ni salió
+     */
+    public PresenceDelta getDelta() {
+        return delta;
+    }
+
+    /**
+     * Salida confirmada de un usuario de un destino
+     */
+    public static final class Departure {
+
+        private final String username;
+        private final String destination;
+
+        Departure(String username, String destination) {
+            this.username = username;
+            this.destination = destination;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.chat_websocket.presence;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.PresenceDelta;
+import com.example.chat_websocket.model.PresenceSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro concurrente de presencia indexado por nombre de usuario
+ * Un usuario puede tener varias sesiones; está en línea mientras le quede alguna.
+ * Las salidas se confirman solo tras el plazo de debounce, de modo que una tormenta
+ * de reconexiones no produce anuncios de salida y entrada. Los cambios se acumulan
+ * y se entregan agrupados en {@link #drain()}.
+ * Un nombre con sesiones abiertas pertenece al cliente que lo registró primero (su clave,
+ * compartida por sus pestañas): otro cliente solo lo obtiene con un token de reanudación válido,
+ * así nadie recibe los mensajes privados de otro usuario registrándose con su nombre.
+ * La presencia es local a cada nodo
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class PresenceRegistry {
+
+    /**
+     * Destino donde se difunden los cambios de presencia
+     */
+    public static final String PRESENCE_TOPIC = "/topic/presence";
+
+    /**
+     * Cola privada donde se responde a /app/presence.list
+     */
+    public static final String PRESENCE_QUEUE = "/queue/presence";
+
+    /**
+     * Cabecera STOMP del frame de ingreso con la clave del cliente; la comparten sus pestañas
+     */
+    public static final String CLIENT_KEY_HEADER = "client-key";
+
+    /**
+     * Resultado de registrar una sesión con un nombre de usuario
+     */
+    public enum Admission {
+        /**
+         * Primera sesión del usuario en el destino: se anuncia la entrada
+         */
+        ANNOUNCE,
+        /**
+         * Otra sesión del mismo cliente en el destino o vuelta dentro del plazo: no se anuncia
+         */
+        SILENT,
+        /**
+         * El nombre está en uso por las sesiones abiertas de otro cliente: no se registra
+         */
+        NAME_TAKEN
+    }
+
+    private final long debounceNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, UserPresence> users = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> userBySession = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // Usuarios anunciados como en línea; solo se modifica al agrupar los cambios
+    private final Set<String> announced = ConcurrentHashMap.newKeySet();
+    private final Object drainLock = new Object();
+    private long version;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     */
+    @Autowired
+    public PresenceRegistry(ChatProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    PresenceRegistry(ChatProperties properties, LongSupplier nanoClock) {
+        this.debounceNanos = properties.getPresence().getDebounce().toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Registra una sesión del usuario en un destino sin comprobar a qué cliente pertenece el nombre
+     *
+     * @param username Nombre de usuario
+     * @param sessionId Sesión WebSocket
+     * @param destination Destino donde se anuncia la entrada (canal público o sala)
+     * @return true si hay que anunciar la entrada en el destino; false si el usuario ya estaba
+     * en él con otra sesión o vuelve dentro del plazo de debounce
+     */
+    public boolean connect(String username, String sessionId, String destination) {
+        return admit(username, sessionId, destination, null, true) == Admission.ANNOUNCE;
+    }
+
+    /**
+     * Registra una sesión del usuario en un destino si el nombre está libre o es del mismo cliente
+     * Mientras el nombre tenga sesiones abiertas pertenece a la clave de cliente que lo registró;
+     * sin sesiones abiertas queda libre para la siguiente
+     *
+     * @param username Nombre de usuario
+     * @param sessionId Sesión WebSocket
+     * @param destination Destino donde se anuncia la entrada (canal público o sala)
+     * @param owner Clave del cliente; null no comprueba ni cambia el propietario
+     * @param proven La sesión presentó un token de reanudación válido para el nombre
+     * @return Si hay que anunciar la entrada, o NAME_TAKEN si el nombre es de otro cliente
+     */
+    public Admission admit(String username, String sessionId, String destination, String owner, boolean proven) {
+        Admission admission;
+        String previousUser;
+        while (true) {
+            UserPresence presence = users.computeIfAbsent(username, name -> new UserPresence());
+            synchronized (presence) {
+                if (presence.removed) {
+                    continue;
+                }
+                if (owner != null) {
+                    if (!proven && presence.owner != null && !presence.owner.equals(owner)
+                            && presence.hasOtherSessions(sessionId)) {
+                        return Admission.NAME_TAKEN;
+                    }
+                    presence.owner = owner;
+                }
+
+                previousUser = userBySession.put(sessionId, username);
+                String previousDestination = presence.sessions.put(sessionId, destination);
+                dirty.add(username);
+                if (destination.equals(previousDestination)) {
+                    admission = Admission.SILENT;
+                } else {
+                    boolean returning = presence.pendingLeaves.remove(destination) != null;
+                    admission = !returning && presence.countAt(destination) == 1
+                            ? Admission.ANNOUNCE : Admission.SILENT;
+                }
+                break;
+            }
+        }
+
+        // Fuera del monitor: la sesión cambió de nombre y deja el anterior
+        if (previousUser != null && !previousUser.equals(username)) {
+            removeSession(previousUser, sessionId, debounceNanos);
+        }
+        return admission;
+    }
+
+    /**
+     * Da de baja la sesión; la salida se confirma cuando vence el plazo de debounce
+     *
+     * @param sessionId Sesión cerrada
+     */
+    public void disconnect(String sessionId) {
+        disconnect(sessionId, Duration.ZERO);
+    }
+
+    /**
+     * Da de baja la sesión con un plazo propio para confirmar la salida
+     * Se usa con las sesiones que pueden reanudarse: el cliente reconecta con espera exponencial
+     * y puede tardar más que el debounce en volver
+     *
+     * @param sessionId Sesión cerrada
+     * @param grace Plazo antes de anunciar la salida; nunca menor que el debounce
+     */
+    public void disconnect(String sessionId, Duration grace) {
+        String username = userBySession.remove(sessionId);
+        if (username != null) {
+            removeSession(username, sessionId, Math.max(debounceNanos, grace.toNanos()));
+        }
+    }
+
+    /**
+     * Indica si el usuario tiene alguna sesión abierta
+     */
+    public boolean isOnline(String username) {
+        UserPresence presence = users.get(username);
+        if (presence == null) {
+            return false;
+        }
+        synchronized (presence) {
+            return !presence.sessions.isEmpty();
+        }
+    }
+
+    /**
+     * Sesiones abiertas del usuario, sin recorrer el resto de usuarios
+     *
+     * @param username Nombre de usuario
+     * @return Copia de sus sesiones; vacía si no está conectado
+     */
+    public List<String> sessionsOf(String username) {
+        UserPresence presence = users.get(username);
+        if (presence == null) {
+            return List.of();
+        }
+        synchronized (presence) {
+            return new ArrayList<>(presence.sessions.keySet());
+        }
+    }
+
+    /**
+     * Usuarios anunciados como en línea
+     */
+    public int getOnlineCount() {
+        return announced.size();
+    }
+
+    /**
+     * Versión de la presencia anunciada
+     */
+    public long getVersion() {
+        synchronized (drainLock) {
+            return version;
+        }
+    }
+
+    /**
+     * Foto de la presencia anunciada, coherente con la versión de los deltas
+     */
+    public PresenceSnapshot snapshot() {
+        synchronized (drainLock) {
+            return new PresenceSnapshot(version, new ArrayList<>(announced));
+        }
+    }
+
+    /**
+     * Agrupa los cambios pendientes: salidas cuyo plazo venció y usuarios que entraron o salieron
+     *
+     * @return Cambios a difundir
+     */
+    public PresenceChanges drain() {
+        long now = nanoClock.getAsLong();
+        List<PresenceChanges.Departure> departures = new ArrayList<>();
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+
+        synchronized (drainLock) {
+            // Se quitan antes de procesar: una conexión concurrente los volverá a marcar
+            List<String> candidates = new ArrayList<>(dirty.size());
+            for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+                candidates.add(it.next());
+                it.remove();
+            }
+
+            List<String> pending = new ArrayList<>();
+            for (String username : candidates) {
+                UserPresence presence = users.get(username);
+                if (presence == null) {
+                    continue;
+                }
+                synchronized (presence) {
+                    if (drainUser(username, presence, now, departures, joined, left)) {
+                        pending.add(username);
+                    }
+                }
+            }
+            dirty.addAll(pending);
+
+            PresenceDelta delta = null;
+            if (!joined.isEmpty() || !left.isEmpty()) {
+                delta = new PresenceDelta(++version, joined, left);
+            }
+            return new PresenceChanges(departures, delta);
+        }
+    }
+
+    private boolean drainUser(String username, UserPresence presence, long now,
+                              List<PresenceChanges.Departure> departures, List<String> joined, List<String> left) {
+        boolean pending = false;
+        for (Iterator<Map.Entry<String, Long>> it = presence.pendingLeaves.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Long> leave = it.next();
+            if (now - leave.getValue() >= 0) {
+                departures.add(new PresenceChanges.Departure(username, leave.getKey()));
+                it.remove();
+            } else {
+                pending = true;
+            }
+        }
+
+        if (!presence.sessions.isEmpty()) {
+            if (announced.add(username)) {
+                joined.add(username);
+            }
+        } else if (now - presence.offlineUntil >= 0) {
+            if (announced.remove(username)) {
+                left.add(username);
+            }
+            if (presence.pendingLeaves.isEmpty()) {
+                presence.removed = true;
+                users.remove(username, presence);
+            }
+        } else {
+            pending = true;
+        }
+        return pending;
+    }
+
+    private void removeSession(String username, String sessionId, long graceNanos) {
+        UserPresence presence = users.get(username);
+        if (presence == null) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        synchronized (presence) {
+            String destination = presence.sessions.remove(sessionId);
+            if (destination == null) {
+                return;
+            }
+            if (presence.countAt(destination) == 0) {
+                presence.pendingLeaves.put(destination, now + graceNanos);
+            }
+            if (presence.sessions.isEmpty()) {
+                presence.offlineUntil = now + graceNanos;
+            }
+            dirty.add(username);
+        }
+    }
+
+    /**
+     * Sesiones de un usuario y salidas pendientes de confirmar; protegido por su propio monitor
+     */
+    private static final class UserPresence {
+
+        private final Map<String, String> sessions = new HashMap<>(4);
+        private final Map<String, Long> pendingLeaves = new HashMap<>(4);
+        private long offlineUntil;
+        private boolean removed;
+        private String owner;
+
+        private boolean hasOtherSessions(String sessionId) {
+            return sessions.size() > (sessions.containsKey(sessionId) ? 1 : 0);
+        }
+
+        private int countAt(String destination) {
+            int count = 0;
+            for (String sessionDestination : sessions.values()) {
+                if (sessionDestination.equals(destination)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
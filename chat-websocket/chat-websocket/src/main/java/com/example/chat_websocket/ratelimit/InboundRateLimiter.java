@@ -0,0 +1,282 @@
+package com.example.chat_websocket.ratelimit;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ErrorMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Interceptor del canal de entrada que limita la frecuencia de los frames SEND
+ * por sesión y por usuario (sumando todas sus sesiones)
+ * Los frames rechazados se descartan y la sesión recibe un aviso en /user/queue/errors;
+ * no se responde con un frame ERROR porque cerraría la conexión.
+ * El estado de la sesión solo se crea con su frame CONNECT: un frame tardío tras la desconexión
+ * no lo vuelve a crear y se descarta
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class InboundRateLimiter implements ChannelInterceptor {
+
+    /**
+     * Cola privada donde se avisa a la sesión de los frames rechazados
+     */
+    public static final String ERRORS_QUEUE = "/queue/errors";
+
+    /**
+     * Código del aviso de frames rechazados por exceso de frecuencia
+     */
+    public static final String RATE_LIMITED = "RATE_LIMITED";
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundRateLimiter.class);
+    private static final long NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final ChatProperties.RateLimit properties;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, SessionLimit> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, UserLimit> users = new ConcurrentHashMap<>();
+    private final LongAdder throttledBySession = new LongAdder();
+    private final LongAdder throttledByUser = new LongAdder();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     * @param messagingTemplate Template para avisar a la sesión (perezoso: el broker se crea después del canal)
+     */
+    @Autowired
+    public InboundRateLimiter(ChatProperties properties, @Lazy SimpMessageSendingOperations messagingTemplate) {
+        this(properties, messagingTemplate, System::nanoTime);
+    }
+
+    InboundRateLimiter(ChatProperties properties, SimpMessageSendingOperations messagingTemplate,
+                       LongSupplier nanoClock) {
+        this.messagingTemplate = messagingTemplate;
+        this.properties = properties.getRateLimit();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null) {
+            return message;
+        }
+
+        long now = nanoClock.getAsLong();
+        if (type == SimpMessageType.CONNECT) {
+            // La lambda captura el instante; solo se crea al ver la sesión por primera vez
+            sessions.computeIfAbsent(sessionId, id -> new SessionLimit(
+                    new TokenBucket(properties.getSessionRate(), properties.getSessionBurst(), now), now));
+            return message;
+        }
+        if (type != SimpMessageType.MESSAGE) {
+            return message;
+        }
+
+        SessionLimit session = sessions.get(sessionId);
+        if (session == null) {
+            logger.debug("Frame descartado de la sesión {}, ya desconectada", sessionId);
+            return null;
+        }
+
+        if (!session.bucket.tryAcquire(now)) {
+            throttledBySession.increment();
+            reject(sessionId, session, now);
+            return null;
+        }
+
+        UserLimit user = userOf(session, SimpMessageHeaderAccessor.getSessionAttributes(headers), now);
+        if (user != null && !user.bucket.tryAcquire(now)) {
+            throttledByUser.increment();
+            reject(sessionId, session, now);
+            return null;
+        }
+
+        return message;
+    }
+
+    /**
+     * Libera el estado de la sesión cuando se desconecta
+     *
+     * @param event Evento de desconexión
+     */
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        evict(event.getSessionId());
+    }
+
+    /**
+     * Elimina el bucket de la sesión y, si era la última sesión del usuario, también el del usuario
+     *
+     * @param sessionId Sesión desconectada
+     */
+    public void evict(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        SessionLimit session = sessions.remove(sessionId);
+        if (session != null) {
+            synchronized (session) {
+                session.evicted = true;
+                release(session.user);
+                session.user = null;
+            }
+        }
+    }
+
+    /**
+     * Frames rechazados por superar el límite de la sesión
+     */
+    public long getThrottledBySession() {
+        return throttledBySession.sum();
+    }
+
+    /**
+     * Frames rechazados por superar el límite del usuario
+     */
+    public long getThrottledByUser() {
+        return throttledByUser.sum();
+    }
+
+    /**
+     * Total de frames rechazados
+     */
+    public long getThrottledFrames() {
+        return getThrottledBySession() + getThrottledByUser();
+    }
+
+    /**
+     * Sesiones con estado de limitación
+     */
+    public int getTrackedSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Usuarios con estado de limitación
+     */
+    public int getTrackedUsers() {
+        return users.size();
+    }
+
+    /**
+     * Devuelve el límite del usuario de la sesión, enlazándolo la primera vez
+     * El nombre de usuario lo guarda ChatController en los atributos de la sesión
+     */
+    private UserLimit userOf(SessionLimit session, Map<String, Object> attributes, long now) {
+        Object username = attributes != null ? attributes.get("username") : null;
+        if (!(username instanceof String name)) {
+            return null;
+        }
+
+        UserLimit current = session.user;
+        if (current != null && current.name.equals(name)) {
+            return current;
+        }
+
+        // Solo se bloquea al enlazar o cambiar de usuario, no en cada frame
+        synchronized (session) {
+            // Un frame que llegó mientras la sesión se daba de baja no vuelve a enlazar al usuario
+            if (session.evicted) {
+                return null;
+            }
+            if (session.user == null || !session.user.name.equals(name)) {
+                release(session.user);
+                session.user = users.compute(name, (key, existing) -> {
+                    UserLimit limit = existing != null ? existing : new UserLimit(key,
+                            new TokenBucket(properties.getUserRate(), properties.getUserBurst(), now));
+                    limit.sessions++;
+                    return limit;
+                });
+            }
+            return session.user;
+        }
+    }
+
+    private void release(UserLimit user) {
+        if (user != null) {
+            users.computeIfPresent(user.name, (key, limit) -> --limit.sessions == 0 ? null : limit);
+        }
+    }
+
+    /**
+     * Avisa a la sesión como máximo una vez por segundo para no amplificar la inundación
+     */
+    private void reject(String sessionId, SessionLimit session, long now) {
+        long next = session.nextNotice.get();
+        if (now - next < 0 || !session.nextNotice.compareAndSet(next, now + NOTICE_INTERVAL_NANOS)) {
+            return;
+        }
+
+        logger.warn("Frames descartados por exceso de frecuencia en la sesión {}", sessionId);
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+
+        messagingTemplate.convertAndSendToUser(sessionId, ERRORS_QUEUE,
+                new ErrorMessage(RATE_LIMITED, "Estás enviando mensajes demasiado rápido"),
+                accessor.getMessageHeaders());
+    }
+
+    private static final class SessionLimit {
+
+        private final TokenBucket bucket;
+        private final AtomicLong nextNotice;
+        private volatile UserLimit user;
+
+        /**
+         * La sesión se desconectó; solo se modifica con el bloqueo de la sesión
+         */
+        private boolean evicted;
+
+        private SessionLimit(TokenBucket bucket, long nowNanos) {
+            this.bucket = bucket;
+            this.nextNotice = new AtomicLong(nowNanos);
+        }
+    }
+
+    private static final class UserLimit {
+
+        private final String name;
+        private final TokenBucket bucket;
+
+        /**
+         * Sesiones enlazadas; solo se modifica dentro de compute/computeIfPresent del mapa
+         */
+        private int sessions;
+
+        private UserLimit(String name, TokenBucket bucket) {
+            this.name = name;
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.chat_websocket.ratelimit;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ErrorMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Interceptor del canal de entrada que descarta los frames SEND con un cuerpo mayor que
+ * chat.transport.max-payload-size antes de que Jackson los deserialice y el controlador los sanitice
+ * El tamaño del frame completo ya lo acota el decodificador STOMP (chat.transport.message-size-limit);
+ * aquí se rechaza sin cerrar la conexión y la sesión recibe un aviso en /user/queue/errors
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class PayloadSizeLimiter implements ChannelInterceptor {
+
+    /**
+     * Código del aviso de frames rechazados por tamaño
+     */
+    public static final String PAYLOAD_TOO_LARGE = "PAYLOAD_TOO_LARGE";
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadSizeLimiter.class);
+
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final int maxPayloadBytes;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     * @param messagingTemplate Template para avisar a la sesión (perezoso: el broker se crea después del canal)
+     */
+    public PayloadSizeLimiter(ChatProperties properties, @Lazy SimpMessageSendingOperations messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+        this.maxPayloadBytes = (int) properties.getTransport().getMaxPayloadSize().toBytes();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload) || payload.length <= maxPayloadBytes) {
+            return message;
+        }
+
+        rejected.increment();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        logger.warn("Frame de {} bytes descartado en la sesión {}", payload.length, sessionId);
+        if (sessionId != null) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(sessionId);
+            accessor.setLeaveMutable(true);
+
+            messagingTemplate.convertAndSendToUser(sessionId, InboundRateLimiter.ERRORS_QUEUE,
+                    new ErrorMessage(PAYLOAD_TOO_LARGE, "El mensaje supera el tamaño máximo permitido"),
+                    accessor.getMessageHeaders());
+        }
+        return null;
+    }
+
+    /**
+     * Frames SEND descartados por tamaño
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.chat_websocket.ratelimit;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket sin bloqueos basado en GCRA (Generic Cell Rate Algorithm)
+ * Todo el estado es un único instante teórico de llegada que se avanza con CAS,
+ * así que no hay hilo de recarga ni contadores separados de tokens
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param ratePerSecond Tokens que se recargan por segundo
+     * @param burst Tokens disponibles de una sola vez
+     * @param nowNanos Instante actual; el bucket empieza lleno
+     */
+    TokenBucket(int ratePerSecond, int burst, long nowNanos) {
+        if (ratePerSecond < 1 || burst < 1) {
+            throw new IllegalArgumentException("La tasa y la ráfaga deben ser positivas");
+        }
+        this.emissionIntervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.burstToleranceNanos = emissionIntervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Consume un token si hay alguno disponible
+     *
+     * @param nowNanos Instante actual (System.nanoTime)
+     * @return true si se consumió el token
+     */
+    boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = (arrival - nowNanos < 0 ? nowNanos : arrival) + emissionIntervalNanos;
+            if (next - nowNanos > burstToleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+}
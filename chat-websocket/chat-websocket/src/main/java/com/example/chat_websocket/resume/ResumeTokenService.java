@@ -0,0 +1,311 @@
+package com.example.chat_websocket.resume;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ResumeGrant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Emite y verifica los tokens de reanudación de sesión
+ * El token lleva el usuario, el destino al que se unió, el nodo que lo emitió y el instante de emisión,
+ * firmados con HMAC-SHA256. Al reconectar, el cliente lo presenta en las cabeceras del frame de ingreso:
+ * si es válido recibe solo los mensajes posteriores a su última secuencia y su vuelta no se anuncia.
+ * Si lo emitió este mismo nodo, el registro de presencia decide si la salida llegó a anunciarse;
+ * si lo emitió otro nodo (o este antes de reiniciarse) aquí no se conoce la sesión anterior.
+ * Mientras la sesión sigue abierta su token se renueva cada medio plazo de gracia, así la antigüedad
+ * del token acota cuándo se cerró: la entrada con un token de otro nodo solo se omite si se renovó
+ * hace menos del plazo de gracia más el intervalo de renovación
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Service
+@ConditionalOnProperty(prefix = "chat.resume", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ResumeTokenService implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumeTokenService.class);
+
+    /**
+     * Cola privada donde la sesión recibe su token
+     */
+    public static final String RESUME_QUEUE = "/queue/resume";
+
+    /**
+     * Cabecera STOMP del frame de ingreso con el token de la sesión anterior
+     */
+    public static final String TOKEN_HEADER = "resume-token";
+
+    /**
+     * Cabecera STOMP del frame de ingreso con la última secuencia que recibió el cliente
+     */
+    public static final String LAST_SEQUENCE_HEADER = "last-sequence";
+
+    /**
+     * Atributo de sesión que marca las sesiones con token; su salida espera el plazo de gracia
+     */
+    public static final String RESUMABLE_ATTRIBUTE = "resumable";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 16;
+    private static final int MAX_TOKEN_LENGTH = 512;
+
+    /**
+     * Resultado de verificar un token
+     */
+    public enum Resumption {
+        /**
+         * Sin token o token inválido, caducado o de otro usuario o destino: ingreso normal
+         */
+        NONE,
+
+        /**
+         * Token emitido por este nodo
+         */
+        SAME_NODE,
+
+        /**
+         * Token emitido por otro nodo o por este antes de reiniciarse, renovado dentro del plazo
+         */
+        OTHER_NODE,
+
+        /**
+         * Token de otro nodo renovado por última vez hace más del plazo: se reenvían los mensajes
+         * perdidos pero la entrada se anuncia
+         */
+        LATE
+    }
+
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final Mac prototype;
+    private final String nodeEpoch;
+    private final long ttlMillis;
+    private final Duration grace;
+    private final long refreshMillis;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, Grant> granted = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     * @param messagingTemplate Template para enviar el token a la sesión
+     */
+    @Autowired
+    public ResumeTokenService(ChatProperties properties, SimpMessageSendingOperations messagingTemplate) {
+        this(properties, messagingTemplate, System::currentTimeMillis);
+    }
+
+    ResumeTokenService(ChatProperties properties, SimpMessageSendingOperations messagingTemplate,
+                       LongSupplier clock) {
+        ChatProperties.Resume resume = properties.getResume();
+        this.messagingTemplate = messagingTemplate;
+        this.ttlMillis = resume.getTtl().toMillis();
+        this.grace = resume.getGrace();
+        this.refreshMillis = Math.max(1, grace.toMillis() / 2);
+        this.clock = clock;
+
+        SecureRandom random = new SecureRandom();
+        byte[] key;
+        if (resume.getSecret() == null || resume.getSecret().isBlank()) {
+            key = new byte[32];
+            random.nextBytes(key);
+            logger.info("chat.resume.secret no configurado: los tokens de reanudación no sobreviven a un reinicio");
+        } else {
+            key = resume.getSecret().getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            this.prototype = Mac.getInstance(ALGORITHM);
+            this.prototype.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("No se pudo inicializar " + ALGORITHM, ex);
+        }
+
+        byte[] epoch = new byte[8];
+        random.nextBytes(epoch);
+        this.nodeEpoch = HexFormat.of().formatHex(epoch);
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-resume");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Emite un token para el usuario en el destino y lo envía solo a su sesión
+     *
+     * @param sessionId Sesión que se unió
+     * @param username Nombre de usuario
+     * @param destination Destino al que se unió (canal público o sala)
+     */
+    public void grant(String sessionId, String username, String destination) {
+        Grant grant = new Grant(username, destination);
+        granted.put(sessionId, grant);
+        send(sessionId, grant);
+    }
+
+    /**
+     * Deja de renovar el token de una sesión cerrada
+     *
+     * @param sessionId Sesión cerrada
+     */
+    public void revoke(String sessionId) {
+        granted.remove(sessionId);
+    }
+
+    /**
+     * Renueva el token de todas las sesiones abiertas
+     */
+    void refresh() {
+        try {
+            granted.forEach(this::send);
+        } catch (RuntimeException ex) {
+            logger.warn("Error al renovar los tokens de reanudación: {}", ex.getMessage());
+        }
+    }
+
+    private void send(String sessionId, Grant grant) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+
+        messagingTemplate.convertAndSendToUser(sessionId, RESUME_QUEUE,
+                new ResumeGrant(issue(grant.username, grant.destination), grace.toMillis()),
+                accessor.getMessageHeaders());
+    }
+
+    /**
+     * Crea un token firmado
+     *
+     * @param username Nombre de usuario
+     * @param destination Destino al que se unió
+     * @return Token en Base64 URL
+     */
+    public String issue(String username, String destination) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(username);
+            out.writeUTF(destination);
+            out.writeUTF(nodeEpoch);
+            out.writeLong(clock.getAsLong());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        byte[] payload = bytes.toByteArray();
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * Verifica un token para el usuario y el destino del nuevo ingreso
+     *
+     * @param token Token presentado; puede ser nulo
+     * @param username Usuario del nuevo ingreso
+     * @param destination Destino del nuevo ingreso
+     * @return Origen del token, o NONE si no sirve para reanudar
+     */
+    public Resumption verify(String token, String username, String destination) {
+        if (token == null || token.length() > MAX_TOKEN_LENGTH) {
+            return Resumption.NONE;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Resumption.NONE;
+        }
+
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            byte[] mac = decoder.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), mac)) {
+                logger.debug("Token de reanudación con firma inválida para {}", username);
+                return Resumption.NONE;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            String tokenUser = in.readUTF();
+            String tokenDestination = in.readUTF();
+            String tokenEpoch = in.readUTF();
+            long issuedAt = in.readLong();
+
+            long age = clock.getAsLong() - issuedAt;
+            if (!tokenUser.equals(username) || !tokenDestination.equals(destination) || age > ttlMillis) {
+                return Resumption.NONE;
+            }
+            if (nodeEpoch.equals(tokenEpoch)) {
+                return Resumption.SAME_NODE;
+            }
+            return age <= grace.toMillis() + refreshMillis ? Resumption.OTHER_NODE : Resumption.LATE;
+        } catch (IllegalArgumentException | IOException ex) {
+            return Resumption.NONE;
+        }
+    }
+
+    /**
+     * Plazo que se espera a una sesión reanudable antes de anunciar su salida
+     */
+    public Duration getGrace() {
+        return grace;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private byte[] sign(byte[] payload) {
+        Mac mac;
+        try {
+            mac = (Mac) prototype.clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ALGORITHM + " no admite clone()", ex);
+        }
+        return Arrays.copyOf(mac.doFinal(payload), MAC_BYTES);
+    }
+
+    /**
+     * Usuario y destino de un token emitido a una sesión abierta
+     */
+    private static final class Grant {
+        private final String username;
+        private final String destination;
+
+        private Grant(String username, String destination) {
+            this.username = username;
+            this.destination = destination;
+        }
+    }
+}
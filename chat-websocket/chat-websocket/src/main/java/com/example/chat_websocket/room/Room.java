@@ -0,0 +1,74 @@
+package com.example.chat_websocket.room;
+
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sala de chat con sus sesiones miembro
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class Room {
+
+    private final String name;
+    private final String destination;
+    private final Set<String> members = ConcurrentHashMap.newKeySet();
+    private volatile long lastActivity;
+
+    /**
+     * Constructor con parámetros
+     *
+     * @param name Nombre de la sala
+     * @param now Instante de creación en milisegundos
+     */
+    Room(String name, long now) {
+        this.name = name;
+        this.destination = RoomRegistry.destinationOf(name);
+        this.lastActivity = now;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Destino STOMP donde se publican los mensajes de la sala
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * Sesiones que pertenecen a la sala
+     */
+    public Set<String> getMembers() {
+        return Collections.unmodifiableSet(members);
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    void touch(long now) {
+        lastActivity = now;
+    }
+
+    boolean addMember(String sessionId) {
+        return members.add(sessionId);
+    }
+
+    boolean removeMember(String sessionId) {
+        return members.remove(sessionId);
+    }
+
+    boolean isIdle(long now, long idleTimeoutMillis) {
+        return members.isEmpty() && now - lastActivity >= idleTimeoutMillis;
+    }
+}
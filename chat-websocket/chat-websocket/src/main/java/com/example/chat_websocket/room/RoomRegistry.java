@@ -0,0 +1,184 @@
+package com.example.chat_websocket.room;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Registro concurrente de salas de chat y de las sesiones que pertenecen a cada una
+ * Las salas vacías que superan el tiempo de inactividad se eliminan de forma perezosa,
+ * durante las operaciones normales del registro, sin un hilo dedicado
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class RoomRegistry {
+
+    /**
+     * Prefijo de los destinos de las salas
+     */
+    public static final String ROOM_TOPIC_PREFIX = "/topic/room.";
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomRegistry.class);
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final ConcurrentMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final LongSupplier clock;
+    private final long idleTimeoutMillis;
+    private final long sweepIntervalMillis;
+    private final int maxRooms;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     */
+    @Autowired
+    public RoomRegistry(ChatProperties properties) {
+        this(properties, System::currentTimeMillis);
+    }
+
+    RoomRegistry(ChatProperties properties, LongSupplier clock) {
+        this.clock = clock;
+        this.idleTimeoutMillis = properties.getRooms().getIdleTimeout().toMillis();
+        this.sweepIntervalMillis = Math.max(1_000L, idleTimeoutMillis / 2);
+        this.maxRooms = properties.getRooms().getMaxRooms();
+        this.lastSweep.set(clock.getAsLong());
+    }
+
+    /**
+     * Destino STOMP de una sala
+     *
+     * @param room Nombre de la sala
+     * @return Destino /topic/room.{room}
+     */
+    public static String destinationOf(String room) {
+        return ROOM_TOPIC_PREFIX + room;
+    }
+
+    /**
+     * Indica si el nombre de sala es válido (letras, dígitos, '_' y '-', hasta 32 caracteres)
+     */
+    public static boolean isValidName(String room) {
+        return room != null && VALID_NAME.matcher(room).matches();
+    }
+
+    /**
+     * Agrega una sesión a una sala, creándola si no existe
+     *
+     * @param room Nombre de la sala
+     * @param sessionId Sesión que se une
+     * @return Sala, o null si el nombre no es válido o se alcanzó el máximo de salas
+     */
+    public Room join(String room, String sessionId) {
+        if (!isValidName(room)) {
+            return null;
+        }
+
+        long now = clock.getAsLong();
+        evictIdleRooms(now);
+
+        if (!rooms.containsKey(room) && rooms.size() >= maxRooms) {
+            logger.warn("Límite de salas alcanzado, no se crea: {}", room);
+            return null;
+        }
+
+        return rooms.compute(room, (name, existing) -> {
+            Room target = existing != null ? existing : new Room(name, now);
+            target.addMember(sessionId);
+            target.touch(now);
+            return target;
+        });
+    }
+
+    /**
+     * Quita una sesión de una sala
+     *
+     * @param room Nombre de la sala
+     * @param sessionId Sesión que abandona la sala
+     * @return true si la sesión pertenecía a la sala
+     */
+    public boolean leave(String room, String sessionId) {
+        long now = clock.getAsLong();
+        boolean[] removed = {false};
+        rooms.computeIfPresent(room, (name, existing) -> {
+            removed[0] = existing.removeMember(sessionId);
+            existing.touch(now);
+            return existing;
+        });
+        evictIdleRooms(now);
+        return removed[0];
+    }
+
+    /**
+     * Registra actividad en una sala (por ejemplo, un mensaje enviado)
+     *
+     * @param room Nombre de la sala
+     */
+    public void touch(String room) {
+        Room existing = rooms.get(room);
+        if (existing != null) {
+            existing.touch(clock.getAsLong());
+        }
+    }
+
+    /**
+     * Busca una sala
+     *
+     * @param room Nombre de la sala
+     * @return Sala, o null si no existe
+     */
+    public Room find(String room) {
+        return rooms.get(room);
+    }
+
+    /**
+     * Indica si una sesión pertenece a una sala
+     *
+     * @param room Nombre de la sala
+     * @param sessionId Sesión a comprobar
+     * @return true si la sala existe y la sesión se unió a ella
+     */
+    public boolean isMember(String room, String sessionId) {
+        Room existing = rooms.get(room);
+        return existing != null && sessionId != null && existing.getMembers().contains(sessionId);
+    }
+
+    /**
+     * Salas existentes
+     */
+    public Collection<Room> getRooms() {
+        return Collections.unmodifiableCollection(rooms.values());
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Elimina las salas vacías e inactivas como máximo una vez por intervalo de barrido
+     */
+    private void evictIdleRooms(long now) {
+        long previous = lastSweep.get();
+        if (now - previous < sweepIntervalMillis || !lastSweep.compareAndSet(previous, now)) {
+            return;
+        }
+
+        for (String name : rooms.keySet()) {
+            rooms.computeIfPresent(name, (key, room) -> room.isIdle(now, idleTimeoutMillis) ? null : room);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.chat_websocket.search;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.HistoryPage;
+import com.example.chat_websocket.model.HistoryQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido en memoria para paginar y buscar en el historial por destino, fecha,
+ * remitente y palabras del contenido
+ * Quien publica solo encola el mensaje; un hilo propio lo indexa por lotes, de modo que
+ * indexar no agrega latencia a la difusión. Si la cola está llena el mensaje no se indexa y se cuenta.
+ * Se retienen como máximo chat.search.max-messages mensajes entre todos los destinos: al superarlo
+ * se desaloja el más antiguo, que por el orden de llegada es el primero de cada lista en la que aparece.
+ * Los cursores son identificadores internos crecientes; el filtro por fecha usa búsqueda binaria
+ * sobre el orden de llegada, que coincide con el de las marcas de tiempo salvo entre mensajes
+ * sellados en el mismo instante por hilos distintos
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.search", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MessageIndex implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageIndex.class);
+    private static final long FLUSH_MILLIS = 200;
+
+    private final ChatProperties.Search properties;
+    private final int capacity;
+    private final BlockingQueue<Pending> queue;
+    private final Thread indexer;
+    private final LongAdder dropped = new LongAdder();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protegidos por lock; solo el hilo indexador los modifica
+    private final ChatMessage[] messages;
+    private final DestinationIndex[] owners;
+    private final Map<String, DestinationIndex> destinations = new HashMap<>();
+    private long nextId;
+    private int size;
+    private int postingLists;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     */
+    public MessageIndex(ChatProperties properties) {
+        this.properties = properties.getSearch();
+        if (this.properties.getMaxMessages() < 1) {
+            throw new IllegalArgumentException("chat.search.max-messages debe ser positivo: "
+                    + this.properties.getMaxMessages());
+        }
+        this.capacity = this.properties.getMaxMessages();
+        this.messages = new ChatMessage[capacity];
+        this.owners = new DestinationIndex[capacity];
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, this.properties.getQueueCapacity()));
+
+        this.indexer = new Thread(this::indexLoop, "chat-search-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    /**
+     * Encola un mensaje publicado para indexarlo; nunca bloquea
+     *
+     * @param destination Destino del mensaje
+     * @param message Mensaje ya sanitizado y marcado por el servidor
+     */
+    public void offer(String destination, ChatMessage message) {
+        if (!running || !queue.offer(new Pending(destination, message))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Devuelve una página de mensajes de un destino, de la más reciente hacia atrás
+     *
+     * @param destination Destino consultado
+     * @param query Filtros, cursor y tamaño de página
+     * @return Mensajes del más antiguo al más reciente y cursor de la página anterior
+     */
+    public HistoryPage query(String destination, HistoryQuery query) {
+        int limit = pageSize(query.getLimit());
+        long before = query.getBefore() != null ? query.getBefore() : Long.MAX_VALUE;
+        long from = query.getFrom() != null ? query.getFrom() : Long.MIN_VALUE;
+        long to = query.getTo() != null ? query.getTo() : Long.MAX_VALUE;
+        String sender = isBlank(query.getSender()) ? null : query.getSender().trim();
+        Set<String> terms = isBlank(query.getQ()) ? Set.of() : MessageTokenizer.terms(query.getQ());
+        if (!isBlank(query.getQ()) && terms.isEmpty()) {
+            // Ninguna palabra de la búsqueda es indexable (por ejemplo, de una sola letra)
+            return new HistoryPage(new ArrayList<>(), null);
+        }
+
+        lock.readLock().lock();
+        try {
+            DestinationIndex index = destinations.get(destination);
+            List<PostingList> lists = index != null ? index.listsFor(sender, terms) : null;
+            if (lists == null) {
+                return new HistoryPage(new ArrayList<>(), null);
+            }
+            return page(lists, before, from, to, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mensajes indexados
+     */
+    public int getIndexedCount() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Listas de remitentes y términos vivas entre todos los destinos
+     */
+    public int getPostingListCount() {
+        lock.readLock().lock();
+        try {
+            return postingLists;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mensajes pendientes de indexar
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Detiene el indexador después de vaciar la cola
+     */
+    @Override
+    public void close() {
+        running = false;
+        indexer.interrupt();
+        try {
+            indexer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Indexa un lote; lo ejecuta solo el hilo indexador (o una prueba en su lugar)
+     */
+    void indexBatch(List<Pending> batch) {
+        // Mensajes que se desalojarían en este mismo lote no llegan a indexarse
+        int skipped = Math.max(0, batch.size() - capacity);
+        List<Pending> added = batch.subList(skipped, batch.size());
+        int evictions = Math.max(0, size + added.size() - capacity);
+
+        // Único escritor: los términos se calculan fuera del bloqueo para no frenar a las consultas
+        for (Pending pending : added) {
+            pending.terms = MessageTokenizer.terms(pending.message.getContent());
+        }
+        List<Set<String>> evictedTerms = new ArrayList<>(evictions);
+        long oldest = nextId - size;
+        for (int i = 0; i < evictions; i++) {
+            evictedTerms.add(MessageTokenizer.terms(messages[slot(oldest + i)].getContent()));
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Set<String> terms : evictedTerms) {
+                evictOldest(terms);
+            }
+            for (Pending pending : added) {
+                add(pending);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (skipped > 0) {
+            dropped.add(skipped);
+        }
+    }
+
+    private HistoryPage page(List<PostingList> lists, long before, long from, long to, int limit) {
+        // Recorre hacia atrás la lista más corta y comprueba las demás por búsqueda binaria
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        PostingList driver = lists.get(0);
+
+        int position = driver.lowerBound(before) - 1;
+        if (to != Long.MAX_VALUE) {
+            position = Math.min(position, timestampLowerBound(driver, to) - 1);
+        }
+
+        List<ChatMessage> result = new ArrayList<>(Math.min(limit, position + 1));
+        long oldestReturned = 0;
+        while (position >= 0 && result.size() < limit) {
+            long id = driver.get(position--);
+            ChatMessage message = messages[slot(id)];
+            if (message.getTimestamp() < from) {
+                position = -1;
+                break;
+            }
+            if (message.getTimestamp() >= to || !containsAll(lists, id)) {
+                continue;
+            }
+            result.add(message);
+            oldestReturned = id;
+        }
+
+        Collections.reverse(result);
+        Long nextCursor = result.size() == limit && position >= 0 ? oldestReturned : null;
+        return new HistoryPage(result, nextCursor);
+    }
+
+    private int timestampLowerBound(PostingList list, long timestamp) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (messages[slot(list.get(mid))].getTimestamp() < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean containsAll(List<PostingList> lists, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(Pending pending) {
+        long id = nextId++;
+        int slot = slot(id);
+        DestinationIndex index = destinations.computeIfAbsent(pending.destination, DestinationIndex::new);
+        messages[slot] = pending.message;
+        owners[slot] = index;
+        size++;
+
+        index.all.add(id);
+        if (pending.message.getSender() != null) {
+            postingLists += index.append(index.bySender, pending.message.getSender(), id);
+        }
+        for (String term : pending.terms) {
+            postingLists += index.append(index.byTerm, term, id);
+        }
+    }
+
+    private void evictOldest(Set<String> terms) {
+        long id = nextId - size;
+        int slot = slot(id);
+        ChatMessage message = messages[slot];
+        DestinationIndex index = owners[slot];
+        messages[slot] = null;
+        owners[slot] = null;
+        size--;
+
+        index.all.removeFirst(id);
+        if (message.getSender() != null) {
+            postingLists -= index.removeFirst(index.bySender, message.getSender(), id);
+        }
+        for (String term : terms) {
+            postingLists -= index.removeFirst(index.byTerm, term, id);
+        }
+        if (index.all.isEmpty()) {
+            destinations.remove(index.destination);
+        }
+    }
+
+    private int slot(long id) {
+        return (int) (id % capacity);
+    }
+
+    private int pageSize(Integer requested) {
+        int maxPageSize = Math.max(1, properties.getMaxPageSize());
+        int pageSize = requested != null ? requested : properties.getDefaultPageSize();
+        return Math.max(1, Math.min(pageSize, maxPageSize));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private void indexLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<Pending> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException ex) {
+                // close() interrumpe la espera; el bucle vacía lo que quede en la cola
+                continue;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            try {
+                indexBatch(batch);
+            } catch (RuntimeException ex) {
+                logger.error("No se pudo indexar un lote de {} mensajes", batch.size(), ex);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Mensaje a la espera del indexador
+     */
+    static final class Pending {
+
+        private final String destination;
+        private final ChatMessage message;
+        private Set<String> terms;
+
+        Pending(String destination, ChatMessage message) {
+            this.destination = destination;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Listas de un destino: todos sus mensajes, por remitente y por término
+     */
+    private static final class DestinationIndex {
+
+        private final String destination;
+        private final PostingList all = new PostingList();
+        private final Map<String, PostingList> bySender = new HashMap<>();
+        private final Map<String, PostingList> byTerm = new HashMap<>();
+
+        private DestinationIndex(String destination) {
+            this.destination = destination;
+        }
+
+        /**
+         * Listas que debe cumplir un mensaje para coincidir con la consulta
+         *
+         * @return Listas a intersectar, o null si algún filtro no tiene mensajes
+         */
+        private List<PostingList> listsFor(String sender, Set<String> terms) {
+            List<PostingList> lists = new ArrayList<>(terms.size() + 1);
+            if (sender != null) {
+                PostingList list = bySender.get(sender);
+                if (list == null) {
+                    return null;
+                }
+                lists.add(list);
+            }
+            for (String term : terms) {
+                PostingList list = byTerm.get(term);
+                if (list == null) {
+                    return null;
+                }
+                lists.add(list);
+            }
+            if (lists.isEmpty()) {
+                lists.add(all);
+            }
+            return lists;
+        }
+
+        /**
+         * @return 1 si se creó la lista
+         */
+        private int append(Map<String, PostingList> lists, String key, long id) {
+            PostingList list = lists.get(key);
+            int created = 0;
+            if (list == null) {
+                list = new PostingList();
+                lists.put(key, list);
+                created = 1;
+            }
+            list.add(id);
+            return created;
+        }
+
+        /**
+         * @return 1 si la lista quedó vacía y se eliminó
+         */
+        private int removeFirst(Map<String, PostingList> lists, String key, long id) {
+            PostingList list = lists.get(key);
+            if (list == null || !list.removeFirst(id) || !list.isEmpty()) {
+                return 0;
+            }
+            lists.remove(key);
+            return 1;
+        }
+    }
+}
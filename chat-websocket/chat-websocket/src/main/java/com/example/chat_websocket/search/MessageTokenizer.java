@@ -0,0 +1,104 @@
+package com.example.chat_websocket.search;
+
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Divide el contenido de un mensaje en términos de búsqueda
+ * Los términos son secuencias de letras y dígitos en minúsculas y sin tildes ("Reunión" → "reunion"),
+ * de 2 a 32 caracteres. Las entidades HTML que agrega el sanitizador (&amp;lt; &amp;#x2F; ...)
+ * separan términos y no se indexan
+ */
+final class MessageTokenizer {
+
+    static final int MIN_TERM_LENGTH = 2;
+    static final int MAX_TERM_LENGTH = 32;
+    static final int MAX_TERMS_PER_MESSAGE = 64;
+
+    private static final int MAX_ENTITY_LENGTH = 10;
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private MessageTokenizer() {
+    }
+
+    /**
+     * Términos distintos del texto, en orden de aparición y como máximo MAX_TERMS_PER_MESSAGE
+     *
+     * @param text Contenido sanitizado; puede ser nulo
+     * @return Términos normalizados
+     */
+    static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length && terms.size() < MAX_TERMS_PER_MESSAGE; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+                continue;
+            }
+            if (start >= 0) {
+                addTerm(text, start, i, terms);
+                start = -1;
+            }
+            if (c == '&') {
+                i = skipEntity(text, i);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Normaliza un término de una consulta igual que los del contenido indexado
+     *
+     * @return Término normalizado, o null si no sería indexable
+     */
+    static String normalize(String term) {
+        Set<String> terms = terms(term);
+        return terms.size() == 1 ? terms.iterator().next() : null;
+    }
+
+    private static void addTerm(String text, int start, int end, Set<String> terms) {
+        int length = end - start;
+        if (length < MIN_TERM_LENGTH || length > MAX_TERM_LENGTH) {
+            return;
+        }
+        String term = text.substring(start, end).toLowerCase(Locale.ROOT);
+        for (int i = 0; i < term.length(); i++) {
+            if (term.charAt(i) > 0x7F) {
+                term = COMBINING_MARKS.matcher(Normalizer.normalize(term, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+        terms.add(term);
+    }
+
+    /**
+     * Salta una entidad HTML que empieza en la posición indicada
+     *
+     * @return Posición del ';' final, o la misma si no es una entidad
+     */
+    private static int skipEntity(String text, int ampersand) {
+        int limit = Math.min(text.length(), ampersand + MAX_ENTITY_LENGTH);
+        for (int i = ampersand + 1; i < limit; i++) {
+            char c = text.charAt(i);
+            if (c == ';') {
+                return i;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '#') {
+                break;
+            }
+        }
+        return ampersand;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.chat_websocket.search;
+
+
+/**
+ * Lista creciente de identificadores de mensaje, ordenada de menor a mayor
+ * Se agrega al final y se desaloja por el principio sobre un arreglo circular de longs,
+ * sin objetos por elemento; la búsqueda binaria se hace sobre la posición lógica
+ */
+final class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    void add(long id) {
+        if (size == ids.length) {
+            grow();
+        }
+        ids[(head + size) & (ids.length - 1)] = id;
+        size++;
+    }
+
+    /**
+     * Quita el primer identificador si coincide con el indicado
+     *
+     * @return true si se quitó
+     */
+    boolean removeFirst(long id) {
+        if (size == 0 || ids[head] != id) {
+            return false;
+        }
+        head = (head + 1) & (ids.length - 1);
+        size--;
+        // Devuelve la memoria de las listas que crecieron y luego se vaciaron en buena parte
+        if (ids.length > 64 && size < ids.length / 4) {
+            shrink();
+        }
+        return true;
+    }
+
+    long get(int index) {
+        return ids[(head + index) & (ids.length - 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Posición del primer identificador mayor o igual al indicado; size() si no hay ninguno
+     */
+    int lowerBound(long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(mid) < id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    boolean contains(long id) {
+        int index = lowerBound(id);
+        return index < size && get(index) == id;
+    }
+
+    /**
+     * Memoria aproximada del arreglo
+     */
+    long estimatedMemoryBytes() {
+        return 32L + 16L + 8L * ids.length;
+    }
+
+    private void grow() {
+        resize(ids.length << 1);
+    }
+
+    private void shrink() {
+        resize(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(size) << 1));
+    }
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            resized[i] = get(i);
+        }
+        ids = resized;
+        head = 0;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.chat_websocket.transport;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drenaje del nodo antes de detenerse (despliegues escalonados)
+ * Al cerrarse el contexto, y antes de que Spring detenga el broker y el servidor, el nodo rechaza
+ * los handshakes nuevos con 503 y cierra las sesiones abiertas repartidas a lo largo de
+ * chat.drain.window con el estado 1012 (Service Restart). Cada sesión escribe antes lo que
+ * tiene en cola; el cliente reconecta con su espera aleatoria y, con su token de reanudación,
+ * continúa en otro nodo sin anunciar entrada. Las salidas de las sesiones drenadas no se anuncian
+ * desde este nodo: su plazo supera el tiempo que le queda de vida
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.drain", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class DrainCoordinator implements HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DrainCoordinator.class);
+
+    /**
+     * Estado de cierre de las sesiones drenadas; el cliente debe reconectar a otro nodo
+     */
+    public static final CloseStatus MIGRATE = CloseStatus.SERVICE_RESTARTED.withReason("Nodo en drenaje");
+
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final OutboundQueueMonitor monitor;
+    private final long windowNanos;
+    private final long flushTimeoutNanos;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     * @param monitor Colas de salida de las sesiones abiertas
+     */
+    public DrainCoordinator(ChatProperties properties, OutboundQueueMonitor monitor) {
+        ChatProperties.Drain drain = properties.getDrain();
+        this.monitor = monitor;
+        this.windowNanos = drain.getWindow().toNanos();
+        this.flushTimeoutNanos = drain.getFlushTimeout().toNanos();
+    }
+
+    /**
+     * Drena el nodo al cerrarse el contexto; el evento se publica antes de detener los componentes
+     * y este listener va primero: los pools de Spring dejan de aceptar tareas al recibirlo
+     * (entre ellos el planificador de los heartbeats de SockJS)
+     */
+    @EventListener(ContextClosedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onContextClosed() {
+        drain();
+    }
+
+    /**
+     * Deja de aceptar conexiones y cierra las sesiones abiertas de forma escalonada
+     * Bloquea hasta que todas están cerradas o vence chat.drain.flush-timeout tras la ventana;
+     * las que quedan se cierran entonces sin esperar a su cola
+     */
+    public void drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        List<String> sessionIds = monitor.getSessionIds();
+        int total = sessionIds.size();
+        logger.info("Drenando el nodo: {} sesiones en {} ms", total, TimeUnit.NANOSECONDS.toMillis(windowNanos));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            parkUntil(start + windowNanos * i / total);
+            monitor.closeAfterFlush(sessionIds.get(i), MIGRATE);
+        }
+
+        long flushDeadline = System.nanoTime() + flushTimeoutNanos;
+        while (monitor.getSessionCount() > 0 && System.nanoTime() - flushDeadline < 0) {
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+
+        // Sesiones que no vaciaron su cola a tiempo o que completaron el handshake durante el drenaje
+        List<String> remaining = monitor.getSessionIds();
+        for (String sessionId : remaining) {
+            monitor.closeNow(sessionId, MIGRATE);
+        }
+        logger.info("Drenaje completado en {} ms; {} sesiones cerradas sin vaciar su cola",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), remaining.size());
+    }
+
+    /**
+     * Indica si el nodo está drenando
+     */
+    public boolean isDraining() {
+        return draining.get();
+    }
+
+    /**
+     * Plazo con el que se dan de baja las sesiones cerradas durante el drenaje: el nodo
+     * se detiene antes de que venza y su salida no llega a anunciarse
+     */
+    public Duration getLeaveGrace() {
+        return Duration.ofNanos(windowNanos + flushTimeoutNanos);
+    }
+
+    /**
+     * Rechaza los handshakes nuevos mientras el nodo drena, también los de SockJS
+     */
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (!draining.get()) {
+            return true;
+        }
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chat_websocket.transport;
+
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handshake WebSocket que decide qué extensiones ofrecidas por el cliente se aceptan
+ * Con permessage-deflate desactivado la conexión se establece sin compresión aunque
+ * el navegador la ofrezca: los mensajes de chat son cortos y comprimirlos cuesta CPU
+ * en el servidor por cada sesión
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class ExtensionFilteringHandshakeHandler extends DefaultHandshakeHandler {
+
+    public static final String PER_MESSAGE_DEFLATE = "permessage-deflate";
+
+    private final boolean perMessageDeflate;
+
+    /**
+     * @param perMessageDeflate Acepta permessage-deflate si el cliente lo ofrece
+     */
+    public ExtensionFilteringHandshakeHandler(boolean perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
+    @Override
+    protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                 List<WebSocketExtension> requestedExtensions,
+                                                                 List<WebSocketExtension> supportedExtensions) {
+        List<WebSocketExtension> accepted = super.filterRequestedExtensions(request, requestedExtensions,
+                supportedExtensions);
+        if (perMessageDeflate) {
+            return accepted;
+        }
+
+        List<WebSocketExtension> result = new ArrayList<>(accepted.size());
+        for (WebSocketExtension extension : accepted) {
+            if (!PER_MESSAGE_DEFLATE.equalsIgnoreCase(extension.getName())) {
+                result.add(extension);
+            }
+        }
+        return result;
+    }
+}
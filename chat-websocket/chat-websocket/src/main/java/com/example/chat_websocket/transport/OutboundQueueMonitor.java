@@ -0,0 +1,243 @@
+package com.example.chat_websocket.transport;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de las colas de salida por sesión y del pool de hilos que escribe en los sockets
+ * Expone la profundidad de cada cola y los contadores de la política de cliente lento.
+ * El pool es elástico: cada sesión con salida pendiente obtiene un hilo libre o uno nuevo en
+ * lugar de esperar en una cola compartida, así que un socket bloqueado nunca retrasa a otra sesión.
+ * Un vigilante recorre las sesiones periódicamente y cierra las que llevan un envío bloqueado
+ * más de send-time-limit, lo que devuelve su hilo al pool
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class OutboundQueueMonitor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundQueueMonitor.class);
+    private static final long MIN_SWEEP_MILLIS = 10;
+    private static final long MAX_SWEEP_MILLIS = 1000;
+
+    private final ChatProperties.Transport transport;
+    private final ExecutorService writer;
+    private final ScheduledExecutorService watchdog;
+    private final ExecutorService closer;
+    private final ConcurrentMap<String, OutboundSessionDecorator> sessions = new ConcurrentHashMap<>();
+    private final LongAdder droppedMessages = new LongAdder();
+    private final LongAdder coalescedMessages = new LongAdder();
+    private final LongAdder disconnectedSessions = new LongAdder();
+    private final LongAdder writtenFrames = new LongAdder();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     */
+    public OutboundQueueMonitor(ChatProperties properties) {
+        this.transport = properties.getTransport();
+        int threads = transport.getWriterThreads();
+        // Cada sesión tiene como máximo una tarea pendiente, así que los hilos están acotados por el número de sesiones
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("chat-writer-"));
+        executor.allowCoreThreadTimeOut(true);
+        this.writer = executor;
+
+        CustomizableThreadFactory watchdogFactory = new CustomizableThreadFactory("chat-writer-watchdog-");
+        watchdogFactory.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogFactory);
+        CustomizableThreadFactory closerFactory = new CustomizableThreadFactory("chat-writer-closer-");
+        closerFactory.setDaemon(true);
+        this.closer = Executors.newCachedThreadPool(closerFactory);
+
+        long periodMillis = Math.min(MAX_SWEEP_MILLIS,
+                Math.max(MIN_SWEEP_MILLIS, transport.getSendTimeLimit().toMillis() / 4));
+        watchdog.scheduleWithFixedDelay(this::abortStalledSends, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Envuelve la sesión con su cola de salida y la registra
+     *
+     * @param session Sesión recién establecida
+     * @return Sesión decorada
+     */
+    public WebSocketSession decorate(WebSocketSession session) {
+        OutboundSessionDecorator decorated = new OutboundSessionDecorator(session, transport, writer, this);
+        sessions.put(session.getId(), decorated);
+        return decorated;
+    }
+
+    /**
+     * Devuelve la sesión decorada registrada con el mismo id, o la propia sesión si no hay ninguna
+     */
+    public WebSocketSession decorated(WebSocketSession session) {
+        WebSocketSession decorated = sessions.get(session.getId());
+        return decorated != null ? decorated : session;
+    }
+
+    /**
+     * Elimina la sesión del registro al cerrarse
+     *
+     * @param sessionId Sesión cerrada
+     */
+    public void release(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * Identificadores de las sesiones abiertas
+     */
+    public List<String> getSessionIds() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    /**
+     * Cierra la sesión cuando haya escrito los mensajes que tiene en cola
+     *
+     * @param sessionId Sesión a cerrar
+     * @param status Estado con el que se cierra
+     */
+    public void closeAfterFlush(String sessionId, CloseStatus status) {
+        OutboundSessionDecorator session = sessions.get(sessionId);
+        if (session != null) {
+            session.closeAfterFlush(status);
+        }
+    }
+
+    /**
+     * Cierra la sesión descartando los mensajes que tenga en cola
+     *
+     * @param sessionId Sesión a cerrar
+     * @param status Estado con el que se cierra
+     */
+    public void closeNow(String sessionId, CloseStatus status) {
+        OutboundSessionDecorator session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close(status);
+        } catch (IOException ex) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    /**
+     * Mensajes pendientes de envío de una sesión (0 si no existe)
+     */
+    public int getQueueDepth(String sessionId) {
+        OutboundSessionDecorator session = sessions.get(sessionId);
+        return session != null ? session.getQueueDepth() : 0;
+    }
+
+    /**
+     * Mayor profundidad de cola entre todas las sesiones
+     */
+    public int getMaxQueueDepth() {
+        int max = 0;
+        for (OutboundSessionDecorator session : sessions.values()) {
+            max = Math.max(max, session.getQueueDepth());
+        }
+        return max;
+    }
+
+    /**
+     * Mensajes pendientes sumando todas las sesiones
+     */
+    public long getTotalQueueDepth() {
+        long total = 0;
+        for (OutboundSessionDecorator session : sessions.values()) {
+            total += session.getQueueDepth();
+        }
+        return total;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    public long getCoalescedMessages() {
+        return coalescedMessages.sum();
+    }
+
+    public long getDisconnectedSessions() {
+        return disconnectedSessions.sum();
+    }
+
+    /**
+     * Frames escritos en los sockets sumando todas las sesiones
+     */
+    public long getWrittenFrames() {
+        return writtenFrames.sum();
+    }
+
+    void recordWritten() {
+        writtenFrames.increment();
+    }
+
+    void recordDropped(int count) {
+        if (count > 0) {
+            droppedMessages.add(count);
+        }
+    }
+
+    void recordCoalesced(int count) {
+        if (count > 0) {
+            coalescedMessages.add(count);
+        }
+    }
+
+    void recordDisconnected() {
+        disconnectedSessions.increment();
+    }
+
+    /**
+     * Cierra las sesiones con un envío bloqueado más del tiempo límite; el cierre del socket
+     * se hace en otro hilo porque también puede bloquearse
+     */
+    private void abortStalledSends() {
+        long now = System.currentTimeMillis();
+        for (OutboundSessionDecorator session : sessions.values()) {
+            try {
+                Runnable close = session.abortIfStalled(now);
+                if (close != null) {
+                    closer.execute(close);
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("Error al cerrar la sesión bloqueada {}", session.getId(), ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+        writer.shutdownNow();
+        closer.shutdown();
+    }
+}
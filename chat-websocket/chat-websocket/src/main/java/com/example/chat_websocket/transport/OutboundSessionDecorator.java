@@ -0,0 +1,302 @@
+package com.example.chat_websocket.transport;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Cola de salida de una sesión con escritura asíncrona
+ * Quien publica solo encola y vuelve: un hilo del pool de escritores vacía la cola
+ * hacia el socket, así que un cliente lento nunca bloquea el canal de salida compartido
+ * ni a los escritores de otras sesiones.
+ * Cuando la cola supera su límite se aplica la política de cliente lento; si un envío
+ * lleva bloqueado más del tiempo permitido, el vigilante de OutboundQueueMonitor cierra
+ * la sesión aunque no lleguen más mensajes e interrumpe el envío para liberar el hilo escritor
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+class OutboundSessionDecorator extends WebSocketSessionDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundSessionDecorator.class);
+    private static final String MESSAGE_FRAME = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:";
+    private static final int MAX_HEADER_SCAN = 1024;
+
+    private final Object lock = new Object();
+    private final Object sendLock = new Object();
+    private final ArrayDeque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+    private final Executor writer;
+    private final OutboundQueueMonitor monitor;
+    private final ChatProperties.SlowConsumerPolicy policy;
+    private final long sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+
+    private int bufferedBytes;
+    private boolean draining;
+    private CloseStatus pendingClose;
+    private volatile int depth;
+    private volatile long sendStartMillis;
+    private volatile boolean closed;
+    private Thread sendingThread;
+
+    OutboundSessionDecorator(WebSocketSession delegate, ChatProperties.Transport transport, Executor writer,
+                             OutboundQueueMonitor monitor) {
+        super(delegate);
+        this.writer = writer;
+        this.monitor = monitor;
+        this.policy = transport.getSlowConsumerPolicy();
+        this.sendTimeLimitMillis = transport.getSendTimeLimit().toMillis();
+        this.bufferSizeLimit = (int) transport.getSendBufferSizeLimit().toBytes();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (closed) {
+            return;
+        }
+
+        boolean schedule;
+        synchronized (lock) {
+            queue.addLast(message);
+            bufferedBytes += message.getPayloadLength();
+            if (bufferedBytes > bufferSizeLimit) {
+                applyPolicy();
+            }
+            depth = queue.size();
+            schedule = !draining;
+            draining = true;
+        }
+
+        if (schedule) {
+            writer.execute(this::drain);
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        discard();
+        super.close(status);
+    }
+
+    /**
+     * Cierra la sesión cuando el escritor termine de vaciar su cola; los mensajes que lleguen
+     * mientras tanto también se escriben antes del cierre
+     *
+     * @param status Estado con el que se cierra la sesión
+     */
+    void closeAfterFlush(CloseStatus status) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (draining) {
+                pendingClose = status;
+                return;
+            }
+        }
+        discard();
+        closeQuietly(status);
+    }
+
+    /**
+     * Mensajes pendientes de envío
+     */
+    int getQueueDepth() {
+        return depth;
+    }
+
+    /**
+     * Cierra la sesión si su envío en curso lleva bloqueado más del tiempo límite
+     * Interrumpe al escritor para liberar su hilo y devuelve el cierre del socket, que puede
+     * volver a bloquearse, para que se ejecute fuera del vigilante
+     *
+     * @param nowMillis Instante actual
+     * @return Cierre pendiente, o null si la sesión no está bloqueada
+     */
+    Runnable abortIfStalled(long nowMillis) {
+        long start = sendStartMillis;
+        if (closed || start == 0 || nowMillis - start <= sendTimeLimitMillis) {
+            return null;
+        }
+
+        discard();
+        monitor.recordDisconnected();
+        logger.warn("Envío bloqueado más de {} ms en la sesión {}; se cierra", sendTimeLimitMillis, getId());
+        synchronized (sendLock) {
+            if (sendingThread != null && sendStartMillis == start) {
+                sendingThread.interrupt();
+            }
+        }
+        return () -> closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * Escribe en el socket hasta vaciar la cola; solo hay un escritor por sesión a la vez
+     */
+    private void drain() {
+        while (true) {
+            WebSocketMessage<?> message;
+            CloseStatus closeStatus = null;
+            synchronized (lock) {
+                message = closed ? null : queue.pollFirst();
+                if (message == null) {
+                    draining = false;
+                    closeStatus = closed ? null : pendingClose;
+                } else {
+                    bufferedBytes -= message.getPayloadLength();
+                    depth = queue.size();
+                }
+            }
+            if (message == null) {
+                // Cierre pedido durante el drenaje del nodo, ya con la cola vacía
+                if (closeStatus != null) {
+                    discard();
+                    closeQuietly(closeStatus);
+                }
+                return;
+            }
+
+            synchronized (sendLock) {
+                sendingThread = Thread.currentThread();
+                sendStartMillis = System.currentTimeMillis();
+            }
+            try {
+                getDelegate().sendMessage(message);
+                monitor.recordWritten();
+            } catch (IOException | RuntimeException ex) {
+                logger.debug("Error al escribir en la sesión {}: {}", getId(), ex.getMessage());
+                // Si el vigilante interrumpió el envío, él se encarga del cierre
+                if (!closed) {
+                    discard();
+                    closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+                }
+                synchronized (lock) {
+                    draining = false;
+                }
+                return;
+            } finally {
+                // La interrupción del vigilante solo puede llegar durante el envío: no alcanza a otra sesión
+                synchronized (sendLock) {
+                    sendingThread = null;
+                    sendStartMillis = 0;
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    private void applyPolicy() {
+        switch (policy) {
+            case DISCONNECT -> limitExceeded(String.format(
+                    "El buffer de salida de la sesión '%s' superó %d bytes", getId(), bufferSizeLimit));
+            case COALESCE -> {
+                coalesce();
+                dropOldest();
+            }
+            case DROP_OLDEST -> dropOldest();
+        }
+    }
+
+    /**
+     * Conserva solo el frame MESSAGE más reciente de cada destino
+     */
+    private void coalesce() {
+        Set<String> destinations = new HashSet<>();
+        int removed = 0;
+        for (Iterator<WebSocketMessage<?>> it = queue.descendingIterator(); it.hasNext(); ) {
+            WebSocketMessage<?> message = it.next();
+            String destination = destinationOf(message);
+            if (destination != null && !destinations.add(destination)) {
+                it.remove();
+                bufferedBytes -= message.getPayloadLength();
+                removed++;
+            }
+        }
+        monitor.recordCoalesced(removed);
+    }
+
+    /**
+     * Descarta los mensajes más antiguos hasta volver al límite, conservando siempre el más reciente
+     */
+    private void dropOldest() {
+        int dropped = 0;
+        while (bufferedBytes > bufferSizeLimit && queue.size() > 1) {
+            bufferedBytes -= queue.pollFirst().getPayloadLength();
+            dropped++;
+        }
+        monitor.recordDropped(dropped);
+    }
+
+    private void limitExceeded(String reason) {
+        closed = true;
+        queue.clear();
+        bufferedBytes = 0;
+        depth = 0;
+        monitor.recordDisconnected();
+        throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    private void discard() {
+        closed = true;
+        synchronized (lock) {
+            queue.clear();
+            bufferedBytes = 0;
+            depth = 0;
+        }
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            getDelegate().close(status);
+        } catch (IOException ex) {
+            logger.debug("Error al cerrar la sesión {}: {}", getId(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Destino de un frame STOMP MESSAGE, o null si es otro tipo de frame
+     */
+    static String destinationOf(WebSocketMessage<?> message) {
+        String head;
+        if (message instanceof TextMessage text) {
+            head = text.getPayload();
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            byte[] bytes = new byte[Math.min(payload.remaining(), MAX_HEADER_SCAN)];
+            payload.get(bytes);
+            head = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            return null;
+        }
+
+        if (!head.startsWith(MESSAGE_FRAME)) {
+            return null;
+        }
+        int headersEnd = head.indexOf("\n\n");
+        int start = head.indexOf(DESTINATION_HEADER);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length();
+        int end = head.indexOf('\n', start);
+        return end < 0 ? head.substring(start) : head.substring(start, end);
+    }
+}
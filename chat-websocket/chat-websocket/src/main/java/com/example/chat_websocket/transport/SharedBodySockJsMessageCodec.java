@@ -0,0 +1,94 @@
+package com.example.chat_websocket.transport;
+
+
+import org.springframework.web.socket.sockjs.frame.Jackson2SockJsMessageCodec;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Codec SockJS que escapa una sola vez el cuerpo de un frame STOMP difundido
+ * Cada suscriptor recibe un frame STOMP con sus propios headers (subscription, message-id)
+ * pero el mismo cuerpo; SockJS envía cada frame como string JSON, de modo que el codec por
+ * defecto volvería a escapar el cuerpo completo en cada sesión. Aquí se escapan por separado
+ * los headers (por sesión) y el cuerpo, que se guarda en una pequeña caché de los cuerpos
+ * recientes: los hilos de escritura intercalan las entregas de varias difusiones a la vez.
+ * El escape JSON y el de SockJS son carácter a carácter, así que concatenar las dos partes
+ * produce exactamente el mismo frame que el codec por defecto
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class SharedBodySockJsMessageCodec extends Jackson2SockJsMessageCodec {
+
+    private static final String BODY_SEPARATOR = "\n\n";
+
+    // Prefijo "a[\"" y sufijo "\"]" que el codec añade alrededor de cada mensaje
+    private static final int PREFIX_LENGTH = 3;
+    private static final int SUFFIX_LENGTH = 2;
+
+    // Potencia de 2: la posición se obtiene con una máscara sobre el hash del cuerpo
+    private static final int CACHE_SLOTS = 16;
+
+    private final AtomicReferenceArray<EncodedBody> cache = new AtomicReferenceArray<>(CACHE_SLOTS);
+
+    @Override
+    public String encode(String... messages) {
+        if (messages.length != 1) {
+            return super.encode(messages);
+        }
+
+        String frame = messages[0];
+        int separator = frame.indexOf(BODY_SEPARATOR);
+        if (separator < 0) {
+            return super.encode(frame);
+        }
+
+        int bodyStart = separator + BODY_SEPARATOR.length();
+        String encodedBody = encodedBody(frame, bodyStart);
+        String encodedHeaders = super.encode(frame.substring(0, bodyStart));
+
+        int headersEnd = encodedHeaders.length() - SUFFIX_LENGTH;
+        return new StringBuilder(headersEnd + encodedBody.length() + SUFFIX_LENGTH)
+                .append(encodedHeaders, 0, headersEnd)
+                .append(encodedBody)
+                .append(encodedHeaders, headersEnd, encodedHeaders.length())
+                .toString();
+    }
+
+    /**
+     * Devuelve el cuerpo escapado, reutilizando el de la caché si otro frame ya tenía el mismo cuerpo
+     */
+    private String encodedBody(String frame, int bodyStart) {
+        int bodyLength = frame.length() - bodyStart;
+        int hash = 0;
+        for (int i = bodyStart; i < frame.length(); i++) {
+            hash = 31 * hash + frame.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SLOTS - 1);
+
+        EncodedBody cached = cache.get(slot);
+        if (cached != null && cached.hash == hash && cached.body.length() == bodyLength
+                && frame.regionMatches(bodyStart, cached.body, 0, bodyLength)) {
+            return cached.encoded;
+        }
+
+        String body = frame.substring(bodyStart);
+        String encoded = super.encode(body);
+        encoded = encoded.substring(PREFIX_LENGTH, encoded.length() - SUFFIX_LENGTH);
+        cache.set(slot, new EncodedBody(hash, body, encoded));
+        return encoded;
+    }
+
+    private static final class EncodedBody {
+
+        private final int hash;
+        private final String body;
+        private final String encoded;
+
+        private EncodedBody(int hash, String body, String encoded) {
+            this.hash = hash;
+            this.body = body;
+            this.encoded = encoded;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.chat_websocket.transport;
+
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * Decorador del handler STOMP que entrega a Spring las sesiones envueltas en su cola de salida
+ * Se registra con {@code WebSocketTransportRegistration.addDecoratorFactory}
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class SlowConsumerHandlerDecorator extends WebSocketHandlerDecorator {
+
+    private final OutboundQueueMonitor monitor;
+
+    /**
+     * @param delegate Handler de Spring (SubProtocolWebSocketHandler)
+     * @param monitor Registro de las colas de salida
+     */
+    public SlowConsumerHandlerDecorator(WebSocketHandler delegate, OutboundQueueMonitor monitor) {
+        super(delegate);
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        super.afterConnectionEstablished(monitor.decorate(session));
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        super.handleMessage(monitor.decorated(session), message);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        super.handleTransportError(monitor.decorated(session), exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        try {
+            super.afterConnectionClosed(monitor.decorated(session), closeStatus);
+        } finally {
+            monitor.release(session.getId());
+        }
+    }
+}
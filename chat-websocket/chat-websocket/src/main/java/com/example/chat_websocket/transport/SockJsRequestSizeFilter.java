@@ -0,0 +1,148 @@
+package com.example.chat_websocket.transport;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Acota el cuerpo de las peticiones POST de los transportes HTTP de SockJS (xhr_send)
+ * El decodificador STOMP limita los frames una vez recibidos, pero SockJS lee antes el cuerpo
+ * completo de la petición: sin este filtro un cliente podría enviar megabytes en un solo POST.
+ * Un Content-Length excesivo se rechaza con 413 sin leer nada; un cuerpo sin longitud declarada
+ * deja de leerse al superar el límite y SockJS cierra la sesión
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class SockJsRequestSizeFilter extends OncePerRequestFilter {
+
+    private static final String SOCKJS_PREFIX = "/ws/";
+
+    /**
+     * SockJS envía los frames como cadenas JSON: el escape puede alargar el cuerpo
+     */
+    private static final int JSON_ESCAPE_FACTOR = 2;
+
+    private final long maxBodyBytes;
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     */
+    public SockJsRequestSizeFilter(ChatProperties properties) {
+        this.maxBodyBytes = properties.getTransport().getMessageSizeLimit().toBytes() * JSON_ESCAPE_FACTOR;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !request.getRequestURI().startsWith(request.getContextPath() + SOCKJS_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        chain.doFilter(new BoundedRequest(request, maxBodyBytes), response);
+    }
+
+    /**
+     * Petición cuyo cuerpo falla al leer más bytes del límite
+     */
+    private static final class BoundedRequest extends HttpServletRequestWrapper {
+
+        private final long limit;
+        private ServletInputStream input;
+
+        private BoundedRequest(HttpServletRequest request, long limit) {
+            super(request);
+            this.limit = limit;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (input == null) {
+                input = new BoundedInputStream(super.getInputStream(), limit);
+            }
+            return input;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    private static final class BoundedInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final long limit;
+        private long read;
+
+        private BoundedInputStream(ServletInputStream delegate, long limit) {
+            this.delegate = delegate;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = delegate.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+        private void count(int n) throws IOException {
+            read += n;
+            if (read > limit) {
+                throw new IOException("El cuerpo de la petición supera " + limit + " bytes");
+            }
+        }
+    }
+}
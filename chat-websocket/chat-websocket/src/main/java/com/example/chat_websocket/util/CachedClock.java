@@ -0,0 +1,56 @@
+package com.example.chat_websocket.util;
+
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloj de baja resolución que se actualiza en segundo plano
+ * Leer la hora cuesta una lectura volátil en lugar de una llamada al sistema
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class CachedClock implements AutoCloseable {
+
+    private final ScheduledExecutorService ticker;
+    private volatile long currentMillis;
+
+    /**
+     * Crea el reloj y comienza a actualizarlo
+     *
+     * @param resolution Intervalo de actualización
+     */
+    public CachedClock(Duration resolution) {
+        this.currentMillis = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cached-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMicros = Math.max(100, resolution.toNanos() / 1000);
+        ticker.scheduleAtFixedRate(this::tick, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Hora actual con la resolución configurada, en milisegundos desde epoch
+     * Nunca retrocede aunque el reloj del sistema se ajuste hacia atrás
+     */
+    public long millis() {
+        return currentMillis;
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        if (now > currentMillis) {
+            currentMillis = now;
+        }
+    }
+}
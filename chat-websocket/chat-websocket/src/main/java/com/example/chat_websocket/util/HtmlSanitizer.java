@@ -0,0 +1,130 @@
+package com.example.chat_websocket.util;
+
+
+/**
+ * Escapa los caracteres HTML especiales del contenido de los mensajes en una sola pasada
+ * Produce exactamente el mismo resultado que encadenar los reemplazos de
+ * {@code & < > " ' /} seguidos de {@code trim()}, sin cadenas intermedias
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public final class HtmlSanitizer {
+
+    /**
+     * Los buffers por hilo que crezcan por encima de este tamaño no se conservan
+     */
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private HtmlSanitizer() {
+    }
+
+    /**
+     * Escapa el mensaje y elimina los espacios y caracteres de control de los extremos
+     * Si no hay nada que escapar ni recortar devuelve la misma instancia
+     *
+     * @param message Mensaje original
+     * @return Mensaje sanitizado ("" si es nulo)
+     */
+    public static String sanitize(String message) {
+        if (message == null) {
+            return "";
+        }
+
+        // Los reemplazos nunca introducen espacios, así que recortar antes o después es equivalente
+        int length = message.length();
+        int start = 0;
+        int end = length;
+        while (start < end && message.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && message.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int extra = 0;
+        for (int i = start; i < end; i++) {
+            extra += extraLength(message.charAt(i));
+        }
+
+        if (extra == 0) {
+            return start == 0 && end == length ? message : message.substring(start, end);
+        }
+
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        out.ensureCapacity(end - start + extra);
+
+        int copied = start;
+        for (int i = start; i < end; i++) {
+            String replacement = replacement(message.charAt(i));
+            if (replacement != null) {
+                out.append(message, copied, i).append(replacement);
+                copied = i + 1;
+            }
+        }
+        out.append(message, copied, end);
+
+        String result = out.toString();
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Indica si el texto es nulo o queda vacío tras {@code trim()}, sin crear una cadena nueva
+     *
+     * @param text Texto a comprobar
+     * @return true si no tiene caracteres mayores que el espacio
+     */
+    public static boolean isBlank(String text) {
+        if (text == null) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int extraLength(char c) {
+        switch (c) {
+            case '&':
+                return 4;
+            case '<':
+            case '>':
+                return 3;
+            case '"':
+            case '\'':
+            case '/':
+                return 5;
+            default:
+                return 0;
+        }
+    }
+
+    private static String replacement(char c) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&#x27;";
+            case '/':
+                return "&#x2F;";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chat_websocket.util;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asigna a cada mensaje la marca de tiempo, el número de secuencia del servidor y el nodo que la asignó
+ * La secuencia es monótona dentro de cada nodo y sigue al reloj: es el instante actual multiplicado
+ * por SEQUENCES_PER_MILLI, o la anterior más uno si ya lo alcanzó. Así es monótona también entre
+ * reinicios mientras el nodo no promedie más de SEQUENCES_PER_MILLI mensajes por milisegundo,
+ * y las secuencias de nodos distintos se pueden comparar salvo por la diferencia entre sus relojes.
+ * Como dos nodos pueden asignar la misma secuencia, cada mensaje lleva también su nodo
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+@Component
+public class MessageSequencer implements AutoCloseable {
+
+    /**
+     * Secuencias disponibles por milisegundo transcurrido desde epoch
+     */
+    public static final long SEQUENCES_PER_MILLI = 1000;
+
+    private final String nodeId;
+    private final CachedClock clock;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Constructor con inyección de dependencias
+     *
+     * @param properties Propiedades del chat
+     */
+    public MessageSequencer(ChatProperties properties) {
+        String configured = properties.getBroker().getNodeId();
+        this.nodeId = configured != null && !configured.isBlank()
+                ? configured : UUID.randomUUID().toString().substring(0, 8);
+        this.clock = new CachedClock(properties.getClock().getResolution());
+    }
+
+    /**
+     * Asigna marca de tiempo y secuencia, reemplazando los valores enviados por el cliente
+     *
+     * @param message Mensaje a marcar
+     * @return El mismo mensaje
+     */
+    public ChatMessage stamp(ChatMessage message) {
+        long now = clock.millis();
+        message.setTimestamp(now);
+        message.setSequence(sequence.updateAndGet(previous -> Math.max(previous + 1, now * SEQUENCES_PER_MILLI)));
+        message.setNode(nodeId);
+        return message;
+    }
+
+    /**
+     * Identificador de este nodo: chat.broker.node-id o uno aleatorio por arranque
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Última secuencia asignada
+     */
+    public long currentSequence() {
+        return sequence.get();
+    }
+
+    @Override
+    public void close() {
+        clock.close();
+    }
+}
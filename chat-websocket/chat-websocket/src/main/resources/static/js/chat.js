@@ -3,6 +3,42 @@
 // Variables globales
 let stompClient = null;
 let username = null;
+let room = null;
+
+// Transporte: WebSocket nativo (/ws-native) y SockJS (/ws) como alternativa si el nativo no conecta
+let useSockJS = !('WebSocket' in window);
+let connected = false;
+
+// Presencia: usuarios en línea y versión aplicada; los deltas que llegan antes de la foto se guardan
+let onlineUsers = new Set();
+let presenceVersion = -1;
+let pendingPresence = [];
+
+// Envíos sin confirmar por messageId; se reenvían con el mismo id y el servidor descarta los repetidos
+const RESEND_INTERVAL_MS = 5000;
+const MAX_SEND_ATTEMPTS = 5;
+let pendingSends = new Map();
+let resendTimer = null;
+
+// Reconexión automática con espera exponencial y jitter; con el token la sesión se reanuda
+// sin anunciar la salida ni la entrada y el servidor reenvía solo los mensajes perdidos.
+// La secuencia solo es monótona dentro de cada nodo: se recuerda la última vista de cada uno
+const RECONNECT_BASE_MS = 500;
+const RECONNECT_MAX_MS = 30000;
+const RESUME_STORAGE_KEY = 'chat.resume';
+const MAX_DISPLAYED_SEQUENCES = 1000;
+const MAX_TRACKED_NODES = 16;
+let reconnectAttempts = 0;
+let reconnectTimer = null;
+let everConnected = false;
+let resumeToken = null;
+let resumeGraceMillis = 0;
+let disconnectedAt = 0;
+let lastSequences = new Map();
+let displayedSequences = new Set();
+
+// Clave de este navegador, compartida por sus pestañas: el nombre pertenece al cliente que lo registró
+const CLIENT_KEY_STORAGE_KEY = 'chat.client-key';
 
 // Elementos del DOM
 const usernamePage = document.querySelector('#username-page');
@@ -13,8 +49,14 @@ const messageInput = document.querySelector('#message');
 const messageArea = document.querySelector('#messageArea');
 const connectingElement = document.querySelector('.connecting');
 const connectedUserElement = document.querySelector('#connected-user');
+const onlineUsersElement = document.querySelector('#online-users');
 const logoutBtn = document.querySelector('#logout-btn');
 
+// Formato de hora local; el servidor envía la marca de tiempo en epoch millis
+const timeFormatter = new Intl.DateTimeFormat('es', {
+    hour: '2-digit', minute: '2-digit', second: '2-digit', hour12: false
+});
+
 // Colores para diferentes usuarios
 const colors = [
     '#2196F3', '#32c787', '#00BCD4', '#ff5652',
@@ -44,50 +86,231 @@ function connect(event) {
         return;
     }
 
-    // Oculta página de usuario y muestra página de chat
+    // Sala opcional; sin sala se usa el canal público
+    room = document.querySelector('#room').value.trim() || null;
+
+    if (room && !/^[A-Za-z0-9_-]{1,32}$/.test(room)) {
+        alert('La sala solo puede contener letras, números, "_" y "-"');
+        return;
+    }
+
+    showChatPage();
+    openConnection();
+}
+
+/**
+ * Oculta la página de usuario y muestra la del chat
+ */
+function showChatPage() {
     usernamePage.classList.add('hidden');
     chatPage.classList.remove('hidden');
 
     // Actualiza el nombre del usuario conectado
-    connectedUserElement.textContent = username;
+    connectedUserElement.textContent = room ? username + ' @ ' + room : username;
+}
 
-    // Crea conexión WebSocket usando SockJS
-    const socket = new SockJS('/ws');
-    stompClient = Stomp.over(socket);
+/**
+ * Tras recargar la página retoma la sesión guardada si aún está dentro del plazo de gracia
+ */
+function restoreSession() {
+    let saved = null;
+    try {
+        saved = JSON.parse(sessionStorage.getItem(RESUME_STORAGE_KEY));
+        sessionStorage.removeItem(RESUME_STORAGE_KEY);
+    } catch (e) {
+        return;
+    }
+    if (!saved || Date.now() - saved.disconnectedAt >= saved.graceMillis) {
+        return;
+    }
+
+    username = saved.username;
+    room = saved.room;
+    resumeToken = saved.token;
+    resumeGraceMillis = saved.graceMillis;
+    disconnectedAt = saved.disconnectedAt;
+
+    showChatPage();
+    openConnection();
+}
+
+/**
+ * Abre la conexión STOMP: WebSocket nativo si el navegador lo soporta, SockJS en caso contrario
+ */
+function openConnection() {
+    const socket = useSockJS ? new SockJS('/ws') : new WebSocket(nativeUrl());
+    const client = Stomp.over(socket);
+    stompClient = client;
 
     // Desactiva logs de debug
-    stompClient.debug = null;
+    client.debug = null;
+
+    // Conecta al servidor; una conexión que termina de abrir después de un logout se cierra
+    client.connect({}, function() {
+        if (client !== stompClient) {
+            client.disconnect();
+            return;
+        }
+        onConnected();
+    }, function(error) {
+        if (client === stompClient) {
+            onError(error);
+        }
+    });
+}
 
-    // Conecta al servidor
-    stompClient.connect({}, onConnected, onError);
+/**
+ * URL del endpoint WebSocket nativo en el mismo host que la página
+ */
+function nativeUrl() {
+    return (window.location.protocol === 'https:' ? 'wss://' : 'ws://') + window.location.host + '/ws-native';
 }
 
 /**
  * Callback cuando la conexión es exitosa
  */
 function onConnected() {
-    // Suscribe al canal público
-    stompClient.subscribe('/topic/public', onMessageReceived);
+    connected = true;
+    everConnected = true;
+    reconnectAttempts = 0;
+
+    // Suscribe al canal de la sala o al canal público
+    stompClient.subscribe(topicDestination(), onMessageReceived);
+
+    // Suscribe a la cola privada donde llega el historial reciente al unirse
+    stompClient.subscribe('/user/queue/history', onHistoryReceived);
+
+    // Suscribe a la cola de mensajes privados (solo llegan los dirigidos a este usuario)
+    stompClient.subscribe('/user/queue/messages', onPrivateMessage);
+
+    // Suscribe a las respuestas de las búsquedas en el historial
+    stompClient.subscribe('/user/queue/history.page', onHistoryPage);
+
+    // Suscribe a los avisos del servidor (por ejemplo, mensajes descartados por exceso de frecuencia)
+    stompClient.subscribe('/user/queue/errors', onErrorNotice);
+
+    // Suscribe a las confirmaciones de los mensajes enviados por esta sesión
+    stompClient.subscribe('/user/queue/acks', onAck);
 
-    // Notifica al servidor que el usuario se ha unido
-    stompClient.send("/app/chat.addUser",
-        {},
+    // Suscribe al token de reanudación que el servidor envía al unirse
+    stompClient.subscribe('/user/queue/resume', onResumeGrant);
+
+    // Presencia: cambios agrupados para todos y la lista completa solo para esta sesión
+    stompClient.subscribe('/topic/presence', onPresenceDelta);
+    stompClient.subscribe('/user/queue/presence', onPresenceSnapshot);
+    stompClient.send('/app/presence.list', {}, '');
+
+    // Notifica al servidor que el usuario se ha unido; si vuelve dentro del plazo, reanuda la sesión
+    stompClient.send(appDestination('addUser'),
+        Object.assign({'client-key': clientKey()}, resumeHeaders()),
         JSON.stringify({sender: username, type: 'JOIN'})
     );
 
+    // Reenvía lo que quedó sin confirmar en la conexión anterior
+    resendPending(true);
+
     // Oculta el spinner de conexión
     connectingElement.classList.add('hidden');
+    connectingElement.style.color = '#666';
 
     console.log('Conectado al servidor WebSocket');
 }
 
 /**
- * Callback cuando hay un error de conexión
+ * Destino donde se reciben los mensajes de la sala actual
+ */
+function topicDestination() {
+    return room ? '/topic/room.' + room : '/topic/public';
+}
+
+/**
+ * Destino de la aplicación para una acción en la sala actual
+ */
+function appDestination(action) {
+    return room ? '/app/chat.' + room + '.' + action : '/app/chat.' + action;
+}
+
+/**
+ * Cabeceras del frame de ingreso para reanudar la sesión anterior
+ * Sin mensajes en pantalla (tras recargar) no se envía la secuencia y el servidor reenvía el historial reciente
+ */
+function resumeHeaders() {
+    if (resumeToken === null || Date.now() - disconnectedAt >= resumeGraceMillis) {
+        return {};
+    }
+    const headers = {'resume-token': resumeToken};
+    if (lastSequences.size > 0) {
+        headers['last-sequence'] = Array.from(lastSequences, ([node, sequence]) => node + ':' + sequence).join(',');
+    }
+    return headers;
+}
+
+/**
+ * Clave del cliente guardada en localStorage; sin almacenamiento disponible cada carga es un cliente nuevo
+ */
+function clientKey() {
+    try {
+        let key = localStorage.getItem(CLIENT_KEY_STORAGE_KEY);
+        if (key === null) {
+            key = newMessageId();
+            localStorage.setItem(CLIENT_KEY_STORAGE_KEY, key);
+        }
+        return key;
+    } catch (e) {
+        return newMessageId();
+    }
+}
+
+/**
+ * Guarda el token recibido al unirse
+ */
+function onResumeGrant(payload) {
+    const grant = JSON.parse(payload.body);
+    resumeToken = grant.token;
+    resumeGraceMillis = grant.graceMillis;
+}
+
+/**
+ * Callback cuando hay un error de conexión o se pierde la conexión
  */
 function onError(error) {
-    connectingElement.textContent = 'No se pudo conectar al servidor. Intenta recargar la página.';
-    connectingElement.style.color = '#d32f2f';
+    // Un proxy o firewall puede bloquear el WebSocket nativo: se reintenta una vez con SockJS
+    if (!everConnected && !useSockJS) {
+        console.warn('WebSocket nativo no disponible, usando SockJS');
+        useSockJS = true;
+        openConnection();
+        return;
+    }
+
+    // Los envíos pendientes se conservan hasta la próxima conexión
+    if (connected) {
+        disconnectedAt = Date.now();
+    }
+    connected = false;
     console.error('Error de conexión:', error);
+    scheduleReconnect();
+}
+
+/**
+ * Programa la reconexión con espera exponencial y jitter completo: tras un reinicio del servidor
+ * los clientes no vuelven todos a la vez
+ */
+function scheduleReconnect() {
+    if (reconnectTimer !== null) {
+        return;
+    }
+    const ceiling = Math.min(RECONNECT_MAX_MS, RECONNECT_BASE_MS * Math.pow(2, reconnectAttempts));
+    const delay = Math.random() * ceiling;
+    reconnectAttempts++;
+
+    connectingElement.classList.remove('hidden');
+    connectingElement.textContent = 'Conexión perdida. Reintentando en ' + Math.ceil(delay / 1000) + ' s...';
+    connectingElement.style.color = '#d32f2f';
+
+    reconnectTimer = setTimeout(() => {
+        reconnectTimer = null;
+        openConnection();
+    }, delay);
 }
 
 /**
@@ -99,22 +322,244 @@ function sendMessage(event) {
     const messageContent = messageInput.value.trim();
 
     if (messageContent && stompClient) {
+        // "/msg usuario texto" envía un mensaje privado en lugar de difundirlo
+        const privateMatch = messageContent.match(/^\/msg\s+(\S+)\s+([\s\S]+)$/);
+        if (privateMatch) {
+            sendTracked('/app/chat.private', {
+                recipient: privateMatch[1],
+                content: privateMatch[2],
+                type: 'PRIVATE'
+            });
+            messageInput.value = '';
+            return;
+        }
+
+        // "/buscar palabras" consulta el historial de la sala actual
+        const searchMatch = messageContent.match(/^\/buscar\s+([\s\S]+)$/);
+        if (searchMatch) {
+            stompClient.send('/app/history.page', {}, JSON.stringify({room: room, q: searchMatch[1], limit: 20}));
+            messageInput.value = '';
+            return;
+        }
+
         const chatMessage = {
             sender: username,
             content: messageContent,
             type: 'CHAT'
         };
 
-        stompClient.send("/app/chat.sendMessage", {}, JSON.stringify(chatMessage));
+        sendTracked(appDestination('sendMessage'), chatMessage);
         messageInput.value = '';
     }
 }
 
+/**
+ * Envía un mensaje con un messageId nuevo y lo guarda hasta recibir su confirmación
+ */
+function sendTracked(destination, message) {
+    message.messageId = newMessageId();
+    const body = JSON.stringify(message);
+    pendingSends.set(message.messageId, {destination: destination, body: body, attempts: 1, sentAt: Date.now()});
+    stompClient.send(destination, {}, body);
+    scheduleResend();
+}
+
+function newMessageId() {
+    if (window.crypto && typeof window.crypto.randomUUID === 'function') {
+        return window.crypto.randomUUID();
+    }
+    return Date.now().toString(36) + '-' + Math.random().toString(36).slice(2, 12);
+}
+
+/**
+ * Reenvía los mensajes sin confirmar; sin forzar, solo los que llevan más de RESEND_INTERVAL_MS esperando
+ */
+function resendPending(force) {
+    resendTimer = null;
+    if (!connected || stompClient === null) {
+        return;
+    }
+
+    const now = Date.now();
+    pendingSends.forEach((pending, messageId) => {
+        if (!force && now - pending.sentAt < RESEND_INTERVAL_MS) {
+            return;
+        }
+        if (pending.attempts >= MAX_SEND_ATTEMPTS) {
+            pendingSends.delete(messageId);
+            showNotice('No se pudo enviar un mensaje', '#d32f2f');
+            return;
+        }
+        pending.attempts++;
+        pending.sentAt = now;
+        stompClient.send(pending.destination, {}, pending.body);
+    });
+    scheduleResend();
+}
+
+function scheduleResend() {
+    if (resendTimer === null && pendingSends.size > 0) {
+        resendTimer = setTimeout(() => resendPending(false), RESEND_INTERVAL_MS);
+    }
+}
+
+/**
+ * Confirmación del servidor: el mensaje se recibió (o era un reenvío ya recibido)
+ */
+function onAck(payload) {
+    pendingSends.delete(JSON.parse(payload.body).messageId);
+}
+
 /**
  * Maneja los mensajes recibidos del servidor
+ * Con la agrupación de difusiones activa un frame puede traer un array de mensajes
  */
 function onMessageReceived(payload) {
-    const message = JSON.parse(payload.body);
+    const body = JSON.parse(payload.body);
+    if (Array.isArray(body)) {
+        body.forEach(displayTopicMessage);
+    } else {
+        displayTopicMessage(body);
+    }
+}
+
+/**
+ * Muestra un mensaje privado; no se reenvían al reanudar y no cuentan para la última secuencia
+ */
+function onPrivateMessage(payload) {
+    displayMessage(JSON.parse(payload.body));
+}
+
+/**
+ * Muestra el historial reciente, o los mensajes perdidos al reanudar, recibidos en un único frame
+ * Con history-reset el servidor ya no retiene todo lo perdido y envía el historial reciente
+ */
+function onHistoryReceived(payload) {
+    if (payload.headers['history-reset'] === 'true') {
+        showNotice('Algunos mensajes se perdieron durante la desconexión; se muestra el historial reciente', '#f57c00');
+    }
+    JSON.parse(payload.body).forEach(displayTopicMessage);
+}
+
+/**
+ * Muestra un mensaje del canal o la sala y recuerda la última secuencia de su nodo para reanudar
+ * Tras una reconexión sin token el historial puede repetir mensajes ya mostrados: se omiten
+ */
+function displayTopicMessage(message) {
+    if (message.sequence) {
+        const key = (message.node || '') + ':' + message.sequence;
+        if (displayedSequences.has(key)) {
+            return;
+        }
+        displayedSequences.add(key);
+        if (displayedSequences.size > MAX_DISPLAYED_SEQUENCES) {
+            displayedSequences.delete(displayedSequences.values().next().value);
+        }
+        if (message.node) {
+            trackSequence(message.node, message.sequence);
+        }
+    }
+    displayMessage(message);
+}
+
+/**
+ * Recuerda la última secuencia vista del nodo; con demasiados nodos olvida el de secuencia más antigua
+ */
+function trackSequence(node, sequence) {
+    lastSequences.set(node, Math.max(lastSequences.get(node) || 0, sequence));
+    if (lastSequences.size > MAX_TRACKED_NODES) {
+        let oldest = null;
+        lastSequences.forEach((value, key) => {
+            if (oldest === null || value < lastSequences.get(oldest)) {
+                oldest = key;
+            }
+        });
+        lastSequences.delete(oldest);
+    }
+}
+
+/**
+ * Muestra los resultados de una búsqueda en el historial
+ */
+function onHistoryPage(payload) {
+    const page = JSON.parse(payload.body);
+    showNotice(page.messages.length + ' resultados de la búsqueda', '#4b64a2');
+    page.messages.forEach(displayMessage);
+}
+
+/**
+ * Muestra un aviso del servidor dirigido solo a esta sesión
+ */
+function onErrorNotice(payload) {
+    showNotice(JSON.parse(payload.body).message, '#d32f2f');
+}
+
+function showNotice(text, color) {
+    const noticeElement = document.createElement('li');
+    noticeElement.classList.add('event-message');
+
+    const contentElement = document.createElement('div');
+    contentElement.classList.add('message-content');
+    contentElement.textContent = text;
+    contentElement.style.color = color;
+
+    noticeElement.appendChild(contentElement);
+    messageArea.appendChild(noticeElement);
+    messageArea.scrollTop = messageArea.scrollHeight;
+}
+
+/**
+ * Aplica la lista completa de usuarios en línea y los cambios que llegaron antes
+ */
+function onPresenceSnapshot(payload) {
+    const snapshot = JSON.parse(payload.body);
+    onlineUsers = new Set(snapshot.users);
+    presenceVersion = snapshot.version;
+
+    pendingPresence.forEach(applyPresenceDelta);
+    pendingPresence = [];
+    renderOnlineUsers();
+}
+
+/**
+ * Aplica un cambio de presencia; si aún no llegó la lista completa lo guarda
+ */
+function onPresenceDelta(payload) {
+    const delta = JSON.parse(payload.body);
+    if (presenceVersion < 0) {
+        pendingPresence.push(delta);
+        return;
+    }
+    applyPresenceDelta(delta);
+    renderOnlineUsers();
+}
+
+function applyPresenceDelta(delta) {
+    // Ignora los cambios ya incluidos en la lista completa
+    if (delta.version <= presenceVersion) {
+        return;
+    }
+    delta.joined.forEach(user => onlineUsers.add(user));
+    delta.left.forEach(user => onlineUsers.delete(user));
+    presenceVersion = delta.version;
+}
+
+/**
+ * Muestra el número de usuarios en línea; la lista completa aparece al pasar el cursor
+ */
+function renderOnlineUsers() {
+    onlineUsersElement.textContent = onlineUsers.size + ' en línea';
+    onlineUsersElement.title = Array.from(onlineUsers).sort().join(', ');
+}
+
+/**
+ * Agrega un mensaje al área de mensajes
+ */
+function displayMessage(message) {
+    // La difusión del propio mensaje también lo confirma
+    if (message.messageId) {
+        pendingSends.delete(message.messageId);
+    }
 
     const messageElement = document.createElement('li');
 
@@ -132,13 +577,18 @@ function onMessageReceived(payload) {
         messageElement.appendChild(contentElement);
     } else {
         messageElement.classList.add('chat-message');
+        if (message.type === 'PRIVATE') {
+            messageElement.classList.add('private-message');
+        }
 
         const messageContentDiv = document.createElement('div');
         messageContentDiv.classList.add('message-content');
 
         const senderElement = document.createElement('div');
         senderElement.classList.add('message-sender');
-        senderElement.textContent = message.sender;
+        senderElement.textContent = message.type === 'PRIVATE'
+            ? message.sender + ' → ' + message.recipient + ' (privado)'
+            : message.sender;
         senderElement.style.color = getAvatarColor(message.sender);
 
         const textElement = document.createElement('div');
@@ -147,7 +597,7 @@ function onMessageReceived(payload) {
 
         const timeElement = document.createElement('div');
         timeElement.classList.add('message-time');
-        timeElement.textContent = message.timestamp;
+        timeElement.textContent = formatTime(message.timestamp);
 
         messageContentDiv.appendChild(senderElement);
         messageContentDiv.appendChild(textElement);
@@ -160,6 +610,13 @@ function onMessageReceived(payload) {
     messageArea.scrollTop = messageArea.scrollHeight;
 }
 
+/**
+ * Convierte la marca de tiempo del servidor a hora legible
+ */
+function formatTime(timestamp) {
+    return timestamp ? timeFormatter.format(new Date(timestamp)) : '';
+}
+
 /**
  * Genera un color consistente para cada usuario
  */
@@ -176,13 +633,32 @@ function getAvatarColor(messageSender) {
  * Desconecta del servidor y cierra la sesión
  */
 function logout() {
-    if (stompClient !== null) {
-        stompClient.disconnect();
+    // Se anula antes de desconectar: los callbacks de esa conexión dejan de tener efecto
+    const client = stompClient;
+    stompClient = null;
+    if (client !== null && connected) {
+        client.disconnect();
     }
 
     // Reinicia variables
     username = null;
-    stompClient = null;
+    room = null;
+    connected = false;
+    clearTimeout(reconnectTimer);
+    reconnectTimer = null;
+    reconnectAttempts = 0;
+    everConnected = false;
+    resumeToken = null;
+    lastSequences = new Map();
+    displayedSequences = new Set();
+    onlineUsers = new Set();
+    presenceVersion = -1;
+    pendingPresence = [];
+    pendingSends = new Map();
+    clearTimeout(resendTimer);
+    resendTimer = null;
+    onlineUsersElement.textContent = '';
+    onlineUsersElement.title = '';
 
     // Limpia el área de mensajes
     messageArea.innerHTML = '';
@@ -196,6 +672,7 @@ function logout() {
 
     // Limpia el campo de nombre
     document.querySelector('#name').value = '';
+    document.querySelector('#room').value = '';
 
     console.log('Sesión cerrada');
 }
@@ -205,9 +682,24 @@ usernameForm.addEventListener('submit', connect);
 messageForm.addEventListener('submit', sendMessage);
 logoutBtn.addEventListener('click', logout);
 
-// Previene que el usuario cierre la página sin desconectarse
+// Previene que el usuario cierre la página sin desconectarse; guarda el token por si solo la recarga
 window.addEventListener('beforeunload', function(e) {
     if (stompClient !== null) {
+        if (resumeToken !== null) {
+            try {
+                sessionStorage.setItem(RESUME_STORAGE_KEY, JSON.stringify({
+                    username: username,
+                    room: room,
+                    token: resumeToken,
+                    graceMillis: resumeGraceMillis,
+                    disconnectedAt: Date.now()
+                }));
+            } catch (err) {
+                console.warn('No se pudo guardar la sesión para reanudarla', err);
+            }
+        }
         stompClient.disconnect();
     }
-});
\ No newline at end of file
+});
+
+restoreSession();
\ No newline at end of file
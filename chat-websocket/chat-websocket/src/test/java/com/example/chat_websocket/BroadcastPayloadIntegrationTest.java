@@ -0,0 +1,164 @@
+package com.example.chat_websocket;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica que un mensaje difundido se serializa una sola vez y que todas las sesiones,
+ * por SockJS y por WebSocket nativo, reciben el mismo payload sin copias intermedias
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BroadcastPayloadIntegrationTest {
+
+    private static final String ROOM = "serializacion";
+    private static final String TOPIC = "/topic/room." + ROOM;
+    private static final int SOCKJS_SUBSCRIBERS = 8;
+    private static final int NATIVE_SUBSCRIBERS = 4;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    @Qualifier("brokerMessageConverter")
+    private CompositeMessageConverter brokerMessageConverter;
+
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private AbstractSubscribableChannel clientOutboundChannel;
+
+    private MappingJackson2MessageConverter jsonConverter;
+    private ObjectMapper originalMapper;
+    private ObjectMapper countingMapper;
+    private final List<Message<?>> outbound = new CopyOnWriteArrayList<>();
+    private final ChannelInterceptor outboundRecorder = new ChannelInterceptor() {
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+                    && TOPIC.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                outbound.add(message);
+            }
+            return message;
+        }
+    };
+    private final List<StompSession> sessions = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (MessageConverter converter : brokerMessageConverter.getConverters()) {
+            if (converter.getClass() == MappingJackson2MessageConverter.class) {
+                jsonConverter = (MappingJackson2MessageConverter) converter;
+            }
+        }
+        originalMapper = jsonConverter.getObjectMapper();
+        countingMapper = Mockito.spy(originalMapper);
+        jsonConverter.setObjectMapper(countingMapper);
+        clientOutboundChannel.addInterceptor(outboundRecorder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessions.forEach(StompSession::disconnect);
+        clientOutboundChannel.removeInterceptor(outboundRecorder);
+        jsonConverter.setObjectMapper(originalMapper);
+    }
+
+    @Test
+    @DisplayName("Debe serializar una vez y compartir el payload entre todas las sesiones y transportes")
+    void testSerializedOnceAndShared() throws Exception {
+        // Arrange
+        int subscribers = SOCKJS_SUBSCRIBERS + NATIVE_SUBSCRIBERS;
+        CountDownLatch joins = new CountDownLatch(subscribers);
+        CountDownLatch chats = new CountDownLatch(subscribers);
+
+        WebSocketStompClient sockJsClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        WebSocketStompClient nativeClient = new WebSocketStompClient(new StandardWebSocketClient());
+        sockJsClient.setMessageConverter(new MappingJackson2MessageConverter());
+        nativeClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        String url = "ws://localhost:" + port + "/ws";
+        for (int i = 0; i < subscribers; i++) {
+            StompSession session = i < SOCKJS_SUBSCRIBERS
+                    ? sockJsClient.connectAsync(url, new StompSessionHandlerAdapter() {
+                    }).get(10, TimeUnit.SECONDS)
+                    : nativeClient.connectAsync(url + "/websocket", new StompSessionHandlerAdapter() {
+                    }).get(10, TimeUnit.SECONDS);
+            session.subscribe(TOPIC, new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return ChatMessage.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    ChatMessage message = (ChatMessage) payload;
+                    (message.getType() == MessageType.JOIN ? joins : chats).countDown();
+                }
+            });
+            sessions.add(session);
+        }
+        // Da tiempo a que se registren las suscripciones
+        Thread.sleep(500);
+
+        // Act
+        StompSession publisher = sessions.get(0);
+        publisher.send("/app/chat." + ROOM + ".addUser", new ChatMessage(MessageType.JOIN, null, "Serializador"));
+        assertTrue(joins.await(10, TimeUnit.SECONDS));
+        publisher.send("/app/chat." + ROOM + ".sendMessage",
+                new ChatMessage(MessageType.CHAT, "Una sola serialización", "Serializador"));
+        assertTrue(chats.await(10, TimeUnit.SECONDS));
+
+        // Assert: una serialización por difusión (JOIN y CHAT)
+        long serializations = Mockito.mockingDetails(countingMapper).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("writeValue")
+                        && invocation.getArguments().length == 2
+                        && invocation.getArguments()[0] instanceof JsonGenerator
+                        && invocation.getArguments()[1] instanceof ChatMessage)
+                .count();
+        assertEquals(2, serializations);
+
+        // Cada difusión llega al canal de salida con la misma instancia de payload para todas las sesiones
+        assertEquals(2 * subscribers, outbound.size());
+        Set<Object> payloads = Collections.newSetFromMap(new IdentityHashMap<>());
+        outbound.forEach(message -> payloads.add(message.getPayload()));
+        assertEquals(2, payloads.size());
+    }
+}
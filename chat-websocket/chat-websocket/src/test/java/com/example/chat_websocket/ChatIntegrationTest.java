@@ -1,38 +1,71 @@
 package com.example.chat_websocket;
 
 
+import com.example.chat_websocket.codec.CborMessageConverter;
+import com.example.chat_websocket.codec.PayloadCompressor;
+import com.example.chat_websocket.controller.ChatController;
 import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.ErrorMessage;
+import com.example.chat_websocket.model.HistoryPage;
+import com.example.chat_websocket.model.HistoryQuery;
+import com.example.chat_websocket.model.MessageAck;
 import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.model.PresenceDelta;
+import com.example.chat_websocket.model.PresenceSnapshot;
+import com.example.chat_websocket.model.ResumeGrant;
+import com.example.chat_websocket.ratelimit.PayloadSizeLimiter;
+import com.example.chat_websocket.resume.ResumeTokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.SimpleMessageConverter;
 import org.springframework.messaging.simp.stomp.*;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 import org.springframework.web.socket.sockjs.client.SockJsClient;
 import org.springframework.web.socket.sockjs.client.Transport;
 import org.springframework.web.socket.sockjs.client.WebSocketTransport;
 
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.InflaterInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Pruebas de integración para el sistema de chat WebSocket
  */
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "chat.compression.enabled=true")
 class ChatIntegrationTest {
 
     @LocalServerPort
     private int port;
 
+    @Autowired
+    private TestRestTemplate restTemplate;
+
     private WebSocketStompClient stompClient;
     private String wsUrl;
 
@@ -250,7 +283,816 @@ class ChatIntegrationTest {
 
         ChatMessage received = messageReceived.get(10, TimeUnit.SECONDS);
 
-        assertNotNull(received.getTimestamp());
-        assertTrue(received.getTimestamp().matches("\\d{2}:\\d{2}:\\d{2}"));
+        // La marca de tiempo es epoch millis asignada por el servidor
+        assertTrue(Math.abs(System.currentTimeMillis() - received.getTimestamp()) < 60_000);
+        assertTrue(received.getSequence() > 0);
+    }
+
+    @Test
+    @DisplayName("Debe reenviar el historial reciente a quien se une")
+    void testHistoryReplayOnJoin() throws Exception {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/public", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        if (((ChatMessage) payload).getContent().equals("Mensaje para el historial")) {
+                            sent.complete(null);
+                        }
+                    }
+                });
+
+                ChatMessage testMessage = new ChatMessage();
+                testMessage.setType(MessageType.CHAT);
+                testMessage.setSender("HistoryUser");
+                testMessage.setContent("Mensaje para el historial");
+                session.send("/app/chat.sendMessage", testMessage);
+            }
+        });
+        sent.get(10, TimeUnit.SECONDS);
+
+        CompletableFuture<ChatMessage[]> history = new CompletableFuture<>();
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/user/queue/history", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage[].class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        history.complete((ChatMessage[]) payload);
+                    }
+                });
+
+                ChatMessage joinMsg = new ChatMessage();
+                joinMsg.setType(MessageType.JOIN);
+                joinMsg.setSender("LateUser");
+                session.send("/app/chat.addUser", joinMsg);
+            }
+        });
+
+        ChatMessage[] received = history.get(10, TimeUnit.SECONDS);
+
+        assertTrue(received.length >= 1);
+        assertEquals("Mensaje para el historial", received[received.length - 1].getContent());
+    }
+
+    @Test
+    @DisplayName("Los mensajes de una sala solo deben llegar a sus miembros")
+    void testRoomMessagesStayInRoom() throws Exception {
+        List<ChatMessage> publicMessages = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> publicReady = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/public", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        publicMessages.add((ChatMessage) payload);
+                        publicReady.complete(null);
+                    }
+                });
+
+                ChatMessage joinMsg = new ChatMessage();
+                joinMsg.setType(MessageType.JOIN);
+                joinMsg.setSender("PublicUser");
+                session.send("/app/chat.addUser", joinMsg);
+            }
+        });
+        publicReady.get(10, TimeUnit.SECONDS);
+
+        CompletableFuture<ChatMessage> roomJoin = new CompletableFuture<>();
+        CompletableFuture<ChatMessage> roomMessage = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/room.pruebas", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        ChatMessage msg = (ChatMessage) payload;
+                        if (msg.getType() == MessageType.JOIN) {
+                            roomJoin.complete(msg);
+                        } else {
+                            roomMessage.complete(msg);
+                        }
+                    }
+                });
+
+                ChatMessage joinMsg = new ChatMessage();
+                joinMsg.setType(MessageType.JOIN);
+                joinMsg.setSender("RoomUser");
+                session.send("/app/chat.pruebas.addUser", joinMsg);
+
+                ChatMessage chatMsg = new ChatMessage();
+                chatMsg.setType(MessageType.CHAT);
+                chatMsg.setSender("RoomUser");
+                chatMsg.setContent("Solo para la sala");
+                session.send("/app/chat.pruebas.sendMessage", chatMsg);
+            }
+        });
+
+        assertEquals("RoomUser", roomJoin.get(10, TimeUnit.SECONDS).getSender());
+        assertEquals("Solo para la sala", roomMessage.get(10, TimeUnit.SECONDS).getContent());
+
+        Thread.sleep(300);
+        assertTrue(publicMessages.stream().noneMatch(msg -> "RoomUser".equals(msg.getSender())));
+    }
+
+    @Test
+    @DisplayName("Debe avisar a la sesión que supera el límite de frecuencia")
+    void testRateLimitNotice() throws Exception {
+        CompletableFuture<ErrorMessage> notice = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/user/queue/errors", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ErrorMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        notice.complete((ErrorMessage) payload);
+                    }
+                });
+
+                // Envía muchos más mensajes que la ráfaga permitida a una sala aislada
+                ChatMessage floodMsg = new ChatMessage(MessageType.CHAT, "Inundación", "FloodUser");
+                for (int i = 0; i < 200; i++) {
+                    session.send("/app/chat.limite.sendMessage", floodMsg);
+                }
+            }
+        });
+
+        assertEquals("RATE_LIMITED", notice.get(10, TimeUnit.SECONDS).getCode());
+    }
+
+    @Test
+    @DisplayName("Debe exponer las métricas del chat en el actuator")
+    void testMetricsEndpoint() throws Exception {
+        CompletableFuture<Void> received = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/room.metricas", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        if (((ChatMessage) payload).getType() == MessageType.CHAT) {
+                            received.complete(null);
+                        }
+                    }
+                });
+
+                session.send("/app/chat.metricas.addUser", new ChatMessage(MessageType.JOIN, null, "MetricsUser"));
+                session.send("/app/chat.metricas.sendMessage",
+                        new ChatMessage(MessageType.CHAT, "Mensaje medido", "MetricsUser"));
+            }
+        });
+        received.get(10, TimeUnit.SECONDS);
+
+        String latency = restTemplate.getForObject("/actuator/metrics/chat.broadcast.latency", String.class);
+        String sessions = restTemplate.getForObject("/actuator/metrics/chat.sessions.active", String.class);
+        String queue = restTemplate.getForObject("/actuator/metrics/chat.channel.queue.size?tag=channel:inbound",
+                String.class);
+
+        assertTrue(latency.contains("\"COUNT\""), latency);
+        assertFalse(latency.contains("\"statistic\":\"COUNT\",\"value\":0.0"), latency);
+        assertTrue(sessions.contains("\"VALUE\""), sessions);
+        assertTrue(queue.contains("\"VALUE\""), queue);
+    }
+
+    @Test
+    @DisplayName("Debe difundir los cambios de presencia y responder la lista de usuarios en línea")
+    void testPresence() throws Exception {
+        CompletableFuture<PresenceDelta> delta = new CompletableFuture<>();
+        CompletableFuture<PresenceSnapshot> snapshot = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/presence", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return PresenceDelta.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        PresenceDelta received = (PresenceDelta) payload;
+                        if (received.getJoined().contains("PresenceUser")) {
+                            delta.complete(received);
+                            session.send("/app/presence.list", "");
+                        }
+                    }
+                });
+                session.subscribe("/user/queue/presence", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return PresenceSnapshot.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        snapshot.complete((PresenceSnapshot) payload);
+                    }
+                });
+
+                session.send("/app/chat.addUser", new ChatMessage(MessageType.JOIN, null, "PresenceUser"));
+            }
+        });
+
+        PresenceDelta receivedDelta = delta.get(10, TimeUnit.SECONDS);
+        PresenceSnapshot receivedSnapshot = snapshot.get(10, TimeUnit.SECONDS);
+
+        assertTrue(receivedSnapshot.getUsers().contains("PresenceUser"));
+        assertTrue(receivedSnapshot.getVersion() >= receivedDelta.getVersion());
+    }
+
+    @Test
+    @DisplayName("Debe entregar los mensajes en CBOR a una conexión nativa que lo negocia en CONNECT")
+    void testCborWireFormat() throws Exception {
+        CompletableFuture<ChatMessage> received = new CompletableFuture<>();
+        CompletableFuture<String> contentType = new CompletableFuture<>();
+
+        // Conexión WebSocket nativa (sin SockJS) al mismo endpoint
+        WebSocketStompClient nativeClient = new WebSocketStompClient(new StandardWebSocketClient());
+        nativeClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new CborMessageConverter(), new MappingJackson2MessageConverter())));
+
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.setContentType(CborMessageConverter.APPLICATION_CBOR);
+
+        nativeClient.connectAsync(wsUrl + "/websocket", new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {
+                    @Override
+                    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                        session.subscribe("/topic/room.cbor", new StompFrameHandler() {
+                            @Override
+                            public Type getPayloadType(StompHeaders headers) {
+                                return ChatMessage.class;
+                            }
+
+                            @Override
+                            public void handleFrame(StompHeaders headers, Object payload) {
+                                if (((ChatMessage) payload).getType() == MessageType.CHAT) {
+                                    contentType.complete(String.valueOf(headers.getContentType()));
+                                    received.complete((ChatMessage) payload);
+                                }
+                            }
+                        });
+
+                        // El cliente envía JSON; el formato de recepción es independiente
+                        session.send("/app/chat.cbor.addUser", new ChatMessage(MessageType.JOIN, null, "CborUser"));
+                        session.send("/app/chat.cbor.sendMessage",
+                                new ChatMessage(MessageType.CHAT, "Mensaje binario", "CborUser"));
+                    }
+                });
+
+        ChatMessage message = received.get(10, TimeUnit.SECONDS);
+
+        assertEquals("application/cbor", contentType.get());
+        assertEquals("Mensaje binario", message.getContent());
+        assertEquals("CborUser", message.getSender());
+        assertTrue(message.getTimestamp() > 0);
+    }
+
+    @Test
+    @DisplayName("Debe enviar y recibir mensajes por el endpoint WebSocket nativo")
+    void testNativeEndpoint() throws Exception {
+        CompletableFuture<ChatMessage> received = new CompletableFuture<>();
+
+        // Conexión sin SockJS: cada frame STOMP viaja en un mensaje WebSocket sin envoltorio
+        WebSocketStompClient nativeClient = new WebSocketStompClient(new StandardWebSocketClient());
+        nativeClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        nativeClient.connectAsync("ws://localhost:" + port + "/ws-native", new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/room.nativo", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        if (((ChatMessage) payload).getType() == MessageType.CHAT) {
+                            received.complete((ChatMessage) payload);
+                        }
+                    }
+                });
+
+                session.send("/app/chat.nativo.addUser", new ChatMessage(MessageType.JOIN, null, "NativeUser"));
+                session.send("/app/chat.nativo.sendMessage",
+                        new ChatMessage(MessageType.CHAT, "Mensaje nativo", "NativeUser"));
+            }
+        });
+
+        ChatMessage message = received.get(10, TimeUnit.SECONDS);
+
+        assertEquals("Mensaje nativo", message.getContent());
+        assertEquals("NativeUser", message.getSender());
+    }
+
+    @Test
+    @DisplayName("Debe comprimir los mensajes largos para los clientes que piden deflate")
+    void testPayloadCompression() throws Exception {
+        CompletableFuture<byte[]> received = new CompletableFuture<>();
+        CompletableFuture<String> contentEncoding = new CompletableFuture<>();
+        String content = "Resumen de la reunión: revisamos métricas, despliegues y alertas del chat. ".repeat(25).trim();
+
+        byte[] join = new ObjectMapper().writeValueAsBytes(new ChatMessage(MessageType.JOIN, null, "DeflateUser"));
+        byte[] request = new ObjectMapper().writeValueAsBytes(new ChatMessage(MessageType.CHAT, content, "DeflateUser"));
+
+        // Los payloads viajan tal cual en ambos sentidos: el comprimido se recibe sin conversión JSON
+        WebSocketStompClient nativeClient = new WebSocketStompClient(new StandardWebSocketClient());
+        nativeClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new SimpleMessageConverter(), new MappingJackson2MessageConverter())));
+
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.set(PayloadCompressor.ACCEPT_ENCODING_HEADER, PayloadCompressor.DEFLATE);
+
+        nativeClient.connectAsync("ws://localhost:" + port + "/ws-native", new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {
+                    @Override
+                    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                        session.subscribe("/topic/room.deflate", new StompFrameHandler() {
+                            @Override
+                            public Type getPayloadType(StompHeaders headers) {
+                                return byte[].class;
+                            }
+
+                            @Override
+                            public void handleFrame(StompHeaders headers, Object payload) {
+                                // El aviso de entrada es corto y llega sin comprimir
+                                String encoding = headers.getFirst(PayloadCompressor.CONTENT_ENCODING_HEADER);
+                                if (encoding != null) {
+                                    contentEncoding.complete(encoding);
+                                    received.complete((byte[]) payload);
+                                }
+                            }
+                        });
+
+                        StompHeaders joinHeaders = new StompHeaders();
+                        joinHeaders.setDestination("/app/chat.deflate.addUser");
+                        joinHeaders.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                        session.send(joinHeaders, join);
+
+                        StompHeaders sendHeaders = new StompHeaders();
+                        sendHeaders.setDestination("/app/chat.deflate.sendMessage");
+                        sendHeaders.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                        session.send(sendHeaders, request);
+                    }
+
+                    @Override
+                    public void handleException(StompSession session, StompCommand command,
+                                                StompHeaders headers, byte[] payload, Throwable exception) {
+                        received.completeExceptionally(exception);
+                    }
+
+                    @Override
+                    public void handleTransportError(StompSession session, Throwable exception) {
+                        received.completeExceptionally(exception);
+                    }
+                });
+
+        byte[] payload = received.get(10, TimeUnit.SECONDS);
+
+        assertEquals(PayloadCompressor.DEFLATE, contentEncoding.get());
+        assertTrue(payload.length < content.length() / 4);
+        ChatMessage message = new ObjectMapper().readValue(
+                new InflaterInputStream(new ByteArrayInputStream(payload)), ChatMessage.class);
+        assertEquals(content, message.getContent());
+        assertEquals("DeflateUser", message.getSender());
+    }
+
+    @Test
+    @DisplayName("Los mensajes privados solo deben llegar al destinatario y al remitente")
+    void testPrivateMessage() throws Exception {
+        List<ChatMessage> anaInbox = new CopyOnWriteArrayList<>();
+        List<ChatMessage> luisInbox = new CopyOnWriteArrayList<>();
+        List<ChatMessage> observerInbox = new CopyOnWriteArrayList<>();
+        List<ChatMessage> roomMessages = new CopyOnWriteArrayList<>();
+        CompletableFuture<ChatMessage> anaReceived = new CompletableFuture<>();
+
+        joinWithPrivateQueue("PrivadoAna", anaInbox, roomMessages, anaReceived);
+        joinWithPrivateQueue("PrivadoObservador", observerInbox, roomMessages, new CompletableFuture<>());
+        StompSession luis = joinWithPrivateQueue("PrivadoLuis", luisInbox, roomMessages, new CompletableFuture<>());
+
+        // El remitente del payload se ignora: cuenta el usuario registrado en la sesión
+        ChatMessage privateMsg = new ChatMessage(MessageType.CHAT, "Solo para Ana", "Suplantador");
+        privateMsg.setRecipient("PrivadoAna");
+        luis.send("/app/chat.private", privateMsg);
+
+        ChatMessage received = anaReceived.get(10, TimeUnit.SECONDS);
+        assertEquals(MessageType.PRIVATE, received.getType());
+        assertEquals("PrivadoLuis", received.getSender());
+        assertEquals("PrivadoAna", received.getRecipient());
+        assertEquals("Solo para Ana", received.getContent());
+
+        Thread.sleep(300);
+        assertEquals(1, luisInbox.size());
+        assertTrue(observerInbox.isEmpty());
+        assertTrue(roomMessages.stream().noneMatch(msg -> msg.getType() == MessageType.PRIVATE));
+    }
+
+    @Test
+    @DisplayName("Otro cliente no debe poder registrarse con el nombre de un usuario conectado para leer sus privados")
+    void testPrivateMessageNameTaken() throws Exception {
+        List<ChatMessage> roomMessages = new CopyOnWriteArrayList<>();
+        CompletableFuture<ChatMessage> anaReceived = new CompletableFuture<>();
+        joinWithPrivateQueue("DuenaAna", new CopyOnWriteArrayList<>(), roomMessages, anaReceived);
+        StompSession luis = joinWithPrivateQueue("DuenoLuis", new CopyOnWriteArrayList<>(), roomMessages,
+                new CompletableFuture<>());
+
+        List<ErrorMessage> notices = new CopyOnWriteArrayList<>();
+        List<ChatMessage> intruderInbox = new CopyOnWriteArrayList<>();
+        StompSession intruder = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        intruder.subscribe("/user/queue/errors", frameHandler(ErrorMessage.class, notices::add));
+        intruder.subscribe("/user/queue/messages", frameHandler(ChatMessage.class, intruderInbox::add));
+        intruder.send("/app/chat.privado.addUser", new ChatMessage(MessageType.JOIN, null, "DuenaAna"));
+        // Sin destinatario: lo rechaza la validación del payload
+        intruder.send("/app/chat.private", new ChatMessage(MessageType.CHAT, "Hola", "DuenaAna"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (notices.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of(ChatController.INVALID_MESSAGE, ChatController.NAME_TAKEN),
+                notices.stream().map(ErrorMessage::getCode).sorted().toList());
+
+        ChatMessage privateMsg = new ChatMessage(MessageType.CHAT, "Solo para Ana", "DuenoLuis");
+        privateMsg.setRecipient("DuenaAna");
+        luis.send("/app/chat.private", privateMsg);
+
+        assertEquals("Solo para Ana", anaReceived.get(10, TimeUnit.SECONDS).getContent());
+        Thread.sleep(300);
+        assertTrue(intruderInbox.isEmpty());
+        assertTrue(intruder.isConnected(), "Un nombre rechazado no debe cerrar la sesión");
+    }
+
+    @Test
+    @DisplayName("Debe difundir una sola vez los reenvíos con el mismo messageId y confirmarlos todos")
+    void testDuplicateSendsAcknowledged() throws Exception {
+        List<ChatMessage> roomMessages = new CopyOnWriteArrayList<>();
+        List<MessageAck> acks = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/room.idempotente", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        if (((ChatMessage) payload).getType() == MessageType.CHAT) {
+                            roomMessages.add((ChatMessage) payload);
+                        }
+                    }
+                });
+                session.subscribe("/user/queue/acks", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return MessageAck.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        acks.add((MessageAck) payload);
+                        if (acks.size() == 3) {
+                            finished.complete(null);
+                        }
+                    }
+                });
+
+                session.send("/app/chat.idempotente.addUser", new ChatMessage(MessageType.JOIN, null, "IdemUser"));
+
+                // El mismo mensaje dos veces, como tras una reconexión, y luego otro distinto
+                ChatMessage original = new ChatMessage(MessageType.CHAT, "Solo una vez", "IdemUser");
+                original.setMessageId("idem-1");
+                session.send("/app/chat.idempotente.sendMessage", original);
+                session.send("/app/chat.idempotente.sendMessage", original);
+                ChatMessage other = new ChatMessage(MessageType.CHAT, "Otro", "IdemUser");
+                other.setMessageId("idem-2");
+                session.send("/app/chat.idempotente.sendMessage", other);
+            }
+        });
+
+        finished.get(10, TimeUnit.SECONDS);
+        Thread.sleep(300);
+
+        assertEquals(List.of("Solo una vez", "Otro"), roomMessages.stream().map(ChatMessage::getContent).toList());
+        assertEquals("idem-1", roomMessages.get(0).getMessageId());
+        assertEquals(List.of("idem-1", "idem-1", "idem-2"), acks.stream().map(MessageAck::getMessageId).toList());
+        assertEquals(roomMessages.get(0).getSequence(), acks.get(0).getSequence());
+        assertFalse(acks.get(0).isDuplicate());
+        assertTrue(acks.get(1).isDuplicate());
+    }
+
+    @Test
+    @DisplayName("Debe reanudar la sesión sin anunciar salida ni entrada y reenviar solo lo perdido")
+    void testResumeSession() throws Exception {
+        List<ChatMessage> observed = new CopyOnWriteArrayList<>();
+        CompletableFuture<ResumeGrant> grant = new CompletableFuture<>();
+        CompletableFuture<ChatMessage> firstSeen = new CompletableFuture<>();
+
+        // El observador ve las entradas, salidas y mensajes de la sala
+        StompSession observer = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        observer.subscribe("/topic/room.reanudar", frameHandler(ChatMessage.class, observed::add));
+        observer.send("/app/chat.reanudar.addUser", new ChatMessage(MessageType.JOIN, null, "Otro"));
+
+        StompSession first = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        first.subscribe("/user/queue/resume", frameHandler(ResumeGrant.class, grant::complete));
+        first.subscribe("/topic/room.reanudar", frameHandler(ChatMessage.class, msg -> {
+            if ("Antes del corte".equals(msg.getContent())) {
+                firstSeen.complete(msg);
+            }
+        }));
+        first.send("/app/chat.reanudar.addUser", new ChatMessage(MessageType.JOIN, null, "Reanuda"));
+        String token = grant.get(10, TimeUnit.SECONDS).getToken();
+        first.send("/app/chat.reanudar.sendMessage", new ChatMessage(MessageType.CHAT, "Antes del corte", "Reanuda"));
+        ChatMessage lastSeen = firstSeen.get(10, TimeUnit.SECONDS);
+
+        // Corte más largo que el debounce de presencia pero dentro del plazo de gracia
+        first.disconnect();
+        observer.send("/app/chat.reanudar.sendMessage", new ChatMessage(MessageType.CHAT, "Durante el corte", "Otro"));
+        Thread.sleep(3000);
+
+        CompletableFuture<List<ChatMessage>> replay = new CompletableFuture<>();
+        StompSession resumed = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        resumed.subscribe("/user/queue/history", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatMessage[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                replay.complete(List.of((ChatMessage[]) payload));
+            }
+        });
+        StompHeaders joinHeaders = new StompHeaders();
+        joinHeaders.setDestination("/app/chat.reanudar.addUser");
+        joinHeaders.add(ResumeTokenService.TOKEN_HEADER, token);
+        joinHeaders.add(ResumeTokenService.LAST_SEQUENCE_HEADER, lastSeen.getNode() + ":" + lastSeen.getSequence());
+        resumed.send(joinHeaders, new ChatMessage(MessageType.JOIN, null, "Reanuda"));
+
+        List<ChatMessage> missed = replay.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("Durante el corte"), missed.stream().map(ChatMessage::getContent).toList());
+
+        Thread.sleep(700);
+        List<MessageType> presenceNotices = observed.stream()
+                .filter(msg -> "Reanuda".equals(msg.getSender()))
+                .map(ChatMessage::getType)
+                .toList();
+        assertEquals(List.of(MessageType.JOIN, MessageType.CHAT), presenceNotices);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar los mensajes demasiado grandes sin difundirlos ni acumularlos en memoria")
+    void testOversizedMessagesRejected() throws Exception {
+        List<ErrorMessage> notices = new CopyOnWriteArrayList<>();
+        List<String> broadcast = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> joined = new CompletableFuture<>();
+        CompletableFuture<Void> fits = new CompletableFuture<>();
+
+        StompSession session = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        session.subscribe("/user/queue/errors", frameHandler(ErrorMessage.class, notices::add));
+        session.subscribe("/topic/room.limites", frameHandler(ChatMessage.class, msg -> {
+            if (msg.getType() == MessageType.JOIN) {
+                joined.complete(null);
+            } else if (msg.getType() == MessageType.CHAT) {
+                broadcast.add(msg.getContent());
+                if ("Cabe".equals(msg.getContent())) {
+                    fits.complete(null);
+                }
+            }
+        }));
+        session.send("/app/chat.limites.addUser", new ChatMessage(MessageType.JOIN, null, "Atacante"));
+        joined.get(10, TimeUnit.SECONDS);
+
+        // Contenido por encima del límite de validación, cuerpo pequeño
+        session.send("/app/chat.limites.sendMessage",
+                new ChatMessage(MessageType.CHAT, "a".repeat(ChatMessage.MAX_CONTENT_LENGTH + 1), "Atacante"));
+        // Cuerpo por encima de max-payload-size: cada 'ñ' ocupa dos bytes
+        session.send("/app/chat.limites.sendMessage", new ChatMessage(MessageType.CHAT, "ñ".repeat(4500), "Atacante"));
+        session.send("/app/chat.limites.sendMessage", new ChatMessage(MessageType.CHAT, "Cabe", "Atacante"));
+
+        fits.get(10, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (notices.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of("Cabe"), broadcast);
+        assertEquals(List.of(ChatController.INVALID_MESSAGE, PayloadSizeLimiter.PAYLOAD_TOO_LARGE),
+                notices.stream().map(ErrorMessage::getCode).sorted().toList());
+        assertTrue(session.isConnected(), "Un mensaje rechazado no debe cerrar la sesión");
+
+        // Un frame de 1 MB cierra la sesión antes de acumularse entero
+        CompletableFuture<Throwable> closed = new CompletableFuture<>();
+        StompSession flooder = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void handleTransportError(StompSession session, Throwable exception) {
+                closed.complete(exception);
+            }
+        }).get(10, TimeUnit.SECONDS);
+        try {
+            flooder.send("/app/chat.limites.sendMessage",
+                    new ChatMessage(MessageType.CHAT, "x".repeat(1_000_000), "Atacante"));
+        } catch (MessageDeliveryException ex) {
+            // El servidor puede cerrar la conexión mientras el frame aún se está escribiendo
+            closed.complete(ex);
+        }
+        closed.get(10, TimeUnit.SECONDS);
+        assertFalse(flooder.isConnected());
+
+        // Los transportes HTTP de SockJS no leen un cuerpo que supere el límite
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate.postForEntity("/ws/000/limites/xhr_send",
+                new HttpEntity<>("[\"" + "x".repeat(1_000_000) + "\"]", headers), String.class);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Debe paginar y buscar en el historial por STOMP y por HTTP")
+    void testHistoryPaging() throws Exception {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        CompletableFuture<HistoryPage> stompPage = new CompletableFuture<>();
+
+        StompSession session = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/room.busqueda", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        if ("Fin".equals(((ChatMessage) payload).getContent())) {
+                            sent.complete(null);
+                        }
+                    }
+                });
+                session.subscribe("/user/queue/history.page", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return HistoryPage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        stompPage.complete((HistoryPage) payload);
+                    }
+                });
+
+                session.send("/app/chat.busqueda.addUser", new ChatMessage(MessageType.JOIN, null, "Buscador"));
+                for (int i = 0; i < 5; i++) {
+                    session.send("/app/chat.busqueda.sendMessage",
+                            new ChatMessage(MessageType.CHAT, "Revisión número " + (i + 10), "Buscador"));
+                }
+                session.send("/app/chat.busqueda.sendMessage", new ChatMessage(MessageType.CHAT, "Fin", "Buscador"));
+            }
+        }).get(10, TimeUnit.SECONDS);
+        sent.get(10, TimeUnit.SECONDS);
+
+        // El índice se actualiza en su propio hilo: se espera a que aparezca el último mensaje
+        HistoryPage page = null;
+        for (int attempt = 0; attempt < 50; attempt++) {
+            page = restTemplate.getForObject("/api/history?room=busqueda&q=revision&limit=3", HistoryPage.class);
+            if (page.getMessages().size() == 3) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(List.of("Revisión número 12", "Revisión número 13", "Revisión número 14"),
+                page.getMessages().stream().map(ChatMessage::getContent).toList());
+        assertNotNull(page.getNextCursor());
+
+        HistoryPage older = restTemplate.getForObject("/api/history?room=busqueda&q=revision&limit=3&before="
+                + page.getNextCursor(), HistoryPage.class);
+        assertEquals(List.of("Revisión número 10", "Revisión número 11"),
+                older.getMessages().stream().map(ChatMessage::getContent).toList());
+        assertNull(older.getNextCursor());
+
+        HistoryQuery query = new HistoryQuery();
+        query.setRoom("busqueda");
+        query.setSender("Buscador");
+        query.setQ("11");
+        session.send("/app/history.page", query);
+        List<ChatMessage> found = stompPage.get(10, TimeUnit.SECONDS).getMessages();
+        assertEquals(1, found.size());
+        assertEquals("Revisión número 11", found.get(0).getContent());
+
+        ResponseEntity<ErrorMessage> invalid = restTemplate.getForEntity("/api/history?room=sala*",
+                ErrorMessage.class);
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        assertEquals("INVALID_QUERY", invalid.getBody().getCode());
+    }
+
+    /**
+     * Conecta una sesión suscrita a su cola privada y espera a que el servidor registre al usuario
+     */
+    private StompSession joinWithPrivateQueue(String username, List<ChatMessage> inbox,
+                                              List<ChatMessage> roomMessages,
+                                              CompletableFuture<ChatMessage> firstPrivate) throws Exception {
+        CompletableFuture<Void> joined = new CompletableFuture<>();
+
+        StompSession session = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/user/queue/messages", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        inbox.add((ChatMessage) payload);
+                        firstPrivate.complete((ChatMessage) payload);
+                    }
+                });
+                session.subscribe("/topic/room.privado", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        ChatMessage msg = (ChatMessage) payload;
+                        roomMessages.add(msg);
+                        if (msg.getType() == MessageType.JOIN && username.equals(msg.getSender())) {
+                            joined.complete(null);
+                        }
+                    }
+                });
+
+                ChatMessage joinMsg = new ChatMessage();
+                joinMsg.setType(MessageType.JOIN);
+                joinMsg.setSender(username);
+                session.send("/app/chat.privado.addUser", joinMsg);
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        joined.get(10, TimeUnit.SECONDS);
+        return session;
+    }
+
+    private static <T> StompFrameHandler frameHandler(Class<T> type, Consumer<T> consumer) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return type;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                consumer.accept(type.cast(payload));
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+package com.example.chat_websocket;
+
+
+import com.example.chat_websocket.dedup.MessageDeduplicator;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageAck;
+import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.model.PresenceSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.Transport;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de integración de los envíos idempotentes con dos nodos del clúster en la misma JVM
+ */
+class ClusterDeduplicationIntegrationTest {
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private WebSocketStompClient stompClient;
+
+    @BeforeEach
+    void setUp() {
+        String clusterName = "dedup-" + UUID.randomUUID();
+        nodeA = startNode(clusterName, "node-a");
+        nodeB = startNode(clusterName, "node-b");
+
+        List<Transport> transports = new ArrayList<>();
+        transports.add(new WebSocketTransport(new StandardWebSocketClient()));
+        stompClient = new WebSocketStompClient(new SockJsClient(transports));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    @DisplayName("Un reenvío hecho en otro nodo tras reanudar no debe difundirse dos veces")
+    void testResendOnOtherNodeIsDuplicate() throws Exception {
+        // Arrange: un observador en B y el cliente que envía primero a través de A
+        List<ChatMessage> observed = new CopyOnWriteArrayList<>();
+        CompletableFuture<ChatMessage> firstOnB = new CompletableFuture<>();
+        StompSession observer = connect(nodeB);
+        observer.subscribe("/topic/public", frameHandler(ChatMessage.class, msg -> {
+            observed.add(msg);
+            firstOnB.complete(msg);
+        }));
+        awaitSubscription(observer);
+
+        StompSession onA = connect(nodeA);
+        CompletableFuture<MessageAck> ackOnA = new CompletableFuture<>();
+        onA.subscribe("/user/queue/acks", frameHandler(MessageAck.class, ackOnA::complete));
+        awaitSubscription(onA);
+
+        ChatMessage message = new ChatMessage(MessageType.CHAT, "Solo una vez", "Reanudado");
+        message.setMessageId("pendiente-1");
+        onA.send("/app/chat.sendMessage", message);
+        assertFalse(ackOnA.get(10, TimeUnit.SECONDS).isDuplicate());
+        assertEquals("pendiente-1", firstOnB.get(10, TimeUnit.SECONDS).getMessageId());
+
+        // Act: el nodo A se drena y el cliente reenvía lo pendiente en B
+        onA.disconnect();
+        StompSession onB = connect(nodeB);
+        CompletableFuture<MessageAck> ackOnB = new CompletableFuture<>();
+        onB.subscribe("/user/queue/acks", frameHandler(MessageAck.class, ackOnB::complete));
+        awaitSubscription(onB);
+        onB.send("/app/chat.sendMessage", message);
+
+        // Assert
+        assertTrue(ackOnB.get(10, TimeUnit.SECONDS).isDuplicate());
+        Thread.sleep(300);
+        assertEquals(1, observed.stream().filter(msg -> msg.getType() == MessageType.CHAT).count());
+        assertEquals(1, nodeB.getBean(MessageDeduplicator.class).getDuplicates());
+    }
+
+    private StompSession connect(ConfigurableApplicationContext node) throws Exception {
+        return stompClient.connectAsync(wsUrl(node), new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Espera la respuesta a una petición de presencia: el nodo procesa en orden los frames de
+     * cada sesión, así que las suscripciones anteriores ya están activas
+     */
+    private void awaitSubscription(StompSession session) throws Exception {
+        CompletableFuture<PresenceSnapshot> snapshot = new CompletableFuture<>();
+        session.subscribe("/user/queue/presence", frameHandler(PresenceSnapshot.class, snapshot::complete));
+        session.send("/app/presence.list", "");
+        snapshot.get(10, TimeUnit.SECONDS);
+    }
+
+    private static <T> StompFrameHandler frameHandler(Class<T> type, Consumer<T> consumer) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return type;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                consumer.accept(type.cast(payload));
+            }
+        };
+    }
+
+    private ConfigurableApplicationContext startNode(String clusterName, String nodeId) {
+        return new SpringApplicationBuilder(ChatWebsocketApplication.class)
+                .run("--server.port=0",
+                        "--chat.broker.mode=clustered",
+                        "--chat.broker.cluster-name=" + clusterName,
+                        "--chat.broker.node-id=" + nodeId);
+    }
+
+    private String wsUrl(ConfigurableApplicationContext node) {
+        return "ws://localhost:" + node.getEnvironment().getProperty("local.server.port") + "/ws";
+    }
+}
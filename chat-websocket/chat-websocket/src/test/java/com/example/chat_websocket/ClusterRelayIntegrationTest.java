@@ -0,0 +1,187 @@
+package com.example.chat_websocket;
+
+
+import com.example.chat_websocket.history.MessageHistoryService;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.Transport;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de integración del modo clúster con dos nodos en la misma JVM
+ */
+class ClusterRelayIntegrationTest {
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private WebSocketStompClient stompClient;
+
+    @BeforeEach
+    void setUp() {
+        String clusterName = "test-" + UUID.randomUUID();
+        nodeA = startNode(clusterName, "node-a");
+        nodeB = startNode(clusterName, "node-b");
+
+        List<Transport> transports = new ArrayList<>();
+        transports.add(new WebSocketTransport(new StandardWebSocketClient()));
+        stompClient = new WebSocketStompClient(new SockJsClient(transports));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    @DisplayName("Un mensaje enviado en el nodo A debe llegar a un suscriptor del nodo B")
+    void testMessageCrossesNodes() throws Exception {
+        CompletableFuture<ChatMessage> joinedOnB = new CompletableFuture<>();
+        CompletableFuture<ChatMessage> crossNode = new CompletableFuture<>();
+
+        stompClient.connect(wsUrl(nodeB), new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                session.subscribe("/topic/public", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return ChatMessage.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        ChatMessage msg = (ChatMessage) payload;
+                        if (msg.getType() == MessageType.JOIN) {
+                            joinedOnB.complete(msg);
+                        } else if (msg.getType() == MessageType.CHAT) {
+                            crossNode.complete(msg);
+                        }
+                    }
+                });
+
+                ChatMessage join = new ChatMessage();
+                join.setType(MessageType.JOIN);
+                join.setSender("Subscriber");
+                session.send("/app/chat.addUser", join);
+            }
+        });
+
+        // Recibir el propio JOIN confirma que la suscripción en B está activa
+        joinedOnB.get(10, TimeUnit.SECONDS);
+
+        StompSession sender = stompClient.connect(wsUrl(nodeA), new StompSessionHandlerAdapter() {
+        }).get(5, TimeUnit.SECONDS);
+
+        ChatMessage message = new ChatMessage();
+        message.setType(MessageType.CHAT);
+        message.setSender("SenderOnA");
+        message.setContent("Hola desde el nodo A");
+        sender.send("/app/chat.sendMessage", message);
+
+        ChatMessage received = crossNode.get(10, TimeUnit.SECONDS);
+
+        assertEquals("SenderOnA", received.getSender());
+        assertEquals("Hola desde el nodo A", received.getContent());
+        assertEquals("node-a", received.getNode());
+
+        // B guarda en su historial el mensaje de A para las sesiones que reanuden en él
+        List<ChatMessage> historyOnB = nodeB.getBean(MessageHistoryService.class).recent("/topic/public", 10);
+        assertEquals(1, historyOnB.size());
+        assertEquals(received.getSequence(), historyOnB.get(0).getSequence());
+        assertEquals("node-a", historyOnB.get(0).getNode());
+    }
+
+    @Test
+    @DisplayName("Un mensaje privado enviado en el nodo A debe llegar al destinatario conectado al nodo B")
+    void testPrivateMessageCrossesNodes() throws Exception {
+        // Arrange
+        CompletableFuture<ChatMessage> anaInbox = new CompletableFuture<>();
+        CompletableFuture<ChatMessage> luisInbox = new CompletableFuture<>();
+        join(nodeB, "AnaEnB", anaInbox);
+        StompSession luis = join(nodeA, "LuisEnA", luisInbox);
+
+        // Act
+        ChatMessage privateMsg = new ChatMessage(MessageType.CHAT, "Solo para Ana", "LuisEnA");
+        privateMsg.setRecipient("AnaEnB");
+        luis.send("/app/chat.private", privateMsg);
+
+        // Assert
+        ChatMessage received = anaInbox.get(10, TimeUnit.SECONDS);
+        assertEquals(MessageType.PRIVATE, received.getType());
+        assertEquals("LuisEnA", received.getSender());
+        assertEquals("Solo para Ana", received.getContent());
+        assertEquals("node-a", received.getNode());
+        assertEquals(received.getSequence(), luisInbox.get(10, TimeUnit.SECONDS).getSequence());
+    }
+
+    /**
+     * Conecta un usuario al nodo con su cola privada y espera a ver su propio JOIN
+     */
+    private StompSession join(ConfigurableApplicationContext node, String username,
+                              CompletableFuture<ChatMessage> firstPrivate) throws Exception {
+        CompletableFuture<Void> joined = new CompletableFuture<>();
+        StompSession session = stompClient.connectAsync(wsUrl(node), new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        session.subscribe("/user/queue/messages", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatMessage.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                firstPrivate.complete((ChatMessage) payload);
+            }
+        });
+        session.subscribe("/topic/public", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatMessage.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                ChatMessage msg = (ChatMessage) payload;
+                if (msg.getType() == MessageType.JOIN && username.equals(msg.getSender())) {
+                    joined.complete(null);
+                }
+            }
+        });
+        session.send("/app/chat.addUser", new ChatMessage(MessageType.JOIN, null, username));
+        joined.get(10, TimeUnit.SECONDS);
+        return session;
+    }
+
+    private ConfigurableApplicationContext startNode(String clusterName, String nodeId) {
+        return new SpringApplicationBuilder(ChatWebsocketApplication.class)
+                .run("--server.port=0",
+                        "--chat.broker.mode=clustered",
+                        "--chat.broker.cluster-name=" + clusterName,
+                        "--chat.broker.node-id=" + nodeId);
+    }
+
+    private String wsUrl(ConfigurableApplicationContext node) {
+        return "ws://localhost:" + node.getEnvironment().getProperty("local.server.port") + "/ws";
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.chat_websocket;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.Transport;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de integración del drenaje de un nodo al detenerse
+ */
+class DrainIntegrationTest {
+
+    private static final int SESSIONS = 12;
+    private static final long WINDOW_MILLIS = 4000;
+
+    private ConfigurableApplicationContext node;
+    private WebSocketStompClient stompClient;
+    private ScheduledExecutorService pinger;
+
+    @BeforeEach
+    void setUp() {
+        node = new SpringApplicationBuilder(ChatWebsocketApplication.class)
+                .run("--server.port=0",
+                        "--chat.drain.window=" + WINDOW_MILLIS + "ms",
+                        "--chat.drain.flush-timeout=2s");
+
+        List<Transport> transports = new ArrayList<>();
+        transports.add(new WebSocketTransport(new StandardWebSocketClient()));
+        stompClient = new WebSocketStompClient(new SockJsClient(transports));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        pinger = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pinger.shutdownNow();
+        node.close();
+    }
+
+    @Test
+    @DisplayName("Al detenerse debe cerrar las sesiones escalonadas, sin anunciar salidas ni degradar a las restantes")
+    void testDrainOnShutdown() throws Exception {
+        String url = "ws://localhost:" + node.getEnvironment().getProperty("local.server.port") + "/ws";
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Long> closedAt = new ConcurrentLinkedQueue<>();
+        AtomicInteger leaves = new AtomicInteger();
+        List<StompSession> sessions = new ArrayList<>();
+
+        for (int i = 0; i < SESSIONS; i++) {
+            String username = "Drenado" + i;
+            CompletableFuture<Void> joined = new CompletableFuture<>();
+            StompSession session = stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+                @Override
+                public void handleTransportError(StompSession session, Throwable exception) {
+                    closedAt.add(System.nanoTime());
+                }
+            }).get(10, TimeUnit.SECONDS);
+
+            session.subscribe("/topic/room.drenaje", new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return ChatMessage.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    ChatMessage msg = (ChatMessage) payload;
+                    if (msg.getType() == MessageType.LEAVE) {
+                        leaves.incrementAndGet();
+                    } else if (msg.getType() == MessageType.JOIN && username.equals(msg.getSender())) {
+                        joined.complete(null);
+                    } else if (msg.getType() == MessageType.CHAT && username.equals(msg.getSender())) {
+                        latencies.add(System.nanoTime() - Long.parseLong(msg.getContent()));
+                    }
+                }
+            });
+            session.send("/app/chat.drenaje.addUser", new ChatMessage(MessageType.JOIN, null, username));
+            joined.get(10, TimeUnit.SECONDS);
+            sessions.add(session);
+        }
+
+        // Cada sesión abierta envía un mensaje cada 100 ms y mide cuánto tarda en recibirlo
+        pinger.scheduleAtFixedRate(() -> {
+            for (int i = 0; i < sessions.size(); i++) {
+                StompSession session = sessions.get(i);
+                if (session.isConnected()) {
+                    try {
+                        session.send("/app/chat.drenaje.sendMessage",
+                                new ChatMessage(MessageType.CHAT, String.valueOf(System.nanoTime()), "Drenado" + i));
+                    } catch (RuntimeException ex) {
+                        // La sesión se cerró entre la comprobación y el envío
+                    }
+                }
+            }
+        }, 0, 100, TimeUnit.MILLISECONDS);
+        Thread.sleep(500);
+        latencies.clear();
+
+        // Act: detiene el nodo como lo haría un despliegue
+        long drainStart = System.nanoTime();
+        CompletableFuture<Void> shutdown = CompletableFuture.runAsync(node::close);
+        Thread.sleep(300);
+        CompletableFuture<StompSession> rejected = stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+        });
+
+        // Assert
+        assertThrows(ExecutionException.class, () -> rejected.get(10, TimeUnit.SECONDS),
+                "El nodo no debe aceptar conexiones mientras drena");
+        shutdown.get(30, TimeUnit.SECONDS);
+
+        assertEquals(SESSIONS, closedAt.size());
+        long firstClose = closedAt.stream().mapToLong(Long::longValue).min().orElseThrow();
+        long lastClose = closedAt.stream().mapToLong(Long::longValue).max().orElseThrow();
+        long spreadMillis = TimeUnit.NANOSECONDS.toMillis(lastClose - firstClose);
+        assertTrue(spreadMillis >= WINDOW_MILLIS / 2, "Cierres repartidos en " + spreadMillis + " ms");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(firstClose - drainStart) < WINDOW_MILLIS);
+
+        assertEquals(0, leaves.get(), "No debe anunciarse ninguna salida de las sesiones drenadas");
+        assertFalse(latencies.isEmpty());
+        long maxMillis = TimeUnit.NANOSECONDS.toMillis(latencies.stream().mapToLong(Long::longValue).max().orElseThrow());
+        assertTrue(maxMillis < 1000, "Latencia máxima de las sesiones restantes: " + maxMillis + " ms");
+    }
+}
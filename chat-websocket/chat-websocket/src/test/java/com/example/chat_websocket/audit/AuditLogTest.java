@@ -0,0 +1,178 @@
+package com.example.chat_websocket.audit;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para AuditLog
+ */
+class AuditLogTest {
+
+    private final List<String> batches = new CopyOnWriteArrayList<>();
+    private AuditLog auditLog;
+
+    @AfterEach
+    void tearDown() {
+        if (auditLog != null) {
+            auditLog.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Debe escribir los eventos por lotes, una línea por evento")
+    void testWritesBatches() {
+        // Arrange
+        ChatProperties properties = properties();
+        properties.getAudit().setFlushInterval(Duration.ofMillis(5));
+        auditLog = new AuditLog(properties, batches::add);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            auditLog.record("/topic/public", message(i, "Hola\nmundo"));
+        }
+        auditLog.close();
+
+        // Assert
+        List<String> lines = batches.stream().flatMap(batch -> batch.lines()).toList();
+        assertEquals(10, lines.size());
+        assertEquals(10, auditLog.getWritten());
+        assertTrue(batches.size() <= 10);
+        assertTrue(lines.get(0).contains("seq=0 "));
+        assertTrue(lines.get(0).contains("dest=/topic/public sender=\"Ana\" content=\"Hola\\nmundo\""));
+    }
+
+    @Test
+    @DisplayName("Debe auditar solo la longitud si no se incluye el contenido")
+    void testExcludesContent() {
+        // Arrange
+        ChatProperties properties = properties();
+        properties.getAudit().setIncludeContent(false);
+        auditLog = new AuditLog(properties, batches::add);
+
+        // Act
+        auditLog.record("/topic/public", message(1, "secreto"));
+        auditLog.close();
+
+        // Assert
+        assertEquals(1, batches.size());
+        assertFalse(batches.get(0).contains("secreto"));
+        assertTrue(batches.get(0).contains("length=7"));
+    }
+
+    @Test
+    @DisplayName("De los mensajes privados solo debe auditar la longitud aunque se incluya el contenido")
+    void testExcludesPrivateContent() {
+        // Arrange
+        auditLog = new AuditLog(properties(), batches::add);
+        ChatMessage privateMessage = message(1, "secreto");
+        privateMessage.setType(MessageType.PRIVATE);
+        privateMessage.setRecipient("Luis");
+
+        // Act
+        auditLog.record("/user/Luis/queue/messages", privateMessage);
+        auditLog.record("/topic/public", message(2, "público"));
+        auditLog.close();
+
+        // Assert
+        List<String> lines = batches.stream().flatMap(batch -> batch.lines()).toList();
+        assertEquals(2, lines.size());
+        assertFalse(lines.get(0).contains("secreto"));
+        assertTrue(lines.get(0).contains("type=PRIVATE dest=/user/Luis/queue/messages sender=\"Ana\" length=7"));
+        assertTrue(lines.get(1).contains("content=\"público\""));
+    }
+
+    @Test
+    @DisplayName("Debe auditar aproximadamente la fracción configurada")
+    void testSampling() {
+        // Arrange
+        ChatProperties properties = properties();
+        properties.getAudit().setSampleRate(0.1);
+        properties.getAudit().setQueueCapacity(100_000);
+        auditLog = new AuditLog(properties, batches::add);
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            auditLog.record("/topic/public", message(i, "m"));
+        }
+        auditLog.close();
+
+        // Assert
+        long written = auditLog.getWritten();
+        assertTrue(written > 700 && written < 1300, "Eventos auditados: " + written);
+        assertEquals(10_000, written + auditLog.getSampledOut());
+    }
+
+    @Test
+    @DisplayName("Debe descartar eventos sin bloquear cuando la cola está llena")
+    void testDropsUnderPressure() throws Exception {
+        // Arrange: el escritor queda bloqueado en el primer lote
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        ChatProperties properties = properties();
+        properties.getAudit().setQueueCapacity(4);
+        auditLog = new AuditLog(properties, batch -> {
+            writing.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        auditLog.record("/topic/public", message(0, "primero"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // Act
+        long start = System.nanoTime();
+        for (int i = 1; i <= 100; i++) {
+            auditLog.record("/topic/public", message(i, "m"));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        unblock.countDown();
+
+        // Assert
+        assertEquals(96, auditLog.getDropped());
+        assertTrue(auditLog.getQueueDepth() <= 4);
+        assertTrue(elapsedMillis < 1000, "record() tardó " + elapsedMillis + " ms");
+    }
+
+    @Test
+    @DisplayName("No debe encolar nada si la auditoría está deshabilitada")
+    void testDisabled() {
+        // Arrange
+        ChatProperties properties = properties();
+        properties.getAudit().setEnabled(false);
+        auditLog = new AuditLog(properties, batches::add);
+
+        // Act
+        auditLog.record("/topic/public", message(1, "m"));
+        auditLog.close();
+
+        // Assert
+        assertEquals(0, auditLog.getQueueDepth());
+        assertTrue(batches.isEmpty());
+    }
+
+    private static ChatProperties properties() {
+        return new ChatProperties();
+    }
+
+    private static ChatMessage message(long sequence, String content) {
+        ChatMessage message = new ChatMessage(MessageType.CHAT, content, "Ana");
+        message.setSequence(sequence);
+        message.setTimestamp(1_700_000_000_000L);
+        return message;
+    }
+}
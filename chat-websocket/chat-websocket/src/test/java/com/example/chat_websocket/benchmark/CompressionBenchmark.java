@@ -0,0 +1,165 @@
+package com.example.chat_websocket.benchmark;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Costo y ratio de la compresión deflate de los payloads según su tamaño y el nivel,
+ * para elegir chat.compression.threshold y chat.compression.level.
+ * El corpus son mensajes de chat serializados como los difunde el broker: cortos (saludos
+ * y respuestas), medios (una o dos frases), largos (párrafos) y reenvíos de historial
+ * (arrays de 50 mensajes). Al iniciar se imprime el tamaño medio y el ratio de cada corpus
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    private static final String[] SHORT = {
+            "hola", "ok", "gracias!", "jaja", "sí, claro", "ya voy", "buenos días", "👍", "nos vemos", "listo"
+    };
+    private static final String[] SENTENCES = {
+            "¿Alguien revisó el despliegue de esta mañana?",
+            "El servidor de pruebas vuelve a responder después del reinicio.",
+            "Mañana a las diez tenemos la reunión con el equipo de producto.",
+            "Subí los cambios a la rama principal, falta que alguien los revise.",
+            "La latencia del chat bajó bastante desde que agrupamos las difusiones.",
+            "No encuentro el documento con las métricas de la semana pasada.",
+            "¿Podemos mover la demo al jueves? Hoy no llego a terminarla.",
+            "Les comparto el enlace con el resumen de la reunión de planificación.",
+            "El cliente reporta que los mensajes llegan duplicados al reconectar.",
+            "Ya quedó corregido el error de las tildes en los nombres de usuario."
+    };
+    private static final int PAYLOADS = 256;
+
+    @Param({"corto", "medio", "largo", "historial"})
+    public String corpus;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private byte[][] payloads;
+    private Deflater deflater;
+    private byte[] buffer;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        payloads = corpus(corpus, Jackson2ObjectMapperBuilder.json().build());
+        deflater = new Deflater(level);
+        buffer = new byte[64 * 1024];
+    }
+
+    @TearDown
+    public void tearDown() {
+        deflater.end();
+    }
+
+    /**
+     * Comprime un payload distinto en cada llamada, como PayloadCompressor con un Deflater por hilo
+     */
+    @Benchmark
+    public int deflate() {
+        byte[] payload = payloads[next++ & (PAYLOADS - 1)];
+        return compressedLength(deflater, payload, buffer);
+    }
+
+    private static int compressedLength(Deflater deflater, byte[] payload, byte[] buffer) {
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            length += deflater.deflate(buffer);
+        }
+        return length;
+    }
+
+    static byte[][] corpus(String corpus, ObjectMapper mapper) throws IOException {
+        Random random = new Random(42);
+        byte[][] payloads = new byte[PAYLOADS][];
+        for (int i = 0; i < PAYLOADS; i++) {
+            Object value = switch (corpus) {
+                case "corto" -> message(random, SHORT[random.nextInt(SHORT.length)]);
+                case "medio" -> message(random, sentences(random, 1 + random.nextInt(2)));
+                case "largo" -> message(random, sentences(random, 6 + random.nextInt(6)));
+                case "historial" -> history(random);
+                default -> throw new IllegalArgumentException("Corpus desconocido: " + corpus);
+            };
+            payloads[i] = mapper.writeValueAsBytes(value);
+        }
+        return payloads;
+    }
+
+    private static List<ChatMessage> history(Random random) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            messages.add(message(random, random.nextInt(3) == 0
+                    ? SHORT[random.nextInt(SHORT.length)] : sentences(random, 1 + random.nextInt(2))));
+        }
+        return messages;
+    }
+
+    private static String sentences(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(SENTENCES[random.nextInt(SENTENCES.length)]);
+        }
+        return text.toString();
+    }
+
+    private static ChatMessage message(Random random, String content) {
+        ChatMessage message = new ChatMessage(MessageType.CHAT, content, "Usuario" + random.nextInt(500));
+        message.setTimestamp(1_760_000_000_000L + random.nextInt(86_400_000));
+        message.setSequence(random.nextInt(1_000_000));
+        return message;
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        byte[] buffer = new byte[64 * 1024];
+        for (String corpus : new String[]{"corto", "medio", "largo", "historial"}) {
+            byte[][] payloads = corpus(corpus, mapper);
+            long original = 0;
+            for (byte[] payload : payloads) {
+                original += payload.length;
+            }
+            StringBuilder ratios = new StringBuilder();
+            for (int level : new int[]{1, 6, 9}) {
+                Deflater deflater = new Deflater(level);
+                long compressed = 0;
+                for (byte[] payload : payloads) {
+                    compressed += compressedLength(deflater, payload, buffer);
+                }
+                deflater.end();
+                ratios.append(String.format(" nivel %d %.2f", level, (double) compressed / original));
+            }
+            System.out.printf("%-10s %6d bytes/payload, ratio%s%n", corpus, original / PAYLOADS, ratios);
+        }
+
+        Options options = new OptionsBuilder()
+                .include(CompressionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.chat_websocket.benchmark;
+
+
+import com.example.chat_websocket.util.HtmlSanitizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la cadena de seis reemplazos más trim() (implementación anterior)
+ * con el sanitizador de una sola pasada, para texto limpio, con escapes y largo
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HtmlSanitizerBenchmark {
+
+    @Param({"clean", "escaped", "long"})
+    public String input;
+
+    private String message;
+
+    @Setup
+    public void setUp() {
+        message = switch (input) {
+            case "clean" -> "Hola a todos, ¿cómo va el proyecto hoy?";
+            case "escaped" -> "Mira <b>esto</b> & dime si \"funciona\" en http://example.com";
+            default -> "Un mensaje largo sin caracteres especiales pero con mucho texto. ".repeat(32) + "Fin.";
+        };
+    }
+
+    @Benchmark
+    public String legacyReplaceChain() {
+        return message
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&#x27;")
+                .replace("/", "&#x2F;")
+                .trim();
+    }
+
+    @Benchmark
+    public String singlePass() {
+        return HtmlSanitizer.sanitize(message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(HtmlSanitizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.chat_websocket.benchmark;
+
+
+import com.example.chat_websocket.audit.AuditLog;
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.controller.ChatController;
+import com.example.chat_websocket.dedup.DeduplicationWindow;
+import com.example.chat_websocket.direct.DirectMessageService;
+import com.example.chat_websocket.history.MessageHistoryService;
+import com.example.chat_websocket.metrics.ChatMetrics;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.presence.PresenceRegistry;
+import com.example.chat_websocket.room.RoomRegistry;
+import com.example.chat_websocket.util.HtmlSanitizer;
+import com.example.chat_websocket.util.MessageSequencer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino de cada mensaje de chat por partes: construcción del ChatMessage, marca de tiempo
+ * y secuencia, sanitización, ChatController.sendMessage completo (historial y métricas),
+ * comprobación del messageId en la ventana de reenvíos y codificación y decodificación con Jackson,
+ * con el ObjectMapper de los conversores STOMP.
+ * Con el perfil benchmark se ejecuta junto con el resto de benchmarks y {@code -prof gc}:
+ * <pre>
+ * mvn -Pbenchmark verify -Djmh.include=MessageHotPathBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageHotPathBenchmark {
+
+    private static final String CONTENT = "Hola a todos, ¿revisamos <b>hoy</b> el despliegue & las métricas?";
+
+    private ObjectMapper objectMapper;
+    private MessageSequencer sequencer;
+    private AuditLog auditLog;
+    private ChatController controller;
+    private ChatMessage message;
+    private SimpMessageHeaderAccessor headerAccessor;
+    private DeduplicationWindow dedupWindow;
+    private String[] messageIds;
+    private int nextMessageId;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        ChatProperties properties = new ChatProperties();
+        // Sin auditoría: su hilo escribiría en la salida del benchmark
+        properties.getAudit().setEnabled(false);
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        sequencer = new MessageSequencer(properties);
+        auditLog = new AuditLog(properties);
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((sent, timeout) -> true);
+        PresenceRegistry presenceRegistry = new PresenceRegistry(properties);
+        controller = new ChatController(
+                new MessageHistoryService(messagingTemplate, properties, Optional.empty()),
+                new RoomRegistry(properties), sequencer, new ChatMetrics(new SimpleMeterRegistry()), auditLog,
+                presenceRegistry, new DirectMessageService(messagingTemplate, presenceRegistry));
+
+        headerAccessor = SimpMessageHeaderAccessor.create();
+        headerAccessor.setSessionAttributes(new HashMap<>());
+
+        // Ventana con la configuración por defecto; los identificadores se generan antes de medir
+        ChatProperties.Dedup dedup = properties.getDedup();
+        dedupWindow = new DeduplicationWindow(dedup.getWindow(), dedup.getMaxEntries(), System::nanoTime);
+        messageIds = new String[1 << 20];
+        for (int i = 0; i < messageIds.length; i++) {
+            messageIds[i] = UUID.randomUUID().toString();
+        }
+
+        message = sequencer.stamp(new ChatMessage(MessageType.CHAT, HtmlSanitizer.sanitize(CONTENT), "Usuario"));
+        json = objectMapper.writeValueAsBytes(message);
+    }
+
+    @TearDown
+    public void tearDown() {
+        auditLog.close();
+        sequencer.close();
+    }
+
+    @Benchmark
+    public ChatMessage construct() {
+        return new ChatMessage(MessageType.CHAT, CONTENT, "Usuario");
+    }
+
+    @Benchmark
+    public ChatMessage stamp() {
+        return sequencer.stamp(new ChatMessage(MessageType.CHAT, CONTENT, "Usuario"));
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return HtmlSanitizer.sanitize(CONTENT);
+    }
+
+    /**
+     * Mensaje recién deserializado: sanitiza, sella, guarda en el historial y cuenta
+     */
+    @Benchmark
+    public ChatMessage sendMessage() {
+        return controller.sendMessage(new ChatMessage(MessageType.CHAT, CONTENT, "Usuario"), headerAccessor);
+    }
+
+    /**
+     * Un messageId nuevo en la ventana de reenvíos; al llenarse una generación rota como en producción
+     */
+    @Benchmark
+    public boolean deduplicate() {
+        String id = messageIds[nextMessageId++ & (messageIds.length - 1)];
+        return dedupWindow.add("Usuario", id);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public ChatMessage decode() throws IOException {
+        return objectMapper.readValue(json, ChatMessage.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MessageHotPathBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
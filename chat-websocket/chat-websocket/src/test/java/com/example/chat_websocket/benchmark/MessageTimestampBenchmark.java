@@ -0,0 +1,86 @@
+package com.example.chat_websocket.benchmark;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.util.MessageSequencer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el costo de la marca de tiempo formateada por mensaje (implementación anterior)
+ * con la marca de tiempo en epoch millis del reloj en caché, en la ruta de entrada
+ * (deserialización con Jackson + asignación de marca de tiempo)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageTimestampBenchmark {
+
+    private static final byte[] INBOUND_JSON =
+            "{\"sender\":\"Usuario\",\"content\":\"Hola a todos\",\"type\":\"CHAT\"}".getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+    private MessageSequencer sequencer;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        sequencer = new MessageSequencer(new ChatProperties());
+    }
+
+    @TearDown
+    public void tearDown() {
+        sequencer.close();
+    }
+
+    /**
+     * Implementación anterior: un DateTimeFormatter nuevo y un LocalDateTime por mensaje
+     */
+    @Benchmark
+    public String legacyFormattedTimestamp() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+        return LocalDateTime.now().format(formatter);
+    }
+
+    @Benchmark
+    public ChatMessage cachedClockStamp() {
+        return sequencer.stamp(new ChatMessage());
+    }
+
+    /**
+     * Ruta de entrada anterior: el constructor por defecto formateaba la hora durante la deserialización
+     */
+    @Benchmark
+    public String legacyInboundPath() throws IOException {
+        ChatMessage message = objectMapper.readValue(INBOUND_JSON, ChatMessage.class);
+        return legacyFormattedTimestamp() + message.getContent();
+    }
+
+    @Benchmark
+    public ChatMessage inboundPath() throws IOException {
+        return sequencer.stamp(objectMapper.readValue(INBOUND_JSON, ChatMessage.class));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MessageTimestampBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.chat_websocket.benchmark;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el costo de codificar y decodificar un ChatMessage en JSON (formato por defecto)
+ * y en CBOR (formato binario negociado por conexión), con los mismos ObjectMapper que usan
+ * los conversores STOMP. Los bytes por mensaje de cada formato se imprimen al iniciar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper cborMapper;
+    private ChatMessage message;
+    private byte[] json;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        message = sampleMessage();
+        json = jsonMapper.writeValueAsBytes(message);
+        cbor = cborMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return jsonMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() throws IOException {
+        return cborMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public ChatMessage decodeJson() throws IOException {
+        return jsonMapper.readValue(json, ChatMessage.class);
+    }
+
+    @Benchmark
+    public ChatMessage decodeCbor() throws IOException {
+        return cborMapper.readValue(cbor, ChatMessage.class);
+    }
+
+    private static ChatMessage sampleMessage() {
+        ChatMessage message = new ChatMessage(MessageType.CHAT, "Hola a todos, ¿quién se conecta a la reunión de hoy?",
+                "Usuario");
+        message.setTimestamp(1_760_000_000_000L);
+        message.setSequence(123_456L);
+        return message;
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        ChatMessage message = sampleMessage();
+        System.out.printf("Bytes por mensaje: JSON %d, CBOR %d%n",
+                Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(message).length,
+                Jackson2ObjectMapperBuilder.cbor().build().writeValueAsBytes(message).length);
+
+        Options options = new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
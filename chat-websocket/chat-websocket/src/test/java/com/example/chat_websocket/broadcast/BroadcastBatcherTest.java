@@ -0,0 +1,181 @@
+package com.example.chat_websocket.broadcast;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.metrics.ChatMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pruebas unitarias para BroadcastBatcher
+ */
+class BroadcastBatcherTest {
+
+    private static final String PUBLIC = "/topic/public";
+
+    private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+    private final MessageChannel brokerChannel = (message, timeout) -> sent.add(message);
+    private final MessageHandler broker = mock(SimpleBrokerMessageHandler.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private BroadcastBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Debe entregar un array JSON al alcanzar el máximo de mensajes")
+    void testFlushOnMaxMessages() {
+        // Arrange
+        batcher = batcher(Duration.ofHours(1), 3);
+
+        // Act
+        Message<?> first = batcher.beforeHandle(message(PUBLIC, "{\"n\":1}"), brokerChannel, broker);
+        batcher.beforeHandle(message(PUBLIC, "{\"n\":2}"), brokerChannel, broker);
+        int pendingBeforeLast = sent.size();
+        batcher.beforeHandle(message(PUBLIC, "{\"n\":3}"), brokerChannel, broker);
+
+        // Assert
+        assertNull(first);
+        assertEquals(0, pendingBeforeLast);
+        assertEquals(1, sent.size());
+        Message<?> batch = sent.get(0);
+        assertEquals("[{\"n\":1},{\"n\":2},{\"n\":3}]", payload(batch));
+        assertEquals(PUBLIC, SimpMessageHeaderAccessor.getDestination(batch.getHeaders()));
+        assertEquals(3, batch.getHeaders().get(BroadcastBatcher.BATCH_HEADER));
+
+        DistributionSummary summary = registry.get(ChatMetrics.BATCH_SIZE).summary();
+        assertEquals(1, summary.count());
+        assertEquals(3, summary.totalAmount());
+    }
+
+    @Test
+    @DisplayName("Debe entregar el lote al vencer la ventana aunque no esté lleno")
+    void testFlushOnWindow() throws InterruptedException {
+        // Arrange
+        batcher = batcher(Duration.ofMillis(5), 64);
+
+        // Act
+        batcher.beforeHandle(message("/topic/room.general", "{\"n\":1}"), brokerChannel, broker);
+        batcher.beforeHandle(message("/topic/room.general", "{\"n\":2}"), brokerChannel, broker);
+        batcher.beforeHandle(message(PUBLIC, "{\"n\":3}"), brokerChannel, broker);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (sent.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // Assert
+        assertEquals(2, sent.size());
+        List<String> payloads = sent.stream().map(BroadcastBatcherTest::payload).toList();
+        assertTrue(payloads.contains("[{\"n\":1},{\"n\":2}]"));
+        // Un mensaje solo no se envuelve en un array
+        assertTrue(payloads.contains("{\"n\":3}"));
+    }
+
+    @Test
+    @DisplayName("Debe dejar pasar los lotes, los destinos no agrupados y los demás handlers")
+    void testPassThrough() {
+        // Arrange
+        batcher = batcher(Duration.ofHours(1), 64);
+        Message<byte[]> queued = message("/user/ana/queue/history", "[]");
+        Message<byte[]> presence = message("/topic/presence", "{}");
+        Message<byte[]> toUserHandler = message(PUBLIC, "{}");
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(PUBLIC);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(BroadcastBatcher.BATCH_HEADER, 2);
+        Message<byte[]> alreadyBatched = MessageBuilder.createMessage("[{},{}]".getBytes(StandardCharsets.UTF_8),
+                accessor.getMessageHeaders());
+
+        // Act & Assert
+        assertSame(queued, batcher.beforeHandle(queued, brokerChannel, broker));
+        assertSame(presence, batcher.beforeHandle(presence, brokerChannel, broker));
+        assertSame(alreadyBatched, batcher.beforeHandle(alreadyBatched, brokerChannel, broker));
+        assertSame(toUserHandler, batcher.beforeHandle(toUserHandler, brokerChannel,
+                mock(UserDestinationMessageHandler.class)));
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe entregar los lotes pendientes al cerrarse")
+    void testCloseFlushesPending() {
+        // Arrange
+        batcher = batcher(Duration.ofHours(1), 64);
+        batcher.beforeHandle(message(PUBLIC, "{\"n\":1}"), brokerChannel, broker);
+        batcher.beforeHandle(message(PUBLIC, "{\"n\":2}"), brokerChannel, broker);
+
+        // Act
+        batcher.close();
+
+        // Assert
+        assertEquals(1, sent.size());
+        assertEquals(2, batcher.getBatchedMessages());
+        assertEquals(1, batcher.getFrames());
+    }
+
+    @Test
+    @DisplayName("Debe descartar el lote de un destino al vaciarse")
+    void testEmptyBatchesAreRemoved() throws InterruptedException {
+        // Arrange
+        batcher = batcher(Duration.ofMillis(5), 2);
+        for (int i = 0; i < 100; i++) {
+            batcher.beforeHandle(message("/topic/room.r" + i, "{\"n\":" + i + "}"), brokerChannel, broker);
+        }
+
+        // Act
+        long deadline = System.currentTimeMillis() + 2000;
+        while (sent.size() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        int pendingAfterWindow = batcher.getPendingDestinationCount();
+        batcher.beforeHandle(message(PUBLIC, "{\"n\":1}"), brokerChannel, broker);
+        batcher.beforeHandle(message(PUBLIC, "{\"n\":2}"), brokerChannel, broker);
+
+        // Assert
+        assertEquals(0, pendingAfterWindow);
+        assertEquals(0, batcher.getPendingDestinationCount());
+        assertEquals(101, sent.size());
+        assertEquals("[{\"n\":1},{\"n\":2}]", payload(sent.get(100)));
+    }
+
+    private BroadcastBatcher batcher(Duration window, int maxMessages) {
+        ChatProperties properties = new ChatProperties();
+        properties.getBatching().setWindow(window);
+        properties.getBatching().setMaxMessages(maxMessages);
+        return new BroadcastBatcher(properties, brokerChannel, new ChatMetrics(registry));
+    }
+
+    private static Message<byte[]> message(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private static String payload(Message<?> message) {
+        return new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+    }
+}
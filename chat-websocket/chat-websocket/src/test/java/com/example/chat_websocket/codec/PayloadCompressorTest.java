@@ -0,0 +1,226 @@
+package com.example.chat_websocket.codec;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.metrics.ChatMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pruebas unitarias para PayloadCompressor
+ */
+class PayloadCompressorTest {
+
+    private static final byte[] LONG_PAYLOAD = ("{\"type\":\"CHAT\",\"content\":\""
+            + "Mañana a las diez revisamos el despliegue del servidor de chat. ".repeat(20)
+            + "\",\"sender\":\"Ana\"}").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SHORT_PAYLOAD = "{\"type\":\"CHAT\",\"content\":\"ok\",\"sender\":\"Ana\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private SimpleMeterRegistry registry;
+    private WireFormatNegotiator negotiator;
+    private PayloadCompressor compressor;
+
+    @BeforeEach
+    void setUp() {
+        ChatProperties properties = new ChatProperties();
+        properties.getCompression().setEnabled(true);
+        properties.getCompression().setThreshold(DataSize.ofBytes(256));
+        properties.getCompression().setLevel(6);
+        registry = new SimpleMeterRegistry();
+        negotiator = new WireFormatNegotiator();
+        compressor = new PayloadCompressor(properties, negotiator, new ChatMetrics(registry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        compressor.close();
+    }
+
+    @Test
+    @DisplayName("Debe comprimir los payloads que superan el umbral y marcarlos con content-encoding")
+    void testLargePayloadCompressed() throws Exception {
+        // Arrange
+        negotiator.registerBinarySession("s1");
+        compressor.preSend(connect("s1", "gzip, deflate"), channel);
+
+        // Act
+        Message<?> sent = compressor.preSend(message("s1", LONG_PAYLOAD), channel);
+
+        // Assert
+        byte[] compressed = (byte[]) sent.getPayload();
+        assertTrue(compressed.length < LONG_PAYLOAD.length / 4);
+        assertArrayEquals(LONG_PAYLOAD, inflate(compressed, LONG_PAYLOAD.length));
+        assertEquals(PayloadCompressor.DEFLATE, SimpMessageHeaderAccessor.wrap(sent)
+                .getFirstNativeHeader(PayloadCompressor.CONTENT_ENCODING_HEADER));
+        assertEquals(1, registry.get(ChatMetrics.COMPRESSION_TIME).timer().count());
+        assertTrue(registry.get(ChatMetrics.COMPRESSION_RATIO).summary().mean() < 0.25);
+    }
+
+    @Test
+    @DisplayName("Debe enviar sin comprimir los payloads bajo el umbral")
+    void testSmallPayloadSkipped() {
+        // Arrange
+        negotiator.registerBinarySession("s1");
+        compressor.preSend(connect("s1", "deflate"), channel);
+        Message<byte[]> message = message("s1", SHORT_PAYLOAD);
+
+        // Act
+        Message<?> sent = compressor.preSend(message, channel);
+
+        // Assert
+        assertSame(message, sent);
+        assertEquals(1.0, registry.get(ChatMetrics.COMPRESSION_SKIPPED).counter().count());
+    }
+
+    @Test
+    @DisplayName("No debe comprimir para sesiones SockJS ni para las que no lo pidieron")
+    void testNotNegotiated() {
+        // Arrange
+        compressor.preSend(connect("sockjs", "deflate"), channel);
+        negotiator.registerBinarySession("s2");
+        compressor.preSend(connect("s2", "gzip"), channel);
+
+        // Act & Assert
+        assertFalse(compressor.isCompressing("sockjs"));
+        assertFalse(compressor.isCompressing("s2"));
+        Message<byte[]> message = message("s2", LONG_PAYLOAD);
+        assertSame(message, compressor.preSend(message, channel));
+    }
+
+    @Test
+    @DisplayName("No debe comprimir de nuevo para conexiones con permessage-deflate")
+    void testTransportDeflateNotCompressedTwice() {
+        // Arrange
+        negotiator.registerBinarySession("s1");
+        compressor.registerTransportDeflate("s1");
+        compressor.preSend(connect("s1", "deflate"), channel);
+        Message<byte[]> message = message("s1", LONG_PAYLOAD);
+
+        // Act & Assert
+        assertFalse(compressor.isCompressing("s1"));
+        assertSame(message, compressor.preSend(message, channel));
+    }
+
+    @Test
+    @DisplayName("No debe comprimir los SEND que envía el propio cliente")
+    void testInboundSendIgnored() {
+        // Arrange
+        negotiator.registerBinarySession("s1");
+        compressor.preSend(connect("s1", "deflate"), channel);
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionId("s1");
+        accessor.setDestination("/app/chat.sendMessage");
+        Message<byte[]> send = MessageBuilder.createMessage(LONG_PAYLOAD, accessor.getMessageHeaders());
+
+        // Act & Assert
+        assertSame(send, compressor.preSend(send, channel));
+    }
+
+    @Test
+    @DisplayName("Debe comprimir una sola vez un payload difundido a varias sesiones")
+    void testBroadcastCompressedOnce() {
+        // Act
+        byte[] first = compressor.compress(LONG_PAYLOAD);
+        byte[] second = compressor.compress(LONG_PAYLOAD);
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(1, registry.get(ChatMetrics.COMPRESSION_TIME).timer().count());
+    }
+
+    @Test
+    @DisplayName("Debe comprimir una sola vez cada payload aunque se intercalen varias difusiones")
+    void testInterleavedBroadcastsCompressedOnce() throws Exception {
+        // Arrange
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < PayloadCompressor.COMPRESSION_CACHE_SIZE; i++) {
+            payloads.add(Arrays.copyOf(LONG_PAYLOAD, LONG_PAYLOAD.length));
+        }
+        List<byte[]> first = payloads.stream().map(compressor::compress).toList();
+
+        // Act
+        List<byte[]> second = payloads.stream().map(compressor::compress).toList();
+
+        // Assert
+        for (int i = 0; i < payloads.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+            assertArrayEquals(payloads.get(i), inflate(second.get(i), LONG_PAYLOAD.length));
+        }
+        assertEquals(payloads.size(), registry.get(ChatMetrics.COMPRESSION_TIME).timer().count());
+    }
+
+    @Test
+    @DisplayName("Debe seguir comprimiendo tras liberar los Deflater del pool")
+    void testCloseReleasesDeflaters() throws Exception {
+        // Arrange
+        byte[] before = compressor.compress(LONG_PAYLOAD);
+
+        // Act
+        compressor.close();
+        byte[] after = compressor.compress(Arrays.copyOf(LONG_PAYLOAD, LONG_PAYLOAD.length));
+
+        // Assert
+        assertArrayEquals(LONG_PAYLOAD, inflate(before, LONG_PAYLOAD.length));
+        assertArrayEquals(LONG_PAYLOAD, inflate(after, LONG_PAYLOAD.length));
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un nivel de compresión fuera de rango")
+    void testInvalidLevel() {
+        // Arrange
+        ChatProperties properties = new ChatProperties();
+        properties.getCompression().setLevel(12);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new PayloadCompressor(properties, negotiator, new ChatMetrics(registry)));
+    }
+
+    private static byte[] inflate(byte[] compressed, int length) throws Exception {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] result = new byte[length];
+        assertEquals(length, inflater.inflate(result));
+        assertTrue(inflater.finished());
+        return result;
+    }
+
+    private static Message<byte[]> connect(String sessionId, String acceptEncoding) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader(PayloadCompressor.ACCEPT_ENCODING_HEADER, acceptEncoding);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> message(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/public");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
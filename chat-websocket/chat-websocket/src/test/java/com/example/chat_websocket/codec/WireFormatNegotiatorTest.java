@@ -0,0 +1,148 @@
+package com.example.chat_websocket.codec;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pruebas unitarias para WireFormatNegotiator y CborMessageConverter
+ */
+class WireFormatNegotiatorTest {
+
+    private final WireFormatNegotiator negotiator = new WireFormatNegotiator();
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    @DisplayName("Debe convertir a CBOR los mensajes de las sesiones que lo negociaron")
+    void testNegotiatedSessionReceivesCbor() throws Exception {
+        // Arrange
+        negotiator.registerBinarySession("s1");
+        negotiator.preSend(connect("s1", "application/cbor"), channel);
+        byte[] json = new ObjectMapper().writeValueAsBytes(new ChatMessage(MessageType.CHAT, "Hola", "Ana"));
+
+        // Act
+        Message<?> converted = negotiator.preSend(message("s1", json), channel);
+        Message<?> unchanged = negotiator.preSend(message("s2", json), channel);
+
+        // Assert
+        assertTrue(negotiator.isCbor("s1"));
+        assertEquals(CborMessageConverter.APPLICATION_CBOR,
+                converted.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        byte[] cbor = (byte[]) converted.getPayload();
+        assertTrue(cbor.length < json.length);
+
+        ChatMessage decoded = (ChatMessage) new CborMessageConverter().fromMessage(converted, ChatMessage.class);
+        assertEquals("Hola", decoded.getContent());
+        assertEquals(MessageType.CHAT, decoded.getType());
+        assertSame(json, unchanged.getPayload());
+    }
+
+    @Test
+    @DisplayName("Debe mantener JSON en las sesiones SockJS aunque pidan CBOR")
+    void testSockJsSessionKeepsJson() {
+        // Act
+        negotiator.preSend(connect("s1", "application/cbor"), channel);
+
+        // Assert
+        assertFalse(negotiator.isCbor("s1"));
+    }
+
+    @Test
+    @DisplayName("Debe convertir una sola vez el mismo payload difundido")
+    void testBroadcastConvertedOnce() throws Exception {
+        // Arrange
+        byte[] json = "{\"content\":\"Hola\"}".getBytes();
+
+        // Act
+        byte[] first = negotiator.toCbor(json);
+        byte[] second = negotiator.toCbor(json);
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    @DisplayName("Debe convertir una sola vez cada payload aunque se intercalen varias difusiones")
+    void testInterleavedBroadcastsConvertedOnce() throws Exception {
+        // Arrange
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < WireFormatNegotiator.TRANSCODE_CACHE_SIZE; i++) {
+            payloads.add(("{\"content\":\"m" + i + "\"}").getBytes());
+        }
+        List<byte[]> first = new ArrayList<>();
+        for (byte[] json : payloads) {
+            first.add(negotiator.toCbor(json));
+        }
+
+        // Act: cada destino entrega su payload al resto de suscriptores después de los demás
+        List<byte[]> second = new ArrayList<>();
+        for (byte[] json : payloads) {
+            second.add(negotiator.toCbor(json));
+        }
+
+        // Assert
+        for (int i = 0; i < payloads.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("El conversor CBOR no debe aplicarse a frames sin content-type")
+    void testCborConverterIsStrict() {
+        // Arrange
+        CborMessageConverter converter = new CborMessageConverter();
+        Message<byte[]> withoutContentType = MessageBuilder.withPayload("{}".getBytes()).build();
+
+        // Act & Assert
+        assertNull(converter.fromMessage(withoutContentType, ChatMessage.class));
+        assertNull(converter.toMessage(new ChatMessage(), new MessageHeaders(null)));
+    }
+
+    @Test
+    @DisplayName("Debe olvidar la sesión al cerrarse")
+    void testRelease() {
+        // Arrange
+        negotiator.registerBinarySession("s1");
+        negotiator.preSend(connect("s1", "application/cbor"), channel);
+
+        // Act
+        negotiator.release("s1");
+
+        // Assert
+        assertFalse(negotiator.isCbor("s1"));
+    }
+
+    private static Message<byte[]> connect(String sessionId, String contentType) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER, contentType);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> message(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/public");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.chat_websocket.config;
+
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para ChannelExecutorFactory
+ */
+class ChannelExecutorFactoryTest {
+
+    @Test
+    @DisplayName("En modo DEFAULT debe conservar el ejecutor de Spring")
+    void testDefaultMode() {
+        assertNull(ChannelExecutorFactory.create(ChatProperties.ExecutorMode.DEFAULT, new ChatProperties.Pool(), "t-"));
+    }
+
+    @Test
+    @DisplayName("En modo TUNED debe crear un pool con cola acotada")
+    void testTunedMode() {
+        // Arrange
+        ChatProperties.Pool pool = new ChatProperties.Pool();
+        pool.setCorePoolSize(2);
+        pool.setMaxPoolSize(4);
+        pool.setQueueCapacity(100);
+
+        // Act
+        ThreadPoolTaskExecutor executor = ChannelExecutorFactory.create(ChatProperties.ExecutorMode.TUNED, pool, "t-");
+
+        // Assert
+        assertNotNull(executor);
+        assertEquals(2, executor.getCorePoolSize());
+        assertEquals(4, executor.getMaxPoolSize());
+        assertEquals(100, executor.getQueueCapacity());
+    }
+
+    @Test
+    @DisplayName("Con la política ABORT debe rechazar cuando el pool y la cola están llenos")
+    void testAbortPolicy() throws Exception {
+        // Arrange
+        ChatProperties.Pool pool = new ChatProperties.Pool();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(1);
+        pool.setOverflowPolicy(ChatProperties.OverflowPolicy.ABORT);
+        ThreadPoolTaskExecutor executor = ChannelExecutorFactory.create(ChatProperties.ExecutorMode.TUNED, pool, "t-");
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // Act: un hilo ocupado y una tarea en cola
+            executor.execute(() -> await(release));
+            executor.execute(() -> { });
+
+            // Assert
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Con la política CALLER_RUNS el hilo que publica debe ejecutar la tarea")
+    void testCallerRunsPolicy() {
+        // Arrange
+        ChatProperties.Pool pool = new ChatProperties.Pool();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(1);
+        ThreadPoolTaskExecutor executor = ChannelExecutorFactory.create(ChatProperties.ExecutorMode.TUNED, pool, "t-");
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> runner = new AtomicReference<>();
+
+        try {
+            // Act
+            executor.execute(() -> await(release));
+            executor.execute(() -> { });
+            executor.execute(() -> runner.set(Thread.currentThread()));
+
+            // Assert
+            assertSame(Thread.currentThread(), runner.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("En modo VIRTUAL debe usar hilos virtuales o, sin JDK 21, un pool acotado")
+    void testVirtualModeFallback() {
+        // Arrange
+        ChatProperties.Pool pool = new ChatProperties.Pool();
+        pool.setCorePoolSize(2);
+        pool.setMaxPoolSize(64);
+
+        // Act
+        ThreadPoolTaskExecutor executor = ChannelExecutorFactory.create(ChatProperties.ExecutorMode.VIRTUAL, pool, "t-");
+
+        // Assert
+        assertNotNull(executor);
+        assertEquals(ChannelExecutorFactory.supportsVirtualThreads() ? 64 : 2, executor.getCorePoolSize());
+        assertEquals(64, executor.getMaxPoolSize());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,18 +1,42 @@
 package com.example.chat_websocket.controller;
 
 
+import com.example.chat_websocket.audit.AuditLog;
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.dedup.MessageDeduplicator;
+import com.example.chat_websocket.direct.DirectMessageService;
+import com.example.chat_websocket.history.MessageHistoryService;
+import com.example.chat_websocket.metrics.ChatMetrics;
 import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageAck;
 import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.presence.NameTakenException;
+import com.example.chat_websocket.presence.PresenceRegistry;
+import com.example.chat_websocket.resume.ResumeTokenService;
+import com.example.chat_websocket.room.RoomRegistry;
+import com.example.chat_websocket.util.MessageSequencer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.support.GenericMessage;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * Pruebas unitarias para ChatController
@@ -21,10 +45,24 @@ class ChatControllerTest {
 
     private ChatController chatController;
     private SimpMessageHeaderAccessor headerAccessor;
+    private SimpMessageSendingOperations messagingTemplate;
+    private RoomRegistry roomRegistry;
+    private AuditLog auditLog;
+    private PresenceRegistry presenceRegistry;
+    private List<Message<?>> brokerMessages;
 
     @BeforeEach
     void setUp() {
-        chatController = new ChatController();
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+        roomRegistry = new RoomRegistry(new ChatProperties());
+        auditLog = mock(AuditLog.class);
+        presenceRegistry = new PresenceRegistry(new ChatProperties());
+        brokerMessages = new ArrayList<>();
+        SimpMessagingTemplate brokerTemplate = new SimpMessagingTemplate((sent, timeout) -> brokerMessages.add(sent));
+        chatController = new ChatController(new MessageHistoryService(messagingTemplate, new ChatProperties(),
+                Optional.empty()), roomRegistry, new MessageSequencer(new ChatProperties()),
+                new ChatMetrics(new SimpleMeterRegistry()), auditLog, presenceRegistry,
+                new DirectMessageService(brokerTemplate, presenceRegistry));
 
         // Crear header accessor mock
         Map<String, Object> sessionAttributes = new HashMap<>();
@@ -42,14 +80,15 @@ class ChatControllerTest {
         message.setContent("Hello World");
 
         // Act
-        ChatMessage result = chatController.sendMessage(message);
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
 
         // Assert
         assertNotNull(result);
         assertEquals("TestUser", result.getSender());
         assertEquals("Hello World", result.getContent());
         assertEquals(MessageType.CHAT, result.getType());
-        assertNotNull(result.getTimestamp());
+        assertTrue(result.getTimestamp() > 0);
+        assertTrue(result.getSequence() > 0);
     }
 
     @Test
@@ -62,7 +101,7 @@ class ChatControllerTest {
         message.setContent("");
 
         // Act
-        ChatMessage result = chatController.sendMessage(message);
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
 
         // Assert
         assertNull(result);
@@ -78,7 +117,7 @@ class ChatControllerTest {
         message.setContent(null);
 
         // Act
-        ChatMessage result = chatController.sendMessage(message);
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
 
         // Assert
         assertNull(result);
@@ -94,7 +133,7 @@ class ChatControllerTest {
         message.setContent("<script>alert('XSS')</script>");
 
         // Act
-        ChatMessage result = chatController.sendMessage(message);
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
 
         // Assert
         assertNotNull(result);
@@ -149,7 +188,7 @@ class ChatControllerTest {
         message.setContent("  Hello World  ");
 
         // Act
-        ChatMessage result = chatController.sendMessage(message);
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
 
         // Assert
         assertNotNull(result);
@@ -166,7 +205,7 @@ class ChatControllerTest {
         message.setContent("He said \"Hello\"");
 
         // Act
-        ChatMessage result = chatController.sendMessage(message);
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
 
         // Assert
         assertNotNull(result);
@@ -183,10 +222,317 @@ class ChatControllerTest {
         message.setContent("Hola 👋 ¿Cómo estás? 😊");
 
         // Act
-        ChatMessage result = chatController.sendMessage(message);
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
 
         // Assert
         assertNotNull(result);
         assertEquals("Hola 👋 ¿Cómo estás? 😊", result.getContent());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Debe reenviar el historial reciente al unirse")
+    @SuppressWarnings("unchecked")
+    void testAddUser_ReplaysHistory() {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setType(MessageType.CHAT);
+            message.setSender("TestUser");
+            message.setContent("Mensaje " + i);
+            chatController.sendMessage(message, headerAccessor);
+        }
+        headerAccessor.setSessionId("session-1");
+
+        ChatMessage join = new ChatMessage();
+        join.setType(MessageType.JOIN);
+        join.setSender("LateUser");
+
+        // Act
+        chatController.addUser(join, headerAccessor);
+
+        // Assert
+        verify(messagingTemplate).convertAndSendToUser(eq("session-1"), eq(MessageHistoryService.HISTORY_QUEUE),
+                argThat(payload -> ((List<ChatMessage>) payload).size() == 3
+                        && ((List<ChatMessage>) payload).get(0).getContent().equals("Mensaje 0")),
+                any(MessageHeaders.class));
+    }
+
+    @Test
+    @DisplayName("Debe sanitizar y aceptar mensajes de una sala")
+    void testSendRoomMessage_Valid() {
+        // Arrange
+        ChatMessage message = new ChatMessage();
+        message.setType(MessageType.CHAT);
+        message.setSender("TestUser");
+        message.setContent("<b>Hola sala</b>");
+        headerAccessor.setSessionId("session-1");
+        roomRegistry.join("general", "session-1");
+
+        // Act
+        ChatMessage result = chatController.sendRoomMessage("general", message, headerAccessor);
+
+        // Assert
+        assertNotNull(result);
+        assertEquals("&lt;b&gt;Hola sala&lt;&#x2F;b&gt;", result.getContent());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar mensajes a una sala de la que la sesión no es miembro")
+    void testSendRoomMessage_NotMember() {
+        // Arrange
+        ChatMessage message = new ChatMessage(MessageType.CHAT, "Intruso", "TestUser");
+        headerAccessor.setSessionId("session-2");
+        roomRegistry.join("general", "session-1");
+
+        // Act & Assert
+        assertNull(chatController.sendRoomMessage("general", message, headerAccessor));
+        assertNull(chatController.sendRoomMessage("vacia", message, headerAccessor));
+        verifyNoInteractions(auditLog);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar mensajes a salas con nombre inválido")
+    void testSendRoomMessage_InvalidRoom() {
+        // Arrange
+        ChatMessage message = new ChatMessage();
+        message.setType(MessageType.CHAT);
+        message.setSender("TestUser");
+        message.setContent("Hola");
+
+        // Act & Assert
+        assertNull(chatController.sendRoomMessage("sala*", message, headerAccessor));
+    }
+
+    @Test
+    @DisplayName("Debe registrar la sesión como miembro de la sala")
+    void testAddRoomUser_RegistersMembership() {
+        // Arrange
+        headerAccessor.setSessionId("session-1");
+        ChatMessage message = new ChatMessage();
+        message.setType(MessageType.JOIN);
+        message.setSender("RoomUser");
+
+        // Act
+        ChatMessage result = chatController.addRoomUser("general", message, headerAccessor);
+
+        // Assert
+        assertNotNull(result);
+        assertEquals(MessageType.JOIN, result.getType());
+        assertEquals("general", headerAccessor.getSessionAttributes().get("room"));
+        assertTrue(roomRegistry.find("general").getMembers().contains("session-1"));
+
+        // Cambiar de sala abandona la anterior
+        chatController.addRoomUser("otra", message, headerAccessor);
+        assertFalse(roomRegistry.find("general").getMembers().contains("session-1"));
+        assertTrue(roomRegistry.find("otra").getMembers().contains("session-1"));
+    }
+
+    @Test
+    @DisplayName("Debe asignar secuencias crecientes y reemplazar la marca de tiempo del cliente")
+    void testSendMessage_ServerAssignsTimestampAndSequence() {
+        // Arrange
+        ChatMessage first = new ChatMessage(MessageType.CHAT, "Primero", "TestUser");
+        ChatMessage second = new ChatMessage(MessageType.CHAT, "Segundo", "TestUser");
+        second.setTimestamp(1L);
+
+        // Act
+        long before = System.currentTimeMillis();
+        ChatMessage firstResult = chatController.sendMessage(first, headerAccessor);
+        ChatMessage secondResult = chatController.sendMessage(second, headerAccessor);
+
+        // Assert
+        assertTrue(secondResult.getSequence() > firstResult.getSequence());
+        assertTrue(secondResult.getTimestamp() >= before - 1_000);
+    }
+
+    @Test
+    @DisplayName("Debe auditar el mensaje publicado en lugar de registrarlo en el log")
+    void testSendMessage_Audited() {
+        // Arrange
+        ChatMessage message = new ChatMessage(MessageType.CHAT, "Auditado", "TestUser");
+
+        // Act
+        ChatMessage result = chatController.sendMessage(message, headerAccessor);
+        chatController.sendMessage(new ChatMessage(MessageType.CHAT, "   ", "TestUser"), headerAccessor);
+
+        // Assert
+        verify(auditLog).record("/topic/public", result);
+        verifyNoMoreInteractions(auditLog);
+    }
+
+    @Test
+    @DisplayName("No debe anunciar de nuevo a un usuario que abre otra sesión")
+    void testAddUser_SecondSessionNotAnnounced() {
+        // Arrange
+        ChatMessage message = new ChatMessage(MessageType.JOIN, null, "MultiUser");
+        headerAccessor.setSessionId("session-1");
+        headerAccessor.setNativeHeader(PresenceRegistry.CLIENT_KEY_HEADER, "navegador-1");
+        SimpMessageHeaderAccessor secondSession = SimpMessageHeaderAccessor.create();
+        secondSession.setSessionAttributes(new HashMap<>());
+        secondSession.setSessionId("session-2");
+        secondSession.setNativeHeader(PresenceRegistry.CLIENT_KEY_HEADER, "navegador-1");
+
+        // Act
+        ChatMessage first = chatController.addUser(message, headerAccessor);
+        ChatMessage second = chatController.addUser(message, secondSession);
+
+        // Assert
+        assertNotNull(first);
+        assertNull(second);
+        assertEquals("MultiUser", secondSession.getSessionAttributes().get("username"));
+    }
+
+    @Test
+    @DisplayName("Debe rechazar el nombre de un usuario conectado desde otro cliente")
+    void testAddUser_NameTakenByOtherClient() {
+        // Arrange
+        ChatMessage message = new ChatMessage(MessageType.JOIN, null, "Ana");
+        headerAccessor.setSessionId("session-ana");
+        headerAccessor.setNativeHeader(PresenceRegistry.CLIENT_KEY_HEADER, "navegador-ana");
+        chatController.addUser(message, headerAccessor);
+        SimpMessageHeaderAccessor intruder = SimpMessageHeaderAccessor.create();
+        intruder.setSessionAttributes(new HashMap<>());
+        intruder.setSessionId("session-intruso");
+        intruder.setNativeHeader(PresenceRegistry.CLIENT_KEY_HEADER, "navegador-intruso");
+
+        // Act & Assert
+        assertThrows(NameTakenException.class, () -> chatController.addUser(message, intruder));
+        assertNull(intruder.getSessionAttributes().get("username"));
+        assertEquals(List.of("session-ana"), presenceRegistry.sessionsOf("Ana"));
+        assertEquals(ChatController.NAME_TAKEN,
+                chatController.handleNameTaken(new NameTakenException("Ana")).getCode());
+    }
+
+    @Test
+    @DisplayName("Debe enviar el mensaje privado como el usuario de la sesión y no como el del payload")
+    void testSendPrivateMessage_SenderFromSession() {
+        // Arrange
+        presenceRegistry.connect("Ana", "session-ana", "/topic/public");
+        presenceRegistry.connect("Luis", "session-luis", "/topic/public");
+        headerAccessor.setSessionId("session-luis");
+        headerAccessor.getSessionAttributes().put("username", "Luis");
+        ChatMessage message = new ChatMessage(MessageType.CHAT, "<b>hola</b>", "Suplantador");
+        message.setRecipient("Ana");
+
+        // Act
+        chatController.sendPrivateMessage(message, headerAccessor);
+
+        // Assert
+        assertEquals(MessageType.PRIVATE, message.getType());
+        assertEquals("Luis", message.getSender());
+        assertEquals("&lt;b&gt;hola&lt;&#x2F;b&gt;", message.getContent());
+        assertTrue(message.getSequence() > 0);
+        assertEquals(2, brokerMessages.size());
+        verify(auditLog).record("/user/Ana" + DirectMessageService.MESSAGES_QUEUE, message);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar mensajes privados de sesiones que no se unieron al chat")
+    void testSendPrivateMessage_NotJoined() {
+        // Arrange
+        presenceRegistry.connect("Ana", "session-ana", "/topic/public");
+        headerAccessor.setSessionId("session-anonima");
+        ChatMessage message = new ChatMessage(MessageType.PRIVATE, "hola", "Luis");
+        message.setRecipient("Ana");
+
+        // Act
+        chatController.sendPrivateMessage(message, headerAccessor);
+
+        // Assert
+        assertTrue(brokerMessages.isEmpty());
+        verifyNoInteractions(auditLog);
+    }
+
+    @Test
+    @DisplayName("Debe descartar el reenvío de un messageId ya recibido y confirmar ambos envíos")
+    void testSendMessage_DuplicateDiscardedAndAcknowledged() {
+        // Arrange
+        ChatController controller = new ChatController(new MessageHistoryService(messagingTemplate,
+                new ChatProperties(), Optional.empty()), roomRegistry, new MessageSequencer(new ChatProperties()),
+                new ChatMetrics(new SimpleMeterRegistry()), auditLog, presenceRegistry,
+                mock(DirectMessageService.class),
+                Optional.of(new MessageDeduplicator(new ChatProperties(), messagingTemplate)), Optional.empty());
+        headerAccessor.setSessionId("session-1");
+        headerAccessor.getSessionAttributes().put("username", "TestUser");
+        ChatMessage message = new ChatMessage(MessageType.CHAT, "Una vez", "TestUser");
+        message.setMessageId("m-1");
+        ChatMessage resent = new ChatMessage(MessageType.CHAT, "Una vez", "TestUser");
+        resent.setMessageId("m-1");
+
+        // Act
+        ChatMessage first = controller.sendMessage(message, headerAccessor);
+        ChatMessage second = controller.sendMessage(resent, headerAccessor);
+
+        // Assert
+        assertNotNull(first);
+        assertNull(second);
+        verify(auditLog, times(1)).record(eq("/topic/public"), any());
+        ArgumentCaptor<Object> acks = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(2)).convertAndSendToUser(eq("session-1"),
+                eq(MessageDeduplicator.ACKS_QUEUE), acks.capture(), any(MessageHeaders.class));
+        MessageAck ack = (MessageAck) acks.getAllValues().get(0);
+        MessageAck duplicateAck = (MessageAck) acks.getAllValues().get(1);
+        assertEquals(first.getSequence(), ack.getSequence());
+        assertFalse(ack.isDuplicate());
+        assertEquals("m-1", duplicateAck.getMessageId());
+        assertTrue(duplicateAck.isDuplicate());
+    }
+
+    @Test
+    @DisplayName("Debe reanudar sin anunciar la entrada y reenviar solo los mensajes perdidos")
+    void testAddUser_ResumeFromOtherNode() {
+        // Arrange
+        ChatProperties properties = new ChatProperties();
+        properties.getResume().setSecret("secreto-compartido");
+        MessageHistoryService historyService = new MessageHistoryService(messagingTemplate, properties,
+                Optional.empty());
+        ChatController controller = new ChatController(historyService, roomRegistry,
+                new MessageSequencer(properties), new ChatMetrics(new SimpleMeterRegistry()), auditLog,
+                presenceRegistry, mock(DirectMessageService.class), Optional.empty(),
+                Optional.of(new ResumeTokenService(properties, messagingTemplate)));
+        ChatMessage seen = controller.sendMessage(new ChatMessage(MessageType.CHAT, "Visto", "Otro"), headerAccessor);
+        ChatMessage missed = controller.sendMessage(new ChatMessage(MessageType.CHAT, "Perdido", "Otro"),
+                headerAccessor);
+
+        // El token lo emitió otro nodo con la misma clave
+        String token = new ResumeTokenService(properties, messagingTemplate).issue("Vuelve", "/topic/public");
+        SimpMessageHeaderAccessor resumeAccessor = SimpMessageHeaderAccessor.create();
+        resumeAccessor.setSessionAttributes(new HashMap<>());
+        resumeAccessor.setSessionId("session-resume");
+        resumeAccessor.setNativeHeader(ResumeTokenService.TOKEN_HEADER, token);
+        resumeAccessor.setNativeHeader(ResumeTokenService.LAST_SEQUENCE_HEADER, String.valueOf(seen.getSequence()));
+
+        // Act
+        ChatMessage result = controller.addUser(new ChatMessage(MessageType.JOIN, null, "Vuelve"), resumeAccessor);
+
+        // Assert
+        assertNull(result);
+        assertTrue(presenceRegistry.isOnline("Vuelve"));
+        assertEquals(Boolean.TRUE, resumeAccessor.getSessionAttributes().get(ResumeTokenService.RESUMABLE_ATTRIBUTE));
+        verify(messagingTemplate).convertAndSendToUser(eq("session-resume"),
+                eq(MessageHistoryService.HISTORY_QUEUE), eq(List.of(missed)), any(MessageHeaders.class));
+        verify(messagingTemplate).convertAndSendToUser(eq("session-resume"), eq(ResumeTokenService.RESUME_QUEUE),
+                any(), any(MessageHeaders.class));
+    }
+
+    @Test
+    @DisplayName("Debe anunciar la entrada si el token no es válido")
+    void testAddUser_InvalidResumeTokenAnnounced() {
+        // Arrange
+        ChatController controller = new ChatController(new MessageHistoryService(messagingTemplate,
+                new ChatProperties(), Optional.empty()), roomRegistry, new MessageSequencer(new ChatProperties()),
+                new ChatMetrics(new SimpleMeterRegistry()), auditLog, presenceRegistry,
+                mock(DirectMessageService.class), Optional.empty(),
+                Optional.of(new ResumeTokenService(new ChatProperties(), messagingTemplate)));
+        headerAccessor.setSessionId("session-1");
+        headerAccessor.setNativeHeader(ResumeTokenService.TOKEN_HEADER, "inventado.token");
+        headerAccessor.setNativeHeader(ResumeTokenService.LAST_SEQUENCE_HEADER, "0");
+
+        // Act
+        ChatMessage result = controller.addUser(new ChatMessage(MessageType.JOIN, null, "Nuevo"), headerAccessor);
+
+        // Assert
+        assertNotNull(result);
+        assertEquals(MessageType.JOIN, result.getType());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.chat_websocket.dedup;
+
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para DeduplicationWindow
+ */
+class DeduplicationWindowTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    @DisplayName("Debe detectar los reenvíos del mismo remitente y no los de otros")
+    void testDetectsDuplicatesPerScope() {
+        // Arrange
+        DeduplicationWindow window = new DeduplicationWindow(Duration.ofMinutes(1), 1000, clock::get);
+
+        // Act & Assert
+        assertTrue(window.add("Ana", "m-1"));
+        assertFalse(window.add("Ana", "m-1"));
+        assertTrue(window.add("Luis", "m-1"));
+        assertTrue(window.add("Ana", "m-2"));
+        // El separador evita que ("An", "am-1") coincida con ("Ana", "m-1")
+        assertTrue(window.add("An", "am-1"));
+        assertEquals(4, window.size());
+    }
+
+    @Test
+    @DisplayName("Debe recordar cada identificador al menos durante la ventana y olvidarlo después")
+    void testExpiresAfterWindow() {
+        // Arrange
+        DeduplicationWindow window = new DeduplicationWindow(Duration.ofSeconds(60), 1000, clock::get);
+        clock.set(TimeUnit.SECONDS.toNanos(59));
+        window.add("Ana", "m-1");
+
+        // Act & Assert
+        clock.set(TimeUnit.SECONDS.toNanos(118));
+        assertFalse(window.add("Ana", "m-1"), "Aún dentro de la ventana tras una rotación");
+        clock.set(TimeUnit.SECONDS.toNanos(181));
+        window.add("Otro", "rota");
+        assertTrue(window.add("Ana", "m-1"), "Pasadas dos rotaciones ya no se recuerda");
+        assertEquals(0, window.getEarlyRotations());
+    }
+
+    @Test
+    @DisplayName("Debe mantener la memoria fija aunque lleguen más identificadores de los previstos")
+    void testBoundedUnderOverload() {
+        // Arrange
+        DeduplicationWindow window = new DeduplicationWindow(Duration.ofMinutes(1), 1600, clock::get);
+        long capacity = window.getCapacityBytes();
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(window.add("Usuario" + (i % 50), "m-" + i));
+        }
+
+        // Assert
+        assertEquals(capacity, window.getCapacityBytes());
+        assertTrue(window.size() <= 2 * 1600, "Identificadores recordados: " + window.size());
+        assertTrue(window.getEarlyRotations() > 0);
+        // Los más recientes siguen recordados aunque la ventana se haya acortado
+        assertFalse(window.add("Usuario49", "m-99999"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.chat_websocket.direct;
+
+
+import com.example.chat_websocket.cluster.ClusterRelay;
+import com.example.chat_websocket.cluster.InProcessClusterRelay;
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.presence.PresenceRegistry;
+import com.example.chat_websocket.ratelimit.InboundRateLimiter;
+import com.example.chat_websocket.util.MessageSequencer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para DirectMessageService
+ */
+class DirectMessageServiceTest {
+
+    private static final String PUBLIC = "/topic/public";
+
+    private List<Message<?>> sent;
+    private PresenceRegistry presenceRegistry;
+    private DirectMessageService service;
+
+    @BeforeEach
+    void setUp() {
+        sent = new ArrayList<>();
+        presenceRegistry = new PresenceRegistry(new ChatProperties());
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+        messagingTemplate.setMessageConverter(new MappingJackson2MessageConverter());
+        service = new DirectMessageService(messagingTemplate, presenceRegistry);
+    }
+
+    @Test
+    @DisplayName("Debe entregar solo a las sesiones del destinatario y del remitente con un único payload")
+    void testDeliverToRecipientSessions() {
+        // Arrange
+        presenceRegistry.connect("Ana", "ana-1", PUBLIC);
+        presenceRegistry.connect("Ana", "ana-2", "/topic/room.general");
+        presenceRegistry.connect("Luis", "luis-1", PUBLIC);
+        presenceRegistry.connect("Otro", "otro-1", PUBLIC);
+
+        // Act
+        int delivered = service.deliver(privateMessage("Luis", "Ana"), "luis-1");
+
+        // Assert
+        assertEquals(3, delivered);
+        List<String> destinations = sent.stream()
+                .map(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                .toList();
+        assertEquals(List.of("/user/ana-1/queue/messages", "/user/ana-2/queue/messages",
+                "/user/luis-1/queue/messages"), destinations);
+        assertInstanceOf(byte[].class, sent.get(0).getPayload());
+        assertSame(sent.get(0).getPayload(), sent.get(2).getPayload());
+        assertEquals("ana-2", SimpMessageHeaderAccessor.getSessionId(sent.get(1).getHeaders()));
+    }
+
+    @Test
+    @DisplayName("Debe avisar al remitente cuando el destinatario no está conectado")
+    void testRecipientOffline() {
+        // Arrange
+        presenceRegistry.connect("Luis", "luis-1", PUBLIC);
+
+        // Act
+        int delivered = service.deliver(privateMessage("Luis", "Ana"), "luis-1");
+
+        // Assert
+        assertEquals(0, delivered);
+        assertEquals(1, sent.size());
+        assertEquals("/user/luis-1" + InboundRateLimiter.ERRORS_QUEUE,
+                SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders()));
+        assertInstanceOf(byte[].class, sent.get(0).getPayload());
+        assertTrue(new String((byte[]) sent.get(0).getPayload()).contains(DirectMessageService.RECIPIENT_OFFLINE));
+    }
+
+    @Test
+    @DisplayName("En modo clúster debe entregar al destinatario conectado a otro nodo sin avisar que está desconectado")
+    void testDeliverAcrossNodes() {
+        // Arrange: dos nodos unidos por el mismo relay, Ana en el nodo B y Luis en el A
+        String clusterName = "dm-" + UUID.randomUUID();
+        InProcessClusterRelay relayA = new InProcessClusterRelay(clusterName);
+        InProcessClusterRelay relayB = new InProcessClusterRelay(clusterName);
+        List<Message<?>> sentOnB = new ArrayList<>();
+        PresenceRegistry presenceOnB = new PresenceRegistry(new ChatProperties());
+        DirectMessageService serviceA = clusteredService(sent::add, presenceRegistry, "node-a", relayA);
+        clusteredService(sentOnB::add, presenceOnB, "node-b", relayB);
+        presenceRegistry.connect("Luis", "luis-1", PUBLIC);
+        presenceOnB.connect("Ana", "ana-1", PUBLIC);
+        presenceOnB.connect("Luis", "luis-2", PUBLIC);
+
+        try {
+            // Act
+            int delivered = serviceA.deliver(privateMessage("Luis", "Ana"), "luis-1");
+
+            // Assert: en A solo la copia del remitente; en B la destinataria y la otra pestaña de Luis
+            assertEquals(1, delivered);
+            assertEquals(List.of("/user/luis-1/queue/messages"), destinations(sent));
+            assertEquals(List.of("/user/ana-1/queue/messages", "/user/luis-2/queue/messages"), destinations(sentOnB));
+            assertTrue(new String((byte[]) sentOnB.get(0).getPayload()).contains("\"recipient\":\"Ana\""));
+        } finally {
+            relayA.close();
+            relayB.close();
+        }
+    }
+
+    private static DirectMessageService clusteredService(Consumer<Message<?>> sink, PresenceRegistry presence,
+                                                         String nodeId, ClusterRelay relay) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            sink.accept(message);
+            return true;
+        });
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        ChatProperties properties = new ChatProperties();
+        properties.getBroker().setNodeId(nodeId);
+        return new DirectMessageService(template, presence, new MessageSequencer(properties), Optional.of(relay));
+    }
+
+    private static List<String> destinations(List<Message<?>> messages) {
+        return messages.stream()
+                .map(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                .toList();
+    }
+
+    private static ChatMessage privateMessage(String sender, String recipient) {
+        ChatMessage message = new ChatMessage(MessageType.PRIVATE, "hola", sender);
+        message.setRecipient(recipient);
+        return message;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para MessageHistoryBuffer
+ */
+class MessageHistoryBufferTest {
+
+    @Test
+    @DisplayName("Debe redondear la capacidad a potencia de dos")
+    void testCapacityRoundedToPowerOfTwo() {
+        assertEquals(1, new MessageHistoryBuffer(1).getCapacity());
+        assertEquals(64, new MessageHistoryBuffer(50).getCapacity());
+        assertEquals(64, new MessageHistoryBuffer(64).getCapacity());
+    }
+
+    @Test
+    @DisplayName("Debe devolver los últimos mensajes en orden de llegada")
+    void testSnapshotKeepsArrivalOrder() {
+        MessageHistoryBuffer buffer = new MessageHistoryBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.add(message("m" + i));
+        }
+
+        List<ChatMessage> snapshot = buffer.snapshot(10);
+
+        assertEquals(4, snapshot.size());
+        assertEquals("m2", snapshot.get(0).getContent());
+        assertEquals("m5", snapshot.get(3).getContent());
+        assertEquals(List.of("m4", "m5"), buffer.snapshot(2).stream().map(ChatMessage::getContent).toList());
+    }
+
+    @Test
+    @DisplayName("Debe devolver lista vacía sin mensajes")
+    void testEmptySnapshot() {
+        assertTrue(new MessageHistoryBuffer(8).snapshot(8).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe soportar escrituras y lecturas concurrentes sin perder el límite")
+    void testConcurrentWritersAndReaders() throws Exception {
+        MessageHistoryBuffer buffer = new MessageHistoryBuffer(32);
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads * 2);
+        CountDownLatch done = new CountDownLatch(threads * 2);
+        AtomicBoolean invalidSnapshot = new AtomicBoolean();
+
+        for (int t = 0; t < threads; t++) {
+            String writer = "w" + t;
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    buffer.add(new ChatMessage(MessageType.CHAT, String.valueOf(i), writer));
+                }
+                done.countDown();
+            });
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    List<ChatMessage> snapshot = buffer.snapshot(32);
+                    if (snapshot.size() > 32 || snapshot.contains(null) || !inWriterOrder(snapshot)) {
+                        invalidSnapshot.set(true);
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertFalse(invalidSnapshot.get());
+        assertEquals((long) threads * perThread, buffer.getTotalAdded());
+        assertEquals(32, buffer.snapshot(100).size());
+        assertTrue(buffer.estimatedMemoryBytes() > 0);
+    }
+
+    /**
+     * Los mensajes de un mismo escritor deben aparecer en el orden en que los agregó;
+     * una posición pisada por la vuelta anterior rompería ese orden
+     */
+    private static boolean inWriterOrder(List<ChatMessage> snapshot) {
+        Map<String, Integer> last = new HashMap<>();
+        for (ChatMessage message : snapshot) {
+            int current = Integer.parseInt(message.getContent());
+            Integer previous = last.put(message.getSender(), current);
+            if (previous != null && previous >= current) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ChatMessage message(String content) {
+        return new ChatMessage(MessageType.CHAT, content, "TestUser");
+    }
+}
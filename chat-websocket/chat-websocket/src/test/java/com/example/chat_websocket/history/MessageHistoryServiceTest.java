@@ -0,0 +1,189 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Pruebas unitarias para MessageHistoryService
+ */
+class MessageHistoryServiceTest {
+
+    private static final String PUBLIC = "/topic/public";
+
+    private SimpMessageSendingOperations messagingTemplate;
+    private ChatProperties properties;
+    private MessageHistoryService service;
+    private long base;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ChatProperties();
+        properties.getHistory().setMaxDestinations(2);
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+        service = new MessageHistoryService(messagingTemplate, properties, Optional.empty());
+        base = System.currentTimeMillis() * 1000;
+    }
+
+    @Test
+    @DisplayName("Debe descartar el destino usado hace más tiempo al alcanzar el máximo")
+    void testEvictsLeastRecentlyUsedDestination() throws Exception {
+        // Arrange
+        service.record("/topic/room.a", message("a"));
+        Thread.sleep(2);
+        service.record("/topic/room.b", message("b"));
+        Thread.sleep(2);
+        // Leer el historial de a cuenta como uso
+        service.recent("/topic/room.a", 10);
+
+        // Act
+        service.record("/topic/room.c", message("c"));
+
+        // Assert
+        assertEquals(2, service.getDestinationCount());
+        assertEquals(List.of("a"), contents(service.recent("/topic/room.a", 10)));
+        assertTrue(service.recent("/topic/room.b", 10).isEmpty());
+        assertEquals(List.of("c"), contents(service.recent("/topic/room.c", 10)));
+    }
+
+    @Test
+    @DisplayName("Al reanudar debe reenviar solo lo que el cliente no vio de cada nodo")
+    void testReplaySinceByNode() {
+        // Arrange
+        service.record(PUBLIC, message("a1", "a", base + 100));
+        service.record(PUBLIC, message("b1", "b", base + 90));
+        service.record(PUBLIC, message("a2", "a", base + 110));
+        service.record(PUBLIC, message("b2", "b", base + 120));
+
+        // Act
+        int sent = service.replaySince("s1", PUBLIC, ResumePosition.parse("a:" + (base + 100) + ",b:" + (base + 90)));
+
+        // Assert
+        assertEquals(2, sent);
+        assertEquals(List.of("a2", "b2"), contents(replayed("s1")));
+        assertNull(resetHeader());
+    }
+
+    @Test
+    @DisplayName("Debe avisar con history-reset si el historial ya descartó mensajes que el cliente no vio")
+    void testReplaySinceResetsWhenDropped() {
+        // Arrange
+        properties.getHistory().setCapacity(2);
+        service = new MessageHistoryService(messagingTemplate, properties, Optional.empty());
+        for (int i = 1; i <= 4; i++) {
+            service.record(PUBLIC, message("m" + i, "a", base + i));
+        }
+
+        // Act
+        int sent = service.replaySince("s1", PUBLIC, ResumePosition.parse("a:" + (base + 1)));
+
+        // Assert
+        assertEquals(-1, sent);
+        assertEquals(List.of("m3", "m4"), contents(replayed("s1")));
+        assertEquals("true", resetHeader());
+        // Quien vio hasta el último descartado no perdió nada
+        assertEquals(2, service.replaySince("s2", PUBLIC, ResumePosition.parse("a:" + (base + 2))));
+    }
+
+    @Test
+    @DisplayName("Debe avisar con history-reset si el cliente dejó de recibir antes de que arrancara el nodo")
+    void testReplaySinceResetsBeforeNodeStart() {
+        // Arrange
+        service.record(PUBLIC, message("nuevo", "a", base + 1));
+
+        // Act
+        int sent = service.replaySince("s1", PUBLIC, ResumePosition.parse("a:" + (base - 60_000_000L)));
+
+        // Assert
+        assertEquals(-1, sent);
+        assertEquals("true", resetHeader());
+    }
+
+    @Test
+    @DisplayName("Tras un descarte solo debe avisar con history-reset en el destino descartado")
+    void testReplaySinceResetsOnlyEvictedDestination() throws Exception {
+        // Arrange: a se descarta al crear c y vuelve a recibir mensajes
+        service.record("/topic/room.a", message("a1", "a", base + 1));
+        Thread.sleep(2);
+        service.record("/topic/room.b", message("b1", "a", base + 2));
+        Thread.sleep(2);
+        service.record("/topic/room.c", message("c1", "a", base + 3));
+        Thread.sleep(2);
+        service.record("/topic/room.a", message("a2", "a", base + 5));
+        Thread.sleep(2);
+        service.record("/topic/room.d", message("d1", "a", base + 7));
+
+        // Act
+        int evicted = service.replaySince("s1", "/topic/room.a", ResumePosition.parse("a:" + (base + 3)));
+        int created = service.replaySince("s2", "/topic/room.d", ResumePosition.parse("a:" + (base + 3)));
+
+        // Assert
+        assertEquals(-1, evicted);
+        assertEquals("true", resetHeader());
+        assertEquals(1, created);
+        assertEquals(List.of("d1"), contents(replayed("s2")));
+    }
+
+    @Test
+    @DisplayName("Debe registrar solo los mensajes de chat recibidos de otros nodos")
+    void testRecordRelayed() {
+        // Arrange
+        ChatMessage join = message("entra", "b", base + 2);
+        join.setType(MessageType.JOIN);
+
+        // Act
+        service.recordRelayed(PUBLIC, message("hola", "b", base + 1));
+        service.recordRelayed(PUBLIC, join);
+
+        // Assert
+        assertEquals(List.of("hola"), contents(service.recent(PUBLIC, 10)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ChatMessage> replayed(String sessionId) {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(sessionId), eq(MessageHistoryService.HISTORY_QUEUE),
+                payload.capture(), any(MessageHeaders.class));
+        return (List<ChatMessage>) payload.getValue();
+    }
+
+    private String resetHeader() {
+        ArgumentCaptor<MessageHeaders> headers = ArgumentCaptor.forClass(MessageHeaders.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("s1"), eq(MessageHistoryService.HISTORY_QUEUE),
+                any(), headers.capture());
+        return NativeMessageHeaderAccessor.getFirstNativeHeader(MessageHistoryService.HISTORY_RESET_HEADER,
+                headers.getValue());
+    }
+
+    private static ChatMessage message(String content) {
+        return new ChatMessage(MessageType.CHAT, content, "TestUser");
+    }
+
+    private static ChatMessage message(String content, String node, long sequence) {
+        ChatMessage message = message(content);
+        message.setNode(node);
+        message.setSequence(sequence);
+        return message;
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark de escritura del journal: throughput y latencia p99 por mensaje
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=MessageJournalBenchmark -Dbenchmark.rate=20000 -Dbenchmark.seconds=5
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MessageJournalBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageJournalBenchmark.class);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Reporta throughput y latencia de escritura del journal")
+    void appendThroughputAndLatency() {
+        int rate = Integer.getInteger("benchmark.rate", 20_000);
+        int seconds = Integer.getInteger("benchmark.seconds", 5);
+        Duration fsync = Duration.ofMillis(Long.getLong("benchmark.fsyncMillis", 10));
+
+        ChatMessage message = new ChatMessage(MessageType.CHAT,
+                "Mensaje de prueba con una longitud parecida a la de un chat real", "BenchmarkUser");
+
+        try (MessageJournal journal = new MessageJournal(directory, 64 * 1024 * 1024, 64, fsync)) {
+            // Calentamiento
+            for (int i = 0; i < 50_000; i++) {
+                journal.append("/topic/public", message);
+            }
+
+            int total = rate * seconds;
+            long[] latencies = new long[total];
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+
+            for (int i = 0; i < total; i++) {
+                long scheduled = start + i * intervalNanos;
+                while (System.nanoTime() < scheduled) {
+                    LockSupport.parkNanos(1_000);
+                }
+                long before = System.nanoTime();
+                journal.append("/topic/public", message);
+                latencies[i] = System.nanoTime() - before;
+            }
+
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+
+            logger.info(String.format("Journal: %d mensajes en %.2f s -> %.0f msgs/s (objetivo %d, fsync %d ms)",
+                    total, elapsedSeconds, total / elapsedSeconds, rate, fsync.toMillis()));
+            logger.info(String.format("Latencia de append: p50=%.1f us p99=%.1f us p99.9=%.1f us max=%.1f us",
+                    percentile(latencies, 50), percentile(latencies, 99),
+                    percentile(latencies, 99.9), latencies[total - 1] / 1e3));
+
+            assertTrue(total / elapsedSeconds >= rate * 0.9, "No se alcanzó la tasa objetivo");
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+}
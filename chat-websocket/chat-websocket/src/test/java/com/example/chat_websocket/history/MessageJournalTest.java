@@ -0,0 +1,230 @@
+package com.example.chat_websocket.history;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para MessageJournal
+ */
+class MessageJournalTest {
+
+    private static final String DESTINATION = "/topic/public";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Debe leer los últimos mensajes en orden")
+    void testReadLast() {
+        try (MessageJournal journal = open(4096)) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i, journal.append(DESTINATION, message("m" + i)));
+            }
+
+            List<JournalRecord> last = journal.readLast(3);
+
+            assertEquals(List.of("m7", "m8", "m9"), contents(last));
+            assertEquals(DESTINATION, last.get(0).getDestination());
+            assertEquals(MessageType.CHAT, last.get(0).getMessage().getType());
+            assertEquals("TestUser", last.get(0).getMessage().getSender());
+            assertEquals("nodo-1", last.get(0).getMessage().getNode());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe paginar hacia atrás a través de varios segmentos")
+    void testReadBeforeAcrossSegments() {
+        try (MessageJournal journal = open(512)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(DESTINATION, message("mensaje-" + i));
+            }
+
+            assertTrue(journal.getSegmentCount() > 1);
+            assertEquals(List.of("mensaje-47", "mensaje-48", "mensaje-49"), contents(journal.readBefore(50, 3)));
+            assertEquals(List.of("mensaje-0", "mensaje-1"), contents(journal.readBefore(2, 10)));
+            assertTrue(journal.readBefore(0, 10).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe leer los mensajes anteriores a un instante")
+    void testReadBeforeTime() throws Exception {
+        try (MessageJournal journal = open(4096)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(DESTINATION, message("antes-" + i));
+            }
+            Thread.sleep(5);
+            long boundary = System.currentTimeMillis();
+            Thread.sleep(5);
+            for (int i = 0; i < 5; i++) {
+                journal.append(DESTINATION, message("despues-" + i));
+            }
+
+            assertEquals(List.of("antes-3", "antes-4"), contents(journal.readBeforeTime(boundary, 2)));
+        }
+    }
+
+    @Test
+    @DisplayName("Debe reconstruir el índice al reabrir el journal")
+    void testRecoveryRebuildsIndex() {
+        try (MessageJournal journal = open(512)) {
+            for (int i = 0; i < 50; i++) {
+                journal.append(DESTINATION, message("m" + i));
+            }
+        }
+
+        try (MessageJournal reopened = open(512)) {
+            assertEquals(50, reopened.getNextSequence());
+            assertEquals(List.of("m20", "m21"), contents(reopened.readBefore(22, 2)));
+
+            assertEquals(50, reopened.append(DESTINATION, message("m50")));
+            assertEquals(List.of("m49", "m50"), contents(reopened.readLast(2)));
+        }
+    }
+
+    @Test
+    @DisplayName("Debe descartar un registro incompleto al final del segmento")
+    void testRecoveryIgnoresTornTail() throws IOException {
+        try (MessageJournal journal = open(4096)) {
+            journal.append(DESTINATION, message("completo"));
+            journal.append(DESTINATION, message("dañado"));
+        }
+
+        // Corrompe el último byte del segundo registro
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] first = JournalCodec.encode(0, 0, DESTINATION, message("completo"));
+        byte[] second = JournalCodec.encode(1, 0, DESTINATION, message("dañado"));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(first.length + second.length - 1);
+            file.write(0x7F);
+        }
+
+        try (MessageJournal reopened = open(4096)) {
+            assertEquals(1, reopened.getNextSequence());
+            assertEquals(List.of("completo"), contents(reopened.readLast(10)));
+        }
+    }
+
+    @Test
+    @DisplayName("Debe borrar los segmentos que exceden el máximo configurado")
+    void testRetentionBySegmentCount() throws IOException {
+        try (MessageJournal journal = new MessageJournal(directory, 512, 4, Duration.ofMillis(5), 3, Duration.ZERO)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(DESTINATION, message("mensaje-" + i));
+            }
+
+            assertEquals(3, journal.getSegmentCount());
+            assertEquals(3, segmentFiles());
+            assertTrue(journal.getFirstSequence() > 0);
+            assertEquals(List.of("mensaje-98", "mensaje-99"), contents(journal.readLast(2)));
+            List<JournalRecord> oldest = journal.readBefore(journal.getFirstSequence() + 1, 10);
+            assertEquals(journal.getFirstSequence(), oldest.get(0).getSequence());
+            assertTrue(journal.readBefore(journal.getFirstSequence(), 10).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe borrar al reabrir los segmentos más antiguos que la retención")
+    void testRetentionByAge() throws Exception {
+        try (MessageJournal journal = open(512)) {
+            for (int i = 0; i < 50; i++) {
+                journal.append(DESTINATION, message("m" + i));
+            }
+            assertTrue(journal.getSegmentCount() > 2);
+        }
+        Thread.sleep(50);
+
+        try (MessageJournal reopened = new MessageJournal(directory, 512, 4, Duration.ofMillis(5), 100,
+                Duration.ofMillis(20))) {
+            // El segmento activo se conserva aunque sea antiguo
+            assertEquals(1, reopened.getSegmentCount());
+            assertEquals(1, segmentFiles());
+            assertEquals(List.of("m49"), contents(reopened.readLast(1)));
+        }
+    }
+
+    @Test
+    @DisplayName("Los instantes del journal no deben retroceder entre escrituras concurrentes")
+    void testAppendTimesMonotonic() throws Exception {
+        try (MessageJournal journal = open(1 << 20)) {
+            Thread[] writers = new Thread[4];
+            for (int t = 0; t < writers.length; t++) {
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        journal.append(DESTINATION, message("x"));
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            List<JournalRecord> records = journal.readLast(8_000);
+            assertEquals(8_000, records.size());
+            for (int i = 1; i < records.size(); i++) {
+                assertTrue(records.get(i).getAppendedAt() >= records.get(i - 1).getAppendedAt());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Forzar el journal mientras la retención descarta segmentos no debe fallar")
+    void testFlushDuringRetention() throws Exception {
+        try (MessageJournal journal = new MessageJournal(directory, 512, 4, Duration.ofHours(1), 2, Duration.ZERO)) {
+            Thread flusher = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    journal.flush();
+                }
+            });
+            flusher.start();
+
+            for (int i = 0; i < 2_000; i++) {
+                journal.append(DESTINATION, message("mensaje-" + i));
+            }
+            flusher.interrupt();
+            flusher.join();
+
+            assertEquals(2, journal.getSegmentCount());
+            assertEquals(2, segmentFiles());
+            assertEquals(List.of("mensaje-1999"), contents(journal.readLast(1)));
+        }
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(JournalSegment::isSegmentFile).count();
+        }
+    }
+
+    private MessageJournal open(int segmentSize) {
+        return new MessageJournal(directory, segmentSize, 4, Duration.ofMillis(5));
+    }
+
+    private static ChatMessage message(String content) {
+        ChatMessage message = new ChatMessage(MessageType.CHAT, content, "TestUser");
+        message.setNode("nodo-1");
+        return message;
+    }
+
+    private static List<String> contents(List<JournalRecord> records) {
+        return records.stream().map(record -> record.getMessage().getContent()).toList();
+    }
+}
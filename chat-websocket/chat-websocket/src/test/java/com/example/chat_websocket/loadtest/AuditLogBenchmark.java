@@ -0,0 +1,104 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga del registro de mensajes: throughput de difusión con el log DEBUG síncrono
+ * de spring-messaging (configuración anterior), sin auditoría, con auditoría completa y muestreada.
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=AuditLogBenchmark -Dbenchmark.subscribers=20 -Dbenchmark.messages=5000 -Dbenchmark.rounds=5
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AuditLogBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogBenchmark.class);
+
+    @Test
+    @DisplayName("Reporta el throughput de difusión con y sin auditoría")
+    void compareAuditModes() throws Exception {
+        Map<String, String[]> modes = new LinkedHashMap<>();
+        modes.put("debug-sincrono", new String[]{"--chat.audit.enabled=false",
+                "--logging.level.org.springframework.messaging=DEBUG"});
+        modes.put("sin-auditoria", new String[]{"--chat.audit.enabled=false"});
+        modes.put("auditoria", new String[]{"--chat.audit.sample-rate=1.0"});
+        modes.put("muestreo-10%", new String[]{"--chat.audit.sample-rate=0.1"});
+
+        // Los modos se alternan en cada ronda y se reporta la mediana: una sola pasada por modo
+        // en orden fijo mide sobre todo el calentamiento y el ruido de la máquina.
+        // La primera ronda completa es calentamiento del JIT (cliente y servidor comparten la JVM)
+        int messages = Integer.getInteger("benchmark.messages", 5000);
+        int rounds = Integer.getInteger("benchmark.rounds", 5);
+        for (Map.Entry<String, String[]> mode : modes.entrySet()) {
+            run(mode.getKey(), mode.getValue(), messages, false);
+        }
+        Map<String, List<Double>> rates = new LinkedHashMap<>();
+        for (int round = 0; round < rounds; round++) {
+            for (Map.Entry<String, String[]> mode : modes.entrySet()) {
+                rates.computeIfAbsent(mode.getKey(), k -> new ArrayList<>())
+                        .add(run(mode.getKey(), mode.getValue(), messages, true));
+            }
+        }
+        rates.forEach((mode, values) -> {
+            List<Double> sorted = values.stream().sorted().toList();
+            logger.info(String.format("Modo %-15s: mediana %.0f mensajes/s (mín %.0f, máx %.0f, %d rondas)",
+                    mode, sorted.get(sorted.size() / 2), sorted.get(0), sorted.get(sorted.size() - 1), rounds));
+        });
+    }
+
+    /**
+     * Levanta el servidor con los argumentos del modo y difunde los mensajes
+     *
+     * @return Mensajes por segundo enviados y entregados a todos los suscriptores
+     */
+    private double run(String mode, String[] arguments, int messages, boolean report) throws Exception {
+        int subscribers = Integer.getInteger("benchmark.subscribers", 20);
+        CountDownLatch delivered = new CountDownLatch(subscribers * messages);
+
+        try (BroadcastHarness harness = BroadcastHarness.start(arguments);
+             BroadcastHarness.Clients clients = harness.clients()) {
+            clients.subscribe(subscribers, ChatMessage.class, (payload, index) -> delivered.countDown());
+            StompSession publisher = clients.publisher();
+
+            ChatMessage message = new ChatMessage(MessageType.CHAT, "Mensaje de carga para la auditoría", "Benchmark");
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                publisher.send(BroadcastHarness.SEND_DESTINATION, message);
+            }
+
+            boolean completed = delivered.await(300, TimeUnit.SECONDS);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            long count = (long) subscribers * messages - delivered.getCount();
+
+            if (!report) {
+                return 0;
+            }
+            logger.info(String.format("Modo %-15s: %d entregas en %.2f s -> %.0f mensajes/s, %.0f entregas/s (%d suscriptores)",
+                    mode, count, elapsedSeconds, messages / elapsedSeconds, count / elapsedSeconds, subscribers));
+
+            assertTrue(completed, "No se entregaron todos los mensajes en modo " + mode);
+            return messages / elapsedSeconds;
+        }
+    }
+}
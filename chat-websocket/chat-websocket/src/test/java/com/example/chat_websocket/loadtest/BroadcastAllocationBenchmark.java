@@ -0,0 +1,77 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de asignación de memoria de la difusión: bytes asignados por los hilos del servidor
+ * por mensaje entregado con distintos números de suscriptores SockJS, con y sin el cuerpo
+ * del frame SockJS compartido entre sesiones (chat.transport.share-sockjs-frames).
+ * La serialización JSON es una por difusión, así que el costo por entrega no debe crecer
+ * con el número de suscriptores.
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=BroadcastAllocationBenchmark -Dbenchmark.subscribers=1000,5000 -Dbenchmark.messages=50
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BroadcastAllocationBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastAllocationBenchmark.class);
+
+    @Test
+    @DisplayName("Reporta los bytes asignados por entrega según el número de suscriptores")
+    void compareSubscriberCounts() throws Exception {
+        int messages = Integer.getInteger("benchmark.messages", 50);
+        for (String subscribers : System.getProperty("benchmark.subscribers", "1000,5000").split(",")) {
+            run(Integer.parseInt(subscribers.trim()), false, messages);
+            run(Integer.parseInt(subscribers.trim()), true, messages);
+        }
+    }
+
+    private void run(int subscribers, boolean shareFrames, int messages) throws Exception {
+        CountDownLatch delivered = new CountDownLatch(subscribers * messages);
+
+        try (BroadcastHarness harness = BroadcastHarness.start("--chat.audit.enabled=false",
+                "--chat.transport.share-sockjs-frames=" + shareFrames);
+             BroadcastHarness.Clients clients = harness.clients()) {
+            clients.subscribe(subscribers, byte[].class, (payload, index) -> delivered.countDown());
+            StompSession publisher = clients.publisher();
+
+            ChatMessage message = new ChatMessage(MessageType.CHAT,
+                    "Mensaje de carga con \"comillas\" y acentos para medir la asignación por entrega", "Benchmark");
+            long allocatedBefore = BroadcastHarness.serverAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                publisher.send(BroadcastHarness.SEND_DESTINATION, message);
+            }
+
+            boolean completed = delivered.await(600, TimeUnit.SECONDS);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            long allocated = BroadcastHarness.serverAllocatedBytes() - allocatedBefore;
+            long count = (long) subscribers * messages - delivered.getCount();
+
+            logger.info(String.format("%5d suscriptores, frames compartidos %-5s: %d entregas en %.2f s,"
+                            + " %.0f bytes/entrega, %.1f KB/difusión",
+                    subscribers, shareFrames, count, elapsedSeconds,
+                    (double) allocated / Math.max(1, count), allocated / 1024.0 / messages));
+
+            assertTrue(completed, "No se entregaron todos los mensajes con " + subscribers + " suscriptores");
+        }
+    }
+}
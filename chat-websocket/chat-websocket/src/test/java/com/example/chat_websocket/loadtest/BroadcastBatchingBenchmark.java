@@ -0,0 +1,96 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.transport.OutboundQueueMonitor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga de la agrupación de difusiones: con muchos suscriptores en el mismo topic
+ * compara, con y sin chat.batching.enabled, los frames escritos en los sockets (una escritura
+ * por frame) y el tiempo de CPU de los hilos del servidor por mensaje entregado.
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=BroadcastBatchingBenchmark -Dbenchmark.subscribers=1000 -Dbenchmark.messages=200
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BroadcastBatchingBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastBatchingBenchmark.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Reporta frames y CPU del servidor con y sin agrupación de difusiones")
+    void compareBatching() throws Exception {
+        int messages = Integer.getInteger("benchmark.messages", 200);
+        run("sin-agrupar", false, messages);
+        run("agrupado", true, messages);
+    }
+
+    private void run(String mode, boolean batching, int messages) throws Exception {
+        int subscribers = Integer.getInteger("benchmark.subscribers", 1000);
+        CountDownLatch delivered = new CountDownLatch(subscribers * messages);
+
+        try (BroadcastHarness harness = BroadcastHarness.start("--chat.audit.enabled=false",
+                "--chat.batching.enabled=" + batching);
+             BroadcastHarness.Clients clients = harness.clients()) {
+            OutboundQueueMonitor monitor = harness.getBean(OutboundQueueMonitor.class);
+            clients.subscribe(subscribers, byte[].class, (payload, index) -> {
+                // Un frame agrupado trae un array con varios mensajes
+                for (int n = count(payload); n > 0; n--) {
+                    delivered.countDown();
+                }
+            });
+            StompSession publisher = clients.publisher();
+
+            ChatMessage message = new ChatMessage(MessageType.CHAT, "Mensaje de carga para la difusión", "Benchmark");
+            long framesBefore = monitor.getWrittenFrames();
+            long cpuBefore = BroadcastHarness.serverCpuNanos();
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                publisher.send(BroadcastHarness.SEND_DESTINATION, message);
+            }
+
+            boolean completed = delivered.await(600, TimeUnit.SECONDS);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            long cpuMillis = (BroadcastHarness.serverCpuNanos() - cpuBefore) / 1_000_000;
+            long frames = monitor.getWrittenFrames() - framesBefore;
+            long count = (long) subscribers * messages - delivered.getCount();
+
+            logger.info(String.format("Modo %-12s: %d entregas en %d frames (%.1f mensajes/frame) en %.2f s -> %.0f entregas/s,"
+                            + " CPU servidor %d ms (%.1f µs/entrega), %d suscriptores",
+                    mode, count, frames, (double) count / Math.max(1, frames), elapsedSeconds,
+                    count / elapsedSeconds, cpuMillis, cpuMillis * 1000.0 / Math.max(1, count), subscribers));
+
+            assertTrue(completed, "No se entregaron todos los mensajes en modo " + mode);
+        }
+    }
+
+    private int count(byte[] payload) {
+        try {
+            JsonNode node = objectMapper.readTree(payload);
+            return node.isArray() ? node.size() : 1;
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+}
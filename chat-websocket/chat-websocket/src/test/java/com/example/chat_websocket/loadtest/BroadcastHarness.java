@@ -0,0 +1,204 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.ChatWebsocketApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Arnés común de las pruebas de carga de difusión: levanta un nodo en un puerto libre con los
+ * argumentos de cada modo, conecta suscriptores al topic público y un publicador, y mide
+ * la CPU y la memoria asignada por los hilos del servidor (cliente y servidor comparten la JVM)
+ */
+final class BroadcastHarness implements AutoCloseable {
+
+    static final String TOPIC = "/topic/public";
+    static final String SEND_DESTINATION = "/app/chat.sendMessage";
+
+    // Hilos del servidor: Tomcat y los ejecutores del chat (el resto son del cliente de la prueba)
+    private static final List<String> SERVER_THREADS = List.of("http-nio-", "chat-");
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private final ConfigurableApplicationContext context;
+
+    private BroadcastHarness(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Levanta el servidor sin límite de tasa y con el log del chat en WARN
+     *
+     * @param arguments Argumentos propios del modo que se mide
+     */
+    static BroadcastHarness start(String... arguments) {
+        List<String> args = new ArrayList<>(List.of("--server.port=0",
+                "--server.tomcat.max-connections=20000",
+                "--chat.rate-limit.enabled=false",
+                "--logging.level.com.example.chat_websocket=WARN",
+                "--logging.level.com.example.chat_websocket.loadtest=INFO"));
+        args.addAll(List.of(arguments));
+        return new BroadcastHarness(new SpringApplicationBuilder(ChatWebsocketApplication.class)
+                .run(args.toArray(String[]::new)));
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Cliente STOMP sobre SockJS con el cliente WebSocket estándar
+     */
+    Clients clients() {
+        return clients(new StandardWebSocketClient(), true);
+    }
+
+    /**
+     * @param webSocketClient Cliente WebSocket subyacente
+     * @param sockJs Si conecta a /ws con SockJS o a /ws-native con WebSocket nativo
+     */
+    Clients clients(WebSocketClient webSocketClient, boolean sockJs) {
+        String url = "ws://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                + (sockJs ? "/ws" : "/ws-native");
+        return new Clients(new WebSocketStompClient(sockJs
+                ? new SockJsClient(List.of(new WebSocketTransport(webSocketClient)))
+                : webSocketClient), url);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    static long serverCpuNanos() {
+        var threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (isServerThread(info)) {
+                total += Math.max(0, threads.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    static long serverAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (isServerThread(info)) {
+                total += Math.max(0, threads.getThreadAllocatedBytes(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    private static boolean isServerThread(ThreadInfo info) {
+        return info != null && SERVER_THREADS.stream().anyMatch(info.getThreadName()::startsWith);
+    }
+
+    /**
+     * Sesiones de una ronda; al cerrarse las desconecta y detiene el cliente
+     */
+    static final class Clients implements AutoCloseable {
+
+        private final WebSocketStompClient stompClient;
+        private final String url;
+        private final List<StompSession> sessions = new ArrayList<>();
+
+        private Clients(WebSocketStompClient stompClient, String url) {
+            this.stompClient = stompClient;
+            this.url = url;
+            stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+            stompClient.setInboundMessageSizeLimit(1024 * 1024);
+        }
+
+        /**
+         * Conecta los suscriptores al topic público y espera a que sus suscripciones estén activas:
+         * cada sesión pide la lista de presencia y el nodo procesa en orden los frames de cada sesión
+         *
+         * @param subscribers Número de suscriptores
+         * @param payloadType Tipo al que se convierte el payload de cada frame
+         * @param handler Recibe el payload y el índice del suscriptor
+         * @return Milisegundos medios por conexión
+         */
+        <T> double subscribe(int subscribers, Class<T> payloadType, ObjIntConsumer<T> handler) throws Exception {
+            List<CompletableFuture<Void>> subscribed = new ArrayList<>(subscribers);
+            long connectNanos = 0;
+            for (int i = 0; i < subscribers; i++) {
+                int index = i;
+                long start = System.nanoTime();
+                StompSession session = connect();
+                connectNanos += System.nanoTime() - start;
+                session.subscribe(TOPIC, frameHandler(payloadType, payload -> handler.accept(payload, index)));
+
+                CompletableFuture<Void> presence = new CompletableFuture<>();
+                session.subscribe("/user/queue/presence", frameHandler(byte[].class, payload -> presence.complete(null)));
+                session.send("/app/presence.list", "");
+                subscribed.add(presence);
+            }
+            CompletableFuture.allOf(subscribed.toArray(CompletableFuture[]::new))
+                    .get(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return connectNanos / 1e6 / Math.max(1, subscribers);
+        }
+
+        /**
+         * Conecta la sesión que publica en /app/chat.sendMessage
+         */
+        StompSession publisher() throws Exception {
+            return connect();
+        }
+
+        private StompSession connect() throws Exception {
+            StompSession session = stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+            }).get(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            sessions.add(session);
+            return session;
+        }
+
+        @Override
+        public void close() {
+            for (StompSession session : sessions) {
+                try {
+                    session.disconnect();
+                } catch (RuntimeException ex) {
+                    // La sesión ya estaba cerrada
+                }
+            }
+            stompClient.stop();
+        }
+
+        private static <T> StompFrameHandler frameHandler(Class<T> type, Consumer<T> consumer) {
+            return new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return type;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    consumer.accept(type.cast(payload));
+                }
+            };
+        }
+    }
+}
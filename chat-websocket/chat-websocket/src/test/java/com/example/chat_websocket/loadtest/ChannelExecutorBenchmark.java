@@ -0,0 +1,109 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga de los ejecutores de canal: throughput y latencia p99 de difusión
+ * con los pools por defecto de Spring, los pools ajustados y los hilos virtuales.
+ * Uno de los suscriptores es lento para medir el bloqueo de cabeza de cola; su latencia
+ * no se incluye en los resultados, solo su efecto sobre los demás.
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=ChannelExecutorBenchmark -Dbenchmark.subscribers=50 -Dbenchmark.messages=2000 -Dbenchmark.rate=200
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ChannelExecutorBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelExecutorBenchmark.class);
+
+    @Test
+    @DisplayName("Reporta throughput y latencia de difusión por modo de ejecutor")
+    void compareExecutorModes() throws Exception {
+        // Calentamiento del JIT, sin reportar
+        run("tuned", 200, false);
+
+        int messages = Integer.getInteger("benchmark.messages", 2000);
+        for (String mode : List.of("default", "tuned", "virtual")) {
+            run(mode, messages, true);
+        }
+    }
+
+    private void run(String mode, int messages, boolean report) throws Exception {
+        int subscribers = Integer.getInteger("benchmark.subscribers", 50);
+        int rate = Integer.getInteger("benchmark.rate", 200);
+        long slowConsumerMillis = Long.getLong("benchmark.slowConsumerMillis", 5);
+
+        int measured = slowConsumerMillis > 0 ? subscribers - 1 : subscribers;
+        long[] latencies = new long[measured * messages];
+        AtomicInteger recorded = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(measured * messages);
+
+        try (BroadcastHarness harness = BroadcastHarness.start("--chat.channels.mode=" + mode,
+                "--logging.level.org.springframework.messaging=WARN");
+             BroadcastHarness.Clients clients = harness.clients()) {
+            clients.subscribe(subscribers, ChatMessage.class, (payload, index) -> {
+                if (index == 0 && slowConsumerMillis > 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(slowConsumerMillis));
+                    return;
+                }
+                long sentAt = Long.parseLong(payload.getContent());
+                latencies[recorded.getAndIncrement()] = System.nanoTime() - sentAt;
+                delivered.countDown();
+            });
+            StompSession publisher = clients.publisher();
+
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                long scheduled = start + i * intervalNanos;
+                while (System.nanoTime() < scheduled) {
+                    LockSupport.parkNanos(50_000);
+                }
+                publisher.send(BroadcastHarness.SEND_DESTINATION,
+                        new ChatMessage(MessageType.CHAT, Long.toString(System.nanoTime()), "Benchmark"));
+            }
+
+            boolean completed = delivered.await(120, TimeUnit.SECONDS);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            int count = recorded.get();
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+
+            if (!report) {
+                return;
+            }
+            logger.info(String.format("Modo %-8s: %d entregas en %.2f s -> %.0f entregas/s (%d suscriptores, %d msgs/s)",
+                    mode, count, elapsedSeconds, count / elapsedSeconds, subscribers, rate));
+            logger.info(String.format("Modo %-8s: latencia p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                    mode, percentile(sorted, 50), percentile(sorted, 99), sorted[count - 1] / 1e6));
+
+            assertTrue(completed, "No se entregaron todos los mensajes en modo " + mode);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
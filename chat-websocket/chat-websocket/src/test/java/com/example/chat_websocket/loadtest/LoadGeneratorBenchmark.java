@@ -0,0 +1,58 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.ChatWebsocketApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga de extremo a extremo con StompLoadGenerator contra un servidor levantado
+ * en la misma JVM, para validar un cambio de rendimiento sin desplegar nada.
+ * Acepta los mismos parámetros load.* que el generador (la URL la fija la prueba).
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=LoadGeneratorBenchmark -Dload.sessions=1000 -Dload.rate=200 -Dload.duration=20
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LoadGeneratorBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGeneratorBenchmark.class);
+
+    @Test
+    @DisplayName("Reporta conexión, entregas y latencia de extremo a extremo bajo carga")
+    void runLoad() throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ChatWebsocketApplication.class)
+                .run("--server.port=0",
+                        "--server.tomcat.max-connections=20000",
+                        "--chat.rate-limit.enabled=false",
+                        "--chat.audit.enabled=false",
+                        "--logging.level.com.example.chat_websocket=WARN",
+                        "--logging.level.com.example.chat_websocket.loadtest=INFO");
+        try {
+            StompLoadGenerator.Config config = StompLoadGenerator.Config.fromSystemProperties();
+            String port = context.getEnvironment().getProperty("local.server.port");
+            config.setUrl(config.isNativeTransport()
+                    ? "ws://localhost:" + port + "/ws-native"
+                    : "http://localhost:" + port + "/ws");
+
+            StompLoadGenerator.Report report = new StompLoadGenerator(config).run(logger::info);
+            report.summary().forEach(logger::info);
+
+            assertEquals(config.getSessions(), report.getConnectedSessions());
+            assertEquals(report.getExpected(), report.getDelivered(), "Se perdieron entregas");
+        } finally {
+            context.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara el endpoint SockJS (/ws) con el endpoint WebSocket nativo (/ws-native):
+ * tiempo de establecimiento de la conexión STOMP, CPU de los hilos del servidor por entrega
+ * y bytes de payload WebSocket recibidos por mensaje (antes de permessage-deflate).
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=NativeEndpointBenchmark -Dbenchmark.subscribers=500 -Dbenchmark.messages=100
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NativeEndpointBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeEndpointBenchmark.class);
+
+    @Test
+    @DisplayName("Reporta conexión, CPU y bytes por mensaje de SockJS frente a WebSocket nativo")
+    void compareEndpoints() throws Exception {
+        int subscribers = Integer.getInteger("benchmark.subscribers", 500);
+        int messages = Integer.getInteger("benchmark.messages", 100);
+
+        try (BroadcastHarness harness = BroadcastHarness.start("--chat.audit.enabled=false")) {
+            // Calentamiento del servidor con ambos transportes antes de medir
+            run(harness, true, 50, 20, false);
+            run(harness, false, 50, 20, false);
+
+            run(harness, true, subscribers, messages, true);
+            run(harness, false, subscribers, messages, true);
+        }
+    }
+
+    private void run(BroadcastHarness harness, boolean sockJs, int subscribers, int messages, boolean report)
+            throws Exception {
+        LongAdder payloadBytes = new LongAdder();
+        CountDownLatch delivered = new CountDownLatch(subscribers * messages);
+
+        try (BroadcastHarness.Clients clients = harness.clients(
+                new CountingWebSocketClient(new StandardWebSocketClient(), payloadBytes), sockJs)) {
+            double connectMillis = clients.subscribe(subscribers, byte[].class,
+                    (payload, index) -> delivered.countDown());
+            StompSession publisher = clients.publisher();
+
+            ChatMessage message = new ChatMessage(MessageType.CHAT,
+                    "Mensaje de carga para comparar el costo de los transportes", "Benchmark");
+            payloadBytes.reset();
+            long cpuBefore = BroadcastHarness.serverCpuNanos();
+            for (int i = 0; i < messages; i++) {
+                publisher.send(BroadcastHarness.SEND_DESTINATION, message);
+            }
+
+            boolean completed = delivered.await(300, TimeUnit.SECONDS);
+            long cpu = BroadcastHarness.serverCpuNanos() - cpuBefore;
+            long count = (long) subscribers * messages - delivered.getCount();
+
+            if (report) {
+                logger.info(String.format("%-10s %d suscriptores: conexión %.2f ms, CPU servidor %.1f µs/entrega,"
+                                + " %.0f bytes/entrega",
+                        sockJs ? "SockJS" : "Nativo", subscribers, connectMillis,
+                        cpu / 1e3 / Math.max(1, count), (double) payloadBytes.sum() / Math.max(1, count)));
+            }
+
+            assertTrue(completed, "No se entregaron todos los mensajes por " + (sockJs ? "SockJS" : "WebSocket nativo"));
+        }
+    }
+
+    /**
+     * Cliente WebSocket que suma el tamaño de los mensajes recibidos tal como llegan del socket
+     */
+    private static final class CountingWebSocketClient implements WebSocketClient {
+
+        private final WebSocketClient delegate;
+        private final LongAdder bytes;
+
+        private CountingWebSocketClient(WebSocketClient delegate, LongAdder bytes) {
+            this.delegate = delegate;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public CompletableFuture<WebSocketSession> execute(WebSocketHandler handler, String uriTemplate,
+                                                           Object... uriVariables) {
+            return delegate.execute(counting(handler), uriTemplate, uriVariables);
+        }
+
+        @Override
+        public CompletableFuture<WebSocketSession> execute(WebSocketHandler handler, WebSocketHttpHeaders headers,
+                                                           URI uri) {
+            return delegate.execute(counting(handler), headers, uri);
+        }
+
+        private WebSocketHandler counting(WebSocketHandler handler) {
+            return new WebSocketHandlerDecorator(handler) {
+                @Override
+                public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                    bytes.add(message.getPayloadLength());
+                    super.handleMessage(session, message);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package com.example.chat_websocket.loadtest;
+
+
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.MessageType;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Generador de carga STOMP de extremo a extremo con el mismo cliente que las pruebas de integración
+ * (WebSocketStompClient sobre SockJS o WebSocket nativo). Abre N sesiones, cada una se une con
+ * /app/chat.addUser (o la sala que le toque) y se suscribe a su topic; después envía mensajes
+ * a un ritmo fijo repartidos entre todas las sesiones durante el tiempo indicado.
+ * Cada mensaje lleva en el contenido la hora prevista de envío (System.nanoTime de este proceso),
+ * así la latencia medida al recibirlo incluye los retrasos del propio generador (sin omisión
+ * coordinada). Reporta cada intervalo y al final, con HdrHistogram: tasa y latencia de conexión,
+ * entregas esperadas frente a recibidas y percentiles de latencia.
+ * Contra un servidor en marcha (conviene chat.rate-limit.enabled=false en el servidor):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.chat_websocket.loadtest.StompLoadGenerator \
+ *     -Dload.url=http://localhost:8087/ws -Dload.sessions=2000 -Dload.rate=500 -Dload.duration=60
+ * </pre>
+ *
+ * @author Sistema de Chat
+ * @version 1.0.0
+ */
+public class StompLoadGenerator {
+
+    private static final String MARKER = "lt:";
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+
+    private final Config config;
+    // Identifica los mensajes de esta ejecución (el historial reenviado al unirse puede traer otros)
+    private final String runId = Integer.toHexString(ThreadLocalRandom.current().nextInt(0x100000, 0xFFFFFF));
+    private final byte[] markerBytes;
+    private final Recorder latencyRecorder = new Recorder(3);
+    private final Histogram latency = new Histogram(3);
+    private final Histogram connectLatency = new Histogram(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final AtomicIntegerArray roomSubscribers;
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    public StompLoadGenerator(Config config) {
+        this.config = config;
+        this.markerBytes = (MARKER + runId + ":").getBytes(StandardCharsets.US_ASCII);
+        this.roomSubscribers = new AtomicIntegerArray(Math.max(1, config.getRooms()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = Config.fromSystemProperties();
+        new StompLoadGenerator(config).run(System.out::println).summary().forEach(System.out::println);
+        System.exit(0);
+    }
+
+    /**
+     * Ejecuta la prueba completa: conexión, envío durante la duración configurada y espera de las entregas
+     *
+     * @param out Destino de las líneas de reporte por intervalo (consola o log)
+     * @return Resultado final
+     */
+    public Report run(Consumer<String> out) throws Exception {
+        WebSocketClient webSocketClient = new StandardWebSocketClient();
+        WebSocketStompClient stompClient = new WebSocketStompClient(config.isNativeTransport()
+                ? webSocketClient
+                : new SockJsClient(List.of(new WebSocketTransport(webSocketClient))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setInboundMessageSizeLimit(1024 * 1024);
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        List<Member> members = Collections.synchronizedList(new ArrayList<>());
+        try {
+            long connectStart = System.nanoTime();
+            int failed = connect(stompClient, members);
+            double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+            out.accept(String.format("Conectadas %d sesiones (%d fallidas) en %.1f s: %.0f conexiones/s",
+                    members.size(), failed, connectSeconds, members.size() / connectSeconds));
+            if (members.isEmpty()) {
+                throw new IllegalStateException("No se pudo conectar ninguna sesión a " + config.getUrl());
+            }
+            // Da tiempo a que se registren las suscripciones y se difundan los JOIN
+            Thread.sleep(config.getSettleMillis());
+
+            drive(members, scheduler, out);
+
+            return new Report(config.getSessions(), members.size(), failed, connectSeconds, connectLatency.copy(),
+                    sent.sum(), expected.sum(), delivered.sum(), latency.copy());
+        } finally {
+            scheduler.shutdownNow();
+            synchronized (members) {
+                for (Member member : members) {
+                    try {
+                        member.session.disconnect();
+                    } catch (RuntimeException ex) {
+                        // La sesión ya estaba cerrada
+                    }
+                }
+            }
+            stompClient.stop();
+        }
+    }
+
+    /**
+     * Abre las sesiones con un máximo de conexiones en curso; cada una se suscribe y se une a su sala
+     *
+     * @return Conexiones fallidas
+     */
+    private int connect(WebSocketStompClient stompClient, List<Member> members) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(config.getConnectConcurrency());
+        CountDownLatch done = new CountDownLatch(config.getSessions());
+        AtomicInteger failed = new AtomicInteger();
+
+        for (int i = 0; i < config.getSessions(); i++) {
+            int index = i;
+            int room = config.getRooms() > 0 ? i % config.getRooms() : 0;
+            inFlight.acquire();
+            long start = System.nanoTime();
+            stompClient.connectAsync(config.getUrl(), new StompSessionHandlerAdapter() {
+            }).whenComplete((session, ex) -> {
+                try {
+                    if (ex != null) {
+                        failed.incrementAndGet();
+                        return;
+                    }
+                    synchronized (connectLatency) {
+                        connectLatency.recordValue(Math.max(1, (System.nanoTime() - start) / 1000));
+                    }
+                    session.subscribe(topic(room), new DeliveryHandler());
+                    roomSubscribers.incrementAndGet(room);
+                    session.send(appDestination(room, "addUser"),
+                            new ChatMessage(MessageType.JOIN, null, "carga-" + runId + "-" + index));
+                    members.add(new Member(session, room));
+                } catch (RuntimeException sendFailure) {
+                    failed.incrementAndGet();
+                } finally {
+                    inFlight.release();
+                    done.countDown();
+                }
+            });
+        }
+        done.await(config.getConnectTimeoutSeconds(), TimeUnit.SECONDS);
+        return failed.get();
+    }
+
+    /**
+     * Envía al ritmo configurado y espera a que lleguen las entregas esperadas
+     */
+    private void drive(List<Member> members, ScheduledExecutorService scheduler, Consumer<String> out)
+            throws InterruptedException {
+        Member[] senders = members.toArray(new Member[0]);
+        long start = System.nanoTime();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.getRate();
+        long end = start + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        measureFromNanos = start + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        String padding = "x".repeat(Math.max(0, config.getPayloadBytes() - markerBytes.length - 20));
+        long[] next = {0};
+
+        // Cada tick envía los mensajes cuya hora prevista ya pasó: si el generador se atrasa los
+        // envía seguidos y la latencia se mide desde la hora prevista
+        scheduler.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            while (next[0] * intervalNanos + start <= Math.min(now, end)) {
+                long intended = start + next[0] * intervalNanos;
+                Member sender = senders[(int) (next[0] % senders.length)];
+                next[0]++;
+                try {
+                    sender.session.send(appDestination(sender.room, "sendMessage"), new ChatMessage(MessageType.CHAT,
+                            MARKER + runId + ":" + intended + " " + padding, "carga-" + runId));
+                    sent.increment();
+                    expected.add(roomSubscribers.get(sender.room));
+                } catch (RuntimeException ex) {
+                    // Sesión cerrada por el servidor: el mensaje no cuenta como enviado
+                }
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        long lastSent = 0;
+        long lastDelivered = 0;
+        long drainDeadline = end + TimeUnit.SECONDS.toNanos(config.getDrainSeconds());
+        while (System.nanoTime() < end || (delivered.sum() < expected.sum() && System.nanoTime() < drainDeadline)) {
+            Thread.sleep(REPORT_INTERVAL_MILLIS);
+            Histogram interval = latencyRecorder.getIntervalHistogram();
+            if (System.nanoTime() > measureFromNanos) {
+                latency.add(interval);
+            }
+            long sentNow = sent.sum();
+            long deliveredNow = delivered.sum();
+            out.accept(String.format("%5.0f s  enviados %6d/s  entregados %8d/s  p50 %7.2f ms  p99 %7.2f ms  máx %7.2f ms",
+                    (System.nanoTime() - start) / 1e9, sentNow - lastSent, deliveredNow - lastDelivered,
+                    interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(99) / 1000.0,
+                    interval.getMaxValue() / 1000.0));
+            lastSent = sentNow;
+            lastDelivered = deliveredNow;
+        }
+        latency.add(latencyRecorder.getIntervalHistogram());
+    }
+
+    private String topic(int room) {
+        return config.getRooms() > 0 ? "/topic/room.r" + room : "/topic/public";
+    }
+
+    private String appDestination(int room, String action) {
+        return config.getRooms() > 0 ? "/app/chat.r" + room + "." + action : "/app/chat." + action;
+    }
+
+    /**
+     * Busca las marcas de esta ejecución en el payload (un mensaje o un array de mensajes agrupados)
+     * sin deserializarlo, para que el costo del generador no distorsione la medición
+     */
+    private void onPayload(byte[] payload) {
+        long now = System.nanoTime();
+        int from = 0;
+        int found;
+        while ((found = indexOf(payload, markerBytes, from)) >= 0) {
+            int i = found + markerBytes.length;
+            long intended = 0;
+            while (i < payload.length && payload[i] >= '0' && payload[i] <= '9') {
+                intended = intended * 10 + (payload[i++] - '0');
+            }
+            delivered.increment();
+            if (intended >= measureFromNanos) {
+                latencyRecorder.recordValue(Math.max(1, (now - intended) / 1000));
+            }
+            from = i;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private final class DeliveryHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            onPayload((byte[]) payload);
+        }
+    }
+
+    private static final class Member {
+
+        private final StompSession session;
+        private final int room;
+
+        private Member(StompSession session, int room) {
+            this.session = session;
+            this.room = room;
+        }
+    }
+
+    /**
+     * Parámetros de la prueba; desde la línea de comandos se leen de las propiedades load.*
+     */
+    public static class Config {
+
+        private String url = "http://localhost:8087/ws";
+        private boolean nativeTransport = false;
+        private int sessions = 1000;
+        private int rooms = 0;
+        private int rate = 100;
+        private int durationSeconds = 30;
+        private int warmupSeconds = 5;
+        private int drainSeconds = 10;
+        private int payloadBytes = 100;
+        private int connectConcurrency = 100;
+        private int connectTimeoutSeconds = 120;
+        private long settleMillis = 2000;
+
+        public static Config fromSystemProperties() {
+            Config config = new Config();
+            config.setUrl(System.getProperty("load.url", config.getUrl()));
+            config.setNativeTransport("native".equalsIgnoreCase(System.getProperty("load.transport", "sockjs")));
+            config.setSessions(Integer.getInteger("load.sessions", config.getSessions()));
+            config.setRooms(Integer.getInteger("load.rooms", config.getRooms()));
+            config.setRate(Integer.getInteger("load.rate", config.getRate()));
+            config.setDurationSeconds(Integer.getInteger("load.duration", config.getDurationSeconds()));
+            config.setWarmupSeconds(Integer.getInteger("load.warmup", config.getWarmupSeconds()));
+            config.setDrainSeconds(Integer.getInteger("load.drain", config.getDrainSeconds()));
+            config.setPayloadBytes(Integer.getInteger("load.payload-bytes", config.getPayloadBytes()));
+            config.setConnectConcurrency(Integer.getInteger("load.connect-concurrency",
+                    config.getConnectConcurrency()));
+            return config;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Endpoint STOMP: http://host:puerto/ws con SockJS o ws://host:puerto/ws-native con transporte nativo
+         */
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public boolean isNativeTransport() {
+            return nativeTransport;
+        }
+
+        public void setNativeTransport(boolean nativeTransport) {
+            this.nativeTransport = nativeTransport;
+        }
+
+        public int getSessions() {
+            return sessions;
+        }
+
+        public void setSessions(int sessions) {
+            this.sessions = sessions;
+        }
+
+        public int getRooms() {
+            return rooms;
+        }
+
+        /**
+         * Salas entre las que se reparten las sesiones; 0 usa el topic público
+         */
+        public void setRooms(int rooms) {
+            this.rooms = rooms;
+        }
+
+        public int getRate() {
+            return rate;
+        }
+
+        /**
+         * Mensajes por segundo sumando todas las sesiones
+         */
+        public void setRate(int rate) {
+            this.rate = rate;
+        }
+
+        public int getDurationSeconds() {
+            return durationSeconds;
+        }
+
+        public void setDurationSeconds(int durationSeconds) {
+            this.durationSeconds = durationSeconds;
+        }
+
+        public int getWarmupSeconds() {
+            return warmupSeconds;
+        }
+
+        /**
+         * Segundos iniciales del envío que no cuentan en el histograma de latencia
+         */
+        public void setWarmupSeconds(int warmupSeconds) {
+            this.warmupSeconds = warmupSeconds;
+        }
+
+        public int getDrainSeconds() {
+            return drainSeconds;
+        }
+
+        /**
+         * Espera máxima a las entregas pendientes tras el último envío
+         */
+        public void setDrainSeconds(int drainSeconds) {
+            this.drainSeconds = drainSeconds;
+        }
+
+        public int getPayloadBytes() {
+            return payloadBytes;
+        }
+
+        public void setPayloadBytes(int payloadBytes) {
+            this.payloadBytes = payloadBytes;
+        }
+
+        public int getConnectConcurrency() {
+            return connectConcurrency;
+        }
+
+        /**
+         * Conexiones en curso a la vez durante la fase de conexión
+         */
+        public void setConnectConcurrency(int connectConcurrency) {
+            this.connectConcurrency = connectConcurrency;
+        }
+
+        public int getConnectTimeoutSeconds() {
+            return connectTimeoutSeconds;
+        }
+
+        public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+            this.connectTimeoutSeconds = connectTimeoutSeconds;
+        }
+
+        public long getSettleMillis() {
+            return settleMillis;
+        }
+
+        public void setSettleMillis(long settleMillis) {
+            this.settleMillis = settleMillis;
+        }
+    }
+
+    /**
+     * Resultado de una ejecución; las latencias se guardan en microsegundos
+     */
+    public static class Report {
+
+        private final int requestedSessions;
+        private final int connectedSessions;
+        private final int failedConnections;
+        private final double connectSeconds;
+        private final Histogram connectLatency;
+        private final long sent;
+        private final long expected;
+        private final long delivered;
+        private final Histogram latency;
+
+        Report(int requestedSessions, int connectedSessions, int failedConnections, double connectSeconds,
+               Histogram connectLatency, long sent, long expected, long delivered, Histogram latency) {
+            this.requestedSessions = requestedSessions;
+            this.connectedSessions = connectedSessions;
+            this.failedConnections = failedConnections;
+            this.connectSeconds = connectSeconds;
+            this.connectLatency = connectLatency;
+            this.sent = sent;
+            this.expected = expected;
+            this.delivered = delivered;
+            this.latency = latency;
+        }
+
+        /**
+         * Fracción de las entregas esperadas que llegaron
+         */
+        public double getCompleteness() {
+            return expected == 0 ? 1.0 : (double) delivered / expected;
+        }
+
+        public int getConnectedSessions() {
+            return connectedSessions;
+        }
+
+        public int getFailedConnections() {
+            return failedConnections;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getExpected() {
+            return expected;
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Resumen final en líneas de texto: conexiones, entregas y latencia
+         */
+        public List<String> summary() {
+            return List.of(
+                    String.format("Conexiones: %d de %d (%d fallidas) en %.1f s, %.0f/s; p50 %.1f ms, p99 %.1f ms, máx %.1f ms",
+                            connectedSessions, requestedSessions, failedConnections, connectSeconds,
+                            connectedSessions / connectSeconds, connectLatency.getValueAtPercentile(50) / 1000.0,
+                            connectLatency.getValueAtPercentile(99) / 1000.0, connectLatency.getMaxValue() / 1000.0),
+                    String.format("Entregas: %d enviados, %d esperadas, %d recibidas (%.3f %%)",
+                            sent, expected, delivered, getCompleteness() * 100),
+                    String.format("Latencia de extremo a extremo (ms): p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  máx %.2f",
+                            latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(90) / 1000.0,
+                            latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+                            latency.getMaxValue() / 1000.0));
+        }
+    }
+}
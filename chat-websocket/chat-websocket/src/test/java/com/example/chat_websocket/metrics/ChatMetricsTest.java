@@ -0,0 +1,178 @@
+package com.example.chat_websocket.metrics;
+
+
+import com.example.chat_websocket.model.MessageType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pruebas unitarias para ChatMetrics
+ */
+class ChatMetricsTest {
+
+    /**
+     * Presupuesto de memoria reservada por mensaje en el camino instrumentado; incluye el Long
+     * con el instante de recepción que viaja en los headers del frame
+     */
+    private static final long ALLOCATION_BUDGET_BYTES = 32;
+
+    private MeterRegistry registry;
+    private ChatMetrics metrics;
+    private SimpAnnotationMethodMessageHandler annotationHandler;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new ChatMetrics(registry);
+        annotationHandler = mock(SimpAnnotationMethodMessageHandler.class);
+    }
+
+    @Test
+    @DisplayName("Debe contar los mensajes por tipo")
+    void testMessageCounters() {
+        // Act
+        metrics.recordMessage(MessageType.CHAT);
+        metrics.recordMessage(MessageType.CHAT);
+        metrics.recordMessage(MessageType.JOIN);
+        metrics.recordMessage(null);
+
+        // Assert
+        assertEquals(2, registry.get(ChatMetrics.MESSAGES).tag("type", "chat").counter().count());
+        assertEquals(1, registry.get(ChatMetrics.MESSAGES).tag("type", "join").counter().count());
+        assertEquals(0, registry.get(ChatMetrics.MESSAGES).tag("type", "leave").counter().count());
+    }
+
+    @Test
+    @DisplayName("Debe seguir las sesiones y suscripciones activas")
+    void testSessionsAndSubscriptions() {
+        // Arrange
+        metrics.handleSessionConnected(new SessionConnectedEvent(this, frame(StompCommand.CONNECT, "s1")));
+        metrics.handleSessionConnected(new SessionConnectedEvent(this, frame(StompCommand.CONNECT, "s2")));
+
+        // Act
+        metrics.handleSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s1")));
+        metrics.handleSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s1")));
+        metrics.handleSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s2")));
+        metrics.handleUnsubscribe(new SessionUnsubscribeEvent(this, frame(StompCommand.UNSUBSCRIBE, "s2")));
+        metrics.handleUnsubscribe(new SessionUnsubscribeEvent(this, frame(StompCommand.UNSUBSCRIBE, "s2")));
+
+        // Assert
+        assertEquals(2, registry.get(ChatMetrics.SESSIONS).gauge().value());
+        assertEquals(2, registry.get(ChatMetrics.SUBSCRIPTIONS).gauge().value());
+
+        // Act: al desconectarse se liberan todas sus suscripciones
+        metrics.handleSessionDisconnect(new SessionDisconnectEvent(this, frame(StompCommand.DISCONNECT, "s1"),
+                "s1", CloseStatus.NORMAL));
+
+        // Assert
+        assertEquals(1, registry.get(ChatMetrics.SESSIONS).gauge().value());
+        assertEquals(0, registry.get(ChatMetrics.SUBSCRIPTIONS).gauge().value());
+    }
+
+    @Test
+    @DisplayName("Debe medir solo los frames SEND en el camino de recepción a difusión")
+    void testBroadcastLatency() {
+        // Arrange
+        Message<?> send = metrics.preSend(frame(StompCommand.SEND, "s1"), null);
+        Message<?> subscribe = metrics.preSend(frame(StompCommand.SUBSCRIBE, "s1"), null);
+
+        // Act
+        metrics.afterMessageHandled(send, null, annotationHandler, null);
+        metrics.afterMessageHandled(subscribe, null, annotationHandler, null);
+
+        // Assert
+        Timer timer = registry.get(ChatMetrics.BROADCAST_LATENCY).timer();
+        assertEquals(1, timer.count());
+        assertNull(subscribe.getHeaders().get(ChatMetrics.RECEIVED_AT_HEADER));
+    }
+
+    @Test
+    @DisplayName("Debe medir cada frame SEND una sola vez aunque lo reciban varios handlers")
+    void testBroadcastLatencyOncePerFrame() {
+        // Arrange
+        Message<?> send = metrics.preSend(frame(StompCommand.SEND, "s1"), null);
+
+        // Act: el canal de entrada entrega el frame también al broker y al handler de destinos de usuario
+        metrics.afterMessageHandled(send, null, mock(MessageHandler.class), null);
+        metrics.afterMessageHandled(send, null, annotationHandler, null);
+        metrics.afterMessageHandled(send, null, mock(MessageHandler.class), null);
+
+        // Assert
+        assertEquals(1, registry.get(ChatMetrics.BROADCAST_LATENCY).timer().count());
+    }
+
+    @Test
+    @DisplayName("La latencia debe incluir la espera del frame en la cola del canal de entrada")
+    void testBroadcastLatencyIncludesQueueWait() throws InterruptedException {
+        // Arrange
+        Message<?> send = metrics.preSend(frame(StompCommand.SEND, "s1"), null);
+
+        // Act
+        Thread.sleep(20);
+        metrics.afterMessageHandled(metrics.beforeHandle(send, null, annotationHandler), null, annotationHandler, null);
+
+        // Assert
+        Timer timer = registry.get(ChatMetrics.BROADCAST_LATENCY).timer();
+        assertTrue(timer.max(TimeUnit.MILLISECONDS) >= 20);
+    }
+
+    @Test
+    @DisplayName("El camino instrumentado no debe superar el presupuesto de memoria por mensaje")
+    void testHotPathAllocationBudget() {
+        // Arrange
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Message<byte[]> send = frame(StompCommand.SEND, "s1");
+        int iterations = 200_000;
+        for (int i = 0; i < iterations; i++) {
+            instrumentedMessage(send);
+        }
+
+        // Act
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            instrumentedMessage(send);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Assert
+        double bytesPerMessage = (double) allocated / iterations;
+        assertTrue(bytesPerMessage <= ALLOCATION_BUDGET_BYTES, "Bytes por mensaje: " + bytesPerMessage);
+        assertEquals(2L * iterations, registry.get(ChatMetrics.BROADCAST_LATENCY).timer().count());
+    }
+
+    private void instrumentedMessage(Message<byte[]> send) {
+        Message<?> received = metrics.preSend(send, null);
+        metrics.recordMessage(MessageType.CHAT);
+        metrics.afterMessageHandled(received, null, annotationHandler, null);
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        // Como StompDecoder: los headers siguen mutables hasta el interceptor que los congela
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
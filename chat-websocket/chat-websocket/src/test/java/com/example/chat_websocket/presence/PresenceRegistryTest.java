@@ -0,0 +1,224 @@
+package com.example.chat_websocket.presence;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.PresenceDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para PresenceRegistry
+ */
+class PresenceRegistryTest {
+
+    private static final String PUBLIC = "/topic/public";
+
+    private AtomicLong now;
+    private PresenceRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        ChatProperties properties = new ChatProperties();
+        properties.getPresence().setDebounce(Duration.ofSeconds(2));
+        now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        registry = new PresenceRegistry(properties, now::get);
+    }
+
+    @Test
+    @DisplayName("Debe anunciar la entrada solo con la primera sesión del usuario")
+    void testMultipleSessions() {
+        // Act
+        boolean first = registry.connect("ana", "s1", PUBLIC);
+        boolean second = registry.connect("ana", "s2", PUBLIC);
+        PresenceDelta delta = registry.drain().getDelta();
+
+        // Assert
+        assertTrue(first);
+        assertFalse(second);
+        assertEquals(List.of("ana"), delta.getJoined());
+        assertEquals(1, delta.getVersion());
+
+        // Cerrar una de las dos sesiones no la saca de línea
+        registry.disconnect("s1");
+        advance(Duration.ofSeconds(5));
+        PresenceChanges changes = registry.drain();
+        assertTrue(registry.isOnline("ana"));
+        assertNull(changes.getDelta());
+        assertTrue(changes.getDepartures().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe esperar el plazo de gracia de una sesión reanudable antes de anunciar su salida")
+    void testResumableGrace() {
+        // Arrange
+        registry.connect("ana", "s1", PUBLIC);
+        registry.drain();
+
+        // Act
+        registry.disconnect("s1", Duration.ofSeconds(30));
+        advance(Duration.ofSeconds(10));
+        PresenceChanges afterDebounce = registry.drain();
+        boolean announced = registry.connect("ana", "s2", PUBLIC);
+        advance(Duration.ofSeconds(30));
+        PresenceChanges afterGrace = registry.drain();
+
+        // Assert
+        assertNull(afterDebounce.getDelta());
+        assertTrue(afterDebounce.getDepartures().isEmpty());
+        assertFalse(announced);
+        assertNull(afterGrace.getDelta());
+        assertTrue(afterGrace.getDepartures().isEmpty());
+        assertTrue(registry.isOnline("ana"));
+    }
+
+    @Test
+    @DisplayName("Debe confirmar la salida solo al vencer el plazo de debounce")
+    void testDebouncedLeave() {
+        // Arrange
+        registry.connect("ana", "s1", "/topic/room.general");
+        registry.drain();
+
+        // Act
+        registry.disconnect("s1");
+        PresenceChanges early = registry.drain();
+        advance(Duration.ofSeconds(2));
+        PresenceChanges confirmed = registry.drain();
+
+        // Assert
+        assertNull(early.getDelta());
+        assertTrue(early.getDepartures().isEmpty());
+        assertEquals(List.of("ana"), confirmed.getDelta().getLeft());
+        assertEquals(1, confirmed.getDepartures().size());
+        assertEquals("/topic/room.general", confirmed.getDepartures().get(0).getDestination());
+        assertFalse(registry.isOnline("ana"));
+        assertEquals(0, registry.getOnlineCount());
+    }
+
+    @Test
+    @DisplayName("Una tormenta de reconexiones no debe producir anuncios")
+    void testReconnectStorm() {
+        // Arrange
+        int users = 10_000;
+        for (int i = 0; i < users; i++) {
+            assertTrue(registry.connect("user" + i, "a" + i, PUBLIC));
+        }
+        PresenceDelta initial = registry.drain().getDelta();
+        assertEquals(users, initial.getJoined().size());
+
+        // Act: todos se desconectan y vuelven con una sesión nueva dentro del plazo
+        int announcedJoins = 0;
+        for (int i = 0; i < users; i++) {
+            registry.disconnect("a" + i);
+        }
+        registry.drain();
+        advance(Duration.ofSeconds(1));
+        for (int i = 0; i < users; i++) {
+            if (registry.connect("user" + i, "b" + i, PUBLIC)) {
+                announcedJoins++;
+            }
+        }
+        advance(Duration.ofSeconds(5));
+        PresenceChanges changes = registry.drain();
+
+        // Assert
+        assertEquals(0, announcedJoins);
+        assertNull(changes.getDelta());
+        assertTrue(changes.getDepartures().isEmpty());
+        assertEquals(users, registry.getOnlineCount());
+        assertEquals(1, registry.getVersion());
+    }
+
+    @Test
+    @DisplayName("La foto debe ser coherente con la versión de los deltas")
+    void testSnapshot() {
+        // Arrange
+        registry.connect("ana", "s1", PUBLIC);
+        registry.connect("luis", "s2", PUBLIC);
+        registry.drain();
+        registry.connect("eva", "s3", PUBLIC);
+
+        // Act
+        var snapshot = registry.snapshot();
+
+        // Assert: eva aún no se ha anunciado
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(2, snapshot.getUsers().size());
+        assertTrue(snapshot.getUsers().containsAll(List.of("ana", "luis")));
+        assertEquals(List.of("eva"), registry.drain().getDelta().getJoined());
+        assertEquals(3, registry.snapshot().getUsers().size());
+    }
+
+    @Test
+    @DisplayName("Debe agrupar en un solo delta las entradas y salidas del intervalo")
+    void testCompactDelta() {
+        // Arrange
+        registry.connect("ana", "s1", PUBLIC);
+        registry.drain();
+        registry.disconnect("s1");
+        advance(Duration.ofSeconds(3));
+
+        // Act
+        registry.connect("luis", "s2", PUBLIC);
+        registry.connect("eva", "s3", PUBLIC);
+        PresenceDelta delta = registry.drain().getDelta();
+
+        // Assert
+        assertEquals(2, delta.getVersion());
+        assertEquals(List.of("ana"), delta.getLeft());
+        assertEquals(2, delta.getJoined().size());
+        assertNull(registry.drain().getDelta());
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    @DisplayName("Debe devolver solo las sesiones abiertas del usuario")
+    void testSessionsOf() {
+        // Arrange
+        registry.connect("ana", "s1", PUBLIC);
+        registry.connect("ana", "s2", "/topic/room.general");
+        registry.connect("luis", "s3", PUBLIC);
+
+        // Act
+        registry.disconnect("s1");
+
+        // Assert
+        assertEquals(List.of("s2"), registry.sessionsOf("ana"));
+        assertEquals(List.of("s3"), registry.sessionsOf("luis"));
+        assertTrue(registry.sessionsOf("nadie").isEmpty());
+    }
+
+    @Test
+    @DisplayName("El nombre debe pertenecer al cliente que lo registró mientras tenga sesiones abiertas")
+    void testNameOwnedByFirstClient() {
+        // Arrange
+        registry.admit("ana", "s1", PUBLIC, "client:a", false);
+
+        // Act
+        PresenceRegistry.Admission sameClient = registry.admit("ana", "s2", PUBLIC, "client:a", false);
+        PresenceRegistry.Admission otherClient = registry.admit("ana", "s3", PUBLIC, "client:b", false);
+        PresenceRegistry.Admission withToken = registry.admit("ana", "s4", PUBLIC, "client:c", true);
+
+        // Assert
+        assertEquals(PresenceRegistry.Admission.SILENT, sameClient);
+        assertEquals(PresenceRegistry.Admission.NAME_TAKEN, otherClient);
+        assertEquals(PresenceRegistry.Admission.SILENT, withToken);
+        assertEquals(List.of("s1", "s2", "s4"), registry.sessionsOf("ana").stream().sorted().toList());
+
+        // Sin sesiones abiertas el nombre queda libre para otro cliente
+        registry.disconnect("s1");
+        registry.disconnect("s2");
+        registry.disconnect("s4");
+        assertNotEquals(PresenceRegistry.Admission.NAME_TAKEN, registry.admit("ana", "s5", PUBLIC, "client:b", false));
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.chat_websocket.ratelimit;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ErrorMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para InboundRateLimiter
+ */
+class InboundRateLimiterTest {
+
+    private SimpMessageSendingOperations messagingTemplate;
+    private AtomicLong now;
+    private InboundRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+
+        ChatProperties properties = new ChatProperties();
+        properties.getRateLimit().setSessionRate(10);
+        properties.getRateLimit().setSessionBurst(3);
+        properties.getRateLimit().setUserRate(10);
+        properties.getRateLimit().setUserBurst(4);
+
+        now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        limiter = new InboundRateLimiter(properties, messagingTemplate, now::get);
+        limiter.preSend(connect("s1"), null);
+        limiter.preSend(connect("s2"), null);
+    }
+
+    @Test
+    @DisplayName("Debe permitir la ráfaga y rechazar el exceso de una sesión")
+    void testSessionBurst() {
+        // Arrange
+        Message<byte[]> frame = send("s1", null);
+
+        // Act & Assert
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(limiter.preSend(frame, null));
+        }
+        assertNull(limiter.preSend(frame, null));
+        assertEquals(1, limiter.getThrottledBySession());
+    }
+
+    @Test
+    @DisplayName("Debe recargar los tokens con el paso del tiempo")
+    void testRefill() {
+        // Arrange
+        Message<byte[]> frame = send("s1", null);
+        for (int i = 0; i < 3; i++) {
+            limiter.preSend(frame, null);
+        }
+
+        // Act: a 10 mensajes/s se recupera un token cada 100 ms
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Assert
+        assertNotNull(limiter.preSend(frame, null));
+        assertNull(limiter.preSend(frame, null));
+    }
+
+    @Test
+    @DisplayName("Debe aplicar el límite del usuario sumando todas sus sesiones")
+    void testUserLimitAcrossSessions() {
+        // Arrange
+        Message<byte[]> first = send("s1", "Ana");
+        Message<byte[]> second = send("s2", "Ana");
+
+        // Act
+        int accepted = 0;
+        for (int i = 0; i < 3; i++) {
+            accepted += limiter.preSend(first, null) != null ? 1 : 0;
+            accepted += limiter.preSend(second, null) != null ? 1 : 0;
+        }
+
+        // Assert
+        assertEquals(4, accepted);
+        assertEquals(2, limiter.getThrottledByUser());
+        assertEquals(1, limiter.getTrackedUsers());
+    }
+
+    @Test
+    @DisplayName("Debe liberar el estado al desconectarse la última sesión del usuario")
+    void testEvictOnDisconnect() {
+        // Arrange
+        limiter.preSend(send("s1", "Ana"), null);
+        limiter.preSend(send("s2", "Ana"), null);
+
+        // Act & Assert
+        limiter.evict("s1");
+        assertEquals(1, limiter.getTrackedSessions());
+        assertEquals(1, limiter.getTrackedUsers());
+
+        limiter.evict("s2");
+        assertEquals(0, limiter.getTrackedSessions());
+        assertEquals(0, limiter.getTrackedUsers());
+    }
+
+    @Test
+    @DisplayName("Un frame tardío tras la desconexión no debe volver a crear el estado")
+    void testLateFrameAfterEvict() {
+        // Arrange
+        limiter.evict("s1");
+        limiter.evict("s2");
+
+        // Act
+        Message<?> late = limiter.preSend(send("s1", "Ana"), null);
+        limiter.evict("s1");
+
+        // Assert
+        assertNull(late);
+        assertEquals(0, limiter.getTrackedSessions());
+        assertEquals(0, limiter.getTrackedUsers());
+    }
+
+    @Test
+    @DisplayName("Debe avisar a la sesión como máximo una vez por segundo")
+    void testRejectionNotice() {
+        // Arrange
+        Message<byte[]> frame = send("s1", null);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            limiter.preSend(frame, null);
+        }
+
+        // Assert
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("s1"), eq(InboundRateLimiter.ERRORS_QUEUE),
+                any(ErrorMessage.class), anyMap());
+    }
+
+    @Test
+    @DisplayName("No debe limitar los frames que no son SEND")
+    void testIgnoresOtherFrames() {
+        // Arrange
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("s1");
+        Message<byte[]> subscribe = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+        // Act & Assert
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(limiter.preSend(subscribe, null));
+        }
+        assertEquals(2, limiter.getTrackedSessions());
+        assertEquals(0, limiter.getThrottledFrames());
+    }
+
+    private static Message<byte[]> connect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> send(String sessionId, String username) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/app/chat.sendMessage");
+        Map<String, Object> attributes = new HashMap<>();
+        if (username != null) {
+            attributes.put("username", username);
+        }
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
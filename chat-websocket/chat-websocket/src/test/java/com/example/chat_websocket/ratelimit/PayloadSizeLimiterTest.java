@@ -0,0 +1,76 @@
+package com.example.chat_websocket.ratelimit;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ErrorMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para PayloadSizeLimiter
+ */
+class PayloadSizeLimiterTest {
+
+    private SimpMessageSendingOperations messagingTemplate;
+    private PayloadSizeLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+
+        ChatProperties properties = new ChatProperties();
+        properties.getTransport().setMaxPayloadSize(DataSize.ofBytes(100));
+        limiter = new PayloadSizeLimiter(properties, messagingTemplate);
+    }
+
+    @Test
+    @DisplayName("Debe dejar pasar los frames SEND dentro del límite")
+    void testAcceptsWithinLimit() {
+        // Act & Assert
+        assertNotNull(limiter.preSend(frame(StompCommand.SEND, 100), null));
+        assertEquals(0, limiter.getRejected());
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    @DisplayName("Debe descartar los frames SEND que superan el límite y avisar a la sesión")
+    void testRejectsOversized() {
+        // Act
+        Message<?> result = limiter.preSend(frame(StompCommand.SEND, 101), null);
+
+        // Assert
+        assertNull(result);
+        assertEquals(1, limiter.getRejected());
+        ArgumentCaptor<Object> notice = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("s1"), eq(InboundRateLimiter.ERRORS_QUEUE),
+                notice.capture(), anyMap());
+        assertEquals(PayloadSizeLimiter.PAYLOAD_TOO_LARGE, ((ErrorMessage) notice.getValue()).getCode());
+    }
+
+    @Test
+    @DisplayName("No debe limitar los frames que no son SEND")
+    void testIgnoresOtherFrames() {
+        // Act & Assert
+        assertNotNull(limiter.preSend(frame(StompCommand.SUBSCRIBE, 1000), null));
+        assertEquals(0, limiter.getRejected());
+    }
+
+    private static Message<byte[]> frame(StompCommand command, int size) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("s1");
+        accessor.setDestination("/app/chat.sendMessage");
+        return MessageBuilder.createMessage(new byte[size], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.chat_websocket.resume;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ResumeGrant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para ResumeTokenService
+ */
+class ResumeTokenServiceTest {
+
+    private static final String PUBLIC = "/topic/public";
+
+    private ChatProperties properties;
+    private AtomicLong now;
+    private SimpMessageSendingOperations messagingTemplate;
+    private ResumeTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ChatProperties();
+        properties.getResume().setSecret("secreto-compartido");
+        properties.getResume().setTtl(Duration.ofHours(1));
+        now = new AtomicLong(1_760_000_000_000L);
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+        service = new ResumeTokenService(properties, messagingTemplate, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    @DisplayName("Debe distinguir los tokens de este nodo de los de otro nodo con la misma clave")
+    void testSameAndOtherNode() {
+        // Arrange
+        ResumeTokenService otherNode = new ResumeTokenService(properties, messagingTemplate, now::get);
+        String token = service.issue("Ana", PUBLIC);
+
+        // Act & Assert
+        assertEquals(ResumeTokenService.Resumption.SAME_NODE, service.verify(token, "Ana", PUBLIC));
+        assertEquals(ResumeTokenService.Resumption.OTHER_NODE, otherNode.verify(token, "Ana", PUBLIC));
+    }
+
+    @Test
+    @DisplayName("Debe rechazar tokens de otro usuario o destino, caducados, alterados o con otra clave")
+    void testRejectsInvalidTokens() {
+        // Arrange
+        String token = service.issue("Ana", PUBLIC);
+        ChatProperties otherSecret = new ChatProperties();
+        otherSecret.getResume().setSecret("otra-clave");
+        ResumeTokenService foreign = new ResumeTokenService(otherSecret, messagingTemplate, now::get);
+        // Altera el payload sin volver a firmarlo
+        String tampered = (token.charAt(0) == 'A' ? 'B' : 'A') + token.substring(1);
+
+        // Act & Assert
+        assertEquals(ResumeTokenService.Resumption.NONE, service.verify(token, "Luis", PUBLIC));
+        assertEquals(ResumeTokenService.Resumption.NONE, service.verify(token, "Ana", "/topic/room.general"));
+        assertEquals(ResumeTokenService.Resumption.NONE, service.verify(tampered, "Ana", PUBLIC));
+        assertEquals(ResumeTokenService.Resumption.NONE, foreign.verify(token, "Ana", PUBLIC));
+        assertEquals(ResumeTokenService.Resumption.NONE, service.verify("no-es-un-token", "Ana", PUBLIC));
+        assertEquals(ResumeTokenService.Resumption.NONE, service.verify(null, "Ana", PUBLIC));
+
+        now.addAndGet(Duration.ofHours(2).toMillis());
+        assertEquals(ResumeTokenService.Resumption.NONE, service.verify(token, "Ana", PUBLIC));
+    }
+
+    @Test
+    @DisplayName("Debe enviar el token y el plazo de gracia solo a la sesión que se unió")
+    void testGrantSentToSession() {
+        // Act
+        service.grant("session-1", "Ana", PUBLIC);
+
+        // Assert
+        ArgumentCaptor<Object> grant = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session-1"), eq(ResumeTokenService.RESUME_QUEUE),
+                grant.capture(), any(MessageHeaders.class));
+        ResumeGrant sent = (ResumeGrant) grant.getValue();
+        assertEquals(properties.getResume().getGrace().toMillis(), sent.getGraceMillis());
+        assertEquals(ResumeTokenService.Resumption.SAME_NODE, service.verify(sent.getToken(), "Ana", PUBLIC));
+    }
+
+    @Test
+    @DisplayName("Un token de otro nodo sin renovar desde hace más del plazo de gracia no debe omitir la entrada")
+    void testOtherNodeBoundedByGrace() {
+        // Arrange
+        properties.getResume().setGrace(Duration.ofSeconds(30));
+        ResumeTokenService otherNode = new ResumeTokenService(properties, messagingTemplate, now::get);
+        String token = service.issue("Ana", PUBLIC);
+
+        // Act
+        now.addAndGet(Duration.ofSeconds(40).toMillis());
+        ResumeTokenService.Resumption recent = otherNode.verify(token, "Ana", PUBLIC);
+        now.addAndGet(Duration.ofSeconds(10).toMillis());
+        ResumeTokenService.Resumption late = otherNode.verify(token, "Ana", PUBLIC);
+        otherNode.close();
+
+        // Assert: gracia (30 s) más el intervalo de renovación (15 s)
+        assertEquals(ResumeTokenService.Resumption.OTHER_NODE, recent);
+        assertEquals(ResumeTokenService.Resumption.LATE, late);
+    }
+
+    @Test
+    @DisplayName("Debe renovar el token de las sesiones abiertas y dejar de hacerlo al cerrarse")
+    void testRefreshOpenSessions() {
+        // Arrange
+        service.grant("session-1", "Ana", PUBLIC);
+        service.grant("session-2", "Luis", PUBLIC);
+        service.revoke("session-2");
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+
+        // Act
+        service.refresh();
+
+        // Assert
+        ArgumentCaptor<Object> grant = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(2)).convertAndSendToUser(eq("session-1"),
+                eq(ResumeTokenService.RESUME_QUEUE), grant.capture(), any(MessageHeaders.class));
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("session-2"),
+                eq(ResumeTokenService.RESUME_QUEUE), any(), any(MessageHeaders.class));
+        String refreshed = ((ResumeGrant) grant.getValue()).getToken();
+        ResumeTokenService otherNode = new ResumeTokenService(properties, messagingTemplate, now::get);
+        assertEquals(ResumeTokenService.Resumption.OTHER_NODE, otherNode.verify(refreshed, "Ana", PUBLIC));
+        otherNode.close();
+    }
+}
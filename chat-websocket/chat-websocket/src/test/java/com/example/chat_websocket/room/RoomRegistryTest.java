@@ -0,0 +1,76 @@
+package com.example.chat_websocket.room;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para RoomRegistry
+ */
+class RoomRegistryTest {
+
+    private AtomicLong now;
+    private RoomRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        ChatProperties properties = new ChatProperties();
+        properties.getRooms().setIdleTimeout(Duration.ofSeconds(10));
+        properties.getRooms().setMaxRooms(2);
+
+        now = new AtomicLong(1_000_000L);
+        registry = new RoomRegistry(properties, now::get);
+    }
+
+    @Test
+    @DisplayName("Debe registrar y quitar miembros de una sala")
+    void testJoinAndLeave() {
+        Room room = registry.join("general", "s1");
+        registry.join("general", "s2");
+
+        assertEquals("/topic/room.general", room.getDestination());
+        assertEquals(2, room.getMemberCount());
+        assertTrue(registry.leave("general", "s1"));
+        assertFalse(registry.leave("general", "s1"));
+        assertEquals(1, registry.find("general").getMemberCount());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar nombres de sala inválidos")
+    void testInvalidNames() {
+        assertNull(registry.join("a/b", "s1"));
+        assertNull(registry.join("", "s1"));
+        assertNull(registry.join("x".repeat(33), "s1"));
+        assertEquals(0, registry.getRoomCount());
+    }
+
+    @Test
+    @DisplayName("Debe eliminar de forma perezosa las salas vacías e inactivas")
+    void testLazyEvictionOfIdleRooms() {
+        registry.join("vacia", "s1");
+        registry.leave("vacia", "s1");
+        registry.join("ocupada", "s2");
+
+        now.addAndGet(Duration.ofSeconds(11).toMillis());
+        registry.join("ocupada", "s3");
+
+        assertNull(registry.find("vacia"));
+        assertNotNull(registry.find("ocupada"));
+    }
+
+    @Test
+    @DisplayName("Debe respetar el máximo de salas")
+    void testMaxRooms() {
+        assertNotNull(registry.join("a", "s1"));
+        assertNotNull(registry.join("b", "s2"));
+        assertNull(registry.join("c", "s3"));
+        assertNotNull(registry.join("a", "s4"));
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.chat_websocket.search;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.HistoryPage;
+import com.example.chat_websocket.model.HistoryQuery;
+import com.example.chat_websocket.model.MessageType;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark del índice del historial: latencia de las consultas paginadas con el índice lleno
+ * mientras sigue indexando mensajes nuevos, y costo de encolar un mensaje en el camino de difusión.
+ * El corpus reparte los mensajes entre el canal público y varias salas, con remitentes y
+ * palabras de frecuencia muy desigual (unas pocas aparecen en casi todos los mensajes).
+ * No forma parte de la suite normal: lleva la etiqueta benchmark y solo se activa con
+ * -Dbenchmark=true (lo fija el perfil loadtest). Se ejecuta con:
+ * <pre>
+ * mvn -Ploadtest test -Dtest=MessageIndexBenchmark -Dbenchmark.messages=1000000 -Dbenchmark.queries=20000
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MessageIndexBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageIndexBenchmark.class);
+
+    private static final String PUBLIC = "/topic/public";
+    private static final String[] COMMON = {"hola", "gracias", "equipo", "revisar", "mañana", "servidor"};
+    private static final int ROOMS = 20;
+    private static final int SENDERS = 500;
+    private static final int VOCABULARY = 20_000;
+
+    @Test
+    @DisplayName("Reporta la latencia p99 de las consultas con el índice lleno")
+    void queryLatency() throws Exception {
+        int total = Integer.getInteger("benchmark.messages", 1_000_000);
+        int queries = Integer.getInteger("benchmark.queries", 20_000);
+        int ingestRate = Integer.getInteger("benchmark.ingestRate", 2_000);
+
+        ChatProperties properties = new ChatProperties();
+        properties.getSearch().setMaxMessages(total);
+        properties.getSearch().setQueueCapacity(100_000);
+        Random random = new Random(42);
+
+        try (MessageIndex index = new MessageIndex(properties)) {
+            long start = System.nanoTime();
+            List<MessageIndex.Pending> batch = new ArrayList<>(1024);
+            for (int i = 0; i < total; i++) {
+                batch.add(new MessageIndex.Pending(destination(random), message(random, i)));
+                if (batch.size() == 1024) {
+                    index.indexBatch(batch);
+                    batch.clear();
+                }
+            }
+            index.indexBatch(batch);
+            logger.info(String.format("Indexados %d mensajes en %.1f s, %d listas", index.getIndexedCount(),
+                    (System.nanoTime() - start) / 1e9, index.getPostingListCount()));
+
+            // Costo de encolar en el hilo que difunde (el indexador trabaja en paralelo)
+            int offers = 50_000;
+            List<ChatMessage> offered = new ArrayList<>(offers);
+            for (int i = 0; i < offers; i++) {
+                offered.add(message(random, total + i));
+            }
+            long offerStart = System.nanoTime();
+            for (ChatMessage message : offered) {
+                index.offer(PUBLIC, message);
+            }
+            logger.info(String.format("offer(): %.0f ns por mensaje, %d descartados",
+                    (double) (System.nanoTime() - offerStart) / offers, index.getDropped()));
+            while (index.getQueueDepth() > 0) {
+                Thread.sleep(10);
+            }
+
+            // Escritor concurrente: las consultas compiten con el bloqueo de escritura
+            AtomicBoolean ingesting = new AtomicBoolean(true);
+            Thread writer = new Thread(() -> {
+                Random writerRandom = new Random(7);
+                long interval = TimeUnit.SECONDS.toNanos(1) / ingestRate;
+                long next = System.nanoTime();
+                int sequence = total + offers;
+                while (ingesting.get()) {
+                    index.offer(destination(writerRandom), message(writerRandom, sequence++));
+                    next += interval;
+                    LockSupport.parkNanos(Math.max(0, next - System.nanoTime()));
+                }
+            }, "benchmark-ingest");
+            writer.start();
+
+            Map<String, Supplier<HistoryQuery>> kinds = queryKinds(random);
+            Map<String, Histogram> histograms = new LinkedHashMap<>();
+            Histogram overall = new Histogram(TimeUnit.SECONDS.toNanos(1), 3);
+            List<String> names = new ArrayList<>(kinds.keySet());
+
+            // Calentamiento del JIT, sin medir
+            for (int i = 0; i < queries / 4; i++) {
+                index.query(PUBLIC, kinds.get(names.get(i % names.size())).get());
+            }
+
+            for (int i = 0; i < queries; i++) {
+                String kind = names.get(i % names.size());
+                HistoryQuery query = kinds.get(kind).get();
+                String destination = random.nextInt(4) == 0 ? room(random.nextInt(ROOMS)) : PUBLIC;
+                long before = System.nanoTime();
+                HistoryPage page = index.query(destination, query);
+                long elapsed = System.nanoTime() - before;
+                assertNotNull(page);
+                histograms.computeIfAbsent(kind, k -> new Histogram(TimeUnit.SECONDS.toNanos(1), 3))
+                        .recordValue(elapsed);
+                overall.recordValue(elapsed);
+            }
+            ingesting.set(false);
+            writer.join();
+
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                print(entry.getKey(), entry.getValue());
+            }
+            print("total", overall);
+
+            assertTrue(overall.getValueAtPercentile(99) < TimeUnit.MILLISECONDS.toNanos(5),
+                    "p99 de las consultas por encima de 5 ms");
+        }
+    }
+
+    private static Map<String, Supplier<HistoryQuery>> queryKinds(Random random) {
+        Map<String, Supplier<HistoryQuery>> kinds = new LinkedHashMap<>();
+        kinds.put("pagina", () -> new HistoryQuery());
+        kinds.put("cursor-profundo", () -> {
+            HistoryQuery query = new HistoryQuery();
+            query.setBefore((long) random.nextInt(1_000_000));
+            return query;
+        });
+        kinds.put("remitente", () -> {
+            HistoryQuery query = new HistoryQuery();
+            query.setSender("Usuario" + random.nextInt(SENDERS));
+            return query;
+        });
+        kinds.put("palabra-comun", () -> {
+            HistoryQuery query = new HistoryQuery();
+            query.setQ(COMMON[random.nextInt(COMMON.length)]);
+            return query;
+        });
+        kinds.put("palabra-rara", () -> {
+            HistoryQuery query = new HistoryQuery();
+            query.setQ(word(random.nextInt(VOCABULARY)));
+            return query;
+        });
+        kinds.put("dos-comunes", () -> {
+            HistoryQuery query = new HistoryQuery();
+            query.setQ(COMMON[random.nextInt(3)] + " " + COMMON[3 + random.nextInt(3)]);
+            return query;
+        });
+        kinds.put("remitente-y-palabra", () -> {
+            HistoryQuery query = new HistoryQuery();
+            query.setSender("Usuario" + random.nextInt(SENDERS));
+            query.setQ(COMMON[random.nextInt(COMMON.length)]);
+            return query;
+        });
+        kinds.put("rango-fechas", () -> {
+            HistoryQuery query = new HistoryQuery();
+            long from = timestampOf(random.nextInt(900_000));
+            query.setFrom(from);
+            query.setTo(from + TimeUnit.HOURS.toMillis(1));
+            return query;
+        });
+        return kinds;
+    }
+
+    private static void print(String kind, Histogram histogram) {
+        logger.info(String.format("%-20s n=%6d p50=%7.1f us p99=%7.1f us p99.9=%7.1f us max=%8.1f us", kind,
+                histogram.getTotalCount(), histogram.getValueAtPercentile(50) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMaxValue() / 1e3));
+    }
+
+    private static String destination(Random random) {
+        return random.nextInt(2) == 0 ? PUBLIC : room(random.nextInt(ROOMS));
+    }
+
+    private static String room(int room) {
+        return "/topic/room.sala" + room;
+    }
+
+    private static ChatMessage message(Random random, long sequence) {
+        StringBuilder content = new StringBuilder();
+        int words = 3 + random.nextInt(12);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                content.append(' ');
+            }
+            // Un tercio de las palabras sale de un grupo pequeño y muy frecuente
+            content.append(random.nextInt(3) == 0 ? COMMON[random.nextInt(COMMON.length)]
+                    : word((int) Math.abs(random.nextGaussian() * VOCABULARY / 4) % VOCABULARY));
+        }
+        ChatMessage message = new ChatMessage(MessageType.CHAT, content.toString(),
+                "Usuario" + random.nextInt(SENDERS));
+        message.setSequence(sequence);
+        message.setTimestamp(timestampOf(sequence));
+        return message;
+    }
+
+    private static String word(int index) {
+        return "palabra" + Integer.toString(index, 36);
+    }
+
+    private static long timestampOf(long sequence) {
+        return 1_760_000_000_000L + sequence * 50;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.chat_websocket.search;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import com.example.chat_websocket.model.ChatMessage;
+import com.example.chat_websocket.model.HistoryPage;
+import com.example.chat_websocket.model.HistoryQuery;
+import com.example.chat_websocket.model.MessageType;
+import com.example.chat_websocket.util.HtmlSanitizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para MessageIndex
+ */
+class MessageIndexTest {
+
+    private static final String PUBLIC = "/topic/public";
+    private static final String ROOM = "/topic/room.general";
+
+    private MessageIndex index;
+    private long sequence;
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Debe paginar hacia atrás con el cursor sin repetir ni saltar mensajes")
+    void testCursorPaging() {
+        // Arrange
+        index = new MessageIndex(properties(1000));
+        List<MessageIndex.Pending> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            batch.add(pending(PUBLIC, "Ana", "mensaje " + i));
+        }
+        batch.add(pending(ROOM, "Ana", "de otra sala"));
+        index.indexBatch(batch);
+
+        // Act
+        List<String> contents = new ArrayList<>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            HistoryQuery query = query(10);
+            query.setBefore(cursor);
+            HistoryPage page = index.query(PUBLIC, query);
+            contents.addAll(0, page.getMessages().stream().map(ChatMessage::getContent).toList());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Assert
+        assertEquals(3, pages);
+        assertEquals(25, contents.size());
+        assertEquals("mensaje 0", contents.get(0));
+        assertEquals("mensaje 24", contents.get(24));
+    }
+
+    @Test
+    @DisplayName("Debe combinar remitente y palabras, sin distinguir mayúsculas ni tildes")
+    void testSenderAndKeywordFilter() {
+        // Arrange
+        index = new MessageIndex(properties(1000));
+        index.indexBatch(List.of(
+                pending(PUBLIC, "Ana", "La reunión es mañana"),
+                pending(PUBLIC, "Luis", "¿A qué hora es la REUNION?"),
+                pending(PUBLIC, "Ana", "Reunion cancelada, nos vemos el jueves"),
+                pending(PUBLIC, "Ana", "Revisen el <b>despliegue</b>")));
+
+        // Act
+        HistoryQuery byKeyword = query(50);
+        byKeyword.setQ("reunión");
+        HistoryQuery bySenderAndKeywords = query(50);
+        bySenderAndKeywords.setSender("Ana");
+        bySenderAndKeywords.setQ("reunion cancelada");
+        HistoryQuery sanitized = query(50);
+        sanitized.setQ("despliegue");
+        HistoryQuery entityName = query(50);
+        entityName.setQ("lt");
+
+        // Assert
+        assertEquals(3, index.query(PUBLIC, byKeyword).getMessages().size());
+        List<ChatMessage> filtered = index.query(PUBLIC, bySenderAndKeywords).getMessages();
+        assertEquals(1, filtered.size());
+        assertTrue(filtered.get(0).getContent().startsWith("Reunion cancelada"));
+        assertEquals(1, index.query(PUBLIC, sanitized).getMessages().size());
+        assertTrue(index.query(PUBLIC, entityName).getMessages().isEmpty());
+        assertTrue(index.query(ROOM, byKeyword).getMessages().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Debe filtrar por rango de fechas")
+    void testTimeRange() {
+        // Arrange
+        index = new MessageIndex(properties(1000));
+        List<MessageIndex.Pending> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(pending(PUBLIC, "Ana", "mensaje " + i));
+        }
+        index.indexBatch(batch);
+        HistoryQuery query = query(50);
+        query.setFrom(timestampOf(3));
+        query.setTo(timestampOf(7));
+
+        // Act
+        HistoryPage page = index.query(PUBLIC, query);
+
+        // Assert
+        assertEquals(List.of("mensaje 3", "mensaje 4", "mensaje 5", "mensaje 6"),
+                page.getMessages().stream().map(ChatMessage::getContent).toList());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Debe desalojar los mensajes más antiguos y liberar sus listas al superar el máximo")
+    void testEvictionBoundsIndex() {
+        // Arrange
+        index = new MessageIndex(properties(100));
+        index.indexBatch(List.of(pending(ROOM, "Antiguo", "palabraunica")));
+
+        // Act
+        for (int round = 0; round < 10; round++) {
+            List<MessageIndex.Pending> batch = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                batch.add(pending(PUBLIC, "Usuario" + (i % 5), "texto " + round + " " + i));
+            }
+            index.indexBatch(batch);
+        }
+
+        // Assert
+        assertEquals(100, index.getIndexedCount());
+        HistoryQuery oldest = query(50);
+        oldest.setQ("palabraunica");
+        assertTrue(index.query(ROOM, oldest).getMessages().isEmpty());
+        // 5 remitentes, "texto" y los números del 10 al 49 (los de un dígito no se indexan)
+        assertEquals(5 + 1 + 40, index.getPostingListCount());
+        HistoryQuery all = query(200);
+        assertEquals(100, index.query(PUBLIC, all).getMessages().size());
+    }
+
+    @Test
+    @DisplayName("Debe indexar en su propio hilo los mensajes encolados")
+    void testOfferIndexesAsynchronously() {
+        // Arrange
+        index = new MessageIndex(properties(1000));
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            index.offer(PUBLIC, message("Ana", "asincrono " + i));
+        }
+        index.close();
+
+        // Assert
+        assertEquals(20, index.getIndexedCount());
+        assertEquals(0, index.getDropped());
+        HistoryQuery query = query(5);
+        query.setQ("asincrono");
+        assertEquals(5, index.query(PUBLIC, query).getMessages().size());
+    }
+
+    private MessageIndex.Pending pending(String destination, String sender, String content) {
+        return new MessageIndex.Pending(destination, message(sender, content));
+    }
+
+    private ChatMessage message(String sender, String content) {
+        ChatMessage message = new ChatMessage(MessageType.CHAT, HtmlSanitizer.sanitize(content), sender);
+        message.setSequence(sequence);
+        message.setTimestamp(timestampOf(sequence));
+        sequence++;
+        return message;
+    }
+
+    private static long timestampOf(long sequence) {
+        return 1_760_000_000_000L + sequence * 1000;
+    }
+
+    private static HistoryQuery query(int limit) {
+        HistoryQuery query = new HistoryQuery();
+        query.setLimit(limit);
+        return query;
+    }
+
+    private static ChatProperties properties(int maxMessages) {
+        ChatProperties properties = new ChatProperties();
+        properties.getSearch().setMaxMessages(maxMessages);
+        return properties;
+    }
+}
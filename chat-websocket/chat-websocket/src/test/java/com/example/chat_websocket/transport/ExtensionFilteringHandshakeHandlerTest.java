@@ -0,0 +1,49 @@
+package com.example.chat_websocket.transport;
+
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pruebas unitarias para ExtensionFilteringHandshakeHandler
+ */
+class ExtensionFilteringHandshakeHandlerTest {
+
+    private final ServerHttpRequest request = mock(ServerHttpRequest.class);
+    private final List<WebSocketExtension> extensions = List.of(
+            new WebSocketExtension(ExtensionFilteringHandshakeHandler.PER_MESSAGE_DEFLATE),
+            new WebSocketExtension("x-custom"));
+
+    @Test
+    @DisplayName("Debe aceptar permessage-deflate cuando está habilitado")
+    void testDeflateAccepted() {
+        // Arrange
+        ExtensionFilteringHandshakeHandler handler = new ExtensionFilteringHandshakeHandler(true);
+
+        // Act
+        List<WebSocketExtension> accepted = handler.filterRequestedExtensions(request, extensions, extensions);
+
+        // Assert
+        assertEquals(extensions, accepted);
+    }
+
+    @Test
+    @DisplayName("Debe descartar permessage-deflate y conservar las demás extensiones cuando está deshabilitado")
+    void testDeflateRefused() {
+        // Arrange
+        ExtensionFilteringHandshakeHandler handler = new ExtensionFilteringHandshakeHandler(false);
+
+        // Act
+        List<WebSocketExtension> accepted = handler.filterRequestedExtensions(request, extensions, extensions);
+
+        // Assert
+        assertEquals(List.of(new WebSocketExtension("x-custom")), accepted);
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.chat_websocket.transport;
+
+
+import com.example.chat_websocket.config.ChatProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para OutboundSessionDecorator con clientes bloqueados deliberadamente
+ */
+class OutboundSessionDecoratorTest {
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private OutboundQueueMonitor monitor;
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        if (monitor != null) {
+            monitor.close();
+        }
+    }
+
+    @Test
+    @DisplayName("DROP_OLDEST debe mantener la cola de un cliente bloqueado dentro del límite")
+    void testDropOldest() throws Exception {
+        // Arrange
+        WebSocketSession session = monitor(ChatProperties.SlowConsumerPolicy.DROP_OLDEST, 200).decorate(stalled("s1"));
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            session.sendMessage(frame("/topic/public", "m" + i));
+        }
+
+        // Assert
+        assertTrue(monitor.getQueueDepth("s1") <= 200 / frame("/topic/public", "m0").getPayloadLength() + 1);
+        assertTrue(monitor.getDroppedMessages() > 0);
+    }
+
+    @Test
+    @DisplayName("COALESCE debe conservar solo el último mensaje de cada destino")
+    void testCoalesce() throws Exception {
+        // Arrange
+        WebSocketSession session = monitor(ChatProperties.SlowConsumerPolicy.COALESCE, 300).decorate(stalled("s1"));
+        session.sendMessage(frame("/topic/public", "en vuelo"));
+        awaitQueueDepth("s1", 0);
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            session.sendMessage(frame(i % 2 == 0 ? "/topic/public" : "/topic/room.a", "m" + i));
+        }
+
+        // Assert
+        assertEquals(2, monitor.getQueueDepth("s1"));
+        assertTrue(monitor.getCoalescedMessages() > 0);
+    }
+
+    @Test
+    @DisplayName("DISCONNECT debe cerrar la sesión al superar el buffer")
+    void testDisconnect() throws Exception {
+        // Arrange
+        WebSocketSession session = monitor(ChatProperties.SlowConsumerPolicy.DISCONNECT, 200).decorate(stalled("s1"));
+
+        // Act & Assert
+        assertThrows(SessionLimitExceededException.class, () -> {
+            for (int i = 0; i < 100; i++) {
+                session.sendMessage(frame("/topic/public", "m" + i));
+            }
+        });
+        assertEquals(1, monitor.getDisconnectedSessions());
+        assertEquals(0, monitor.getQueueDepth("s1"));
+    }
+
+    @Test
+    @DisplayName("Debe cerrar la sesión si un envío supera el tiempo límite aunque no lleguen más mensajes")
+    void testSendTimeLimit() throws Exception {
+        // Arrange
+        ChatProperties properties = new ChatProperties();
+        properties.getTransport().setSendTimeLimit(Duration.ofMillis(50));
+        properties.getTransport().setSlowConsumerPolicy(ChatProperties.SlowConsumerPolicy.DROP_OLDEST);
+        monitor = new OutboundQueueMonitor(properties);
+        WebSocketSession delegate = stalled("s1");
+        WebSocketSession session = monitor.decorate(delegate);
+
+        // Act
+        session.sendMessage(frame("/topic/public", "bloqueado"));
+
+        // Assert: el vigilante cierra la sesión sin esperar a otro envío
+        verify(delegate, timeout(2000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1, monitor.getDisconnectedSessions());
+        session.sendMessage(frame("/topic/public", "descartado"));
+        verify(delegate, times(1)).sendMessage(any());
+    }
+
+    @Test
+    @DisplayName("La latencia de un cliente sano no debe verse afectada aunque los bloqueados ocupen todos los escritores")
+    void testHealthyClientLatencyStaysFlat() throws Exception {
+        // Arrange: más clientes bloqueados que hilos escritores, con el send-time-limit por defecto
+        int writerThreads = 8;
+        ChatProperties properties = new ChatProperties();
+        properties.getTransport().setWriterThreads(writerThreads);
+        properties.getTransport().setSlowConsumerPolicy(ChatProperties.SlowConsumerPolicy.DROP_OLDEST);
+        // Los clientes bloqueados acumulan toda la prueba sin llegar a la política de cliente lento
+        properties.getTransport().setSendBufferSizeLimit(DataSize.ofKilobytes(256));
+        monitor = new OutboundQueueMonitor(properties);
+
+        List<WebSocketSession> stalledDelegates = new ArrayList<>();
+        List<WebSocketSession> stalledSessions = new ArrayList<>();
+        for (int i = 0; i < writerThreads + 2; i++) {
+            WebSocketSession delegate = stalled("lento-" + i);
+            stalledDelegates.add(delegate);
+            stalledSessions.add(monitor.decorate(delegate));
+        }
+        int messages = 500;
+        long[] latencies = new long[messages];
+        CountDownLatch delivered = new CountDownLatch(messages);
+        WebSocketSession healthy = monitor.decorate(healthy("sano", latencies, delivered));
+
+        // Act: difunde a todas las sesiones como lo haría el canal de salida, a unos 5000 mensajes/s
+        for (int i = 0; i < messages; i++) {
+            LockSupport.parkNanos(200_000);
+            TextMessage message = frame("/topic/public", i + ":" + System.nanoTime());
+            for (WebSocketSession stalledSession : stalledSessions) {
+                stalledSession.sendMessage(message);
+            }
+            healthy.sendMessage(message);
+        }
+
+        // Assert
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        Arrays.sort(latencies);
+        double p99Millis = latencies[(int) (messages * 0.99) - 1] / 1e6;
+        assertTrue(p99Millis < 100, "p99 del cliente sano: " + p99Millis + " ms");
+        long closeTimeout = properties.getTransport().getSendTimeLimit().plusSeconds(5).toMillis();
+        for (WebSocketSession delegate : stalledDelegates) {
+            verify(delegate, timeout(closeTimeout)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        assertEquals(stalledDelegates.size(), monitor.getDisconnectedSessions());
+    }
+
+    @Test
+    @DisplayName("Al drenar debe escribir la cola pendiente antes de cerrar la sesión")
+    void testCloseAfterFlush() throws Exception {
+        // Arrange: el primer envío queda bloqueado y los demás esperan en la cola
+        WebSocketSession delegate = stalled("s1");
+        WebSocketSession session = monitor(ChatProperties.SlowConsumerPolicy.DROP_OLDEST, 64 * 1024).decorate(delegate);
+        for (int i = 0; i < 5; i++) {
+            session.sendMessage(frame("/topic/public", "m" + i));
+        }
+
+        // Act
+        monitor.closeAfterFlush("s1", DrainCoordinator.MIGRATE);
+        verify(delegate, never()).close(any());
+        unblock.countDown();
+
+        // Assert
+        verify(delegate, timeout(5000)).close(DrainCoordinator.MIGRATE);
+        verify(delegate, times(5)).sendMessage(any());
+        assertEquals(0, monitor.getQueueDepth("s1"));
+    }
+
+    private OutboundQueueMonitor monitor(ChatProperties.SlowConsumerPolicy policy, int bufferBytes) {
+        ChatProperties properties = new ChatProperties();
+        properties.getTransport().setSlowConsumerPolicy(policy);
+        properties.getTransport().setSendBufferSizeLimit(DataSize.ofBytes(bufferBytes));
+        monitor = new OutboundQueueMonitor(properties);
+        return monitor;
+    }
+
+    /**
+     * Sesión cuyo socket no acepta datos hasta el final de la prueba
+     */
+    private WebSocketSession stalled(String id) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        doAnswer(invocation -> {
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private static WebSocketSession healthy(String id, long[] latencies, CountDownLatch delivered) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        doAnswer(invocation -> {
+            String body = ((WebSocketMessage<?>) invocation.getArgument(0)).getPayload().toString();
+            String[] parts = body.substring(body.indexOf("\n\n") + 2, body.length() - 1).split(":");
+            latencies[Integer.parseInt(parts[0])] = System.nanoTime() - Long.parseLong(parts[1]);
+            delivered.countDown();
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private void awaitQueueDepth(String sessionId, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (monitor.getQueueDepth(sessionId) != depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static TextMessage frame(String destination, String body) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\ncontent-type:text/plain\n\n" + body + "\0");
+    }
+}
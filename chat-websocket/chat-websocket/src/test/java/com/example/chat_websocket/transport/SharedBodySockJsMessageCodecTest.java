@@ -0,0 +1,67 @@
+package com.example.chat_websocket.transport;
+
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.sockjs.frame.Jackson2SockJsMessageCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias para SharedBodySockJsMessageCodec
+ */
+class SharedBodySockJsMessageCodecTest {
+
+    private static final String BODY = "{\"type\":\"CHAT\",\"content\":\"Hola \\\"a\\\" todos\\n¿qué tal?   😀\","
+            + "\"sender\":\"Ana\"}\u0000";
+
+    private final List<String> quoted = new ArrayList<>();
+    private final SharedBodySockJsMessageCodec codec = new SharedBodySockJsMessageCodec() {
+        @Override
+        protected char[] applyJsonQuoting(String content) {
+            quoted.add(content);
+            return super.applyJsonQuoting(content);
+        }
+    };
+    private final Jackson2SockJsMessageCodec reference = new Jackson2SockJsMessageCodec();
+
+    @Test
+    @DisplayName("Debe producir los mismos frames que el codec por defecto")
+    void testSameOutputAsDefaultCodec() {
+        // Arrange
+        List<String> frames = List.of(
+                frame("sub-0", "1", BODY),
+                frame("sub-1", "2", BODY),
+                frame("sub-0", "3", "[]\u0000"),
+                "\n",
+                "CONNECTED\nversion:1.2\nheart-beat:0,0\n\n\u0000");
+
+        // Act & Assert
+        for (String frame : frames) {
+            assertEquals(reference.encode(frame), codec.encode(frame));
+        }
+        assertEquals(reference.encode("a", "b"), codec.encode("a", "b"));
+    }
+
+    @Test
+    @DisplayName("Debe escapar una sola vez el cuerpo compartido por todos los suscriptores")
+    void testBodyEncodedOnce() {
+        // Act
+        for (int i = 0; i < 100; i++) {
+            String encoded = codec.encode(frame("sub-" + i, String.valueOf(i), BODY));
+            assertEquals(reference.encode(frame("sub-" + i, String.valueOf(i), BODY)), encoded);
+        }
+
+        // Assert: 100 veces los headers de cada sesión y una sola vez el cuerpo
+        assertEquals(101, quoted.size());
+        assertEquals(1, quoted.stream().filter(BODY::equals).count());
+    }
+
+    private static String frame(String subscription, String messageId, String body) {
+        return "MESSAGE\ndestination:/topic/public\ncontent-type:application/json\nsubscription:" + subscription
+                + "\nmessage-id:" + messageId + "\ncontent-length:" + body.length() + "\n\n" + body;
+    }
+}
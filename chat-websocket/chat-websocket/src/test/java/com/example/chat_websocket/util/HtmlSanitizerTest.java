@@ -0,0 +1,133 @@
+package com.example.chat_websocket.util;
+
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de equivalencia de HtmlSanitizer con la cadena de reemplazos original
+ */
+class HtmlSanitizerTest {
+
+    private static final int ITERATIONS = 20_000;
+    private static final String SPECIALS = "&<>\"'/";
+
+    @Test
+    @DisplayName("Debe coincidir con la implementación anterior en entradas ASCII aleatorias")
+    void testAsciiEquivalence() {
+        Random random = new Random(6L);
+        for (int i = 0; i < ITERATIONS; i++) {
+            // Arrange
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(64);
+            for (int j = 0; j < length; j++) {
+                input.append((char) random.nextInt(128));
+            }
+
+            // Act & Assert
+            assertEquivalent(input.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe coincidir con la implementación anterior en entradas Unicode aleatorias")
+    void testUnicodeEquivalence() {
+        Random random = new Random(7L);
+        for (int i = 0; i < ITERATIONS; i++) {
+            // Arrange: mezcla BMP, pares sustitutos, sustitutos sueltos y caracteres especiales
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(48);
+            for (int j = 0; j < length; j++) {
+                switch (random.nextInt(5)) {
+                    case 0 -> input.append(SPECIALS.charAt(random.nextInt(SPECIALS.length())));
+                    case 1 -> input.appendCodePoint(0x1F600 + random.nextInt(80));
+                    case 2 -> input.append((char) (0xD800 + random.nextInt(0x800)));
+                    case 3 -> input.append((char) random.nextInt(33));
+                    default -> input.append((char) random.nextInt(0xD800));
+                }
+            }
+
+            // Act & Assert
+            assertEquivalent(input.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Debe coincidir con la implementación anterior en entradas patológicas")
+    void testPathologicalEquivalence() {
+        // Arrange
+        String[] inputs = {
+                "",
+                " ",
+                "\t\n\r\u0000\u001F ",
+                "&&&&&&&&",
+                "&amp;&lt;",
+                "<script>alert('xss')</script>",
+                "   <b>\"hola\"</b>   ",
+                "\u00A0texto\u00A0",
+                "\u2003espacio em\u2003",
+                SPECIALS.repeat(5_000),
+                " ".repeat(10_000) + "x" + " ".repeat(10_000),
+                "a".repeat(100_000),
+                "/".repeat(20_000)
+        };
+
+        // Act & Assert
+        for (String input : inputs) {
+            assertEquivalent(input);
+        }
+        assertEquals(legacySanitize(null), HtmlSanitizer.sanitize(null));
+    }
+
+    @Test
+    @DisplayName("Debe devolver la misma instancia cuando no hay nada que escapar")
+    void testFastPathReturnsSameInstance() {
+        // Arrange
+        String clean = "Hola a todos, ¿qué tal? 😀";
+
+        // Act & Assert
+        assertSame(clean, HtmlSanitizer.sanitize(clean));
+        assertEquals("hola", HtmlSanitizer.sanitize("  hola  "));
+    }
+
+    @Test
+    @DisplayName("Debe detectar texto vacío con la misma semántica que trim()")
+    void testIsBlank() {
+        assertTrue(HtmlSanitizer.isBlank(null));
+        assertTrue(HtmlSanitizer.isBlank(" \t\u0001"));
+        assertFalse(HtmlSanitizer.isBlank(" a "));
+        assertFalse(HtmlSanitizer.isBlank("\u00A0"));
+    }
+
+    private static void assertEquivalent(String input) {
+        assertEquals(legacySanitize(input), HtmlSanitizer.sanitize(input), () -> "Entrada: " + escapeForReport(input));
+    }
+
+    /**
+     * Copia de referencia de ChatController.sanitizeMessage antes de la pasada única
+     */
+    private static String legacySanitize(String message) {
+        if (message == null) {
+            return "";
+        }
+
+        return message
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&#x27;")
+                .replace("/", "&#x2F;")
+                .trim();
+    }
+
+    private static String escapeForReport(String input) {
+        StringBuilder report = new StringBuilder();
+        input.chars().limit(200).forEach(c -> report.append(String.format("\\u%04X", c)));
+        return report.toString();
+    }
+}